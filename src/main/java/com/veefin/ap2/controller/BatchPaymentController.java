@@ -0,0 +1,41 @@
+package com.veefin.ap2.controller;
+
+import com.veefin.ap2.dto.BatchPaymentReport;
+import com.veefin.ap2.dto.BatchPaymentRequest;
+import com.veefin.ap2.service.AP2Flow;
+import com.veefin.common.dto.ResponseDTO;
+import com.veefin.common.exception.ResourceNotFoundException;
+import com.veefin.common.exception.ValidationException;
+import com.veefin.payment_gateway.entity.model.Card;
+import com.veefin.payment_gateway.service.CardService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/ap2/batch-payments")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class BatchPaymentController {
+
+    private final AP2Flow ap2Flow;
+    private final CardService cardService;
+
+    /**
+     * Pay a set of invoices in one AP2 batch (month-end accounts-payable runs)
+     */
+    @PostMapping
+    public ResponseEntity<ResponseDTO> payInvoices(@RequestBody BatchPaymentRequest request) throws Exception {
+        if (request.getInvoiceUuids() == null || request.getInvoiceUuids().isEmpty()) {
+            throw new ValidationException("invoiceUuids must not be empty");
+        }
+        Card card = cardService.getCardDetails(request.getCardLast4());
+        if (card == null) {
+            throw new ResourceNotFoundException("Card not found: " + request.getCardLast4());
+        }
+
+        BatchPaymentReport report = ap2Flow.executeBatchPaymentFlow(request.getInvoiceUuids(), card.getProviderTokenId());
+        return ResponseEntity.ok(new ResponseDTO(HttpStatus.OK, "Batch payment completed", report));
+    }
+}
@@ -0,0 +1,39 @@
+package com.veefin.ap2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchPaymentReport {
+    private String cartId;
+    private String paymentMandateId;
+    private int requested;
+    private int paid;
+    private int failed;
+    private int chargedUnrecorded; // charged at the gateway but not recorded; see the results' transaction ids
+    private int unknown; // the gateway did not confirm the sale either way; settled by reconciliation
+    private int skipped;
+    private double totalPaid;
+    private long durationMs;
+    private double invoicesPerSecond; // paid invoices / wall-clock time of the whole batch
+    private List<InvoiceResult> results;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class InvoiceResult {
+        private String invoiceUuid;
+        private String invoiceNumber;
+        private Double amount;
+        private String status; // PAID, FAILED, SKIPPED, CHARGED_UNRECORDED, UNKNOWN
+        private String transactionId;
+        private String message;
+    }
+}
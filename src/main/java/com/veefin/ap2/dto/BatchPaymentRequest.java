@@ -0,0 +1,13 @@
+package com.veefin.ap2.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Setter
+@Getter
+public class BatchPaymentRequest {
+    private List<String> invoiceUuids;
+    private String cardLast4; // saved card to charge, as shown in "show cards"
+}
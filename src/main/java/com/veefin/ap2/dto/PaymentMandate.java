@@ -6,6 +6,7 @@ import lombok.Data;
 public class PaymentMandate {
     private PaymentMandateContents paymentMandateContents;
     private String backendSignature;  // Backend's signature (NOT user's)
+    private String signatureAlgorithm; // SignatureScheme the backend signature was made with
     private String paymentHash;       // SHA256 of payment JSON
     private String status;            // CREATED, SENT_TO_GATEWAY, PROCESSED
     private String gatewayOrderId;
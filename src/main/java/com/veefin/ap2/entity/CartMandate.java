@@ -40,6 +40,9 @@ public class CartMandate {
     @Column(name = "backend_signature", columnDefinition = "TEXT")
     private String backendSignature; // Backend's signature (NOT user's)
 
+    @Column(name = "signature_algorithm", length = 20)
+    private String signatureAlgorithm; // SignatureScheme of backendSignature (null = legacy RSA)
+
     @Column(name = "total_amount")
     private Double totalAmount;
 
@@ -52,6 +52,9 @@ public class IntentMandateEntity {
     @Column(name = "user_authorization", columnDefinition = "TEXT")
     private String userAuthorization; // USER'S signature (not backend's)
 
+    @Column(name = "signature_algorithm", length = 20)
+    private String signatureAlgorithm; // SignatureScheme of userAuthorization (null = legacy RSA)
+
     @Column(name = "created_at")
     @CreationTimestamp
     private LocalDateTime createdAt;
@@ -53,6 +53,9 @@ public class PaymentMandateEntity {
     @Column(name = "backend_signature", columnDefinition = "TEXT")
     private String backendSignature; // Backend's signature (NOT user's)
 
+    @Column(name = "signature_algorithm", length = 20)
+    private String signatureAlgorithm; // SignatureScheme of backendSignature (null = legacy RSA)
+
     @Column(name = "status")
     private String status; // CREATED, SENT_TO_GATEWAY, PROCESSED, FAILED
 
@@ -1,18 +1,43 @@
 package com.veefin.ap2.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veefin.ap2.dto.BatchPaymentReport;
+import com.veefin.ap2.dto.IntentMandate;
 import com.veefin.ap2.dto.PaymentMandate;
 import com.veefin.ap2.entity.AP2AuditLog;
 import com.veefin.ap2.entity.CartMandate;
 import com.veefin.ap2.entity.IntentMandateEntity;
 import com.veefin.ap2.repository.IntentMandateRepository;
 import com.veefin.chat_model.service.PaymentProgressService;
+import com.veefin.common.exception.PaymentOutcomeUnknownException;
+import com.veefin.common.exception.ValidationException;
+import com.veefin.common.utility.KeyGenerator;
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.enums.InvoiceStatus;
+import com.veefin.invoice.repository.InvoiceRepository;
 import com.veefin.payment_gateway.entity.dto.TransactionResponseDto;
 import com.veefin.payment_gateway.service.BrainTreeService;
-import jakarta.transaction.Transactional;
+import com.veefin.payment_gateway.service.PaymentReconciliationService;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -23,9 +48,27 @@ public class AP2Flow {
     private final BrainTreeService brainTreeService;
     private final AuditLogService auditService;
     private final PaymentProgressService paymentProgressService;
+    private final IntentMandateService intentMandateService;
+    private final CartMandateService cartMandateService;
+    private final InvoiceRepository invoiceRepository;
+    private final KeyGenerator keyGenerator;
+    private final MeterRegistry meterRegistry;
+    private final PaymentReconciliationService paymentReconciliationService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // charged at the gateway, but the payment could not be recorded; needs reconciliation
+    static final String CHARGED_UNRECORDED = "CHARGED_UNRECORDED";
+    // the gateway did not confirm the sale either way; PaymentReconciliationService settles it
+    static final String OUTCOME_UNKNOWN = "UNKNOWN";
 
+    // Concurrent Braintree sales per batch
+    @Value("${ap2.batch.max-parallelism:8}")
+    private int batchMaxParallelism;
 
-    @Transactional
+    /**
+     * Pay one invoice. Not transactional: the gateway sale must not hold a DB connection while it waits,
+     * so the mandate is saved first and the post-payment writes run in their own transaction.
+     */
     public void executePaymentFlow(String invoiceUuid, CartMandate cart, String paymentToken, String sessionId) {
         log.info("Starting payment flow for invoice: {} and cart: {}", invoiceUuid, cart.getCartId());
 
@@ -36,24 +79,37 @@ public class AP2Flow {
             throw new IllegalArgumentException("Invalid intent reference for cart: " + cart.getCartId());
         }
 
+        //  Claim the invoice so a concurrent or repeated request can't charge it again
+        if (!claimInvoice(invoiceUuid)) {
+            throw new ValidationException("Invoice " + invoiceUuid + " is already paid or being paid");
+        }
+
         //  Create PaymentMandate (represents internal transaction record)
         if (sessionId != null) {
             paymentProgressService.logStep(sessionId, "PAYMENT_START", "Starting payment processing...", true);
         }
-        PaymentMandate paymentMandate = paymentMandateService.createPaymentMandateFromCart(cart, intent);
+        PaymentMandate paymentMandate;
+        try {
+            paymentMandate = paymentMandateService.createPaymentMandateFromCart(cart, intent);
+        } catch (RuntimeException e) {
+            releaseInvoice(invoiceUuid);
+            throw e;
+        }
         if (sessionId != null) {
             paymentProgressService.logStep(sessionId, "PAYMENT_MANDATE_CREATED", "Payment Mandate created successfully", true);
         }
 
+        TransactionResponseDto txnResponse = null;
         try {
             //  Trigger gateway payment creation
             log.info("Creating transaction in Braintree for amount: {}",
                     paymentMandate.getPaymentMandateContents().getTotalAmount());
 
 
-            TransactionResponseDto txnResponse = brainTreeService.createTransaction(
+            txnResponse = brainTreeService.createTransaction(
                     paymentMandate.getPaymentMandateContents().getTotalAmount(),
-                    paymentToken
+                    paymentToken,
+                    orderId(invoiceUuid)
             );
             if (sessionId != null) {
                 paymentProgressService.logStep(sessionId, "PAYMENT_TRANSACTION_CREATED", "Transaction created successfully", true);
@@ -72,6 +128,7 @@ public class AP2Flow {
 
                 log.info("Payment flow completed successfully for invoice: {}", invoiceUuid);
             } else {
+                releaseInvoice(invoiceUuid);
                 auditService.logPaymentEvent(AP2AuditLog.AuditAction.FAIL.name(), paymentMandate.getPaymentMandateContents().getPaymentMandateId(),
                         invoiceUuid, "backend-agent", false,
                         "Payment failed", cart.getTotalAmount(), intent.getMerchantName());
@@ -80,15 +137,242 @@ public class AP2Flow {
                 log.warn("Payment failed for invoice: {} - no transactionId returned", invoiceUuid);
             }
 
+        } catch (PaymentOutcomeUnknownException e) {
+            // The sale may have gone through: keep the invoice claimed and let reconciliation settle it
+            String paymentMandateId = paymentMandate.getPaymentMandateContents().getPaymentMandateId();
+            paymentReconciliationService.recordUnknown(e.getOrderId(), invoiceUuid, paymentMandateId, false, e.getMessage());
+            auditService.logPaymentEvent(AP2AuditLog.AuditAction.FAIL.name(), paymentMandateId,
+                    invoiceUuid, "backend-agent", false,
+                    "Payment outcome unknown: " + e.getMessage(), cart.getTotalAmount(), intent.getMerchantName());
+            log.error("Payment outcome unknown for invoice {}: {}", invoiceUuid, e.getMessage());
+            paymentMandate.setStatus(OUTCOME_UNKNOWN);
+            paymentMandateService.updatePaymentMandate(paymentMandate);
+            throw new RuntimeException("Payment for invoice " + invoiceUuid
+                    + " could not be confirmed by the gateway; it will be checked and completed automatically", e);
         } catch (Exception e) {
             // 6️⃣ Handle any exception gracefully
+            boolean charged = txnResponse != null && txnResponse.getTransactionId() != null;
+            if (charged) {
+                paymentReconciliationService.recordUnrecorded(orderId(invoiceUuid), invoiceUuid,
+                        paymentMandate.getPaymentMandateContents().getPaymentMandateId(), false,
+                        txnResponse.getTransactionId(), e.getMessage());
+            } else {
+                releaseInvoice(invoiceUuid);
+            }
             auditService.logPaymentEvent(AP2AuditLog.AuditAction.FAIL.name(), paymentMandate.getPaymentMandateContents().getPaymentMandateId(),
                     invoiceUuid, "backend-agent", false,
-                    "Payment failed: " + e.getMessage(), cart.getTotalAmount(), intent.getMerchantName());
+                    (charged ? "Charged but post-payment processing failed: " : "Payment failed: ") + e.getMessage(),
+                    cart.getTotalAmount(), intent.getMerchantName());
             log.error("Payment flow error for invoice {}: {}", invoiceUuid, e.getMessage(), e);
-            paymentMandate.setStatus("FAILED");
+            // a charged invoice stays PROCESSING (not payable again) until it is reconciled
+            paymentMandate.setStatus(charged ? CHARGED_UNRECORDED : "FAILED");
             paymentMandateService.updatePaymentMandate(paymentMandate);
             throw new RuntimeException("AI payment failed for invoice: " + invoiceUuid, e);
         }
     }
+
+    /**
+     * Pay many invoices with one signed intent, one signed cart (an item per invoice) and one payment mandate.
+     * Gateway sales run concurrently (at most ap2.batch.max-parallelism at a time); successful invoices are
+     * marked PAID in bulk. A failed sale only fails its own invoice.
+     * Each invoice is claimed (PENDING -> PROCESSING) before anything is charged, so overlapping or retried
+     * batches skip invoices another payment already holds.
+     */
+    public BatchPaymentReport executeBatchPaymentFlow(List<String> invoiceUuids, String paymentToken) throws Exception {
+        long startTime = System.nanoTime();
+        Map<String, BatchPaymentReport.InvoiceResult> results = new LinkedHashMap<>();
+
+        //  Load invoices in one query; unknown, already paid and already claimed ones are skipped
+        LinkedHashSet<String> requested = new LinkedHashSet<>(invoiceUuids);
+        Map<String, InvoiceData> invoicesByUuid = invoiceRepository.findByUuidIn(requested).stream()
+                .collect(Collectors.toMap(InvoiceData::getUuid, Function.identity()));
+        List<InvoiceData> payable = new ArrayList<>();
+        for (String uuid : requested) {
+            InvoiceData invoice = invoicesByUuid.get(uuid);
+            if (invoice == null) {
+                results.put(uuid, new BatchPaymentReport.InvoiceResult(uuid, null, null, "SKIPPED", null, "Invoice not found"));
+            } else if (invoice.getStatus() == InvoiceStatus.PAID) {
+                results.put(uuid, new BatchPaymentReport.InvoiceResult(uuid, invoice.getInvoiceNumber(),
+                        invoice.getTotalAmount(), "SKIPPED", null, "Invoice already paid"));
+            } else if (!claimInvoice(uuid)) {
+                results.put(uuid, new BatchPaymentReport.InvoiceResult(uuid, invoice.getInvoiceNumber(),
+                        invoice.getTotalAmount(), "SKIPPED", null, "Invoice is already being paid"));
+            } else {
+                payable.add(invoice);
+                results.put(uuid, new BatchPaymentReport.InvoiceResult(uuid, invoice.getInvoiceNumber(),
+                        invoice.getTotalAmount(), "FAILED", null, "Not processed"));
+            }
+        }
+        if (payable.isEmpty()) {
+            throw new ValidationException("No payable invoices in batch");
+        }
+        log.info("Starting batch payment flow for {} invoices ({} skipped)", payable.size(), requested.size() - payable.size());
+
+        //  One intent, one cart, one payment mandate: each signed/verified once
+        IntentMandateEntity intentEntity;
+        CartMandate cart;
+        PaymentMandate paymentMandate;
+        try {
+            double total = payable.stream().mapToDouble(InvoiceData::getTotalAmount).sum();
+            IntentMandate intent = new IntentMandate();
+            intent.setNaturalLanguageDescription("Batch payment of " + payable.size() + " invoices");
+            intent.setMerchantName(IntentMandateService.batchMerchantName(payable));
+            intent.setAmount(total);
+            intent.setCurrency("INR");
+            intent.setIntentExpiry(LocalDateTime.now().plusHours(24).toString());
+            intent.setRequiresRefundability(false);
+            String intentJSON = objectMapper.writeValueAsString(intent);
+
+            intentEntity = intentMandateService.createBatchIntent(payable, intentJSON,
+                    keyGenerator.computeHash(intentJSON), keyGenerator.simulateUserSignature(intentJSON));
+            cart = cartMandateService.createCartForInvoices(intentEntity, payable);
+            paymentMandate = paymentMandateService.createBatchPaymentMandate(cart, intentEntity, payable);
+        } catch (Exception e) {
+            // nothing charged yet: give the invoices back
+            payable.forEach(invoice -> releaseInvoice(invoice.getUuid()));
+            throw e;
+        }
+        String paymentMandateId = paymentMandate.getPaymentMandateContents().getPaymentMandateId();
+
+        //  Fan out gateway sales with bounded parallelism
+        Map<String, TransactionResponseDto> succeeded = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(batchMaxParallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> sales = new ArrayList<>();
+            for (InvoiceData invoice : payable) {
+                sales.add(executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        TransactionResponseDto txn = brainTreeService.createTransaction(invoice.getTotalAmount(), paymentToken,
+                                orderId(invoice.getUuid()));
+                        if (txn.getTransactionId() == null) {
+                            throw new IllegalStateException("no transactionId returned");
+                        }
+                        succeeded.put(invoice.getUuid(), txn);
+                        results.get(invoice.getUuid()).setTransactionId(txn.getTransactionId());
+                    } catch (PaymentOutcomeUnknownException e) {
+                        // may have charged: the invoice stays claimed until reconciliation settles it
+                        paymentReconciliationService.recordUnknown(e.getOrderId(), invoice.getUuid(), paymentMandateId, true, e.getMessage());
+                        BatchPaymentReport.InvoiceResult result = results.get(invoice.getUuid());
+                        result.setStatus(OUTCOME_UNKNOWN);
+                        result.setMessage("Payment outcome unknown, will be reconciled: " + e.getMessage());
+                        auditService.logPaymentEvent(AP2AuditLog.AuditAction.FAIL.name(), paymentMandateId,
+                                invoice.getUuid(), "backend-agent", false,
+                                "Batch payment outcome unknown: " + e.getMessage(), invoice.getTotalAmount(), invoice.getMerchantName());
+                    } catch (Exception e) {
+                        releaseInvoice(invoice.getUuid());
+                        results.get(invoice.getUuid()).setMessage("Payment failed: " + e.getMessage());
+                        auditService.logPaymentEvent(AP2AuditLog.AuditAction.FAIL.name(), paymentMandateId,
+                                invoice.getUuid(), "backend-agent", false,
+                                "Batch payment failed: " + e.getMessage(), invoice.getTotalAmount(), invoice.getMerchantName());
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<?> sale : sales) {
+                sale.get();
+            }
+        }
+
+        //  Persist transactions and mark invoices PAID in bulk
+        if (!succeeded.isEmpty()) {
+            try {
+                brainTreeService.processBatchPaymentSuccess(paymentMandateId, succeeded, succeeded.size() == payable.size());
+                for (InvoiceData invoice : payable) {
+                    if (succeeded.containsKey(invoice.getUuid())) {
+                        BatchPaymentReport.InvoiceResult result = results.get(invoice.getUuid());
+                        result.setStatus("PAID");
+                        result.setMessage("Payment processed successfully");
+                        auditService.logPaymentEvent(AP2AuditLog.AuditAction.PAY.name(), paymentMandateId,
+                                invoice.getUuid(), "backend-agent", true,
+                                "Batch payment processed successfully", invoice.getTotalAmount(), invoice.getMerchantName());
+                    }
+                }
+            } catch (Exception e) {
+                // The money moved but the bookkeeping didn't (and was rolled back): report the transaction ids for
+                // reconciliation. The invoices stay PROCESSING so nothing charges them again.
+                log.error("Batch post-payment processing failed for mandate {}: {}", paymentMandateId, e.getMessage(), e);
+                succeeded.forEach((uuid, txn) -> {
+                    BatchPaymentReport.InvoiceResult result = results.get(uuid);
+                    result.setStatus(CHARGED_UNRECORDED);
+                    result.setMessage("Charged but post-payment processing failed: " + e.getMessage());
+                    paymentReconciliationService.recordUnrecorded(orderId(uuid), uuid, paymentMandateId, true,
+                            txn.getTransactionId(), e.getMessage());
+                });
+                markMandate(paymentMandate, CHARGED_UNRECORDED);
+            }
+        }
+        boolean anyUnknown = results.values().stream().anyMatch(r -> OUTCOME_UNKNOWN.equals(r.getStatus()));
+        if (succeeded.isEmpty()) {
+            markMandate(paymentMandate, anyUnknown ? OUTCOME_UNKNOWN : "FAILED");
+        }
+
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        List<BatchPaymentReport.InvoiceResult> resultList = new ArrayList<>(results.values());
+        int paid = (int) resultList.stream().filter(r -> "PAID".equals(r.getStatus())).count();
+        int skipped = (int) resultList.stream().filter(r -> "SKIPPED".equals(r.getStatus())).count();
+        int chargedUnrecorded = (int) resultList.stream().filter(r -> CHARGED_UNRECORDED.equals(r.getStatus())).count();
+        int failed = (int) resultList.stream().filter(r -> "FAILED".equals(r.getStatus())).count();
+        int unknown = (int) resultList.stream().filter(r -> OUTCOME_UNKNOWN.equals(r.getStatus())).count();
+        double invoicesPerSecond = durationMs > 0 ? paid * 1000.0 / durationMs : paid;
+
+        meterRegistry.counter("ap2.batch.invoices", "result", "paid").increment(paid);
+        meterRegistry.counter("ap2.batch.invoices", "result", "failed").increment(failed);
+        meterRegistry.counter("ap2.batch.invoices", "result", "charged_unrecorded").increment(chargedUnrecorded);
+        meterRegistry.counter("ap2.batch.invoices", "result", "unknown").increment(unknown);
+        meterRegistry.summary("ap2.batch.invoices.per.second").record(invoicesPerSecond);
+        log.info("Batch payment finished: {} paid, {} charged but unrecorded, {} unknown, {} failed, {} skipped in {} ms ({} invoices/s)",
+                paid, chargedUnrecorded, unknown, failed, skipped, durationMs, String.format("%.2f", invoicesPerSecond));
+
+        return BatchPaymentReport.builder()
+                .cartId(cart.getCartId())
+                .paymentMandateId(paymentMandateId)
+                .requested(requested.size())
+                .paid(paid)
+                .failed(failed)
+                .chargedUnrecorded(chargedUnrecorded)
+                .unknown(unknown)
+                .skipped(skipped)
+                .totalPaid(resultList.stream().filter(r -> "PAID".equals(r.getStatus())).mapToDouble(BatchPaymentReport.InvoiceResult::getAmount).sum())
+                .durationMs(durationMs)
+                .invoicesPerSecond(invoicesPerSecond)
+                .results(resultList)
+                .build();
+    }
+
+    /**
+     * Claim an invoice for a payment; false when it is already paid or another payment holds it
+     */
+    private boolean claimInvoice(String invoiceUuid) {
+        return invoiceRepository.transitionStatus(invoiceUuid, InvoiceStatus.PENDING, InvoiceStatus.PROCESSING) == 1;
+    }
+
+    /**
+     * Give a claimed invoice back after a payment that charged nothing
+     */
+    private void releaseInvoice(String invoiceUuid) {
+        try {
+            invoiceRepository.transitionStatus(invoiceUuid, InvoiceStatus.PROCESSING, InvoiceStatus.PENDING);
+        } catch (Exception e) {
+            log.error("Failed to release invoice {} after a failed payment: {}", invoiceUuid, e.getMessage());
+        }
+    }
+
+    private void markMandate(PaymentMandate paymentMandate, String status) {
+        try {
+            paymentMandate.setStatus(status);
+            paymentMandateService.updatePaymentMandate(paymentMandate);
+        } catch (Exception e) {
+            log.error("Failed to mark payment mandate {} {}: {}",
+                    paymentMandate.getPaymentMandateContents().getPaymentMandateId(), status, e.getMessage());
+        }
+    }
+
+    /**
+     * Gateway order id: one per invoice, so every attempt to pay it is traceable (and reconcilable) under the same id
+     */
+    static String orderId(String invoiceUuid) {
+        return "ORD-" + invoiceUuid;
+    }
 }
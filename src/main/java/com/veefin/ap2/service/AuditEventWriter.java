@@ -0,0 +1,479 @@
+package com.veefin.ap2.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veefin.ap2.entity.AP2AuditLog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes audit events off the request thread.
+ * Events go into a bounded ring buffer and a single background writer inserts them into ap2_audit_log
+ * in JDBC batches. Every buffered event is also appended to a journal file, which the writer truncates once
+ * the events in it are committed (or spilled), so a process crash loses nothing that was accepted:
+ * - buffer full: the caller waits up to block-timeout-ms (BLOCK policy) and then the event goes to the spill file
+ * - batch insert fails (DB down): the batch goes to the spill file
+ * - shutdown: whatever is left in the buffer is flushed, or spilled if the DB is unreachable
+ * - crash: the journal left behind is moved to the spill file on the next start
+ * The spill file is replayed at start and then every spill-retry-interval-ms while it exists.
+ * Delivery is at-least-once: events committed just before a crash or a failed replay can be inserted twice.
+ * Journal appends are not fsynced, so an OS crash can still lose the last events the page cache held.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuditEventWriter {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO ap2_audit_log (mandate_type, mandate_id, invoice_uuid, action, actor, status,
+                                       details, signature_hash, amount, merchant_name, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    public enum OverflowPolicy {
+        SPILL, BLOCK
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${audit.writer.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${audit.writer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${audit.writer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${audit.writer.overflow-policy:BLOCK}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${audit.writer.block-timeout-ms:50}")
+    private long blockTimeoutMs;
+
+    @Value("${audit.writer.spill-file:data/audit-spill.jsonl}")
+    private Path spillFile;
+
+    @Value("${audit.writer.journal-file:data/audit-journal.jsonl}")
+    private Path journalFile;
+
+    @Value("${audit.writer.spill-retry-interval-ms:30000}")
+    private long spillRetryIntervalMs;
+
+    private RingBuffer<AP2AuditLog> buffer;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // producers append to the journal and offer to the buffer under this lock, so journal order is buffer order
+    private final Object journalLock = new Object();
+    private FileChannel journal;
+    private Path sealedJournal;
+    private long journaled; // events appended to the journal (guarded by journalLock)
+    // writer thread only
+    private long committed; // events taken from the buffer and inserted or spilled
+    private long sealedUpTo = -1; // the sealed journal holds events before this count; -1 when there is none
+    private long lastSpillReplay;
+
+    @PostConstruct
+    public void init() {
+        buffer = new RingBuffer<>(bufferSize);
+        sealedJournal = journalFile.resolveSibling(journalFile.getFileName() + ".sealed");
+        recoverJournal();
+        openJournal();
+        Gauge.builder("audit.writer.buffer.size", buffer, RingBuffer::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start writing once Flyway has created the table; events submitted earlier wait in the buffer
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        writerThread = Thread.ofPlatform().name("audit-writer").daemon(true).start(this::runWriter);
+    }
+
+    /**
+     * Queue an audit event. Never blocks longer than block-timeout-ms and never throws.
+     */
+    public void submit(AP2AuditLog event) {
+        if (event.getTimestamp() == null) {
+            event.setTimestamp(LocalDateTime.now());
+        }
+        byte[] line = toJournalLine(event);
+        if (offer(event, line)) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+            while (System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                if (offer(event, line)) {
+                    return;
+                }
+            }
+        }
+        meterRegistry.counter("audit.writer.events", "result", "overflow").increment();
+        spill(List.of(event));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Writer has stopped, so this thread is now the only consumer
+        drainAll();
+        closeJournal();
+    }
+
+    private void runWriter() {
+        replaySpillFile();
+        lastSpillReplay = System.nanoTime();
+        while (running) {
+            int flushed = flushBatch();
+            if (flushed > 0) {
+                truncateJournal();
+            }
+            if (System.nanoTime() - lastSpillReplay >= TimeUnit.MILLISECONDS.toNanos(spillRetryIntervalMs)) {
+                // events spilled while the DB was down go back in once it accepts writes again
+                replaySpillFile();
+                lastSpillReplay = System.nanoTime();
+            }
+            if (flushed < batchSize) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            }
+        }
+    }
+
+    private void drainAll() {
+        while (flushBatch() > 0) {
+            // keep flushing until the buffer is empty
+        }
+        truncateJournal();
+    }
+
+    private boolean offer(AP2AuditLog event, byte[] line) {
+        synchronized (journalLock) {
+            if (!buffer.offer(event)) {
+                return false;
+            }
+            journaled++;
+            if (journal != null && line != null) {
+                try {
+                    journal.write(ByteBuffer.wrap(line));
+                } catch (IOException e) {
+                    // still buffered, just not crash-safe
+                    log.warn("Failed to journal audit event: {}", e.getMessage());
+                }
+            }
+            return true;
+        }
+    }
+
+    private byte[] toJournalLine(AP2AuditLog event) {
+        try {
+            return (objectMapper.writeValueAsString(event) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Failed to serialize audit event for the journal: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Drop journal entries whose events are committed: truncate the journal when everything in it is,
+     * otherwise seal it and start a new one; the sealed file is deleted once its last event is committed
+     */
+    private void truncateJournal() {
+        try {
+            if (sealedUpTo >= 0 && committed >= sealedUpTo) {
+                Files.deleteIfExists(sealedJournal);
+                sealedUpTo = -1;
+            }
+            if (sealedUpTo >= 0) {
+                return;
+            }
+            synchronized (journalLock) {
+                if (journal == null) {
+                    return;
+                }
+                if (journaled == committed) {
+                    journal.truncate(0);
+                } else {
+                    journal.close();
+                    Files.move(journalFile, sealedJournal, StandardCopyOption.REPLACE_EXISTING);
+                    sealedUpTo = journaled;
+                    openJournal();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to truncate audit journal {}: {}", journalFile, e.getMessage());
+        }
+    }
+
+    private void openJournal() {
+        try {
+            if (journalFile.getParent() != null) {
+                Files.createDirectories(journalFile.getParent());
+            }
+            journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            journal = null;
+            log.error("Failed to open audit journal {}, buffered events are not crash-safe: {}", journalFile, e.getMessage());
+        }
+    }
+
+    private void closeJournal() {
+        synchronized (journalLock) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.close();
+                if (journaled == committed) {
+                    Files.deleteIfExists(journalFile);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to close audit journal {}: {}", journalFile, e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * A journal left by a previous run holds events that may never have been committed: queue them for replay
+     */
+    private void recoverJournal() {
+        int recovered = 0;
+        for (Path leftover : List.of(sealedJournal, journalFile)) {
+            try {
+                if (!Files.exists(leftover)) {
+                    continue;
+                }
+                synchronized (this) {
+                    if (spillFile.getParent() != null) {
+                        Files.createDirectories(spillFile.getParent());
+                    }
+                    try (OutputStream out = Files.newOutputStream(spillFile, StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND, StandardOpenOption.DSYNC)) {
+                        Files.copy(leftover, out);
+                        out.write('\n'); // the crash may have cut the last line short
+                    }
+                }
+                Files.delete(leftover);
+                recovered++;
+            } catch (IOException e) {
+                log.error("Failed to recover audit journal {}: {}", leftover, e.getMessage());
+            }
+        }
+        if (recovered > 0) {
+            log.warn("Recovered {} audit journal file(s) from an unclean shutdown into {}", recovered, spillFile);
+        }
+    }
+
+    /**
+     * Write up to batchSize buffered events, returning how many were taken from the buffer
+     */
+    private int flushBatch() {
+        List<AP2AuditLog> batch = new ArrayList<>(batchSize);
+        AP2AuditLog event;
+        while (batch.size() < batchSize && (event = buffer.poll()) != null) {
+            batch.add(event);
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            insert(batch);
+            meterRegistry.counter("audit.writer.events", "result", "written").increment(batch.size());
+        } catch (Exception e) {
+            log.error("Failed to write {} audit events, spilling to {}: {}", batch.size(), spillFile, e.getMessage());
+            spill(batch);
+        }
+        committed += batch.size();
+        return batch.size();
+    }
+
+    private void insert(List<AP2AuditLog> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, audit) -> {
+            ps.setString(1, audit.getMandateType().name());
+            ps.setString(2, audit.getMandateId());
+            ps.setString(3, audit.getInvoiceUuid());
+            ps.setString(4, audit.getAction().name());
+            ps.setString(5, audit.getActor());
+            ps.setString(6, audit.getStatus().name());
+            ps.setString(7, audit.getDetails());
+            ps.setString(8, audit.getSignatureHash());
+            ps.setObject(9, audit.getAmount());
+            ps.setString(10, audit.getMerchantName());
+            ps.setTimestamp(11, Timestamp.valueOf(audit.getTimestamp()));
+        });
+    }
+
+    private synchronized void spill(List<AP2AuditLog> events) {
+        try {
+            if (spillFile.getParent() != null) {
+                Files.createDirectories(spillFile.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC)) {
+                for (AP2AuditLog event : events) {
+                    writer.write(objectMapper.writeValueAsString(event));
+                    writer.newLine();
+                }
+            }
+            meterRegistry.counter("audit.writer.events", "result", "spilled").increment(events.size());
+        } catch (IOException e) {
+            // Last resort: the event is still in the application log
+            log.error("Failed to spill {} audit events: {} - {}", events.size(), e.getMessage(), events);
+        }
+    }
+
+    /**
+     * Insert spilled events (DB outage, overflow, shutdown or a recovered journal).
+     * A replay file left by a failed attempt is retried before the spill file is taken.
+     */
+    private void replaySpillFile() {
+        Path replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        try {
+            if (!Files.exists(replayFile)) {
+                synchronized (this) {
+                    if (!Files.exists(spillFile)) {
+                        return;
+                    }
+                    Files.move(spillFile, replayFile);
+                }
+            }
+
+            List<AP2AuditLog> batch = new ArrayList<>(batchSize);
+            int replayed = 0;
+            try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        batch.add(objectMapper.readValue(line, AP2AuditLog.class));
+                    } catch (JsonProcessingException e) {
+                        log.error("Skipping unreadable spilled audit event: {}", line);
+                        continue;
+                    }
+                    if (batch.size() == batchSize) {
+                        insert(batch);
+                        replayed += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                insert(batch);
+                replayed += batch.size();
+            }
+            Files.delete(replayFile);
+            log.info("Replayed {} spilled audit events", replayed);
+        } catch (Exception e) {
+            // Keep the file for the next attempt; rows inserted before the failure may be replayed twice
+            log.error("Failed to replay audit spill file {}: {}", replayFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Bounded multi-producer / single-consumer ring buffer (sequence-per-slot, CAS on the producer cursor only)
+     */
+    static final class RingBuffer<E> {
+
+        private final Object[] slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLong head = new AtomicLong();
+
+        RingBuffer(int requestedCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+            slots = new Object[capacity];
+            sequences = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        boolean offer(E element) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long diff = sequences.get(index) - position;
+                if (diff == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots[index] = element;
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (diff < 0) {
+                    return false; // full
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        E poll() {
+            long position = head.get();
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                return null; // empty, or the producer has not finished writing this slot yet
+            }
+            E element = (E) slots[index];
+            slots[index] = null;
+            sequences.set(index, position + mask + 1);
+            head.lazySet(position + 1);
+            return element;
+        }
+
+        int size() {
+            return (int) Math.max(0, tail.get() - head.get());
+        }
+    }
+}
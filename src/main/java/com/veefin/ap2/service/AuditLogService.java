@@ -2,7 +2,6 @@ package com.veefin.ap2.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.veefin.ap2.entity.AP2AuditLog;
-import com.veefin.ap2.repository.AP2AuditRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -13,7 +12,7 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class AuditLogService {
 
-    private final AP2AuditRepository auditRepository;
+    private final AuditEventWriter auditEventWriter;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -34,7 +33,7 @@ public class AuditLogService {
                     .merchantName(merchantName)
                     .build();
 
-            auditRepository.save(audit);
+            auditEventWriter.submit(audit);
             log.info("🔍 AUDIT: Intent {} - {} by {} - {}", action, intentHash, actor, success ? "SUCCESS" : "FAILURE");
         } catch (Exception e) {
             log.error("Failed to log audit event: {}", e.getMessage());
@@ -59,7 +58,7 @@ public class AuditLogService {
                     .merchantName(merchantName)
                     .build();
 
-            auditRepository.save(audit);
+            auditEventWriter.submit(audit);
             log.info("🔍 AUDIT: Cart {} - {} by {} - {}", action, cartId, actor, success ? "SUCCESS" : "FAILURE");
         } catch (Exception e) {
             log.error("Failed to log audit event: {}", e.getMessage());
@@ -84,7 +83,7 @@ public class AuditLogService {
                     .merchantName(merchantName)
                     .build();
 
-            auditRepository.save(audit);
+            auditEventWriter.submit(audit);
             log.info("🔍 AUDIT: Payment {} - {} by {} - {}", action, paymentId, actor, success ? "SUCCESS" : "FAILURE");
         } catch (Exception e) {
             log.error("Failed to log audit event: {}", e.getMessage());
@@ -110,7 +109,7 @@ public class AuditLogService {
                     .signatureHash(signatureHash)
                     .build();
 
-            auditRepository.save(audit);
+            auditEventWriter.submit(audit);
             log.info("🔍 AUDIT: Signature verification - {} - {}", mandateId, verified ? "SUCCESS" : "FAILURE");
         } catch (Exception e) {
             log.error("Failed to log signature verification: {}", e.getMessage());
@@ -76,7 +76,8 @@ public class CartMandateService {
             // 4 Backend signs the cart (NOT user)
             String cartJsonString = objectMapper.writeValueAsString(cartJson);
             String cartHash = cryptoService.computeSHA256(cartJsonString);
-            String backendSignature = cryptoService.signWithAgentKey(cartJsonString);
+            SignatureScheme signingScheme = cryptoService.getAgentSigningScheme();
+            String backendSignature = cryptoService.signWithAgentKey(cartJsonString, signingScheme);
 
             // 🔍 AUDIT: Cart signing
             auditService.logSignatureVerification(
@@ -96,6 +97,7 @@ public class CartMandateService {
             cart.setCartHash(cartHash);
             cart.setCartJson(cartJsonString);
             cart.setBackendSignature(backendSignature);
+            cart.setSignatureAlgorithm(signingScheme.name());
             cart.setTotalAmount(cartJson.getTotal());
             cart.setStatus("CREATED");
             cart.setTimestamp(LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
@@ -122,6 +124,52 @@ public class CartMandateService {
         }
     }
 
+    /**
+     * Backend creates one Cart Mandate with an item per invoice and signs it once (batch payments)
+     */
+    public CartMandate createCartForInvoices(IntentMandateEntity intent, List<InvoiceData> invoices) {
+        String cartId = "PENDING";
+        try {
+            CartJSON cartJson = buildCartJSON(intent, invoices);
+            cartId = cartJson.getCartId();
+
+            String cartJsonString = objectMapper.writeValueAsString(cartJson);
+            SignatureScheme signingScheme = cryptoService.getAgentSigningScheme();
+            String backendSignature = cryptoService.signWithAgentKey(cartJsonString, signingScheme);
+
+            auditService.logSignatureVerification(
+                    com.veefin.ap2.entity.AP2AuditLog.MandateType.CART,
+                    cartId,
+                    "backend-agent",
+                    true,
+                    backendSignature.length() > 20 ? backendSignature.substring(0, 20) + "..." : backendSignature
+            );
+
+            CartMandate cart = new CartMandate();
+            cart.setUuid(UUID.randomUUID().toString());
+            cart.setCartId(cartId);
+            cart.setIntentHash(intent.getIntentHash());
+            cart.setCartHash(cryptoService.computeSHA256(cartJsonString));
+            cart.setCartJson(cartJsonString);
+            cart.setBackendSignature(backendSignature);
+            cart.setSignatureAlgorithm(signingScheme.name());
+            cart.setTotalAmount(cartJson.getTotal());
+            cart.setStatus("CONFIRMED");
+            cart.setTimestamp(cartJson.getTimestamp());
+            CartMandate savedCart = cartRepo.save(cart);
+
+            auditService.logCartEvent("CREATE", cartId, null, "backend-agent", true,
+                    "Batch cart mandate created and signed for " + invoices.size() + " invoices",
+                    cartJson.getTotal(), intent.getMerchantName());
+            return savedCart;
+
+        } catch (Exception e) {
+            auditService.logCartEvent("CREATE", cartId, null, "backend-agent", false,
+                    "Batch cart creation failed: " + e.getMessage(), intent.getAmount(), intent.getMerchantName());
+            throw new RuntimeException("Batch cart creation failed: " + e.getMessage());
+        }
+    }
+
     private List<InvoiceData> selectEligibleInvoices(IntentMandateEntity intent) {
         // Apply intent rules to select invoices
         return invoiceService.getAllInvoiceByMerchantName(intent.getMerchantName());
@@ -2,74 +2,72 @@ package com.veefin.ap2.service;
 
 import com.veefin.ap2.entity.UserPublicKey;
 import com.veefin.ap2.repository.UserPublicKeyRepository;
+import com.veefin.common.utility.CryptoEngine;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 @Slf4j
 public class CryptographicService {
 
-    private final KeyPair agentKeyPair;
-    private final Map<String, PublicKey> userPublicKeysCache;
+    // One agent key pair per scheme, so mandates signed with any scheme can still be verified
+    private final Map<SignatureScheme, KeyPair> agentKeyPairs;
 
     @Autowired
     private UserPublicKeyRepository userPublicKeyRepo;
 
+    @Autowired
+    private CryptoEngine cryptoEngine;
+
+    @Autowired
+    private UserPublicKeyCache userPublicKeyCache;
+
+    // Scheme used for new agent signatures (cart and payment mandates)
+    @Value("${ap2.signing.scheme:ED25519}")
+    private SignatureScheme agentSigningScheme;
+
     public CryptographicService() {
-        this.agentKeyPair = generateAgentKeyPair();
-        this.userPublicKeysCache = new HashMap<>();
+        this.agentKeyPairs = new EnumMap<>(SignatureScheme.class);
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            agentKeyPairs.put(scheme, generateAgentKeyPair(scheme));
+        }
     }
 
     /**
-     * Generate RSA key pair for backend agent
+     * Generate key pair for backend agent
      */
-    private KeyPair generateAgentKeyPair() {
+    private KeyPair generateAgentKeyPair(SignatureScheme scheme) {
         try {
-            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-            keyGen.initialize(2048);
-            KeyPair keyPair = keyGen.generateKeyPair();
-            log.info("Agent RSA key pair generated successfully");
+            KeyPair keyPair = scheme.generateKeyPair();
+            log.info("Agent {} key pair generated successfully", scheme);
             return keyPair;
         } catch (Exception e) {
             throw new RuntimeException("Failed to generate agent key pair", e);
         }
     }
 
+    /**
+     * Scheme new agent signatures are made with; store it next to the signature
+     */
+    public SignatureScheme getAgentSigningScheme() {
+        return agentSigningScheme;
+    }
+
     /**
      * Load user public key from database with caching
      */
     private PublicKey getUserPublicKey(String userId) {
         try {
-            // Check cache first
-            PublicKey cachedKey = userPublicKeysCache.get(userId);
-            if (cachedKey != null) {
-                return cachedKey;
-            }
-
-            // Load from DB
-            Optional<UserPublicKey> userKeyEntity = userPublicKeyRepo.findByUserIdAndIsActive(userId, true);
-            if (userKeyEntity.isEmpty()) {
-                log.warn("No active public key found for user: {}", userId);
-                return null;
-            }
-
-            PublicKey publicKey = loadPublicKeyFromString(userKeyEntity.get().getPublicKey());
-
-            // Cache it for next time
-            userPublicKeysCache.put(userId, publicKey);
-
-            return publicKey;
+            return userPublicKeyCache.get(userId);
         } catch (Exception e) {
             log.error("Failed to load public key for user {}: {}", userId, e.getMessage());
             return null;
@@ -81,9 +79,7 @@ public class CryptographicService {
      */
     public String computeSHA256(String data) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
+            return cryptoEngine.sha256Base64(data);
         } catch (Exception e) {
             throw new RuntimeException("Failed to compute SHA-256", e);
         }
@@ -105,10 +101,8 @@ public class CryptographicService {
                 return false;
             }
 
-            Signature sig = Signature.getInstance("SHA256withRSA");
-            sig.initVerify(userPublicKey);
-            sig.update(intentJSON.getBytes(StandardCharsets.UTF_8));
-            boolean isValid = sig.verify(Base64.getDecoder().decode(userSignature));
+            SignatureScheme scheme = SignatureScheme.forKey(userPublicKey);
+            boolean isValid = cryptoEngine.verify(scheme.signatureAlgorithm(), userPublicKey, intentJSON, userSignature);
 
             log.info("User signature verification for {}: {}", userId, isValid);
             return isValid;
@@ -119,16 +113,25 @@ public class CryptographicService {
     }
 
     /**
-     * Backend signs data with agent private key
+     * Scheme of the user's active key (the scheme their signatures are verified with), or null if they have none
+     */
+    public SignatureScheme getUserSignatureScheme(String userId) {
+        PublicKey userPublicKey = getUserPublicKey(userId);
+        return userPublicKey != null ? SignatureScheme.forKey(userPublicKey) : null;
+    }
+
+    /**
+     * Backend signs data with agent private key, using the configured signing scheme
      */
     public String signWithAgentKey(String data) {
+        return signWithAgentKey(data, agentSigningScheme);
+    }
+
+    public String signWithAgentKey(String data, SignatureScheme scheme) {
         try {
-            Signature sig = Signature.getInstance("SHA256withRSA");
-            sig.initSign(agentKeyPair.getPrivate());
-            sig.update(data.getBytes(StandardCharsets.UTF_8));
-            String signature = Base64.getEncoder().encodeToString(sig.sign());
+            String signature = cryptoEngine.sign(scheme.signatureAlgorithm(), agentKeyPairs.get(scheme).getPrivate(), data);
 
-            log.debug("Data signed with agent key");
+            log.debug("Data signed with agent {} key", scheme);
             return signature;
         } catch (Exception e) {
             throw new RuntimeException("Failed to sign with agent key", e);
@@ -136,14 +139,18 @@ public class CryptographicService {
     }
 
     /**
-     * Verify backend's signature
+     * Verify backend's signature made with the configured signing scheme
      */
     public boolean verifyAgentSignature(String data, String signature) {
+        return verifyAgentSignature(data, signature, agentSigningScheme);
+    }
+
+    /**
+     * Verify backend's signature made with the given scheme (the one recorded on the mandate)
+     */
+    public boolean verifyAgentSignature(String data, String signature, SignatureScheme scheme) {
         try {
-            Signature sig = Signature.getInstance("SHA256withRSA");
-            sig.initVerify(agentKeyPair.getPublic());
-            sig.update(data.getBytes(StandardCharsets.UTF_8));
-            boolean isValid = sig.verify(Base64.getDecoder().decode(signature));
+            boolean isValid = cryptoEngine.verify(scheme.signatureAlgorithm(), agentKeyPairs.get(scheme).getPublic(), data, signature);
 
             log.debug("Agent signature verification: {}", isValid);
             return isValid;
@@ -190,7 +197,7 @@ public class CryptographicService {
      */
     public String getAgentPublicKeyString() {
         try {
-            byte[] publicKeyBytes = agentKeyPair.getPublic().getEncoded();
+            byte[] publicKeyBytes = agentKeyPairs.get(agentSigningScheme).getPublic().getEncoded();
             return Base64.getEncoder().encodeToString(publicKeyBytes);
         } catch (Exception e) {
             throw new RuntimeException("Failed to get agent public key", e);
@@ -220,23 +227,25 @@ public class CryptographicService {
     }
 
     /**
-     * Load public key from Base64 string
+     * Load public key from Base64 string (X.509, any supported scheme)
      */
     PublicKey loadPublicKeyFromString(String publicKeyStr) throws Exception {
-        byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyStr);
-        X509EncodedKeySpec spec = new X509EncodedKeySpec(publicKeyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        return keyFactory.generatePublic(spec);
+        Exception lastError = null;
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            try {
+                return cryptoEngine.parsePublicKey(scheme.keyAlgorithm(), publicKeyStr);
+            } catch (GeneralSecurityException e) {
+                lastError = e;
+            }
+        }
+        throw new InvalidKeyException("Not an RSA, EC or Ed25519 public key", lastError);
     }
 
     /**
      * Load private key from Base64 string
      */
     private PrivateKey loadPrivateKeyFromString(String privateKeyStr) throws Exception {
-        byte[] privateKeyBytes = Base64.getDecoder().decode(privateKeyStr);
-        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(privateKeyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        return keyFactory.generatePrivate(spec);
+        return cryptoEngine.parsePrivateKey("RSA", privateKeyStr);
     }
 
     /**
@@ -246,19 +255,20 @@ public class CryptographicService {
 
             // Validate the key first
             PublicKey publicKey = loadPublicKeyFromString(publicKeyStr);
+            SignatureScheme scheme = SignatureScheme.forKey(publicKey);
 
             // Save to database
             UserPublicKey userKeyEntity = new UserPublicKey();
             userKeyEntity.setUserId(userId);
             userKeyEntity.setPublicKey(publicKeyStr);
-            userKeyEntity.setKeyAlgorithm("RSA");
-            userKeyEntity.setKeySize(2048);
+            userKeyEntity.setKeyAlgorithm(scheme.keyAlgorithm());
+            userKeyEntity.setKeySize(scheme.keySize(publicKey));
             userKeyEntity.setIsActive(true);
 
             userPublicKeyRepo.save(userKeyEntity);
 
-            // Update cache
-            userPublicKeysCache.put(userId, publicKey);
+            // Drop any cached (possibly negative) entry; the next verify loads the new key
+            userPublicKeyCache.invalidate(userId);
 
             log.info("Added public key for user: {}", userId);
 
@@ -282,10 +292,7 @@ public class CryptographicService {
      */
     public String signWithTestKey(String data, PrivateKey privateKey) {
         try {
-            Signature sig = Signature.getInstance("SHA256withRSA");
-            sig.initSign(privateKey);
-            sig.update(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(sig.sign());
+            return cryptoEngine.sign(SignatureScheme.forKey(privateKey).signatureAlgorithm(), privateKey, data);
         } catch (Exception e) {
             throw new RuntimeException("Failed to sign with test key", e);
         }
@@ -13,6 +13,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @RequiredArgsConstructor
 @Service
 public class IntentMandateService {
@@ -88,6 +90,8 @@ public class IntentMandateService {
             entity.setRequiresRefundability(false);
             entity.setStatus("CREATED");
             entity.setUserAuthorization(userSignature);
+            SignatureScheme userScheme = cryptoService.getUserSignatureScheme("demo-user");
+            entity.setSignatureAlgorithm(userScheme != null ? userScheme.name() : null);
             entity.setIntentHash(intentHash);
             intentRepo.save(entity);
 
@@ -107,4 +111,60 @@ public class IntentMandateService {
             throw new ValidationException("Intent mandate processing failed: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * One user-signed intent covering several invoices (batch payments).
+     * The signed amount must equal the invoices' total; merchant is the single merchant or "MULTIPLE".
+     */
+    public IntentMandateEntity createBatchIntent(List<InvoiceData> invoices, String userSignedIntentJSON,
+                                                 String intentHash, String userSignature) {
+        double total = invoices.stream().mapToDouble(InvoiceData::getTotalAmount).sum();
+        String merchantName = batchMerchantName(invoices);
+        try {
+            boolean verified = cryptoService.verifyUserSignature(userSignedIntentJSON, userSignature);
+            auditService.logSignatureVerification(
+                    com.veefin.ap2.entity.AP2AuditLog.MandateType.INTENT,
+                    intentHash,
+                    "demo-user",
+                    verified,
+                    userSignature.length() > 20 ? userSignature.substring(0, 20) + "..." : userSignature
+            );
+            if (!verified) {
+                throw new ValidationException("User signature verification failed");
+            }
+
+            IntentMandate mandate = objectMapper.readValue(userSignedIntentJSON, IntentMandate.class);
+            if (!merchantName.equals(mandate.getMerchantName()) || Math.abs(mandate.getAmount() - total) > 0.005) {
+                throw new ValidationException("Intent doesn't match the selected invoices");
+            }
+
+            IntentMandateEntity entity = new IntentMandateEntity();
+            entity.setMerchantName(merchantName);
+            entity.setAmount(total);
+            entity.setCurrency("INR");
+            entity.setNaturalLanguageDescription(mandate.getNaturalLanguageDescription());
+            entity.setIntentExpiry(mandate.getIntentExpiry());
+            entity.setRequiresRefundability(false);
+            entity.setStatus("CREATED");
+            entity.setUserAuthorization(userSignature);
+            SignatureScheme userScheme = cryptoService.getUserSignatureScheme("demo-user");
+            entity.setSignatureAlgorithm(userScheme != null ? userScheme.name() : null);
+            entity.setIntentHash(intentHash);
+            intentRepo.save(entity);
+
+            auditService.logIntentEvent("CREATE", intentHash, null, "demo-user", true,
+                    "Batch intent mandate stored for " + invoices.size() + " invoices", total, merchantName);
+            return entity;
+
+        } catch (Exception e) {
+            auditService.logIntentEvent("CREATE", intentHash, null, "SYSTEM", false,
+                    "Batch intent mandate processing failed: " + e.getMessage(), total, merchantName);
+            throw new ValidationException("Batch intent mandate processing failed: " + e.getMessage(), e);
+        }
+    }
+
+    public static String batchMerchantName(List<InvoiceData> invoices) {
+        List<String> merchants = invoices.stream().map(InvoiceData::getMerchantName).distinct().toList();
+        return merchants.size() == 1 ? merchants.get(0) : "MULTIPLE";
+    }
+}
@@ -21,7 +21,9 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -55,7 +57,8 @@ public class PaymentMandateService {
                     "Payment mandate creation started", cart.getTotalAmount(), invoice.getMerchantName());
 
             // Verify cart signature
-            boolean cartSignatureValid = cryptoService.verifyAgentSignature(cart.getCartJson(), cart.getBackendSignature());
+            boolean cartSignatureValid = cryptoService.verifyAgentSignature(cart.getCartJson(), cart.getBackendSignature(),
+                    SignatureScheme.fromName(cart.getSignatureAlgorithm()));
 
             // 🔍 AUDIT: Cart signature verification
             auditService.logSignatureVerification(
@@ -122,40 +125,7 @@ public class PaymentMandateService {
             auditService.logPaymentEvent(AP2AuditLog.AuditAction.CREATE.name(), paymentMandateId,intent.getInvoiceUuid(), "backend-agent", true,
                     "Payment mandate contents created successfully", cart.getTotalAmount(), invoice.getMerchantName());
 
-            // Backend signs the payment mandate
-            String backendSignature = cryptoService.signWithAgentKey(
-                    objectMapper.writeValueAsString(contents)
-            );
-
-            // 🔍 AUDIT: Payment mandate signing
-            auditService.logSignatureVerification(
-                    com.veefin.ap2.entity.AP2AuditLog.MandateType.PAYMENT,
-                    paymentMandateId,
-                    "backend-agent",
-                    true,
-                    backendSignature.length() > 20 ? backendSignature.substring(0, 20) + "..." : backendSignature
-            );
-
-            // Build PaymentMandate
-            PaymentMandate mandate = new PaymentMandate();
-            mandate.setPaymentMandateContents(contents);
-            mandate.setBackendSignature(backendSignature);
-            mandate.setStatus(PaymentEnums.CREATED.name());
-
-            // Persist to DB
-            PaymentMandateEntity entity = new PaymentMandateEntity();
-            entity.setPaymentMandateId(contents.getPaymentMandateId());
-            entity.setCartId(cart.getCartId());
-            entity.setCartHash(cart.getCartHash());
-            entity.setMerchantName(invoice.getMerchantName());
-            entity.setAmount(cart.getTotalAmount());
-            entity.setCurrency("INR");
-            entity.setPaymentMethod(PaymentEnums.PaymentMethod.CARD.name());
-            entity.setTimestamp(contents.getTimestamp());
-            entity.setBackendSignature(backendSignature);
-            entity.setStatus(PaymentEnums.CREATED.name());
-
-            paymentRepo.save(entity);
+            PaymentMandate mandate = signAndStore(contents, cart, invoice.getMerchantName());
 
             // 🔍 AUDIT: Payment mandate creation successful
             auditService.logPaymentEvent(AP2AuditLog.AuditAction.CREATE.name(), paymentMandateId,intent.getInvoiceUuid(), "backend-agent", true,
@@ -174,6 +144,112 @@ public class PaymentMandateService {
         }
     }
 
+    /**
+     * One PaymentMandate for a multi-invoice cart (batch payments).
+     * The cart signature is verified and the AI authorization asked once for the whole batch.
+     */
+    public PaymentMandate createBatchPaymentMandate(CartMandate cart, IntentMandateEntity intent, List<InvoiceData> invoices) {
+        String paymentMandateId = "PENDING";
+        try {
+            boolean cartSignatureValid = cryptoService.verifyAgentSignature(cart.getCartJson(), cart.getBackendSignature(),
+                    SignatureScheme.fromName(cart.getSignatureAlgorithm()));
+            auditService.logSignatureVerification(AP2AuditLog.MandateType.CART, cart.getCartId(), "backend-agent",
+                    cartSignatureValid,
+                    cart.getBackendSignature().length() > 20 ? cart.getBackendSignature().substring(0, 20) + "..." : cart.getBackendSignature());
+            if (!cartSignatureValid) {
+                throw new ValidationException("Cart signature verification failed");
+            }
+
+            String invoiceLines = invoices.stream()
+                    .map(invoice -> String.format("- %s invoice %s for ₹%.2f due on %s",
+                            invoice.getMerchantName(), invoice.getInvoiceNumber(), invoice.getTotalAmount(), invoice.getDueDate()))
+                    .collect(Collectors.joining("\n"));
+            String aiPrompt = String.format("""
+            Decide if this batch payment should be authorized.
+            We always have sufficient funds.
+            Respond ONLY with short reason including APPROVE or REJECT.
+
+            Intent: %s
+            Invoices (%d, total ₹%.2f):
+            %s
+            Cart Status: %s
+            """, intent.getNaturalLanguageDescription(), invoices.size(), cart.getTotalAmount(), invoiceLines, cart.getStatus());
+
+            String aiDecision = generateIntentSummary(aiPrompt);
+            boolean approved = !aiDecision.toUpperCase().contains("REJECT");
+            auditService.logPaymentEvent(AP2AuditLog.AuditAction.VALIDATE.name(), paymentMandateId, null, "ai-agent",
+                    approved, "AI batch validation decision: " + aiDecision, cart.getTotalAmount(), intent.getMerchantName());
+            if (!approved) {
+                throw new ValidationException("AI validation failed: " + aiDecision);
+            }
+
+            PaymentMandateContents contents = new PaymentMandateContents();
+            contents.setPaymentMandateId(UUID.randomUUID().toString());
+            paymentMandateId = contents.getPaymentMandateId();
+            contents.setCartId(cart.getCartId());
+            contents.setCartHash(cart.getCartHash());
+            contents.setMerchantAgent(intent.getMerchantName());
+            contents.setTotalAmount(cart.getTotalAmount());
+            contents.setCurrency("INR");
+            contents.setPaymentMethod(PaymentEnums.PaymentMethod.CARD.name());
+            contents.setTimestamp(LocalDateTime.now().format(DateTimeFormatter.ISO_DATE_TIME));
+
+            PaymentMandate mandate = signAndStore(contents, cart, intent.getMerchantName());
+            auditService.logPaymentEvent(AP2AuditLog.AuditAction.CREATE.name(), paymentMandateId, null, "backend-agent", true,
+                    "Batch payment mandate created for " + invoices.size() + " invoices", cart.getTotalAmount(), intent.getMerchantName());
+            return mandate;
+
+        } catch (Exception e) {
+            auditService.logPaymentEvent(AP2AuditLog.AuditAction.FAIL.name(), paymentMandateId, null, "backend-agent", false,
+                    "Batch payment mandate creation failed: " + e.getMessage(), cart.getTotalAmount(), intent.getMerchantName());
+            throw new ValidationException("Batch payment mandate creation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Backend signs the payment mandate contents and persists the mandate
+     */
+    private PaymentMandate signAndStore(PaymentMandateContents contents, CartMandate cart, String merchantName) throws Exception {
+        String paymentMandateId = contents.getPaymentMandateId();
+        // Backend signs the payment mandate
+        SignatureScheme signingScheme = cryptoService.getAgentSigningScheme();
+        String backendSignature = cryptoService.signWithAgentKey(
+                objectMapper.writeValueAsString(contents), signingScheme
+        );
+
+        // 🔍 AUDIT: Payment mandate signing
+        auditService.logSignatureVerification(
+                com.veefin.ap2.entity.AP2AuditLog.MandateType.PAYMENT,
+                paymentMandateId,
+                "backend-agent",
+                true,
+                backendSignature.length() > 20 ? backendSignature.substring(0, 20) + "..." : backendSignature
+        );
+
+        // Build PaymentMandate
+        PaymentMandate mandate = new PaymentMandate();
+        mandate.setPaymentMandateContents(contents);
+        mandate.setBackendSignature(backendSignature);
+        mandate.setSignatureAlgorithm(signingScheme.name());
+        mandate.setStatus(PaymentEnums.CREATED.name());
+
+        // Persist to DB
+        PaymentMandateEntity entity = new PaymentMandateEntity();
+        entity.setPaymentMandateId(contents.getPaymentMandateId());
+        entity.setCartId(cart.getCartId());
+        entity.setCartHash(cart.getCartHash());
+        entity.setMerchantName(merchantName);
+        entity.setAmount(cart.getTotalAmount());
+        entity.setCurrency("INR");
+        entity.setPaymentMethod(PaymentEnums.PaymentMethod.CARD.name());
+        entity.setTimestamp(contents.getTimestamp());
+        entity.setBackendSignature(backendSignature);
+        entity.setSignatureAlgorithm(signingScheme.name());
+        entity.setStatus(PaymentEnums.CREATED.name());
+
+        paymentRepo.save(entity);
+        return mandate;
+    }
 
     /**
      * Sends a natural language prompt to OpenRouter (via Spring AI)
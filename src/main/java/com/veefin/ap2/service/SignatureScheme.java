@@ -0,0 +1,153 @@
+package com.veefin.ap2.service;
+
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+
+/**
+ * Signature algorithms a mandate can be signed with.
+ * The scheme name is stored next to each signature (signature_algorithm column), so mandates signed before a
+ * scheme change still verify with the algorithm they were signed with. Rows without a value are legacy RSA.
+ */
+public enum SignatureScheme {
+
+    RSA_SHA256("SHA256withRSA", "RSA") {
+        @Override
+        KeyPair generateKeyPair() throws Exception {
+            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+            keyGen.initialize(2048);
+            return keyGen.generateKeyPair();
+        }
+
+        @Override
+        int keySize(PublicKey key) {
+            return ((RSAPublicKey) key).getModulus().bitLength();
+        }
+
+        @Override
+        void validate(PublicKey key) {
+            int keySize = keySize(key);
+            if (keySize < 2048) {
+                throw new IllegalArgumentException("RSA key size must be at least 2048 bits, got: " + keySize);
+            }
+        }
+    },
+
+    ECDSA_P256("SHA256withECDSA", "EC") {
+        @Override
+        KeyPair generateKeyPair() throws Exception {
+            KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+            keyGen.initialize(new ECGenParameterSpec("secp256r1"));
+            return keyGen.generateKeyPair();
+        }
+
+        @Override
+        int keySize(PublicKey key) {
+            return ((ECPublicKey) key).getParams().getCurve().getField().getFieldSize();
+        }
+
+        @Override
+        void validate(PublicKey key) {
+            // The field size alone would let any 256-bit curve (brainpoolP256r1, secp256k1, ...) through
+            ECParameterSpec params = ((ECPublicKey) key).getParams();
+            ECParameterSpec p256 = Secp256r1.SPEC;
+            if (!p256.getCurve().equals(params.getCurve()) || !p256.getGenerator().equals(params.getGenerator())
+                    || !p256.getOrder().equals(params.getOrder()) || p256.getCofactor() != params.getCofactor()) {
+                throw new IllegalArgumentException("Only P-256 (secp256r1) EC keys are supported, got a "
+                        + keySize(key) + "-bit key with other curve parameters");
+            }
+        }
+    },
+
+    ED25519("Ed25519", "Ed25519") {
+        @Override
+        KeyPair generateKeyPair() throws Exception {
+            return KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        }
+
+        @Override
+        int keySize(PublicKey key) {
+            return 255;
+        }
+
+        @Override
+        void validate(PublicKey key) {
+            // Fixed curve and size, nothing to check
+        }
+    };
+
+    private final String signatureAlgorithm;
+    private final String keyAlgorithm;
+
+    /**
+     * Domain parameters of secp256r1 as the JDK defines them, resolved on first use
+     */
+    private static final class Secp256r1 {
+
+        static final ECParameterSpec SPEC = load();
+
+        private static ECParameterSpec load() {
+            try {
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec("secp256r1"));
+                return parameters.getParameterSpec(ECParameterSpec.class);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("secp256r1 parameters not available", e);
+            }
+        }
+    }
+
+    SignatureScheme(String signatureAlgorithm, String keyAlgorithm) {
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.keyAlgorithm = keyAlgorithm;
+    }
+
+    /**
+     * JCA Signature algorithm name
+     */
+    public String signatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    /**
+     * JCA KeyFactory algorithm name
+     */
+    public String keyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    abstract KeyPair generateKeyPair() throws Exception;
+
+    abstract int keySize(PublicKey key);
+
+    /**
+     * Reject keys that are the right type but too weak / on the wrong curve
+     */
+    abstract void validate(PublicKey key);
+
+    /**
+     * Scheme recorded on a mandate; null (rows signed before this column existed) means RSA
+     */
+    public static SignatureScheme fromName(String name) {
+        return name == null || name.isBlank() ? RSA_SHA256 : valueOf(name);
+    }
+
+    /**
+     * Scheme matching a key's algorithm
+     */
+    public static SignatureScheme forKey(Key key) {
+        return switch (key.getAlgorithm()) {
+            case "RSA" -> RSA_SHA256;
+            case "EC" -> ECDSA_P256;
+            case "Ed25519", "EdDSA" -> ED25519;
+            default -> throw new IllegalArgumentException("Unsupported key algorithm: " + key.getAlgorithm());
+        };
+    }
+}
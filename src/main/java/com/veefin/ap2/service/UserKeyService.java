@@ -21,6 +21,7 @@ public class UserKeyService {
 
     public final UserPublicKeyRepository userPublicKeyRepo;
     private final CryptographicService cryptographicService;
+    private final UserPublicKeyCache userPublicKeyCache;
 
 
     public void registerUserPublicKey(String userId, String publicKeyStr) {
@@ -34,8 +35,14 @@ public class UserKeyService {
                 throw new RuntimeException("User already has an active public key. Use rotateUserKey() instead.");
             }
 
-            // 3. Store the new key
-            cryptographicService.addUserPublicKey(userId, publicKeyStr);
+            // 3. Store the new key (a previous inactive key row is reactivated, user_id is unique)
+            Optional<UserPublicKey> inactiveKey = userPublicKeyRepo.findByUserId(userId);
+            if (inactiveKey.isPresent()) {
+                replaceKey(inactiveKey.get(), publicKeyStr.trim());
+            } else {
+                cryptographicService.addUserPublicKey(userId, publicKeyStr.trim());
+            }
+            userPublicKeyCache.invalidate(userId);
 
             log.info("User {} public key registered successfully", userId);
         } catch (Exception e) {
@@ -44,6 +51,16 @@ public class UserKeyService {
         }
     }
 
+    private void replaceKey(UserPublicKey userKey, String publicKeyStr) throws Exception {
+        PublicKey publicKey = cryptographicService.loadPublicKeyFromString(publicKeyStr);
+        SignatureScheme scheme = SignatureScheme.forKey(publicKey);
+        userKey.setPublicKey(publicKeyStr);
+        userKey.setKeyAlgorithm(scheme.keyAlgorithm());
+        userKey.setKeySize(scheme.keySize(publicKey));
+        userKey.setIsActive(true);
+        userPublicKeyRepo.save(userKey);
+    }
+
     /**
      * Validate public key format and strength
      */
@@ -55,18 +72,8 @@ public class UserKeyService {
         try {
             PublicKey key = cryptographicService.loadPublicKeyFromString(publicKeyStr.trim());
 
-            // Check algorithm
-            if (!"RSA".equals(key.getAlgorithm())) {
-                throw new IllegalArgumentException("Only RSA keys are supported, got: " + key.getAlgorithm());
-            }
-
-            // Check key size (RSA keys should be at least 2048 bits)
-            if (key instanceof java.security.interfaces.RSAPublicKey rsaKey) {
-                int keySize = rsaKey.getModulus().bitLength();
-                if (keySize < 2048) {
-                    throw new IllegalArgumentException("RSA key size must be at least 2048 bits, got: " + keySize);
-                }
-            }
+            // Check algorithm (RSA >= 2048, ECDSA P-256 or Ed25519) and strength
+            SignatureScheme.forKey(key).validate(key);
 
             log.debug("Public key validation passed for algorithm: {}", key.getAlgorithm());
 
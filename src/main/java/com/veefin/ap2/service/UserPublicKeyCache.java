@@ -0,0 +1,136 @@
+package com.veefin.ap2.service;
+
+import com.veefin.ap2.entity.UserPublicKey;
+import com.veefin.ap2.repository.UserPublicKeyRepository;
+import com.veefin.common.utility.CryptoEngine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.PublicKey;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Active user public keys, keyed by userId.
+ * - bounded and TTL-based, so deactivated keys age out even without an explicit invalidation
+ * - users without an active key are cached too (shorter TTL), so unknown users don't hit the DB on every verify
+ * - single-flight: concurrent misses for the same user share one findByUserIdAndIsActive query
+ * Key registration calls {@link #invalidate(String)} whenever it stores or reactivates a user's key.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserPublicKeyCache {
+
+    private final UserPublicKeyRepository userPublicKeyRepo;
+    private final CryptoEngine cryptoEngine;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${crypto.key-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${crypto.key-cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${crypto.key-cache.negative-ttl-seconds:30}")
+    private long negativeTtlSeconds;
+
+    private final Map<String, CachedKey> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedKey>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Active public key for the user, or null if the user has none
+     */
+    public PublicKey get(String userId) {
+        CachedKey cached = entries.get(userId);
+        if (cached != null && !cached.isExpired()) {
+            meterRegistry.counter("crypto.key.cache", "result", cached.publicKey() != null ? "hit" : "negative_hit").increment();
+            return cached.publicKey();
+        }
+
+        CompletableFuture<CachedKey> mine = new CompletableFuture<>();
+        CompletableFuture<CachedKey> loading = inFlight.putIfAbsent(userId, mine);
+        if (loading != null) {
+            // Another thread is already querying this user
+            return loading.join().publicKey();
+        }
+
+        meterRegistry.counter("crypto.key.cache", "result", "miss").increment();
+        try {
+            CachedKey loaded = load(userId);
+            store(userId, loaded);
+            // An invalidation during the load removed our in-flight marker, so the loaded key may be stale
+            if (!inFlight.remove(userId, mine)) {
+                entries.remove(userId, loaded);
+            }
+            mine.complete(loaded);
+            return loaded.publicKey();
+        } catch (RuntimeException e) {
+            inFlight.remove(userId, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Forget the cached key for a user (and any Signature still initialised with it)
+     */
+    public void invalidate(String userId) {
+        inFlight.remove(userId);
+        CachedKey removed = entries.remove(userId);
+        if (removed != null && removed.publicKey() != null) {
+            cryptoEngine.evict(removed.publicKey());
+        }
+        log.debug("Public key cache invalidated for user: {}", userId);
+    }
+
+    private CachedKey load(String userId) {
+        Optional<UserPublicKey> userKeyEntity = userPublicKeyRepo.findByUserIdAndIsActive(userId, true);
+        if (userKeyEntity.isEmpty()) {
+            log.warn("No active public key found for user: {}", userId);
+            return negative();
+        }
+        UserPublicKey userKey = userKeyEntity.get();
+        String algorithm = userKey.getKeyAlgorithm() != null ? userKey.getKeyAlgorithm() : "RSA";
+        try {
+            PublicKey publicKey = cryptoEngine.parsePublicKey(algorithm, userKey.getPublicKey().trim());
+            return new CachedKey(publicKey, System.currentTimeMillis() + ttlMinutes * 60_000);
+        } catch (Exception e) {
+            // A stored key that can't be parsed won't start parsing on the next request either
+            log.error("Stored public key for user {} is invalid: {}", userId, e.getMessage());
+            return negative();
+        }
+    }
+
+    private CachedKey negative() {
+        return new CachedKey(null, System.currentTimeMillis() + negativeTtlSeconds * 1000);
+    }
+
+    private void store(String userId, CachedKey cachedKey) {
+        if (entries.size() >= maxSize && !entries.containsKey(userId)) {
+            entries.values().removeIf(CachedKey::isExpired);
+            if (entries.size() >= maxSize) {
+                entries.entrySet().stream()
+                        .min(Comparator.comparingLong(entry -> entry.getValue().expiresAt()))
+                        .ifPresent(oldest -> entries.remove(oldest.getKey(), oldest.getValue()));
+            }
+        }
+        entries.put(userId, cachedKey);
+    }
+
+    /**
+     * publicKey == null marks a user without an active key
+     */
+    private record CachedKey(PublicKey publicKey, long expiresAt) {
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.veefin.chat_model.controller;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.veefin.chat_model.dto.StreamChunk;
 import com.veefin.chat_model.dto.UserRequest;
 import com.veefin.chat_model.service.ConversationalPaymentService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 @RestController
 @RequestMapping("/agent")
@@ -18,4 +22,15 @@ public class AgentController {
 
         return conversationalPaymentService.processUserPrompt(userRequest.getPrompt(), userRequest.getSession());
     }
+
+    /**
+     * Same as /prompt, but the answer is sent as server-sent events while the LLM generates it:
+     * "chunk" events carrying {"text": ...}, then a "done" event
+     */
+    @PostMapping(value = "/prompt/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StreamChunk>> streamIntent(@RequestBody UserRequest userRequest) {
+        return conversationalPaymentService.streamUserPrompt(userRequest.getPrompt(), userRequest.getSession())
+                .map(text -> ServerSentEvent.builder(new StreamChunk(text)).event("chunk").build())
+                .concatWith(Flux.just(ServerSentEvent.<StreamChunk>builder().event("done").build()));
+    }
 }
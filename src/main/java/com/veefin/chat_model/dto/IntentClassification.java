@@ -0,0 +1,11 @@
+package com.veefin.chat_model.dto;
+
+/**
+ * Intent keyword (PAY_INVOICE, SHOW_CARDS, ...) with the classifier's confidence in [0, 1]
+ */
+public record IntentClassification(String intent, double confidence) {
+
+    public static IntentClassification unknown() {
+        return new IntentClassification("OTHER", 0.0);
+    }
+}
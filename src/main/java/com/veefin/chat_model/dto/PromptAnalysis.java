@@ -0,0 +1,30 @@
+package com.veefin.chat_model.dto;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Everything a chat turn needs from the prompt, produced by one structured LLM call (or the local fast path).
+ *
+ * @param intent            PAY_INVOICE, INVOICE_ENQUIRY, PAYMENT_TRANSACTION, SHOW_CARDS, CARD_SELECTION, PROCEED, CANCEL or OTHER
+ * @param invoiceIdentifier invoice number, merchant name or uuid mentioned by the user, null if none
+ * @param cardHint          last 4 digits of the card the user picked, "default", or null
+ */
+public record PromptAnalysis(String intent, String invoiceIdentifier, String cardHint) {
+
+    private static final Set<String> EMPTY_MARKERS = Set.of("", "NOT_FOUND", "NOTFOUND", "NULL", "NONE");
+
+    public PromptAnalysis {
+        intent = intent == null || intent.isBlank() ? "OTHER" : intent.trim().toUpperCase(Locale.ROOT);
+        invoiceIdentifier = clean(invoiceIdentifier);
+        cardHint = clean(cardHint);
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return EMPTY_MARKERS.contains(trimmed.toUpperCase(Locale.ROOT)) ? null : trimmed;
+    }
+}
@@ -0,0 +1,7 @@
+package com.veefin.chat_model.dto;
+
+/**
+ * One piece of a streamed answer, sent as the JSON data of a server-sent event so whitespace and newlines survive
+ */
+public record StreamChunk(String text) {
+}
@@ -10,7 +10,10 @@ import com.veefin.ap2.repository.IntentMandateRepository;
 import com.veefin.ap2.service.AP2Flow;
 import com.veefin.ap2.service.CartMandateService;
 import com.veefin.ap2.service.IntentMandateService;
+import com.veefin.chat_model.dto.IntentClassification;
+import com.veefin.chat_model.dto.PromptAnalysis;
 import com.veefin.chat_session.service.ChatHistoryService;
+import com.veefin.common.cache.LlmResponseCache;
 import com.veefin.common.exception.ResourceNotFoundException;
 import com.veefin.common.utility.KeyGenerator;
 import com.veefin.invoice.entity.InvoiceData;
@@ -19,16 +22,23 @@ import com.veefin.invoice.service.InvoiceDataService;
 import com.veefin.payment_gateway.entity.model.Card;
 import com.veefin.payment_gateway.service.CardService;
 import com.veefin.payment_gateway.service.PaymentTransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
@@ -46,8 +56,17 @@ public class ConversationalPaymentService {
     private final CartMandateService cartMandateService;
     private final IntentMandateRepository intentMandateRepository;
     private final CardService cardService;
+    private final IntentClassifier intentClassifier;
+    private final MeterRegistry meterRegistry;
+
+    // Invoice-like tokens (INV-001, ACM-2025-001, TXN45): letters and digits together, so bare card numbers never match
+    private static final Pattern INVOICE_IDENTIFIER_PATTERN =
+            Pattern.compile("\\b(?=[A-Za-z0-9\\-_/]*\\d)(?=[A-Za-z0-9\\-_/]*[A-Za-z])[A-Za-z0-9][A-Za-z0-9\\-_/]{2,}\\b");
+    private static final Pattern CARD_HINT_PATTERN = Pattern.compile("\\b(\\d{4})\\b|\\b(default)\\b", Pattern.CASE_INSENSITIVE);
 
     private final ConcurrentHashMap<String, String> sessionInvoiceMemory = new ConcurrentHashMap<>();
+    // Sessions just shown the card list: the only point where a locally classified card choice may execute a payment
+    private final Set<String> sessionsAwaitingCard = ConcurrentHashMap.newKeySet();
     private final ChatHistoryService chatHistoryService;
 
 
@@ -56,41 +75,10 @@ public class ConversationalPaymentService {
         try {
 
              chatHistoryService.createOrGetSession(sessionId, "demo-user", userPrompt);
-            // Single AI call to analyze all intents at once
-            long startTime = System.currentTimeMillis();
-            String combinedIntent = analyzeCombinedIntent(userPrompt);
-            long endTime = System.currentTimeMillis();
-            double timeTakenSeconds = (endTime - startTime) / 1000.0;
-            log.info("ChatClient response time for combined intent: {} seconds", timeTakenSeconds);
-
-            String response;
-            log.info("Combined intent: {}", combinedIntent);
-            switch (combinedIntent) {
-                case "CARD_SELECTION" -> {
-                    response = handleCardSelection(userPrompt, sessionId);
-                }
-                case "PAY_INVOICE" ,"PAY"->{
-                    response =  handlePaymentIntent(userPrompt, sessionId);
-                }
-                case "SHOW_CARDS" -> {
-                    response = getCardsDisplay();
-                }
-                case "PROCEED" -> {
-                    response = showCardSelectionOptions(userPrompt, sessionId);
-                }
-                case "INVOICE_QUERY","INVOICE_ENQUIRY","INVOICE" -> {
-                    response =  invoiceDataService.handleInvoiceQuery(userPrompt);
-                }
-                case "PAYMENT_HISTORY" ,"PAYMENT_TRANSACTION", "TRANSACTION","TRANSACTION_HISTORY"-> {
-                    response =  paymentTransactionService.handlePaymentQuery(userPrompt);
-                }
-                case "CANCEL" -> {
-                    response = handlePaymentCancellation(userPrompt, sessionId);
-                }
-                default -> {
-                    response = generateGeneralResponse(userPrompt);
-                }
-            }
+            PromptAnalysis analysis = resolvePrompt(userPrompt, sessionId);
+            log.info("Combined intent: {}", analysis);
+
+            String response = handleIntent(analysis, userPrompt, sessionId);
             chatHistoryService.saveMessage(sessionId, userPrompt, response);
             return response;
 
@@ -100,35 +88,81 @@ public class ConversationalPaymentService {
         }
     }
 
+    /**
+     * Streaming variant of processUserPrompt: LLM-written answers (invoice queries, payment history, general chat)
+     * are emitted token by token; payment/card steps are emitted as one chunk. The text sent is saved when the stream
+     * ends, whether it completed, failed or the client went away.
+     */
+    public Flux<String> streamUserPrompt(String userPrompt, String sessionId) {
+        long startTime = System.nanoTime();
+        AtomicBoolean firstToken = new AtomicBoolean(true);
+        StringBuilder fullResponse = new StringBuilder();
+
+        return Flux.defer(() -> {
+                    chatHistoryService.createOrGetSession(sessionId, "demo-user", userPrompt);
+                    PromptAnalysis analysis = resolvePrompt(userPrompt, sessionId);
+                    log.info("Combined intent (stream): {}", analysis);
+
+                    return switch (analysis.intent()) {
+                        case "INVOICE_QUERY", "INVOICE_ENQUIRY", "INVOICE" -> invoiceDataService.streamInvoiceQuery(userPrompt);
+                        case "PAYMENT_HISTORY", "PAYMENT_TRANSACTION", "TRANSACTION", "TRANSACTION_HISTORY" ->
+                                paymentTransactionService.streamPaymentQuery(userPrompt);
+                        case "CARD_SELECTION", "PAY_INVOICE", "PAY", "SHOW_CARDS", "PROCEED", "CANCEL" ->
+                                Flux.just(handleIntent(analysis, userPrompt, sessionId));
+                        default -> streamGeneralResponse(userPrompt);
+                    };
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.error(" Error: {}", e.getMessage());
+                    return Flux.just(" Error: " + e.getMessage());
+                })
+                .doOnNext(token -> {
+                    if (firstToken.compareAndSet(true, false)) {
+                        long ttft = System.nanoTime() - startTime;
+                        meterRegistry.timer("chat.stream.time.to.first.token").record(ttft, TimeUnit.NANOSECONDS);
+                        log.info("Time to first token: {} ms", TimeUnit.NANOSECONDS.toMillis(ttft));
+                    }
+                    fullResponse.append(token);
+                })
+                // also runs when the client disconnects mid-answer, so what was sent is still in the history
+                .doFinally(signal -> saveStreamedMessage(sessionId, userPrompt, fullResponse.toString()));
+    }
 
-
-    private String confirmPendingPayment(String userPrompt, String maskedNumber, String sessionId) {
+    private void saveStreamedMessage(String sessionId, String userPrompt, String response) {
+        if (response.isEmpty()) {
+            return;
+        }
         try {
-            String extractPrompt = String.format("""
-Extract only the actual invoice identifier (for example: INV123, TXN-45, ACM-2025-001, etc.)
-from the user's request below.
-
-Rules:
-1. If the user prompt mentions "card", "cards", or payment card terms 
-   (like VISA, MasterCard, debit, credit, etc.) in any language — return exactly: NOT_FOUND
-2. If the user prompt contains both a masked card number (e.g., ****1111, ending 4321) 
-   AND an invoice identifier, return ONLY the invoice identifier.
-3. If the user prompt contains ONLY masked card numbers (no invoice ID), return exactly: NOT_FOUND
-4. Respond ONLY with the identifier itself (no extra text, no punctuation, no quotes).
-5. If no valid identifier is found, return exactly: NOT_FOUND
-
-User request: %s
-""", userPrompt);
+            chatHistoryService.saveMessage(sessionId, userPrompt, response);
+        } catch (Exception e) {
+            log.error("Failed to save streamed chat message for session {}: {}", sessionId, e.getMessage());
+        }
+    }
 
+    private String handleIntent(PromptAnalysis analysis, String userPrompt, String sessionId) {
+        if (!"SHOW_CARDS".equals(analysis.intent())) {
+            sessionsAwaitingCard.remove(sessionId);
+        }
+        return switch (analysis.intent()) {
+            case "CARD_SELECTION" -> handleCardSelection(analysis, sessionId);
+            case "PAY_INVOICE", "PAY" -> handlePaymentIntent(analysis, userPrompt, sessionId);
+            case "SHOW_CARDS" -> getCardsDisplay();
+            case "PROCEED" -> showCardSelectionOptions(analysis, sessionId);
+            case "INVOICE_QUERY", "INVOICE_ENQUIRY", "INVOICE" -> invoiceDataService.handleInvoiceQuery(userPrompt);
+            case "PAYMENT_HISTORY", "PAYMENT_TRANSACTION", "TRANSACTION", "TRANSACTION_HISTORY" ->
+                    paymentTransactionService.handlePaymentQuery(userPrompt);
+            case "CANCEL" -> handlePaymentCancellation(analysis, sessionId);
+            default -> generateGeneralResponse(userPrompt);
+        };
+    }
 
-            String identifier = Objects.requireNonNull(chatClient.prompt()
-                            .user(extractPrompt)
-                            .call()
-                            .content())
-                    .trim();
 
 
-            if (identifier.isBlank() || identifier.equalsIgnoreCase("NOT_FOUND") || identifier.equalsIgnoreCase("NOTFOUND")) {
+    private String confirmPendingPayment(PromptAnalysis analysis, String maskedNumber, String sessionId) {
+        try {
+            String identifier = analysis.invoiceIdentifier();
+            if (identifier == null) {
                 identifier = sessionInvoiceMemory.get(sessionId);
             }
 
@@ -195,18 +229,32 @@ User request: %s
 
 
 
-    private String generateGeneralResponse(String userPrompt) {
-        String aiPrompt = String.format("""
+    private String generalResponsePrompt(String userPrompt) {
+        return String.format("""
                 You are a friendly AI assistant.
                 The user said: "%s"
                 
                 Respond naturally and helpfully — it could be any topic: tech, finance, advice, or casual talk.
                 Keep your reply concise and conversational.
                 """, userPrompt);
+    }
+
+    private Flux<String> streamGeneralResponse(String userPrompt) {
+        return chatClient.prompt()
+                .user(generalResponsePrompt(userPrompt))
+                .advisors(LlmResponseCache.exact())
+                .stream()
+                .content()
+                .onErrorResume(e -> Flux.just("Sorry, I couldn't process that right now."));
+    }
+
+    private String generateGeneralResponse(String userPrompt) {
+        String aiPrompt = generalResponsePrompt(userPrompt);
 
         try {
             String response = chatClient.prompt()
                     .user(aiPrompt)
+                    .advisors(LlmResponseCache.exact())
                     .call()
                     .content();
 
@@ -224,33 +272,12 @@ User request: %s
 
 
     @Transactional
-    private String handlePaymentIntent(String userPrompt, String sessionId) {
+    private String handlePaymentIntent(PromptAnalysis analysis, String userPrompt, String sessionId) {
         try {
-            // Extract invoice identifier
-
-
-            String extractPrompt = String.format("""
-                Extract the invoice identifier (number, merchant name, or ID) from the user's request.
-                If no identifier is present, return "NOT_FOUND"
-                Respond with exactly one word or phrase
-                User request: %s
-                """, userPrompt);
-
-            long startTime = System.currentTimeMillis();
-            String identifier = Objects.requireNonNull(chatClient.prompt()
-                            .user(extractPrompt)
-                            .call()
-                            .content())
-                    .trim();
-            long endTime = System.currentTimeMillis();
-            double timeTakenSeconds = (endTime - startTime) / 1000.0;
-            log.info("ChatClient response at payment intent time: {} seconds", timeTakenSeconds);
-
+            String identifier = analysis.invoiceIdentifier();
             log.info("Invoice identifier extracted: {}", identifier);
 
-
-
-            if (identifier.isEmpty() || identifier.equalsIgnoreCase("NOT_FOUND")) {
+            if (identifier == null) {
                 // fallback from memory
                 identifier = sessionInvoiceMemory.get(sessionId);
             } else {
@@ -374,29 +401,11 @@ User request: %s
 
 
 
-    private String showCardSelectionOptions(String userPrompt, String sessionId) {
+    private String showCardSelectionOptions(PromptAnalysis analysis, String sessionId) {
         try {
-            // Step 1 Extract invoice identifier using AI
-            String extractPrompt = String.format("""
-Extract only the actual invoice identifier (e.g., INV001, ACM-2025-001, TXN45, etc.)
-from the user's request below.
-
-Rules:
-- Return ONLY the identifier itself (no extra words, punctuation, or formatting).
-- If the user request does NOT clearly mention any identifier, return exactly the word: NOT_FOUND
-- Do NOT guess or assume invoice numbers.
-
-User request: %s
-""", userPrompt);
-
-
-            String identifier = Objects.requireNonNull(chatClient.prompt()
-                            .user(extractPrompt)
-                            .call()
-                            .content())
-                    .trim();
-
-            if (identifier.isEmpty() || identifier.equalsIgnoreCase("NOTFOUND") || identifier.equalsIgnoreCase("NOT_FOUND")) {
+            // Step 1 Invoice identifier from the prompt analysis, else the one this session is paying
+            String identifier = analysis.invoiceIdentifier();
+            if (identifier == null) {
                 identifier = sessionInvoiceMemory.get(sessionId);
             }
             // Step 2️⃣ Find invoice
@@ -425,6 +434,7 @@ User request: %s
             }
 
             // Step 5️⃣ Final formatted message
+            sessionsAwaitingCard.add(sessionId);
             return String.format("""
              **Choose Payment Method for Invoice %s**
 
@@ -458,15 +468,13 @@ User request: %s
 
 
 
-    private String handleCardSelection(String userPrompt, String sessionId) {
-        String cardChoice = userPrompt.toLowerCase().trim();
+    private String handleCardSelection(PromptAnalysis analysis, String sessionId) {
+        String cardChoice = analysis.cardHint() != null ? analysis.cardHint().toLowerCase() : "";
 
-        if (cardChoice.contains("1111") || cardChoice.contains("default")) {
-            return confirmPendingPayment(userPrompt, "1111", sessionId);
-        } else if (cardChoice.contains("4444")) {
-            return confirmPendingPayment(userPrompt, "4444", sessionId);
-        } else if (cardChoice.contains("cancel")) {
-            return "Payment cancelled. You can start a new payment anytime.";
+        if (cardChoice.equals("1111") || cardChoice.equals("default")) {
+            return confirmPendingPayment(analysis, "1111", sessionId);
+        } else if (cardChoice.equals("4444")) {
+            return confirmPendingPayment(analysis, "4444", sessionId);
         } else {
             return getCardsDisplay();
         }
@@ -512,28 +520,15 @@ User request: %s
 
 
 
-    private String handlePaymentCancellation(String userPrompt, String sessionId) {
+    private String handlePaymentCancellation(PromptAnalysis analysis, String sessionId) {
         try {
-            // Extract invoice identifier to clean up any pending carts
-            String extractPrompt = String.format("""
-        Extract only the actual invoice identifier (e.g. INV123, ACM-2025-001, etc.)
-        from the user's request below.
-        If no identifier found, return "NOT_FOUND"
-        
-        User request: %s
-        """, userPrompt);
-
-            String identifier = Objects.requireNonNull(chatClient.prompt()
-                            .user(extractPrompt)
-                            .call()
-                            .content())
-                    .trim();
-
-            if (identifier.isEmpty() || identifier.equalsIgnoreCase("NOT_FOUND")) {
+            // Invoice identifier to clean up any pending carts
+            String identifier = analysis.invoiceIdentifier();
+            if (identifier == null) {
                 identifier = sessionInvoiceMemory.get(sessionId);
             }
 
-            if (!"NOT_FOUND".equals(identifier)) {
+            if (identifier != null) {
                 // Find invoice and clean up pending cart
                 InvoiceData invoice = invoiceDataService.findInvoiceByIdentifier(identifier);
                 if (invoice != null) {
@@ -602,16 +597,59 @@ User request: %s
 
 
 
-    private String analyzeCombinedIntent(String userPrompt) {
-        String prompt = String.format("""
-Detect the user's intent (any language). Return ONLY ONE of these keywords — nothing else.
+    /**
+     * Local fast path first; only low-confidence prompts pay for the (single, structured) LLM round trip
+     */
+    private PromptAnalysis resolvePrompt(String userPrompt, String sessionId) {
+        IntentClassification local = intentClassifier.classify(userPrompt);
+        String identifier = extractInvoiceIdentifier(userPrompt);
 
-Rules:
-- If the message talks about invoices, bills, dues, due dates, status, or contains invoice IDs (like INV-, ACM-, etc.), classify as INVOICE_ENQUIRY unless it clearly asks to "pay".
-- If message contains "pay" or "payment" and refers to an invoice, bill, or amount — it's PAY_INVOICE
-- If message only confirms or agrees (yes, ok, confirm, go ahead) without specifying invoice/payment — it's PROCEED.
+        // A card choice pays the invoice: only take it locally as the answer to the card prompt
+        if (IntentClassifier.MONEY_MOVING_INTENTS.contains(local.intent()) && !sessionsAwaitingCard.contains(sessionId)) {
+            local = IntentClassification.unknown();
+        }
+
+        // A payment needs its invoice; if no identifier is recognisable locally the LLM has to extract it anyway
+        if ("PAY_INVOICE".equals(local.intent()) && identifier == null) {
+            local = IntentClassification.unknown();
+        }
+
+        if (intentClassifier.accept(local)) {
+            log.info("Local intent {} (confidence {})", local.intent(), local.confidence());
+            return new PromptAnalysis(local.intent(), identifier, extractCardHint(userPrompt));
+        }
+
+        long startTime = System.currentTimeMillis();
+        PromptAnalysis analysis = analyzePrompt(userPrompt);
+        long endTime = System.currentTimeMillis();
+        double timeTakenSeconds = (endTime - startTime) / 1000.0;
+        log.info("ChatClient response time for prompt analysis: {} seconds", timeTakenSeconds);
+
+        intentClassifier.learn(userPrompt, analysis.intent());
+        return analysis;
+    }
 
+    private String extractInvoiceIdentifier(String userPrompt) {
+        Matcher matcher = INVOICE_IDENTIFIER_PATTERN.matcher(userPrompt);
+        return matcher.find() ? matcher.group() : null;
+    }
 
+    private String extractCardHint(String userPrompt) {
+        Matcher matcher = CARD_HINT_PATTERN.matcher(userPrompt);
+        if (!matcher.find()) {
+            return null;
+        }
+        return matcher.group(1) != null ? matcher.group(1) : "default";
+    }
+
+    /**
+     * Single AI call returning intent, invoice identifier and card hint together
+     */
+    private PromptAnalysis analyzePrompt(String userPrompt) {
+        String prompt = String.format("""
+Analyze the user's message (any language) and fill in three fields.
+
+intent - exactly ONE of these keywords:
 PAY_INVOICE - wants to pay or make a payment
 INVOICE_ENQUIRY - asks about invoice details, bills, dues, due dates, or invoice status
 PAYMENT_TRANSACTION - asks about past/recent payments or transactions
@@ -621,23 +659,32 @@ PROCEED - agrees or confirms to continue (yes pay, ok, confirm)
 CANCEL - refuses, cancels, or stops (no, cancel, stop)
 OTHER - anything else
 
-Return only the keyword.
+Intent rules:
+- If the message talks about invoices, bills, dues, due dates, status, or contains invoice IDs (like INV-, ACM-, etc.), classify as INVOICE_ENQUIRY unless it clearly asks to "pay".
+- If message contains "pay" or "payment" and refers to an invoice, bill, or amount — it's PAY_INVOICE
+- If message only confirms or agrees (yes, ok, confirm, go ahead) without specifying invoice/payment — it's PROCEED.
+
+invoiceIdentifier - the invoice identifier (invoice number such as INV123 or ACM-2025-001, merchant name, or ID).
+- Never return a card number or card term (VISA, MasterCard, ****1111) as the identifier.
+- Do NOT guess or assume invoice numbers. Use null if none is mentioned.
+
+cardHint - the last 4 digits of the card the user selects, "default" if they ask for the default card, otherwise null.
 
 Message: %s
 """, userPrompt);
 
         try {
-            String response = chatClient.prompt()
+            PromptAnalysis analysis = chatClient.prompt()
                     .user(prompt)
+                    .advisors(LlmResponseCache.exact())
                     .call()
-                    .content();
+                    .entity(PromptAnalysis.class);
 
-            return (response != null && !response.isEmpty())
-                    ? response.trim()
-                    : "OTHER";
+            return analysis != null ? analysis : new PromptAnalysis("OTHER", null, null);
 
         } catch (Exception e) {
-            return "OTHER";
+            log.error("Prompt analysis failed: {}", e.getMessage());
+            return new PromptAnalysis("OTHER", null, null);
         }
     }
 
@@ -0,0 +1,260 @@
+package com.veefin.chat_model.service;
+
+import com.veefin.chat_model.dto.IntentClassification;
+import com.veefin.chat_session.model.entity.ChatMessage;
+import com.veefin.chat_session.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Local intent classification tier that runs before the LLM.
+ * Keyword/regex rules catch the trivial prompts ("yes", "cancel", "use 1111 card"); a small naive Bayes model,
+ * trained from chat history and from every LLM decision, covers the rest. Only low-confidence prompts go to the LLM.
+ * A card choice executes the payment, so the model never predicts one and the rule for it only matches the bare
+ * replies the card prompt asks for.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IntentClassifier {
+
+    public static final Set<String> INTENTS = Set.of(
+            "PAY_INVOICE", "INVOICE_ENQUIRY", "PAYMENT_TRANSACTION", "SHOW_CARDS",
+            "CARD_SELECTION", "PROCEED", "CANCEL", "OTHER");
+
+    private static final int MIN_TRAINING_MESSAGES = 20;
+    private static final Pattern TOKEN_SPLIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Intents that execute a payment: never taken from the trained model, and from the rules only when the
+    // session was just asked to pick a card (see ConversationalPaymentService)
+    public static final Set<String> MONEY_MOVING_INTENTS = Set.of("CARD_SELECTION");
+
+    // First matching rule wins. Enquiries come first; proceed, cancel and card choice only match as the whole
+    // message, so "what is my default card" or "no, pay invoice INV-12 instead" never reach them.
+    private static final List<IntentRule> RULES = List.of(
+            new IntentRule("SHOW_CARDS", 0.9,
+                    Pattern.compile("^\\s*((show|list|view|display|see|get)\\b.*\\bcards?\\b|(my\\s+)?(saved\\s+)?cards)\\W*$",
+                            Pattern.CASE_INSENSITIVE)),
+            new IntentRule("PAYMENT_TRANSACTION", 0.9,
+                    Pattern.compile(".*(\\b(payment|transaction)s?\\s+(history|records?|list)\\b"
+                            + "|\\b(past|recent|previous|last|my)\\s+(payments?|transactions?)\\b"
+                            + "|\\bshow\\b.*\\btransactions?\\b).*", Pattern.CASE_INSENSITIVE)),
+            new IntentRule("PAY_INVOICE", 0.85,
+                    Pattern.compile("^(?!.*\\b(don'?t|do not|never|cancel|stop)\\b).*\\bpay\\b.*\\b(invoice|bill)s?\\b.*",
+                            Pattern.CASE_INSENSITIVE)),
+            new IntentRule("INVOICE_ENQUIRY", 0.85,
+                    Pattern.compile("^(?!.*\\b(pay|use)\\b).*\\b(invoices?|bills?|dues?|due\\s+dates?)\\b.*", Pattern.CASE_INSENSITIVE)),
+            new IntentRule("PROCEED", 0.95,
+                    Pattern.compile("^\\s*(yes|yeah|yep|yup|y|ok|okay|sure|confirm|confirmed|go ahead|proceed|continue|do it)"
+                            + "[\\s,.!]*(please|pay|pay it|pay now|go ahead|proceed|confirm)?[\\s.!]*$", Pattern.CASE_INSENSITIVE)),
+            new IntentRule("CANCEL", 0.95,
+                    Pattern.compile("^\\s*(no|nope|nah|cancel|stop|abort|(don'?t|do not)\\s+(pay|proceed|do it))"
+                            + "([\\s,]+(thanks|thank you|please|it|that|this|the payment|payment|now))*[\\s.!]*$",
+                            Pattern.CASE_INSENSITIVE)),
+            new IntentRule("CARD_SELECTION", 0.9,
+                    Pattern.compile("^\\s*((use|with|select|choose|pay with)\\s+)?((the|my)\\s+)?(\\d{4}|default)(\\s+card)?"
+                            + "(\\s+for\\s+(invoice\\s+)?[A-Za-z0-9\\-_/]+)?(\\s+please)?[\\s.!]*$", Pattern.CASE_INSENSITIVE))
+    );
+
+    // Bot response headers written by each ConversationalPaymentService handler, used to label chat history
+    private static final Map<String, String> RESPONSE_LABELS = Map.of(
+            "Payment Ready for Confirmation", "PAY_INVOICE",
+            "Choose Payment Method for Invoice", "PROCEED",
+            "Payment Completed Successfully", "CARD_SELECTION",
+            "Payment Cancelled", "CANCEL",
+            "Your Saved Cards", "SHOW_CARDS"
+    );
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final MeterRegistry meterRegistry;
+    private final NaiveBayesModel model = new NaiveBayesModel();
+
+    @Value("${chat.intent.fast-path.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.intent.fast-path.threshold:0.85}")
+    private double threshold;
+
+    @Value("${chat.intent.fast-path.history-size:5000}")
+    private int historySize;
+
+    private Counter localHits;
+    private Counter llmFallbacks;
+
+    @PostConstruct
+    public void registerMetrics() {
+        localHits = meterRegistry.counter("chat.intent.classifications", "tier", "local");
+        llmFallbacks = meterRegistry.counter("chat.intent.classifications", "tier", "llm");
+        Gauge.builder("chat.intent.local.hit.ratio", this, IntentClassifier::hitRatio)
+                .description("Share of prompts classified without an LLM call")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Train the local model from recent chat history, labelled by the handler that produced each bot response
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void trainFromHistory() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<ChatMessage> messages = chatMessageRepository.findAll(
+                    PageRequest.of(0, historySize, Sort.by(Sort.Direction.DESC, "createdAt"))).getContent();
+            int trained = 0;
+            for (ChatMessage message : messages) {
+                String label = labelFromResponse(message.getBotResponse());
+                if (label != null && message.getUserMessage() != null) {
+                    model.train(tokenize(message.getUserMessage()), label);
+                    trained++;
+                }
+            }
+            log.info("Intent classifier trained on {} of {} chat messages", trained, messages.size());
+        } catch (Exception e) {
+            log.error("Failed to train intent classifier from chat history: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Classify locally: rules first, then the trained model
+     */
+    public IntentClassification classify(String userPrompt) {
+        if (!enabled || userPrompt == null || userPrompt.isBlank()) {
+            return IntentClassification.unknown();
+        }
+        for (IntentRule rule : RULES) {
+            if (rule.pattern().matcher(userPrompt).matches()) {
+                return new IntentClassification(rule.intent(), rule.confidence());
+            }
+        }
+        IntentClassification predicted = model.predict(tokenize(userPrompt));
+        return MONEY_MOVING_INTENTS.contains(predicted.intent()) ? IntentClassification.unknown() : predicted;
+    }
+
+    /**
+     * Whether the local result is confident enough to skip the LLM. Records the hit/fallback metric.
+     */
+    public boolean accept(IntentClassification classification) {
+        boolean confident = classification.confidence() >= threshold;
+        (confident ? localHits : llmFallbacks).increment();
+        return confident;
+    }
+
+    /**
+     * Feed an LLM decision back into the local model
+     */
+    public void learn(String userPrompt, String intent) {
+        if (enabled && userPrompt != null && INTENTS.contains(intent)) {
+            model.train(tokenize(userPrompt), intent);
+        }
+    }
+
+    public double hitRatio() {
+        double total = localHits.count() + llmFallbacks.count();
+        return total == 0 ? 0.0 : localHits.count() / total;
+    }
+
+    private static String labelFromResponse(String botResponse) {
+        if (botResponse == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> entry : RESPONSE_LABELS.entrySet()) {
+            if (botResponse.contains(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SPLIT.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                // Collapse numbers so "1111" and "4444" share evidence
+                tokens.add(token.chars().allMatch(Character::isDigit) ? "<num>" : token);
+            }
+        }
+        return tokens;
+    }
+
+    private record IntentRule(String intent, double confidence, Pattern pattern) {
+    }
+
+    /**
+     * Multinomial naive Bayes with Laplace smoothing over prompt tokens
+     */
+    private static final class NaiveBayesModel {
+
+        private final Map<String, Integer> messageCounts = new HashMap<>();
+        private final Map<String, Map<String, Integer>> tokenCounts = new HashMap<>();
+        private final Map<String, Integer> tokenTotals = new HashMap<>();
+        private final Set<String> vocabulary = new HashSet<>();
+        private int totalMessages;
+
+        synchronized void train(List<String> tokens, String intent) {
+            if (tokens.isEmpty()) {
+                return;
+            }
+            totalMessages++;
+            messageCounts.merge(intent, 1, Integer::sum);
+            Map<String, Integer> counts = tokenCounts.computeIfAbsent(intent, k -> new HashMap<>());
+            for (String token : tokens) {
+                counts.merge(token, 1, Integer::sum);
+                vocabulary.add(token);
+            }
+            tokenTotals.merge(intent, tokens.size(), Integer::sum);
+        }
+
+        synchronized IntentClassification predict(List<String> tokens) {
+            if (totalMessages < MIN_TRAINING_MESSAGES || tokens.stream().noneMatch(vocabulary::contains)) {
+                return IntentClassification.unknown();
+            }
+
+            Map<String, Double> logScores = new HashMap<>();
+            double vocabularySize = vocabulary.size();
+            for (Map.Entry<String, Integer> entry : messageCounts.entrySet()) {
+                String intent = entry.getKey();
+                Map<String, Integer> counts = tokenCounts.get(intent);
+                double denominator = tokenTotals.get(intent) + vocabularySize;
+                double score = Math.log((double) entry.getValue() / totalMessages);
+                for (String token : tokens) {
+                    score += Math.log((counts.getOrDefault(token, 0) + 1) / denominator);
+                }
+                logScores.put(intent, score);
+            }
+
+            // Softmax over the log scores gives the posterior used as confidence
+            double max = logScores.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+            double sum = 0;
+            String best = "OTHER";
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (Map.Entry<String, Double> entry : logScores.entrySet()) {
+                sum += Math.exp(entry.getValue() - max);
+                if (entry.getValue() > bestScore) {
+                    bestScore = entry.getValue();
+                    best = entry.getKey();
+                }
+            }
+            return new IntentClassification(best, Math.exp(bestScore - max) / sum);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.veefin.common.cache;
+
+import com.veefin.common.utility.ContentHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * EmbeddingModel decorator that serves repeated texts from a {@link MappedEmbeddingCache}.
+ * Keys are SHA-256 of model id + text, so switching the model never returns another model's vectors.
+ * Only the texts missing from the cache are sent to the delegate, in one request.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final MappedEmbeddingCache cache;
+    private final String modelId;
+    private final MetadataMode metadataMode;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, MappedEmbeddingCache cache, String modelId,
+                                 MetadataMode metadataMode, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.modelId = modelId;
+        this.metadataMode = metadataMode;
+        this.hits = meterRegistry.counter("embedding.cache.lookups", "result", "hit");
+        this.misses = meterRegistry.counter("embedding.cache.lookups", "result", "miss");
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String model = request.getOptions() != null && request.getOptions().getModel() != null
+                ? request.getOptions().getModel() : modelId;
+
+        float[][] vectors = new float[texts.size()][];
+        byte[][] keys = new byte[texts.size()][];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            keys[i] = key(model, texts.get(i));
+            vectors[i] = cache.get(keys[i]);
+            if (vectors[i] == null) {
+                missing.add(i);
+            }
+        }
+        hits.increment(texts.size() - missing.size());
+        misses.increment(missing.size());
+
+        if (!missing.isEmpty()) {
+            List<String> missingTexts = missing.stream().map(texts::get).toList();
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(missingTexts, request.getOptions()));
+            for (int i = 0; i < missing.size(); i++) {
+                int index = missing.get(i);
+                vectors[index] = response.getResults().get(i).getOutput();
+                try {
+                    cache.put(keys[index], vectors[index]);
+                } catch (IOException e) {
+                    log.warn("Failed to cache embedding: {}", e.getMessage());
+                }
+            }
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getFormattedContent(metadataMode));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private static byte[] key(String model, String text) {
+        MessageDigest digest = ContentHash.newSha256();
+        digest.update(model.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        return digest.digest();
+    }
+}
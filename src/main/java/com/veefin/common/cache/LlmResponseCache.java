@@ -0,0 +1,355 @@
+package com.veefin.common.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ChatClientMessageAggregator;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Two-tier response cache wrapped around every ChatClient call, blocking or streamed (registered as a default advisor).
+ * Calls opt in per request through {@link #exact()} or {@link #semantic(String, Collection)}:
+ * - exact tier: SHA-256 of the normalized prompt
+ * - semantic tier: cosine similarity of the user's question embedding, only between entries built from the same sources
+ * Entries are tagged with the invoice/payment uuids they were built from so status changes can evict them.
+ * Callers evict on the DB write; VectorIndexWriter evicts again once the vector payload is flushed, since an
+ * answer cached in between was built from the old payload. An answer whose LLM call overlapped an eviction of
+ * one of its own sources is not cached; evictions of other sources don't affect it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LlmResponseCache implements CallAdvisor, StreamAdvisor {
+
+    public static final String INVOICE_SOURCE = "INVOICE";
+    public static final String PAYMENT_SOURCE = "PAYMENT";
+
+    private static final String CACHE_ENABLED = "llm_cache.enabled";
+    private static final String CACHE_QUERY = "llm_cache.query";
+    private static final String CACHE_SOURCES = "llm_cache.sources";
+    private static final int MAX_TRACKED_INVALIDATIONS = 10_000;
+
+    private final EmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.cache.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    @Value("${chat.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${chat.cache.semantic-threshold:0.97}")
+    private double semanticThreshold;
+
+    // access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<String>> keysBySource = new HashMap<>();
+    // sequence number of each source's latest invalidation, oldest first; only the most recent sources are kept
+    private final LinkedHashMap<String, Long> invalidatedAt = new LinkedHashMap<>();
+    private long invalidationVersion;
+    // highest sequence number dropped from invalidatedAt: calls started before it are treated as invalidated
+    private long forgottenUpTo;
+
+    /**
+     * Cache this call on the exact prompt only
+     */
+    public static Consumer<ChatClient.AdvisorSpec> exact() {
+        return spec -> spec.param(CACHE_ENABLED, true);
+    }
+
+    /**
+     * Cache this call and allow near-duplicate questions built from the same sources to reuse it
+     *
+     * @param query   the user's question (what gets embedded)
+     * @param sources uuids of the invoices/payments in the prompt, plus {@link #INVOICE_SOURCE}/{@link #PAYMENT_SOURCE}
+     *                when the answer lists or sums whatever matches (any write of that type evicts it)
+     */
+    public static Consumer<ChatClient.AdvisorSpec> semantic(String query, Collection<String> sources) {
+        return spec -> spec.param(CACHE_ENABLED, true)
+                .param(CACHE_QUERY, query)
+                .param(CACHE_SOURCES, Set.copyOf(sources));
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        Map<String, Object> context = request.context();
+        if (!enabled || !Boolean.TRUE.equals(context.get(CACHE_ENABLED))) {
+            return chain.nextCall(request);
+        }
+
+        Lookup lookup = lookup(request);
+        if (lookup.hit() != null) {
+            return new ChatClientResponse(lookup.hit().response(), context);
+        }
+        long versionBeforeCall = currentVersion();
+        ChatClientResponse response = chain.nextCall(request);
+
+        if (response.chatResponse() != null) {
+            put(lookup.toEntry(response.chatResponse(), ttlMinutes), versionBeforeCall);
+        }
+        return response;
+    }
+
+    /**
+     * Streaming calls: a hit is replayed as a single chunk; a miss is streamed through and the aggregated
+     * answer is cached when the stream completes (not when it errors or is cancelled part way)
+     */
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        Map<String, Object> context = request.context();
+        if (!enabled || !Boolean.TRUE.equals(context.get(CACHE_ENABLED))) {
+            return chain.nextStream(request);
+        }
+
+        return Flux.defer(() -> {
+            Lookup lookup = lookup(request);
+            if (lookup.hit() != null) {
+                return Flux.just(new ChatClientResponse(lookup.hit().response(), context));
+            }
+            long versionBeforeCall = currentVersion();
+            return new ChatClientMessageAggregator().aggregateChatClientResponse(chain.nextStream(request), response -> {
+                if (response.chatResponse() != null) {
+                    put(lookup.toEntry(response.chatResponse(), ttlMinutes), versionBeforeCall);
+                }
+            });
+        });
+    }
+
+    private Lookup lookup(ChatClientRequest request) {
+        Map<String, Object> context = request.context();
+        String key = sha256(normalize(request.prompt().getContents()));
+        CachedResponse cached = getExact(key);
+        if (cached != null) {
+            meterRegistry.counter("chat.llm.cache", "result", "exact_hit").increment();
+            return new Lookup(key, cached, null, Set.of(), Set.of());
+        }
+
+        String query = context.get(CACHE_QUERY) instanceof String q ? q : null;
+        Set<String> sources = context.get(CACHE_SOURCES) instanceof Collection<?> c
+                ? c.stream().map(String::valueOf).collect(Collectors.toSet())
+                : Set.of();
+        float[] embedding = null;
+        Set<String> anchors = Set.of();
+
+        if (query != null) {
+            anchors = anchorTokens(query);
+            try {
+                embedding = embeddingModel.embed(normalize(query));
+                cached = findSemantic(embedding, anchors, sources);
+                if (cached != null) {
+                    meterRegistry.counter("chat.llm.cache", "result", "semantic_hit").increment();
+                    return new Lookup(key, cached, embedding, anchors, sources);
+                }
+            } catch (Exception e) {
+                log.warn("Semantic cache lookup failed: {}", e.getMessage());
+            }
+        }
+
+        meterRegistry.counter("chat.llm.cache", "result", "miss").increment();
+        return new Lookup(key, null, embedding, anchors, sources);
+    }
+
+    /**
+     * Drop every cached response built from any of the given sources (invoice/payment uuids or source types)
+     */
+    public synchronized void invalidate(String... sourceIds) {
+        invalidationVersion++;
+        int removed = 0;
+        for (String sourceId : sourceIds) {
+            invalidatedAt.remove(sourceId);
+            invalidatedAt.put(sourceId, invalidationVersion);
+            Set<String> keys = keysBySource.remove(sourceId);
+            if (keys == null) {
+                continue;
+            }
+            for (String key : Set.copyOf(keys)) {
+                if (remove(key)) {
+                    removed++;
+                }
+            }
+        }
+        while (invalidatedAt.size() > MAX_TRACKED_INVALIDATIONS) {
+            Iterator<Map.Entry<String, Long>> oldest = invalidatedAt.entrySet().iterator();
+            forgottenUpTo = Math.max(forgottenUpTo, oldest.next().getValue());
+            oldest.remove();
+        }
+        if (removed > 0) {
+            log.debug("Invalidated {} cached LLM responses", removed);
+        }
+    }
+
+    private synchronized CachedResponse getExact(String key) {
+        CachedResponse cached = entries.get(key);
+        if (cached != null && cached.isExpired()) {
+            remove(key);
+            return null;
+        }
+        return cached;
+    }
+
+    private synchronized CachedResponse findSemantic(float[] embedding, Set<String> anchors, Set<String> sources) {
+        CachedResponse best = null;
+        double bestScore = semanticThreshold;
+        Iterator<CachedResponse> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            CachedResponse candidate = iterator.next();
+            // Identifiers (INV-001, amounts, dates) must match exactly; embeddings barely separate them
+            if (candidate.embedding() == null || candidate.isExpired()
+                    || !candidate.anchors().equals(anchors) || !candidate.sources().equals(sources)) {
+                continue;
+            }
+            double score = cosine(embedding, candidate.embedding());
+            if (score >= bestScore) {
+                bestScore = score;
+                best = candidate;
+            }
+        }
+        if (best != null) {
+            entries.get(best.key()); // touch for LRU
+        }
+        return best;
+    }
+
+    private synchronized long currentVersion() {
+        return invalidationVersion;
+    }
+
+    private synchronized void put(CachedResponse cached, long versionBeforeCall) {
+        // One of its sources was invalidated during the LLM call, so the response may already be stale
+        if (invalidatedSince(cached.sources(), versionBeforeCall)) {
+            return;
+        }
+        remove(cached.key());
+        entries.put(cached.key(), cached);
+        for (String source : cached.sources()) {
+            keysBySource.computeIfAbsent(source, s -> new HashSet<>()).add(cached.key());
+        }
+        while (entries.size() > maxEntries) {
+            remove(entries.keySet().iterator().next());
+        }
+    }
+
+    private boolean invalidatedSince(Set<String> sources, long version) {
+        if (sources.isEmpty()) {
+            return false;
+        }
+        if (forgottenUpTo > version) {
+            return true;
+        }
+        for (String source : sources) {
+            Long at = invalidatedAt.get(source);
+            if (at != null && at > version) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean remove(String key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed == null) {
+            return false;
+        }
+        for (String source : removed.sources()) {
+            Set<String> keys = keysBySource.get(source);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysBySource.remove(source);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+    }
+
+    private static Set<String> anchorTokens(String query) {
+        Set<String> anchors = new HashSet<>();
+        for (String token : normalize(query).split("[^\\p{L}\\p{N}\\-/]+")) {
+            if (token.chars().anyMatch(Character::isDigit)) {
+                anchors.add(token);
+            }
+        }
+        return anchors;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "LlmResponseCache";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 100;
+    }
+
+    private record Lookup(String key, CachedResponse hit, float[] embedding, Set<String> anchors, Set<String> sources) {
+
+        CachedResponse toEntry(ChatResponse response, long ttlMinutes) {
+            return new CachedResponse(key, response, embedding, anchors, sources,
+                    System.currentTimeMillis() + ttlMinutes * 60_000);
+        }
+    }
+
+    private record CachedResponse(String key, ChatResponse response, float[] embedding,
+                                  Set<String> anchors, Set<String> sources, long expiresAt) {
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
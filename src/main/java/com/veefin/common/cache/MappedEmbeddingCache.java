@@ -0,0 +1,204 @@
+package com.veefin.common.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-size, memory-mapped embedding cache: key hash -> float32 vector, surviving restarts.
+ * The file is a hash table of max-entries slots. A key lives in one of the PROBE_WINDOW slots after its home
+ * slot; when they are all taken, the CLOCK policy picks the victim (the first slot not read since the hand
+ * last passed it), so the file never grows and hot entries stay.
+ * The vector dimension is fixed by the first entry; a different dimension (another model) starts the file over.
+ */
+@Slf4j
+public class MappedEmbeddingCache implements Closeable {
+
+    private static final int MAGIC = 0x45434348; // "ECCH"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int KEY_BYTES = 16;
+    // key, used flag, referenced flag, 2 bytes padding
+    private static final int SLOT_HEADER_BYTES = KEY_BYTES + 4;
+    private static final int PROBE_WINDOW = 16;
+    private static final long SEGMENT_TARGET_BYTES = 64L * 1024 * 1024;
+
+    private final Path file;
+    private final int capacity;
+
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int dimension;
+    private int slotBytes;
+    private int slotsPerSegment;
+
+    public MappedEmbeddingCache(Path file, int capacity) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (Files.exists(file)) {
+            open();
+        }
+    }
+
+    /**
+     * Cached vector for a key (first 16 bytes of its SHA-256), or null
+     */
+    public synchronized float[] get(byte[] key) {
+        if (channel == null) {
+            return null;
+        }
+        int home = home(key);
+        for (int probe = 0; probe < PROBE_WINDOW; probe++) {
+            int slot = (home + probe) % capacity;
+            ByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            if (segment.get(offset + KEY_BYTES) == 0) {
+                return null; // slots fill in probe order, so an empty one ends the chain
+            }
+            if (keyEquals(segment, offset, key)) {
+                segment.put(offset + KEY_BYTES + 1, (byte) 1);
+                float[] vector = new float[dimension];
+                segment.slice(offset + SLOT_HEADER_BYTES, dimension * Float.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+                return vector;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void put(byte[] key, float[] vector) throws IOException {
+        if (channel == null || vector.length != dimension) {
+            create(vector.length);
+        }
+        int home = home(key);
+        int target = -1;
+        for (int probe = 0; probe < PROBE_WINDOW; probe++) {
+            int slot = (home + probe) % capacity;
+            ByteBuffer segment = segment(slot);
+            int offset = offset(slot);
+            if (segment.get(offset + KEY_BYTES) == 0 || keyEquals(segment, offset, key)) {
+                target = slot;
+                break;
+            }
+        }
+        if (target < 0) {
+            target = clockVictim(home);
+        }
+        ByteBuffer segment = segment(target);
+        int offset = offset(target);
+        segment.put(offset, key, 0, KEY_BYTES);
+        segment.put(offset + KEY_BYTES, (byte) 1);
+        segment.put(offset + KEY_BYTES + 1, (byte) 0);
+        segment.slice(offset + SLOT_HEADER_BYTES, dimension * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(vector);
+    }
+
+    /**
+     * CLOCK over the probe window: clear the referenced flag of recently read slots until one that wasn't is found
+     */
+    private int clockVictim(int home) {
+        for (int pass = 0; pass < 2; pass++) {
+            for (int probe = 0; probe < PROBE_WINDOW; probe++) {
+                int slot = (home + probe) % capacity;
+                ByteBuffer segment = segment(slot);
+                int referencedAt = offset(slot) + KEY_BYTES + 1;
+                if (segment.get(referencedAt) == 0) {
+                    return slot;
+                }
+                segment.put(referencedAt, (byte) 0);
+            }
+        }
+        return home;
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(12) != capacity) {
+            log.info("Embedding cache {} has another layout or capacity; starting empty", file);
+            channel.close();
+            channel = null;
+            return;
+        }
+        mapSlots(header.getInt(8));
+    }
+
+    /**
+     * Start the file over for the given dimension, in place: it is never deleted or truncated, because the previous
+     * mappings are only released by GC and Windows refuses to delete or shrink a mapped file. A larger layout
+     * extends the file; a smaller one leaves unused bytes at its end.
+     */
+    private void create(int vectorDimension) throws IOException {
+        if (channel != null) {
+            log.info("Embedding dimension changed from {} to {}; clearing embedding cache", dimension, vectorDimension);
+            channel.close();
+            segments.clear();
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        // no magic until every slot is cleared, so a crash part way leaves a file that is started over on open
+        header.putInt(0, 0).putInt(4, VERSION).putInt(8, vectorDimension).putInt(12, capacity);
+        header.force();
+        mapSlots(vectorDimension);
+        for (int slot = 0; slot < capacity; slot++) {
+            segment(slot).put(offset(slot) + KEY_BYTES, (byte) 0);
+        }
+        segments.forEach(MappedByteBuffer::force);
+        header.putInt(0, MAGIC);
+    }
+
+    private void mapSlots(int vectorDimension) throws IOException {
+        dimension = vectorDimension;
+        slotBytes = SLOT_HEADER_BYTES + dimension * Float.BYTES;
+        slotsPerSegment = (int) Math.max(1, SEGMENT_TARGET_BYTES / slotBytes);
+        for (long first = 0; first < capacity; first += slotsPerSegment) {
+            long slots = Math.min(slotsPerSegment, capacity - first);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + first * slotBytes, slots * slotBytes);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments.add(segment);
+        }
+    }
+
+    private ByteBuffer segment(int slot) {
+        return segments.get(slot / slotsPerSegment);
+    }
+
+    private int offset(int slot) {
+        return (slot % slotsPerSegment) * slotBytes;
+    }
+
+    private int home(byte[] key) {
+        int hash = (key[0] & 0xff) | (key[1] & 0xff) << 8 | (key[2] & 0xff) << 16 | (key[3] & 0xff) << 24;
+        return Math.floorMod(hash, capacity);
+    }
+
+    private static boolean keyEquals(ByteBuffer segment, int offset, byte[] key) {
+        byte[] stored = new byte[KEY_BYTES];
+        segment.get(offset, stored);
+        return Arrays.equals(stored, 0, KEY_BYTES, key, 0, KEY_BYTES);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            segments.forEach(MappedByteBuffer::force);
+            channel.close();
+            channel = null;
+        }
+    }
+}
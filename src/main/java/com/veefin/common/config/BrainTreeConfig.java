@@ -21,14 +21,20 @@ public class BrainTreeConfig {
     @Value("${braintree.privateKey}")
     private String privateKey;
 
+    // socket timeout of the SDK's HTTP calls, so an abandoned attempt doesn't hang on past its deadline
+    @Value("${payment.gateway.attempt-timeout-ms:10000}")
+    private int timeoutMs;
+
     @Bean
     public BraintreeGateway braintreeGateway() {
-        return new BraintreeGateway(
+        BraintreeGateway gateway = new BraintreeGateway(
                 Environment.SANDBOX, // or Environment.PRODUCTION
                 merchantId,
                 publicKey,
                 privateKey
         );
+        gateway.getConfiguration().setTimeout(timeoutMs);
+        return gateway;
     }
 
 }
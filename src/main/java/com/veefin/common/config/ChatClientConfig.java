@@ -1,5 +1,6 @@
 package com.veefin.common.config;
 
+import com.veefin.common.cache.LlmResponseCache;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.openai.OpenAiChatModel;
@@ -10,8 +11,10 @@ import org.springframework.context.annotation.Configuration;
 public class ChatClientConfig {
 
     @Bean
-    public ChatClient chatClient(OpenAiChatModel chatModel) {
-        return ChatClient.builder(chatModel).build();
+    public ChatClient chatClient(OpenAiChatModel chatModel, LlmResponseCache llmResponseCache) {
+        return ChatClient.builder(chatModel)
+                .defaultAdvisors(llmResponseCache)
+                .build();
     }
 
 
@@ -1,17 +1,32 @@
 package com.veefin.common.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veefin.common.cache.CachingEmbeddingModel;
+import com.veefin.common.cache.MappedEmbeddingCache;
+import com.veefin.common.vector.local.LocalVectorStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.QdrantGrpcClient;
 import org.springframework.ai.document.MetadataMode;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaOptions;
 import org.springframework.ai.openai.OpenAiEmbeddingModel;
 import org.springframework.ai.openai.OpenAiEmbeddingOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.transformers.TransformersEmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.qdrant.QdrantVectorStore;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
 @Configuration
 public class VectorStoreConfig {
 
@@ -30,41 +45,105 @@ public class VectorStoreConfig {
 
 
 
-//    // 2️⃣ Embedding model
-//    @Bean
-//    public EmbeddingModel embeddingModel(OllamaApi ollamaApi) {
-//        return OllamaEmbeddingModel.builder()
-//                .ollamaApi(ollamaApi)
-//                .defaultOptions(OllamaOptions.fromOptions(
-//                        OllamaOptions.builder()
-//                                .model("nomic-embed-text")
-//                                .build()))
-//                .build();
-//    }
+    @Value("${embedding.provider:openai}")
+    private String embeddingProvider;
+
+    @Value("${embedding.ollama.model:nomic-embed-text}")
+    private String ollamaEmbeddingModel;
+
+    @Value("${embedding.onnx.model-uri:}")
+    private String onnxModelUri;
 
+    @Value("${embedding.onnx.tokenizer-uri:}")
+    private String onnxTokenizerUri;
 
+    @Value("${embedding.onnx.cache-directory:./data/onnx-cache}")
+    private String onnxCacheDirectory;
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean embeddingCacheEnabled;
+
+    // 2️⃣ Embedding model: openai (default), ollama or onnx (in-process, CPU), behind the embedding cache
     @Bean
-    public EmbeddingModel embeddingModel(OpenAiApi openAiApi) {
-        // 1. Use the most modern options class (OpenAiEmbeddingOption)
-        OpenAiEmbeddingOptions options = OpenAiEmbeddingOptions.builder()
-                .model(embeddingModel)
-                .build();
-        return new OpenAiEmbeddingModel(openAiApi, MetadataMode.EMBED, options);
+    public EmbeddingModel embeddingModel(ObjectProvider<OpenAiApi> openAiApi, ObjectProvider<OllamaApi> ollamaApi,
+                                         ObjectProvider<MappedEmbeddingCache> embeddingCache,
+                                         MeterRegistry meterRegistry) throws Exception {
+        EmbeddingModel model;
+        String modelId;
+        switch (embeddingProvider) {
+            case "ollama" -> {
+                model = OllamaEmbeddingModel.builder()
+                        .ollamaApi(ollamaApi.getObject())
+                        .defaultOptions(OllamaOptions.builder().model(ollamaEmbeddingModel).build())
+                        .build();
+                modelId = "ollama:" + ollamaEmbeddingModel;
+            }
+            case "onnx" -> {
+                TransformersEmbeddingModel onnxModel = new TransformersEmbeddingModel(MetadataMode.EMBED);
+                if (!onnxModelUri.isEmpty()) {
+                    onnxModel.setModelResource(onnxModelUri);
+                }
+                if (!onnxTokenizerUri.isEmpty()) {
+                    onnxModel.setTokenizerResource(onnxTokenizerUri);
+                }
+                onnxModel.setResourceCacheDirectory(onnxCacheDirectory);
+                onnxModel.afterPropertiesSet();
+                model = onnxModel;
+                modelId = "onnx:" + (onnxModelUri.isEmpty() ? "default" : onnxModelUri);
+            }
+            case "openai" -> {
+                OpenAiEmbeddingOptions options = OpenAiEmbeddingOptions.builder()
+                        .model(embeddingModel)
+                        .build();
+                model = new OpenAiEmbeddingModel(openAiApi.getObject(), MetadataMode.EMBED, options);
+                modelId = "openai:" + embeddingModel;
+            }
+            default -> throw new IllegalStateException("Unknown embedding.provider: " + embeddingProvider);
+        }
+        if (!embeddingCacheEnabled) {
+            return model;
+        }
+        return new CachingEmbeddingModel(model, embeddingCache.getObject(), modelId, MetadataMode.EMBED, meterRegistry);
     }
 
     @Bean
+    @ConditionalOnProperty(name = "embedding.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public MappedEmbeddingCache embeddingCache(@Value("${embedding.cache.path:./data/embedding-cache.bin}") String path,
+                                               @Value("${embedding.cache.max-entries:20000}") int maxEntries) throws IOException {
+        return new MappedEmbeddingCache(Path.of(path), maxEntries);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
     public QdrantClient qdrantClient() {
         return new QdrantClient(
                 QdrantGrpcClient.newBuilder(host, port, false).build()
         );
     }
 
-    // 4️⃣ Vector store
+    // 4️⃣ Vector store: remote Qdrant (default) ...
     @Bean
+    @ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
     public VectorStore qdrantVectorStore(QdrantClient qdrantClient, EmbeddingModel embeddingModel) {
         return QdrantVectorStore.builder(qdrantClient, embeddingModel)
                 .collectionName(collectionName)
                 .initializeSchema(true)
                 .build();
     }
+
+    // ... or the in-process HNSW index (vector.store=local)
+    @Bean
+    @ConditionalOnProperty(name = "vector.store", havingValue = "local")
+    public LocalVectorStore localVectorStore(EmbeddingModel embeddingModel, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                             @Value("${vector.local.data-path:./data/vector-index}") String dataPath,
+                                             @Value("${vector.local.quantization:float32}") String quantization,
+                                             @Value("${vector.local.max-connections:16}") int maxConnections,
+                                             @Value("${vector.local.ef-construction:100}") int efConstruction,
+                                             @Value("${vector.local.ef-search:64}") int efSearch,
+                                             @Value("${vector.local.compaction-threshold:0.25}") double compactionThreshold) throws IOException {
+        LocalVectorStore vectorStore = new LocalVectorStore(embeddingModel, objectMapper, meterRegistry,
+                new LocalVectorStore.Settings(dataPath, quantization, maxConnections, efConstruction, efSearch, compactionThreshold));
+        vectorStore.load();
+        return vectorStore;
+    }
 }
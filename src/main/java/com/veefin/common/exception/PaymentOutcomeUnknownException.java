@@ -0,0 +1,19 @@
+package com.veefin.common.exception;
+
+/**
+ * The gateway call may or may not have charged (e.g. it timed out after the request was sent).
+ * Must not be retried as a new sale; the order is reconciled against the gateway later.
+ */
+public class PaymentOutcomeUnknownException extends RuntimeException {
+
+    private final String orderId;
+
+    public PaymentOutcomeUnknownException(String orderId, String message, Throwable cause) {
+        super(message, cause);
+        this.orderId = orderId;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+}
@@ -0,0 +1,40 @@
+package com.veefin.common.query;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * COUNT / SUM over the rows a Specification selects, as a single SELECT (no entities loaded)
+ */
+@Component
+@RequiredArgsConstructor
+public class AggregateQueries {
+
+    private final EntityManager entityManager;
+
+    public record Totals(long count, double sum) {
+    }
+
+    @Transactional(readOnly = true)
+    public <T> Totals totals(Class<T> entityType, Specification<T> specification, String amountAttribute) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+        Root<T> root = query.from(entityType);
+        query.multiselect(
+                criteriaBuilder.count(root),
+                criteriaBuilder.coalesce(criteriaBuilder.sum(root.<Double>get(amountAttribute)), 0.0));
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        Object[] row = entityManager.createQuery(query).getSingleResult();
+        return new Totals(((Number) row[0]).longValue(), ((Number) row[1]).doubleValue());
+    }
+}
@@ -0,0 +1,101 @@
+package com.veefin.common.query;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Date range named in a chat question ("this week", "in October", "last 30 days"), end exclusive
+ */
+public record QuestionPeriod(LocalDate from, LocalDate until, String label) {
+
+    private static final Pattern LAST_DAYS = Pattern.compile("\\b(?:last|past)\\s+(\\d{1,3})\\s+days?\\b");
+    private static final Pattern NEXT_DAYS = Pattern.compile("\\bnext\\s+(\\d{1,3})\\s+days?\\b");
+    // "may" is only taken as a month after a preposition or before a year
+    private static final Pattern MONTH = Pattern.compile(
+            "\\b(?:in|during|for|of|since)\\s+(january|february|march|april|may|june|july|august|september|october|november|december)(?:\\s+(\\d{4}))?\\b"
+                    + "|\\b(january|february|march|april|may|june|july|august|september|october|november|december)\\s+(\\d{4})\\b");
+
+    public LocalDateTime fromDateTime() {
+        return from.atStartOfDay();
+    }
+
+    public LocalDateTime untilDateTime() {
+        return until.atStartOfDay();
+    }
+
+    /**
+     * The period a lower-cased question names, or null
+     */
+    public static QuestionPeriod find(String lowerQuestion, LocalDate today) {
+        Matcher days = LAST_DAYS.matcher(lowerQuestion);
+        if (days.find()) {
+            int count = Integer.parseInt(days.group(1));
+            return new QuestionPeriod(today.minusDays(count), today.plusDays(1), "in the last " + count + " days");
+        }
+        days = NEXT_DAYS.matcher(lowerQuestion);
+        if (days.find()) {
+            int count = Integer.parseInt(days.group(1));
+            return new QuestionPeriod(today, today.plusDays(count + 1L), "in the next " + count + " days");
+        }
+        if (lowerQuestion.contains("today")) {
+            return new QuestionPeriod(today, today.plusDays(1), "today");
+        }
+        if (lowerQuestion.contains("tomorrow")) {
+            return new QuestionPeriod(today.plusDays(1), today.plusDays(2), "tomorrow");
+        }
+        if (lowerQuestion.contains("yesterday")) {
+            return new QuestionPeriod(today.minusDays(1), today, "yesterday");
+        }
+
+        LocalDate monday = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        if (lowerQuestion.contains("this week")) {
+            return new QuestionPeriod(monday, monday.plusWeeks(1), "this week");
+        }
+        if (lowerQuestion.contains("next week")) {
+            return new QuestionPeriod(monday.plusWeeks(1), monday.plusWeeks(2), "next week");
+        }
+        if (lowerQuestion.contains("last week")) {
+            return new QuestionPeriod(monday.minusWeeks(1), monday, "last week");
+        }
+
+        LocalDate firstOfMonth = today.withDayOfMonth(1);
+        if (lowerQuestion.contains("this month")) {
+            return new QuestionPeriod(firstOfMonth, firstOfMonth.plusMonths(1), "this month");
+        }
+        if (lowerQuestion.contains("next month")) {
+            return new QuestionPeriod(firstOfMonth.plusMonths(1), firstOfMonth.plusMonths(2), "next month");
+        }
+        if (lowerQuestion.contains("last month")) {
+            return new QuestionPeriod(firstOfMonth.minusMonths(1), firstOfMonth, "last month");
+        }
+
+        LocalDate firstOfYear = today.withDayOfYear(1);
+        if (lowerQuestion.contains("this year")) {
+            return new QuestionPeriod(firstOfYear, firstOfYear.plusYears(1), "this year");
+        }
+        if (lowerQuestion.contains("last year")) {
+            return new QuestionPeriod(firstOfYear.minusYears(1), firstOfYear, "last year");
+        }
+
+        Matcher month = MONTH.matcher(lowerQuestion);
+        if (month.find()) {
+            String name = month.group(1) != null ? month.group(1) : month.group(3);
+            String year = month.group(1) != null ? month.group(2) : month.group(4);
+            Month named = Month.valueOf(name.toUpperCase(Locale.ROOT));
+            // without a year, the latest such month that has started
+            int resolvedYear = year != null ? Integer.parseInt(year)
+                    : named.getValue() <= today.getMonthValue() ? today.getYear() : today.getYear() - 1;
+            LocalDate start = LocalDate.of(resolvedYear, named, 1);
+            return new QuestionPeriod(start, start.plusMonths(1),
+                    "in " + named.getDisplayName(TextStyle.FULL, Locale.ENGLISH) + " " + resolvedYear);
+        }
+        return null;
+    }
+}
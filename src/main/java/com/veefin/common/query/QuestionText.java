@@ -0,0 +1,42 @@
+package com.veefin.common.query;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers shared by the structured query planners
+ */
+public final class QuestionText {
+
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+(?:[-_/.][\\p{L}\\p{N}]+)*");
+    private static final Pattern YEAR = Pattern.compile("(?:19|20)\\d{2}");
+
+    private QuestionText() {
+    }
+
+    /**
+     * True when the question carries a number other than a year or a short count ("last 30 days"), such as an
+     * invoice number, a transaction id or an amount: those questions are about specific records and go to RAG
+     */
+    public static boolean namesSpecificValue(String lowerQuestion) {
+        Matcher token = TOKEN.matcher(lowerQuestion);
+        while (token.find()) {
+            String value = token.group();
+            if (value.length() >= 4 && value.chars().anyMatch(Character::isDigit) && !YEAR.matcher(value).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String capitalize(String words) {
+        StringBuilder capitalized = new StringBuilder();
+        for (String word : words.split(" ")) {
+            if (!capitalized.isEmpty()) {
+                capitalized.append(' ');
+            }
+            capitalized.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+        }
+        return capitalized.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package com.veefin.common.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * SHA-256 helpers for content-addressed invoice ingestion
+ */
+public final class ContentHash {
+
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private ContentHash() {
+    }
+
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash of the exact text
+     */
+    public static String sha256Hex(String text) {
+        MessageDigest digest = newSha256();
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        return hex(digest);
+    }
+
+    /**
+     * Hash of the text with case, whitespace and punctuation removed, so a re-scan or re-export of the same
+     * invoice (different bytes, different line breaks / OCR spacing) maps to the same value
+     */
+    public static String textFingerprint(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        String normalized = NON_ALPHANUMERIC.matcher(text.toLowerCase(Locale.ROOT)).replaceAll("");
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        MessageDigest digest = newSha256();
+        digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+        return hex(digest);
+    }
+}
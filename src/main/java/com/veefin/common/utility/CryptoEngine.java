@@ -0,0 +1,183 @@
+package com.veefin.common.utility;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared sign/verify/hash engine.
+ * Signature and MessageDigest instances are pooled (borrow/return, safe for virtual threads, unlike ThreadLocal),
+ * and a pooled Signature stays initialised for its key, so the provider lookup and initSign/initVerify are paid once.
+ * Parsed keys are cached by their Base64 encoding.
+ */
+@Slf4j
+@Component
+public class CryptoEngine {
+
+    public static final String RSA_SIGNATURE = "SHA256withRSA";
+
+    private static final String SHA_256 = "SHA-256";
+    private static final int MAX_IDLE_PER_POOL = 64;
+    private static final int MAX_POOLS = 256;
+    private static final int MAX_CACHED_KEYS = 1024;
+
+    private final Map<PoolKey, Pool<Signature>> signaturePools = new ConcurrentHashMap<>();
+    private final Pool<MessageDigest> digestPool = new Pool<>();
+    private final Map<String, PublicKey> publicKeys = new ConcurrentHashMap<>();
+    private final Map<String, PrivateKey> privateKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Sign UTF-8 data and return the Base64 signature
+     */
+    public String sign(String algorithm, PrivateKey privateKey, String data) throws GeneralSecurityException {
+        Pool<Signature> pool = signaturePool(algorithm, privateKey, true);
+        Signature signature = pool.borrow();
+        if (signature == null) {
+            signature = Signature.getInstance(algorithm);
+            signature.initSign(privateKey);
+        }
+        signature.update(data.getBytes(StandardCharsets.UTF_8));
+        // sign() resets the object to its initSign state, so it can go straight back to the pool.
+        // If anything above throws, the instance is simply dropped rather than returned in an unknown state.
+        String result = Base64.getEncoder().encodeToString(signature.sign());
+        pool.release(signature);
+        return result;
+    }
+
+    /**
+     * Verify a Base64 signature over UTF-8 data
+     */
+    public boolean verify(String algorithm, PublicKey publicKey, String data, String signatureBase64)
+            throws GeneralSecurityException {
+        byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
+        Pool<Signature> pool = signaturePool(algorithm, publicKey, false);
+        Signature signature = pool.borrow();
+        if (signature == null) {
+            signature = Signature.getInstance(algorithm);
+            signature.initVerify(publicKey);
+        }
+        signature.update(data.getBytes(StandardCharsets.UTF_8));
+        boolean valid = signature.verify(signatureBytes);
+        pool.release(signature);
+        return valid;
+    }
+
+    /**
+     * SHA-256 of UTF-8 data, Base64 encoded
+     */
+    public String sha256Base64(String data) {
+        MessageDigest digest = digestPool.borrow();
+        if (digest == null) {
+            try {
+                digest = MessageDigest.getInstance(SHA_256);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+        // digest() resets the instance
+        String hash = Base64.getEncoder().encodeToString(digest.digest(data.getBytes(StandardCharsets.UTF_8)));
+        digestPool.release(digest);
+        return hash;
+    }
+
+    /**
+     * Parse (or reuse) an X.509 public key from its Base64 encoding
+     */
+    public PublicKey parsePublicKey(String keyAlgorithm, String base64) throws GeneralSecurityException {
+        String cacheKey = keyAlgorithm + ":" + base64;
+        PublicKey cached = publicKeys.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        PublicKey key = KeyFactory.getInstance(keyAlgorithm)
+                .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+        putBounded(publicKeys, cacheKey, key);
+        return key;
+    }
+
+    /**
+     * Parse (or reuse) a PKCS#8 private key from its Base64 encoding
+     */
+    public PrivateKey parsePrivateKey(String keyAlgorithm, String base64) throws GeneralSecurityException {
+        String cacheKey = keyAlgorithm + ":" + base64;
+        PrivateKey cached = privateKeys.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        PrivateKey key = KeyFactory.getInstance(keyAlgorithm)
+                .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(base64)));
+        putBounded(privateKeys, cacheKey, key);
+        return key;
+    }
+
+    /**
+     * Drop pooled Signatures initialised with this key (after a key rotation)
+     */
+    public void evict(Key key) {
+        signaturePools.keySet().removeIf(poolKey -> poolKey.key().equals(key));
+    }
+
+    private Pool<Signature> signaturePool(String algorithm, Key key, boolean signing) {
+        PoolKey poolKey = new PoolKey(algorithm, key, signing);
+        Pool<Signature> pool = signaturePools.get(poolKey);
+        if (pool != null) {
+            return pool;
+        }
+        if (signaturePools.size() >= MAX_POOLS) {
+            // Many distinct user keys; start over rather than grow without bound
+            signaturePools.clear();
+        }
+        return signaturePools.computeIfAbsent(poolKey, k -> new Pool<>());
+    }
+
+    private static <V> void putBounded(Map<String, V> cache, String key, V value) {
+        if (cache.size() >= MAX_CACHED_KEYS) {
+            cache.clear();
+        }
+        cache.put(key, value);
+    }
+
+    private record PoolKey(String algorithm, Key key, boolean signing) {
+    }
+
+    /**
+     * Lock-free idle list; borrow() returns null when empty and the caller creates a new instance
+     */
+    private static final class Pool<T> {
+
+        private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+
+        T borrow() {
+            T item = idle.poll();
+            if (item != null) {
+                idleCount.decrementAndGet();
+            }
+            return item;
+        }
+
+        void release(T item) {
+            if (idleCount.incrementAndGet() <= MAX_IDLE_PER_POOL) {
+                idle.offer(item);
+            } else {
+                idleCount.decrementAndGet();
+            }
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package com.veefin.common.utility;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.security.*;
 import java.security.spec.PKCS8EncodedKeySpec;
-import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class KeyGenerator {
 
+    private final CryptoEngine cryptoEngine;
+
+    // Parsed once on first use
+    private volatile PrivateKey demoPrivateKey;
+
 
     /**
      * 🔧 Demo RSA Private Key in PKCS#8 PEM format (for testing only)
@@ -29,16 +35,15 @@ public class KeyGenerator {
 
     public String simulateUserSignature(String intentJSON) {
         try {
-            // Parse PEM private key
-            PrivateKey privateKey = parsePrivateKeyFromPEM();
+            // Parse PEM private key (cached after the first call)
+            PrivateKey privateKey = demoPrivateKey;
+            if (privateKey == null) {
+                privateKey = parsePrivateKeyFromPEM();
+                demoPrivateKey = privateKey;
+            }
 
             // Sign the intent JSON
-            Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(privateKey);
-            signature.update(intentJSON.getBytes(StandardCharsets.UTF_8));
-
-            byte[] signatureBytes = signature.sign();
-            String signatureBase64 = Base64.getEncoder().encodeToString(signatureBytes);
+            String signatureBase64 = cryptoEngine.sign(CryptoEngine.RSA_SIGNATURE, privateKey, intentJSON);
 
             log.info("User signature created for intent JSON (length: {})", signatureBase64.length());
             return signatureBase64;
@@ -54,9 +59,7 @@ public class KeyGenerator {
      */
     public String computeHash(String data) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-            String hashBase64 = Base64.getEncoder().encodeToString(hashBytes);
+            String hashBase64 = cryptoEngine.sha256Base64(data);
 
             log.debug("SHA-256 hash computed (length: {})", hashBase64.length());
             return hashBase64;
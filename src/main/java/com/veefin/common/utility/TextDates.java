@@ -0,0 +1,64 @@
+package com.veefin.common.utility;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the dates InvoiceParserService extracts (day-month-name-year, day/month/year, year-month-day)
+ */
+public final class TextDates {
+
+    private static final Pattern DAY_MONTH_NAME_YEAR = Pattern.compile("(\\d{1,2})[-/ ]([A-Za-z]{3})[A-Za-z]*[-/ ,]+(\\d{4})");
+    private static final Pattern YEAR_MONTH_DAY = Pattern.compile("(\\d{4})[-/.](\\d{1,2})[-/.](\\d{1,2})");
+    private static final Pattern DAY_MONTH_YEAR = Pattern.compile("(\\d{1,2})[-/.](\\d{1,2})[-/.](\\d{4})");
+    private static final Map<String, Month> MONTHS_BY_ABBREVIATION = new HashMap<>();
+
+    static {
+        for (Month month : Month.values()) {
+            MONTHS_BY_ABBREVIATION.put(month.getDisplayName(TextStyle.SHORT, Locale.ENGLISH).toLowerCase(Locale.ROOT), month);
+        }
+        // TextStyle.SHORT gives "Sep"; invoices also write "Sept"
+        MONTHS_BY_ABBREVIATION.put("sep", Month.SEPTEMBER);
+    }
+
+    private TextDates() {
+    }
+
+    /**
+     * The date in the text, or null when it holds none (or "N/A") or an impossible one
+     */
+    public static LocalDate parse(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            Matcher matcher = DAY_MONTH_NAME_YEAR.matcher(text);
+            if (matcher.find()) {
+                Month month = MONTHS_BY_ABBREVIATION.get(matcher.group(2).toLowerCase(Locale.ROOT));
+                return month != null
+                        ? LocalDate.of(Integer.parseInt(matcher.group(3)), month, Integer.parseInt(matcher.group(1)))
+                        : null;
+            }
+            matcher = YEAR_MONTH_DAY.matcher(text);
+            if (matcher.find()) {
+                return LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                        Integer.parseInt(matcher.group(3)));
+            }
+            matcher = DAY_MONTH_YEAR.matcher(text);
+            if (matcher.find()) {
+                return LocalDate.of(Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(2)),
+                        Integer.parseInt(matcher.group(1)));
+            }
+        } catch (DateTimeException e) {
+            return null;
+        }
+        return null;
+    }
+}
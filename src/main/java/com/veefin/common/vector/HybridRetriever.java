@@ -0,0 +1,94 @@
+package com.veefin.common.vector;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RAG retrieval combining the {@link LexicalIndex} with the vector store.
+ * A question naming an identifier verbatim ("INV-2025-001", a transaction id) is answered from the exact
+ * identifier lookup alone, with no embedding call or vector search. Otherwise the BM25 and the similarity
+ * rankings are merged with reciprocal rank fusion, so exact tokens and paraphrases both pull documents up.
+ */
+@Slf4j
+@Component
+public class HybridRetriever {
+
+    // standard RRF damping constant: keeps one list's top rank from outweighing agreement between both lists
+    private static final int RRF_K = 60;
+
+    private final VectorStore vectorStore;
+    private final LexicalIndex lexicalIndex;
+    private final Counter identifierHits;
+    private final Counter fusedSearches;
+
+    @Value("${vector.search.similarity-threshold:0.2}")
+    private double similarityThreshold;
+
+    @Value("${vector.search.hybrid.candidates:20}")
+    private int candidates;
+
+    public HybridRetriever(VectorStore vectorStore, LexicalIndex lexicalIndex, MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.lexicalIndex = lexicalIndex;
+        this.identifierHits = meterRegistry.counter("vector.search.retrievals", "path", "identifier");
+        this.fusedSearches = meterRegistry.counter("vector.search.retrievals", "path", "hybrid");
+    }
+
+    /**
+     * Top-k documents of the given type for the question. The filter applies to both rankings; an identifier
+     * match is only filtered on document type, since the question's status / date words describe that document
+     * rather than narrow the search.
+     */
+    public List<Document> retrieve(String query, String documentType, Filter.Expression filter, int topK) {
+        List<Document> exact = lexicalIndex.exactMatches(query, VectorSearchFilters.documentType(documentType));
+        if (!exact.isEmpty()) {
+            identifierHits.increment();
+            log.debug("Identifier match for '{}': {} documents", query, exact.size());
+            return exact.size() > topK ? exact.subList(0, topK) : exact;
+        }
+
+        fusedSearches.increment();
+        int depth = Math.max(topK, candidates);
+        List<Document> lexical = lexicalIndex.search(query, depth, filter);
+        List<Document> similar = vectorStore.similaritySearch(SearchRequest.builder()
+                .query(query)
+                .topK(depth)
+                .similarityThreshold(similarityThreshold)
+                .filterExpression(filter)
+                .build());
+        return fuse(topK, similar, lexical);
+    }
+
+    /**
+     * Reciprocal rank fusion: score = sum of 1 / (RRF_K + rank) over the rankings a document appears in.
+     * The first ranking's copy of a document is the one returned.
+     */
+    @SafeVarargs
+    static List<Document> fuse(int topK, List<Document>... rankings) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> byId = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                scores.merge(document.getId(), 1.0 / (RRF_K + rank + 1), Double::sum);
+                byId.putIfAbsent(document.getId(), document);
+            }
+        }
+        List<Document> fused = new ArrayList<>(byId.values());
+        fused.sort((a, b) -> Double.compare(scores.get(b.getId()), scores.get(a.getId())));
+        return fused.size() > topK ? fused.subList(0, topK) : fused;
+    }
+}
@@ -0,0 +1,259 @@
+package com.veefin.common.vector;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory BM25 index over the same documents as the vector store (invoices and payments), plus an exact
+ * lookup on identifier fields such as invoice number or payment id.
+ * Tokens keep their inner separators ("inv-2025-001") and are also indexed by part ("inv", "2025", "001"), so an
+ * identifier typed verbatim scores as one rare term while a partial one still matches.
+ * Searches run concurrently; writes take the write lock.
+ */
+@Component
+public class LexicalIndex {
+
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+(?:[-_/.][\\p{L}\\p{N}]+)*");
+    private static final Pattern SEPARATOR = Pattern.compile("[-_/.]");
+    private static final Pattern DIGIT = Pattern.compile("\\p{N}");
+    // shorter or digit-free query tokens ("7" in "last 7 days", "invoice") are never treated as identifiers
+    private static final int MIN_IDENTIFIER_LENGTH = 4;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> documents = new HashMap<>();
+    // term -> document id -> term frequency
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    // lower-cased identifier value -> document ids
+    private final Map<String, Set<String>> identifiers = new HashMap<>();
+    private long totalLength;
+
+    public LexicalIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("vector.lexical.documents", this, LexicalIndex::size).register(meterRegistry);
+    }
+
+    /**
+     * Add or replace a document; the values of identifierFields (and the document id) become exact-match keys
+     */
+    public void put(Document document, Collection<String> identifierFields) {
+        putAll(List.of(document), identifierFields);
+    }
+
+    public void putAll(Collection<Document> batch, Collection<String> identifierFields) {
+        lock.writeLock().lock();
+        try {
+            for (Document document : batch) {
+                remove(document.getId());
+
+                Set<String> keys = new HashSet<>();
+                addIdentifier(keys, document.getId());
+                StringBuilder text = new StringBuilder(document.getText() != null ? document.getText() : "");
+                for (String field : identifierFields) {
+                    Object value = document.getMetadata().get(field);
+                    if (value != null) {
+                        addIdentifier(keys, value.toString());
+                        text.append(' ').append(value);
+                    }
+                }
+
+                List<String> terms = terms(text.toString());
+                Map<String, Integer> frequencies = new HashMap<>();
+                terms.forEach(term -> frequencies.merge(term, 1, Integer::sum));
+                frequencies.forEach((term, frequency) ->
+                        postings.computeIfAbsent(term, t -> new HashMap<>()).put(document.getId(), frequency));
+                keys.forEach(key -> identifiers.computeIfAbsent(key, k -> new HashSet<>()).add(document.getId()));
+
+                documents.put(document.getId(), new Entry(document, frequencies.keySet(), keys, terms.size()));
+                totalLength += terms.size();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(String id) {
+        lock.writeLock().lock();
+        try {
+            remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Documents whose identifier equals a whole token of the query, in query order; empty when the query names none
+     */
+    public List<Document> exactMatches(String query, Filter.Expression filter) {
+        Set<String> ids = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            for (String token : tokens(query)) {
+                if (token.length() < MIN_IDENTIFIER_LENGTH || !DIGIT.matcher(token).find()) {
+                    continue;
+                }
+                Set<String> matches = identifiers.get(token);
+                if (matches != null) {
+                    ids.addAll(matches);
+                }
+            }
+            return accepted(ids, filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Top-k documents by BM25 score that pass the filter, best first
+     */
+    public List<Document> search(String query, int topK, Filter.Expression filter) {
+        Set<String> queryTerms = new LinkedHashSet<>(terms(query));
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty() || queryTerms.isEmpty()) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / documents.size();
+            Map<String, Double> scores = new HashMap<>();
+            for (String term : queryTerms) {
+                Map<String, Integer> termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documents.size() - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                termPostings.forEach((id, frequency) -> {
+                    double lengthNorm = 1 - B + B * documents.get(id).length() / averageLength;
+                    scores.merge(id, idf * frequency * (K1 + 1) / (frequency + K1 * lengthNorm), Double::sum);
+                });
+            }
+
+            PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<String, Double> score : scores.entrySet()) {
+                if (best.size() < topK || score.getValue() > best.peek().getValue()) {
+                    if (filter == null || MetadataFilter.matches(filter, documents.get(score.getKey()).document().getMetadata())) {
+                        best.add(score);
+                        if (best.size() > topK) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+            List<Document> found = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                Map.Entry<String, Double> score = best.poll();
+                Document document = documents.get(score.getKey()).document();
+                found.add(0, Document.builder()
+                        .id(document.getId())
+                        .text(document.getText())
+                        .metadata(document.getMetadata())
+                        .score(score.getValue())
+                        .build());
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Document> accepted(Collection<String> ids, Filter.Expression filter) {
+        List<Document> found = new ArrayList<>();
+        for (String id : ids) {
+            Entry entry = documents.get(id);
+            if (entry != null && (filter == null || MetadataFilter.matches(filter, entry.document().getMetadata()))) {
+                found.add(entry.document());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Queries are matched token by token, so only identifiers that form a single token ("#INV-7" -> "inv-7") are kept
+     */
+    private static void addIdentifier(Set<String> keys, String value) {
+        List<String> valueTokens = tokens(value);
+        if (valueTokens.size() == 1) {
+            keys.add(valueTokens.get(0));
+        }
+    }
+
+    private void remove(String id) {
+        Entry previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        totalLength -= previous.length();
+        for (String term : previous.terms()) {
+            Map<String, Integer> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(id);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        for (String key : previous.identifiers()) {
+            Set<String> ids = identifiers.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    identifiers.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lower-cased tokens, each compound token followed by its parts
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String token : tokens(text)) {
+            terms.add(token);
+            if (SEPARATOR.matcher(token).find()) {
+                terms.addAll(List.of(SEPARATOR.split(token)));
+            }
+        }
+        return terms;
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        Matcher matcher = TOKEN.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        return tokens;
+    }
+
+    private record Entry(Document document, Set<String> terms, Set<String> identifiers, int length) {
+    }
+}
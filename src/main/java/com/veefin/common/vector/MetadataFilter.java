@@ -0,0 +1,97 @@
+package com.veefin.common.vector;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Evaluates a portable Spring AI filter expression against a document's metadata map.
+ * Numbers compare by value whatever their boxed type, so an Integer read back from JSON equals the Long it was
+ * written as; a missing key never matches a comparison (and so always matches its negation).
+ */
+public final class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    public static boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Group group) {
+            return matches(group.content(), metadata);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("Unsupported filter operand: " + operand);
+        }
+        return switch (expression.type()) {
+            case AND -> matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR -> matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            case NOT -> !matches(expression.left(), metadata);
+            case EQ -> Objects.equals(compare(expression, metadata), 0);
+            case NE -> !Objects.equals(compare(expression, metadata), 0);
+            case GT -> greaterThan(compare(expression, metadata), 0);
+            case GTE -> greaterThan(compare(expression, metadata), -1);
+            case LT -> lessThan(compare(expression, metadata), 0);
+            case LTE -> lessThan(compare(expression, metadata), 1);
+            case IN -> in(expression, metadata);
+            case NIN -> !in(expression, metadata);
+            default -> throw new IllegalArgumentException("Unsupported filter expression type: " + expression.type());
+        };
+    }
+
+    private static boolean greaterThan(Integer comparison, int bound) {
+        return comparison != null && comparison > bound;
+    }
+
+    private static boolean lessThan(Integer comparison, int bound) {
+        return comparison != null && comparison < bound;
+    }
+
+    /**
+     * metadata value compared to the expression's value, or null when the key is missing or the types differ
+     */
+    private static Integer compare(Filter.Expression expression, Map<String, Object> metadata) {
+        Object actual = metadata.get(key(expression));
+        Object expected = ((Filter.Value) expression.right()).value();
+        return compareValues(actual, expected);
+    }
+
+    private static boolean in(Filter.Expression expression, Map<String, Object> metadata) {
+        Object actual = metadata.get(key(expression));
+        Object expected = ((Filter.Value) expression.right()).value();
+        if (!(expected instanceof Collection<?> values)) {
+            return Objects.equals(compareValues(actual, expected), 0);
+        }
+        for (Object value : values) {
+            if (Objects.equals(compareValues(actual, value), 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String key(Filter.Expression expression) {
+        String key = ((Filter.Key) expression.left()).key();
+        // the text filter syntax allows quoted keys
+        if (key.length() > 1 && (key.startsWith("'") && key.endsWith("'") || key.startsWith("\"") && key.endsWith("\""))) {
+            return key.substring(1, key.length() - 1);
+        }
+        return key;
+    }
+
+    private static Integer compareValues(Object actual, Object expected) {
+        if (actual == null || expected == null) {
+            return null;
+        }
+        if (actual instanceof Number actualNumber && expected instanceof Number expectedNumber) {
+            return Double.compare(actualNumber.doubleValue(), expectedNumber.doubleValue());
+        }
+        if (actual instanceof Boolean || expected instanceof Boolean) {
+            return actual.toString().equalsIgnoreCase(expected.toString()) ? 0 : null;
+        }
+        if (actual instanceof Number || expected instanceof Number) {
+            return null;
+        }
+        return actual.toString().compareTo(expected.toString());
+    }
+}
@@ -0,0 +1,121 @@
+package com.veefin.common.vector;
+
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.WithPayloadSelectorFactory;
+import io.qdrant.client.WithVectorsSelectorFactory;
+import io.qdrant.client.grpc.Collections.PayloadSchemaType;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points.PointId;
+import io.qdrant.client.grpc.Points.RetrievedPoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static io.qdrant.client.PointIdFactory.id;
+import static io.qdrant.client.ValueFactory.value;
+
+/**
+ * Direct access to the Qdrant payload of stored points, for changes that don't need a new embedding.
+ * Spring AI's QdrantVectorStore keeps each metadata entry as a top-level payload key, so setting the payload
+ * keys here is the same as re-adding the document with new metadata, minus the embedding call.
+ * Also owns the payload indexes used by filtered searches.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+public class QdrantPayloadStore implements VectorPayloadStore {
+
+    private final QdrantClient qdrantClient;
+
+    @Value("${spring.ai.vectorstore.qdrant.collection-name}")
+    private String collectionName;
+
+    @Value("${vector.indexer.qdrant-timeout-ms:10000}")
+    private long timeoutMs;
+
+    /**
+     * Payload indexes for the fields searches filter on, so Qdrant doesn't scan every point's payload.
+     * Creating an index that already exists is a no-op.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createFilterIndexes() {
+        Map<String, PayloadSchemaType> indexes = Map.of(
+                VectorSearchFilters.DOCUMENT_TYPE, PayloadSchemaType.Keyword,
+                VectorSearchFilters.STATUS, PayloadSchemaType.Keyword,
+                VectorSearchFilters.CREATED_AT_EPOCH, PayloadSchemaType.Integer);
+        indexes.forEach((field, type) -> {
+            try {
+                qdrantClient.createPayloadIndexAsync(collectionName, field, type, null, true, null, null)
+                        .get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.warn("Could not create payload index on {}: {}", field, e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public Map<String, String> textHashes(Collection<String> ids) throws ExecutionException, InterruptedException, TimeoutException {
+        List<PointId> pointIds = ids.stream().map(uuid -> id(UUID.fromString(uuid))).toList();
+        List<RetrievedPoint> points = qdrantClient.retrieveAsync(collectionName, pointIds,
+                        WithPayloadSelectorFactory.include(List.of(VectorIndexWriter.TEXT_HASH)),
+                        WithVectorsSelectorFactory.enable(false), null)
+                .get(timeoutMs, TimeUnit.MILLISECONDS);
+
+        Map<String, String> hashes = new HashMap<>();
+        for (RetrievedPoint point : points) {
+            JsonWithInt.Value hash = point.getPayloadMap().get(VectorIndexWriter.TEXT_HASH);
+            if (hash != null && hash.hasStringValue()) {
+                hashes.put(point.getId().getUuid(), hash.getStringValue());
+            }
+        }
+        return hashes;
+    }
+
+    @Override
+    public void updatePayloads(List<Document> documents) throws ExecutionException, InterruptedException, TimeoutException {
+        List<Future<?>> updates = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            updates.add(qdrantClient.setPayloadAsync(collectionName, toPayload(document.getMetadata()),
+                    id(UUID.fromString(document.getId())), true, null, null));
+        }
+        for (Future<?> update : updates) {
+            update.get(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Map<String, JsonWithInt.Value> toPayload(Map<String, Object> metadata) {
+        Map<String, JsonWithInt.Value> payload = new HashMap<>();
+        metadata.forEach((key, field) -> {
+            if (field == null) {
+                return;
+            }
+            if (field instanceof Boolean flag) {
+                payload.put(key, value(flag));
+            } else if (field instanceof Integer || field instanceof Long) {
+                payload.put(key, value(((Number) field).longValue()));
+            } else if (field instanceof Number number) {
+                payload.put(key, value(number.doubleValue()));
+            } else {
+                payload.put(key, value(field.toString()));
+            }
+        });
+        return payload;
+    }
+}
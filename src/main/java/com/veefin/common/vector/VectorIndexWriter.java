@@ -0,0 +1,329 @@
+package com.veefin.common.vector;
+
+import com.veefin.common.cache.LlmResponseCache;
+import com.veefin.common.utility.ContentHash;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind vector indexer.
+ * Callers enqueue documents and return; a single flusher thread writes them to the vector store in batches,
+ * either when batch-size documents are pending or every flush-interval. One VectorStore.add() per batch means
+ * one (batched) embedding request and one Qdrant upsert instead of one of each per invoice or payment.
+ * Pending documents are keyed by id, so an invoice updated twice before the flush is embedded once.
+ * Each document carries a hash of its text; when the stored point already has the same hash (e.g. an invoice
+ * marked PAID) only its stored metadata is updated and the text is not sent to the embedding API again.
+ * A failed batch is retried with backoff; documents still failing go to a bounded dead-letter list.
+ * Cached LLM answers built from a document (its id) and list-style answers over its documentType are evicted once
+ * its batch is written: until then vector search still returns the old payload, so an answer cached in between
+ * would be stale. Answers about specific other documents stay cached.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VectorIndexWriter {
+
+    public static final String TEXT_HASH = "textHash";
+
+    private final VectorStore vectorStore;
+    private final VectorPayloadStore payloadStore;
+    private final MeterRegistry meterRegistry;
+    private final LlmResponseCache llmResponseCache;
+
+    @Value("${vector.indexer.batch-size:64}")
+    private int batchSize;
+
+    @Value("${vector.indexer.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${vector.indexer.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${vector.indexer.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${vector.indexer.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    @Value("${vector.indexer.dead-letter-capacity:1000}")
+    private int deadLetterCapacity;
+
+    private final Object lock = new Object();
+    // insertion-ordered; re-enqueueing an id replaces the pending version in place
+    private final LinkedHashMap<String, Document> pending = new LinkedHashMap<>();
+    private final LinkedHashMap<String, DeadLetter> deadLetters = new LinkedHashMap<>();
+    private boolean flushRequested;
+
+    private ScheduledExecutorService flusher;
+    private Timer flushTimer;
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("vector-indexer").daemon(true).factory());
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+
+        flushTimer = Timer.builder("vector.index.flush.time")
+                .description("Embedding + vector store upsert time per batch")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("vector.index.batch.size")
+                .description("Documents per vector store upsert")
+                .register(meterRegistry);
+        Gauge.builder("vector.index.pending", this, writer -> writer.pendingCount())
+                .description("Documents waiting to be embedded and upserted")
+                .register(meterRegistry);
+        Gauge.builder("vector.index.dead_letters", this, writer -> writer.getDeadLetters().size())
+                .description("Documents that failed every upsert attempt")
+                .register(meterRegistry);
+    }
+
+    public void enqueue(Document document) {
+        enqueueAll(List.of(document));
+    }
+
+    /**
+     * Queue documents for indexing. Blocks only while max-pending documents are already waiting,
+     * which throttles producers when the embedding API or Qdrant can't keep up.
+     */
+    public void enqueueAll(Collection<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            for (Document document : documents) {
+                try {
+                    while (pending.size() >= maxPending && !pending.containsKey(document.getId()) && !flusher.isShutdown()) {
+                        requestFlush();
+                        lock.wait(flushIntervalMs);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting to enqueue document " + document.getId(), e);
+                }
+                pending.put(document.getId(), withTextHash(document));
+            }
+            if (pending.size() >= batchSize) {
+                requestFlush();
+            }
+        }
+    }
+
+    /**
+     * Re-queue every dead-lettered document; a newer pending version of the same id takes precedence
+     *
+     * @return number of documents re-queued
+     */
+    public int retryDeadLetters() {
+        synchronized (lock) {
+            int count = 0;
+            for (DeadLetter deadLetter : deadLetters.values()) {
+                if (pending.putIfAbsent(deadLetter.document().getId(), deadLetter.document()) == null) {
+                    count++;
+                }
+            }
+            deadLetters.clear();
+            requestFlush();
+            return count;
+        }
+    }
+
+    public List<DeadLetter> getDeadLetters() {
+        synchronized (lock) {
+            return List.copyOf(deadLetters.values());
+        }
+    }
+
+    private int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    // caller holds the lock
+    private void requestFlush() {
+        if (flushRequested) {
+            return;
+        }
+        try {
+            flusher.execute(this::flush);
+            flushRequested = true;
+        } catch (RejectedExecutionException e) {
+            // shutting down: the final drain in shutdown() writes what is pending
+        }
+    }
+
+    /**
+     * Write pending documents batch by batch until fewer than a full batch is left
+     */
+    private void flush() {
+        try {
+            List<Document> batch;
+            do {
+                batch = takeBatch();
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } while (batch.size() == batchSize);
+        } catch (RuntimeException e) {
+            // never let an exception cancel the periodic flush
+            log.error("Vector index flush failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private List<Document> takeBatch() {
+        synchronized (lock) {
+            flushRequested = false;
+            List<Document> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            Iterator<Document> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            lock.notifyAll();
+            return batch;
+        }
+    }
+
+    private void write(List<Document> batch) {
+        Exception lastError = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                long startTime = System.nanoTime();
+                Map<String, String> storedHashes = payloadStore.textHashes(batch.stream().map(Document::getId).toList());
+                Map<Boolean, List<Document>> textUnchanged = batch.stream().collect(Collectors.partitioningBy(
+                        document -> document.getMetadata().get(TEXT_HASH).equals(storedHashes.get(document.getId()))));
+                List<Document> reEmbed = textUnchanged.get(false);
+                List<Document> payloadOnly = textUnchanged.get(true);
+
+                if (!reEmbed.isEmpty()) {
+                    vectorStore.add(reEmbed);
+                }
+                if (!payloadOnly.isEmpty()) {
+                    payloadStore.updatePayloads(payloadOnly);
+                }
+                flushTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                batchSizes.record(batch.size());
+                meterRegistry.counter("vector.index.documents", "result", "indexed").increment(reEmbed.size());
+                meterRegistry.counter("vector.index.documents", "result", "payload_only").increment(payloadOnly.size());
+                synchronized (lock) {
+                    batch.forEach(document -> deadLetters.remove(document.getId()));
+                }
+                invalidateCachedAnswers(batch);
+                log.debug("Indexed {} documents in the vector store ({} payload-only)", batch.size(), payloadOnly.size());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                lastError = e;
+                log.warn("Vector store upsert of {} documents failed (attempt {}/{}): {}",
+                        batch.size(), attempt, maxAttempts, e.getMessage());
+                if (attempt < maxAttempts && !sleep(retryBackoffMs << (attempt - 1))) {
+                    break;
+                }
+            }
+        }
+        deadLetter(batch, lastError, maxAttempts);
+    }
+
+    /**
+     * The flushed documents' ids, plus their documentType, which only list-style answers are tagged with
+     */
+    private void invalidateCachedAnswers(List<Document> batch) {
+        Set<String> sources = new HashSet<>();
+        for (Document document : batch) {
+            sources.add(document.getId());
+            Object documentType = document.getMetadata().get(VectorSearchFilters.DOCUMENT_TYPE);
+            if (documentType != null) {
+                sources.add(documentType.toString());
+            }
+        }
+        llmResponseCache.invalidate(sources.toArray(String[]::new));
+    }
+
+    private static Document withTextHash(Document document) {
+        Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+        metadata.put(TEXT_HASH, ContentHash.sha256Hex(document.getText() != null ? document.getText() : ""));
+        return Document.builder()
+                .id(document.getId())
+                .text(document.getText())
+                .metadata(metadata)
+                .build();
+    }
+
+    private void deadLetter(List<Document> batch, Exception error, int attempts) {
+        String message = error != null ? error.getMessage() : "interrupted";
+        meterRegistry.counter("vector.index.documents", "result", "failed").increment(batch.size());
+        synchronized (lock) {
+            for (Document document : batch) {
+                deadLetters.remove(document.getId());
+                deadLetters.put(document.getId(), new DeadLetter(document, message, attempts, LocalDateTime.now()));
+            }
+            Iterator<DeadLetter> oldest = deadLetters.values().iterator();
+            while (deadLetters.size() > deadLetterCapacity) {
+                log.error("Dropping dead-lettered document {}", oldest.next().document().getId());
+                oldest.remove();
+            }
+        }
+        log.error("Gave up indexing {} documents after {} attempts: {}", batch.size(), attempts, message);
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+                flusher.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flusher.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Drain what is still pending on the shutdown thread
+        int remaining = pendingCount();
+        if (remaining > 0) {
+            log.info("Flushing {} pending vector documents before shutdown", remaining);
+            flush();
+        }
+    }
+
+    public record DeadLetter(Document document, String error, int attempts, LocalDateTime failedAt) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.veefin.common.vector;
+
+import org.springframework.ai.document.Document;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metadata access to stored documents without going through the embedding model
+ */
+public interface VectorPayloadStore {
+
+    /**
+     * Text hash stored with each of the given documents; documents that don't exist (or predate the hash) are absent
+     */
+    Map<String, String> textHashes(Collection<String> ids) throws Exception;
+
+    /**
+     * Overwrite the metadata keys of existing documents with the given documents' metadata; vectors and text are untouched
+     */
+    void updatePayloads(List<Document> documents) throws Exception;
+}
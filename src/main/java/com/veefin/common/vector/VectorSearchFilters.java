@@ -0,0 +1,140 @@
+package com.veefin.common.vector;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Server-side filters for similarity searches over the collection shared by invoices and payments.
+ * Besides the document type, a status and a "created since" window are taken from the user's question
+ * ("paid invoices this month", "failed payments in the last 7 days"), so Qdrant only scores matching points.
+ */
+public final class VectorSearchFilters {
+
+    public static final String DOCUMENT_TYPE = "documentType";
+    public static final String STATUS = "status";
+    public static final String CREATED_AT_EPOCH = "createdAtEpoch";
+
+    private static final Pattern LAST_DAYS = Pattern.compile("\\b(?:last|past)\\s+(\\d{1,3})\\s+days?\\b");
+
+    private VectorSearchFilters() {
+    }
+
+    public static long epochSeconds(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    /**
+     * documentType, plus status / created-since when the question names exactly one of the given statuses
+     * or a date window
+     */
+    public static Filter.Expression forQuestion(String documentType, String question, Collection<String> statuses) {
+        Map<String, List<String>> storedStatuses = new LinkedHashMap<>();
+        statuses.forEach(status -> storedStatuses.put(status, List.of(status)));
+        return forQuestion(documentType, question, storedStatuses);
+    }
+
+    /**
+     * As above, for documents that store one of several values per status a question can name
+     * (payments keep the gateway status, e.g. SETTLED for SUCCESS): the named status matches any of its stored values
+     */
+    public static Filter.Expression forQuestion(String documentType, String question, Map<String, List<String>> storedStatuses) {
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        List<FilterExpressionBuilder.Op> conditions = new ArrayList<>();
+        conditions.add(filter.eq(DOCUMENT_TYPE, documentType));
+
+        String lowerQuestion = question != null ? question.toLowerCase(Locale.ROOT) : "";
+        String status = mentionedStatus(lowerQuestion, storedStatuses.keySet());
+        if (status != null) {
+            conditions.add(statusIn(filter, storedStatuses.get(status)));
+        }
+        LocalDateTime since = createdSince(lowerQuestion, LocalDate.now());
+        if (since != null) {
+            conditions.add(filter.gte(CREATED_AT_EPOCH, epochSeconds(since)));
+        }
+        return and(filter, conditions);
+    }
+
+    public static Filter.Expression documentType(String documentType, FilterExpressionBuilder.Op... conditions) {
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        List<FilterExpressionBuilder.Op> all = new ArrayList<>();
+        all.add(filter.eq(DOCUMENT_TYPE, documentType));
+        all.addAll(List.of(conditions));
+        return and(filter, all);
+    }
+
+    /**
+     * status equal to the single value, or IN the values
+     */
+    public static FilterExpressionBuilder.Op statusIn(FilterExpressionBuilder filter, List<String> values) {
+        return values.size() == 1 ? filter.eq(STATUS, values.get(0)) : filter.in(STATUS, values.toArray());
+    }
+
+    private static Filter.Expression and(FilterExpressionBuilder filter, List<FilterExpressionBuilder.Op> conditions) {
+        FilterExpressionBuilder.Op expression = conditions.get(0);
+        for (int i = 1; i < conditions.size(); i++) {
+            expression = filter.and(expression, conditions.get(i));
+        }
+        return expression.build();
+    }
+
+    /**
+     * The single status the question refers to ("failed" / "failures" -> FAILED, "successful" -> SUCCESS),
+     * or null when it names none or several
+     */
+    public static String mentionedStatus(String lowerQuestion, Collection<String> statuses) {
+        String found = null;
+        for (String status : statuses) {
+            String stem = status.toLowerCase(Locale.ROOT).replaceFirst("ed$", "");
+            if (Pattern.compile("\\b" + stem + "\\w*").matcher(lowerQuestion).find()) {
+                if (found != null) {
+                    return null;
+                }
+                found = status;
+            }
+        }
+        return found;
+    }
+
+    static LocalDateTime createdSince(String lowerQuestion, LocalDate today) {
+        Matcher lastDays = LAST_DAYS.matcher(lowerQuestion);
+        if (lastDays.find()) {
+            return today.minusDays(Long.parseLong(lastDays.group(1))).atStartOfDay();
+        }
+        if (lowerQuestion.contains("today")) {
+            return today.atStartOfDay();
+        }
+        if (lowerQuestion.contains("yesterday")) {
+            return today.minusDays(1).atStartOfDay();
+        }
+        if (lowerQuestion.contains("this week")) {
+            return today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+        }
+        if (lowerQuestion.contains("last week")) {
+            return today.minusWeeks(1).atStartOfDay();
+        }
+        if (lowerQuestion.contains("this month")) {
+            return today.withDayOfMonth(1).atStartOfDay();
+        }
+        if (lowerQuestion.contains("last month")) {
+            return today.minusMonths(1).atStartOfDay();
+        }
+        if (lowerQuestion.contains("this year")) {
+            return today.withDayOfYear(1).atStartOfDay();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,292 @@
+package com.veefin.common.vector.local;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over the slots of a {@link MappedVectorStorage}.
+ * Node ids are storage slots; every slot is a node, deleted ones included (they are traversed, never returned).
+ * Searches take an accept predicate, so metadata filters are applied while walking the graph rather than
+ * by over-fetching and filtering afterwards.
+ * Writes must be serialized by the caller; searches may run concurrently with each other.
+ */
+final class HnswGraph {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+
+    record Scored(int node, float score) {
+    }
+
+    private static final Comparator<Scored> BEST_FIRST = Comparator.comparingDouble(Scored::score).reversed();
+    private static final Comparator<Scored> WORST_FIRST = Comparator.comparingDouble(Scored::score);
+
+    private final MappedVectorStorage vectors;
+    private final int maxConnections;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    // links.get(node)[level] = {count, neighbour...}
+    private final List<int[][]> links = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswGraph(MappedVectorStorage vectors, int maxConnections, int efConstruction) {
+        this.vectors = vectors;
+        this.maxConnections = maxConnections;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(maxConnections);
+    }
+
+    int size() {
+        return links.size();
+    }
+
+    /**
+     * Link the next storage slot into the graph
+     */
+    void add() {
+        int node = links.size();
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[capacity(l) + 1];
+        }
+        links.add(nodeLinks);
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        float[] vector = vectors.get(node);
+        int nearest = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            nearest = greedyClosest(vector, nearest, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Scored> candidates = searchLayer(vector, nearest, efConstruction, l, candidate -> true);
+            List<Scored> neighbours = selectNeighbours(candidates, maxConnections);
+            for (Scored neighbour : neighbours) {
+                connect(node, neighbour.node(), l);
+                connect(neighbour.node(), node, l);
+            }
+            nearest = candidates.get(0).node();
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * The k best accepted nodes for a normalized query, best first
+     */
+    List<Scored> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int nearest = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            nearest = greedyClosest(query, nearest, l);
+        }
+        List<Scored> found = searchLayer(query, nearest, Math.max(ef, k), 0, accept);
+        return found.size() > k ? found.subList(0, k) : found;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentScore = vectors.dot(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links.get(current)[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float score = vectors.dot(query, neighbours[i]);
+                if (score > currentScore) {
+                    current = neighbours[i];
+                    currentScore = score;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first walk of one layer. Every node is expanded, but only accepted ones enter the result set, so
+     * a selective filter widens the walk instead of returning fewer than ef results.
+     */
+    private List<Scored> searchLayer(float[] query, int start, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(links.size());
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Scored> results = new PriorityQueue<>(WORST_FIRST);
+
+        Scored first = new Scored(start, vectors.dot(query, start));
+        visited.set(start);
+        candidates.add(first);
+        if (accept.test(start)) {
+            results.add(first);
+        }
+        while (!candidates.isEmpty()) {
+            Scored candidate = candidates.poll();
+            if (results.size() >= ef && candidate.score() < results.peek().score()) {
+                break;
+            }
+            int[] neighbours = links.get(candidate.node())[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float score = vectors.dot(query, neighbour);
+                if (results.size() < ef || score > results.peek().score()) {
+                    candidates.add(new Scored(neighbour, score));
+                    if (accept.test(neighbour)) {
+                        results.add(new Scored(neighbour, score));
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Scored> sorted = new ArrayList<>(results);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * HNSW neighbour heuristic: keep a candidate only if it is closer to the new node than to any neighbour
+     * already kept (spreads links in different directions), then top up with the closest rejected ones
+     */
+    private List<Scored> selectNeighbours(List<Scored> candidates, int max) {
+        List<Scored> selected = new ArrayList<>(max);
+        List<Scored> rejected = new ArrayList<>();
+        for (Scored candidate : candidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean diverse = true;
+            float[] candidateVector = selected.isEmpty() ? null : vectors.get(candidate.node());
+            for (Scored kept : selected) {
+                if (vectors.dot(candidateVector, kept.node()) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : rejected).add(candidate);
+        }
+        for (int i = 0; i < rejected.size() && selected.size() < max; i++) {
+            selected.add(rejected.get(i));
+        }
+        return selected;
+    }
+
+    private void connect(int node, int neighbour, int level) {
+        int[] nodeLinks = links.get(node)[level];
+        int count = nodeLinks[0];
+        for (int i = 1; i <= count; i++) {
+            if (nodeLinks[i] == neighbour) {
+                return;
+            }
+        }
+        if (count < nodeLinks.length - 1) {
+            nodeLinks[count + 1] = neighbour;
+            nodeLinks[0] = count + 1;
+            return;
+        }
+        // Full: the new link replaces the farthest one, if it is closer. (selectNeighbours would keep the same
+        // set here, since it tops up to capacity with rejected links anyway, at quadratic cost.)
+        float[] vector = vectors.get(node);
+        int farthest = 0;
+        float farthestScore = vectors.dot(vector, neighbour);
+        for (int i = 1; i <= count; i++) {
+            float score = vectors.dot(vector, nodeLinks[i]);
+            if (score < farthestScore) {
+                farthest = i;
+                farthestScore = score;
+            }
+        }
+        if (farthest > 0) {
+            nodeLinks[farthest] = neighbour;
+        }
+    }
+
+    private int capacity(int level) {
+        return level == 0 ? maxConnections * 2 : maxConnections;
+    }
+
+    void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(maxConnections);
+            out.writeInt(links.size());
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int[][] nodeLinks : links) {
+                out.writeInt(nodeLinks.length);
+                for (int[] levelLinks : nodeLinks) {
+                    out.writeInt(levelLinks[0]);
+                    for (int i = 1; i <= levelLinks[0]; i++) {
+                        out.writeInt(levelLinks[i]);
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a saved graph; false (graph left empty) when the file is missing, built with other settings or
+     * covers more nodes than the storage holds
+     */
+    boolean load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != maxConnections) {
+                return false;
+            }
+            int nodes = in.readInt();
+            if (nodes > vectors.size()) {
+                return false;
+            }
+            int savedEntryPoint = in.readInt();
+            int savedMaxLevel = in.readInt();
+            List<int[][]> loaded = new ArrayList<>(nodes);
+            for (int node = 0; node < nodes; node++) {
+                int[][] nodeLinks = new int[in.readInt()][];
+                for (int l = 0; l < nodeLinks.length; l++) {
+                    nodeLinks[l] = new int[capacity(l) + 1];
+                    nodeLinks[l][0] = in.readInt();
+                    for (int i = 1; i <= nodeLinks[l][0]; i++) {
+                        nodeLinks[l][i] = in.readInt();
+                    }
+                }
+                loaded.add(nodeLinks);
+            }
+            links.clear();
+            links.addAll(loaded);
+            entryPoint = savedEntryPoint;
+            maxLevel = savedMaxLevel;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.veefin.common.vector.local;
+
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.repository.InvoiceRepository;
+import com.veefin.invoice.service.InvoiceVectorService;
+import com.veefin.payment_gateway.entity.model.PaymentTransaction;
+import com.veefin.payment_gateway.repository.PaymentRepository;
+import com.veefin.payment_gateway.service.TransactionVectorStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings the local vector index in line with invoice_data and payment_transactions after startup.
+ * Every row is queued on the vector indexer, which embeds only documents that are missing or whose text changed
+ * and merely refreshes metadata for the rest; documents whose row is gone are deleted.
+ * Runs in the background, so the application serves requests (against the persisted index) meanwhile.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "vector.store", havingValue = "local")
+public class LocalVectorIndexLoader {
+
+    private static final int PAGE_SIZE = 500;
+
+    private final LocalVectorStore localVectorStore;
+    private final InvoiceRepository invoiceRepository;
+    private final PaymentRepository paymentRepository;
+    private final InvoiceVectorService invoiceVectorService;
+    private final TransactionVectorStore transactionVectorStore;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        Thread.ofPlatform().name("local-vector-loader").daemon(true).start(this::syncWithDatabase);
+    }
+
+    private void syncWithDatabase() {
+        long startTime = System.nanoTime();
+        // Snapshot: documents indexed after this point are never considered stale here
+        Set<String> stale = localVectorStore.ids();
+        try {
+            long invoices = 0;
+            Page<InvoiceData> invoicePage;
+            int page = 0;
+            do {
+                invoicePage = invoiceRepository.findAll(PageRequest.of(page++, PAGE_SIZE, Sort.by("id")));
+                try {
+                    invoiceVectorService.storeInvoicesInVectorDB(invoicePage.getContent());
+                } catch (Exception e) {
+                    // the rows still exist, so their documents are kept; the next start retries them
+                    log.warn("Failed to queue invoice page {} for the local vector index: {}", page - 1, e.getMessage());
+                }
+                invoicePage.forEach(invoice -> stale.remove(invoice.getUuid()));
+                invoices += invoicePage.getNumberOfElements();
+            } while (invoicePage.hasNext());
+
+            long payments = 0;
+            Page<PaymentTransaction> paymentPage;
+            page = 0;
+            do {
+                paymentPage = paymentRepository.findAll(PageRequest.of(page++, PAGE_SIZE, Sort.by("id")));
+                paymentPage.forEach(payment -> {
+                    transactionVectorStore.storePaymentInVectorDB(payment);
+                    stale.remove(payment.getUuid());
+                });
+                payments += paymentPage.getNumberOfElements();
+            } while (paymentPage.hasNext());
+
+            localVectorStore.delete(new ArrayList<>(stale));
+            log.info("Local vector index reconciled with {} invoices and {} payments ({} stale documents removed) in {} ms",
+                    invoices, payments, stale.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } catch (Exception e) {
+            log.error("Local vector index reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+}
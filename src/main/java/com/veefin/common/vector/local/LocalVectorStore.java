@@ -0,0 +1,463 @@
+package com.veefin.common.vector.local;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veefin.common.vector.MetadataFilter;
+import com.veefin.common.vector.VectorIndexWriter;
+import com.veefin.common.vector.VectorPayloadStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * In-process VectorStore: vectors in a memory-mapped file (float32 or int8), an HNSW graph for search and the
+ * documents' text + metadata in memory, so a RAG search costs one query embedding and no network hop to Qdrant.
+ * Everything persists under the data path:
+ * - vectors.bin: append-only vector slots; a document update takes a new slot and leaves the old one dead
+ * - documents.log: JSON lines (put / meta / del) replayed on startup
+ * - graph.bin: the HNSW links, saved on shutdown; slots added after the last save are re-linked on startup
+ * Dead slots are compacted away on startup once they pass the configured share of the file.
+ * Searches run concurrently; writes (one batch at a time from VectorIndexWriter) take the write lock.
+ */
+@Slf4j
+public class LocalVectorStore implements VectorStore, VectorPayloadStore, Closeable {
+
+    private static final String VECTORS_FILE = "vectors.bin";
+    private static final String GRAPH_FILE = "graph.bin";
+    private static final String DOCUMENTS_FILE = "documents.log";
+
+    public record Settings(String dataPath, String quantization, int maxConnections, int efConstruction, int efSearch,
+                           double compactionThreshold) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record LogEntry(String op, String id, Integer slot, String text, Map<String, Object> metadata) {
+    }
+
+    private record StoredDocument(String id, String text, Map<String, Object> metadata) {
+    }
+
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final Settings settings;
+    private final Path dataPath;
+    private final MappedVectorStorage.Encoding encoding;
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Timer searchTimer;
+
+    // by slot; null = deleted or superseded
+    private final List<StoredDocument> documents = new ArrayList<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private MappedVectorStorage vectors; // created with the first document, once the dimension is known
+    private HnswGraph graph;
+    private BufferedWriter documentLog;
+    private long logRecords;
+
+    public LocalVectorStore(EmbeddingModel embeddingModel, ObjectMapper objectMapper, MeterRegistry meterRegistry, Settings settings) {
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.settings = settings;
+        this.dataPath = Path.of(settings.dataPath());
+        this.encoding = MappedVectorStorage.Encoding.valueOf(settings.quantization().toUpperCase(Locale.ROOT));
+        this.searchTimer = Timer.builder("vector.local.search.time")
+                .description("Local HNSW search time, excluding the query embedding")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("vector.local.documents", this, LocalVectorStore::size)
+                .description("Documents in the local vector index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open the index files under the data path (or start empty)
+     */
+    public void load() throws IOException {
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(dataPath);
+            long startTime = System.nanoTime();
+            vectors = MappedVectorStorage.open(dataPath.resolve(VECTORS_FILE), encoding);
+            if (vectors == null) {
+                if (Files.exists(dataPath.resolve(VECTORS_FILE))) {
+                    log.warn("Local vector index at {} is unreadable or not {}; starting empty", dataPath, encoding);
+                }
+                Files.deleteIfExists(dataPath.resolve(VECTORS_FILE));
+                Files.deleteIfExists(dataPath.resolve(GRAPH_FILE));
+                Files.deleteIfExists(dataPath.resolve(DOCUMENTS_FILE));
+            } else {
+                replayLog();
+                graph = new HnswGraph(vectors, settings.maxConnections(), settings.efConstruction());
+                if (!graph.load(dataPath.resolve(GRAPH_FILE))) {
+                    graph = new HnswGraph(vectors, settings.maxConnections(), settings.efConstruction());
+                }
+                int linked = graph.size();
+                while (graph.size() < vectors.size()) {
+                    graph.add();
+                }
+                if (vectors.size() - slots.size() > vectors.size() * settings.compactionThreshold()) {
+                    compact();
+                } else if (logRecords > 2L * slots.size() + 1000) {
+                    rewriteLog();
+                }
+                log.info("Local vector index loaded: {} documents, {} slots ({} re-linked) in {} ms",
+                        slots.size(), vectors.size(), vectors.size() - linked,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            }
+            documentLog = Files.newBufferedWriter(dataPath.resolve(DOCUMENTS_FILE), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(List<Document> documentsToAdd) {
+        if (documentsToAdd.isEmpty()) {
+            return;
+        }
+        // Embed outside the lock; searches keep running meanwhile
+        List<float[]> embeddings = embeddingModel.embed(documentsToAdd, EmbeddingOptionsBuilder.builder().build(), batchingStrategy);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documentsToAdd.size(); i++) {
+                Document document = documentsToAdd.get(i);
+                float[] embedding = embeddings.get(i);
+                if (vectors == null) {
+                    vectors = MappedVectorStorage.create(dataPath.resolve(VECTORS_FILE), embedding.length, encoding);
+                    graph = new HnswGraph(vectors, settings.maxConnections(), settings.efConstruction());
+                }
+                int slot = vectors.append(embedding);
+                Map<String, Object> metadata = normalize(document.getMetadata());
+                Integer previous = slots.put(document.getId(), slot);
+                if (previous != null) {
+                    documents.set(previous, null);
+                }
+                documents.add(new StoredDocument(document.getId(), document.getText(), metadata));
+                graph.add();
+                appendLog(new LogEntry("put", document.getId(), slot, document.getText(), metadata));
+            }
+            documentLog.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write local vector index", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer slot = slots.remove(id);
+                if (slot != null) {
+                    documents.set(slot, null);
+                    appendLog(new LogEntry("del", id, null, null, null));
+                }
+            }
+            if (documentLog != null) {
+                documentLog.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write local vector index", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        List<String> matching = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (StoredDocument document : documents) {
+                if (document != null && MetadataFilter.matches(filterExpression, document.metadata())) {
+                    matching.add(document.id());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(matching);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = MappedVectorStorage.normalize(embeddingModel.embed(request.getQuery()));
+        long startTime = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            if (graph == null || vectors.dimension() != query.length) {
+                return List.of();
+            }
+            Filter.Expression filter = request.getFilterExpression();
+            IntPredicate accept = slot -> {
+                StoredDocument document = documents.get(slot);
+                return document != null && (filter == null || MetadataFilter.matches(filter, document.metadata()));
+            };
+            List<Document> results = new ArrayList<>();
+            for (HnswGraph.Scored hit : graph.search(query, request.getTopK(), settings.efSearch(), accept)) {
+                if (hit.score() < request.getSimilarityThreshold()) {
+                    break;
+                }
+                StoredDocument document = documents.get(hit.node());
+                results.add(Document.builder()
+                        .id(document.id())
+                        .text(document.text())
+                        .metadata(new HashMap<>(document.metadata()))
+                        .score((double) hit.score())
+                        .build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public Map<String, String> textHashes(Collection<String> ids) {
+        lock.readLock().lock();
+        try {
+            Map<String, String> hashes = new HashMap<>();
+            for (String id : ids) {
+                Integer slot = slots.get(id);
+                Object hash = slot != null ? documents.get(slot).metadata().get(VectorIndexWriter.TEXT_HASH) : null;
+                if (hash != null) {
+                    hashes.put(id, hash.toString());
+                }
+            }
+            return hashes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePayloads(List<Document> documentsToUpdate) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (Document document : documentsToUpdate) {
+                Integer slot = slots.get(document.getId());
+                if (slot == null) {
+                    continue;
+                }
+                Map<String, Object> stored = documents.get(slot).metadata();
+                Map<String, Object> changes = normalize(document.getMetadata());
+                Map<String, Object> merged = new HashMap<>(stored);
+                merged.putAll(changes);
+                // Unchanged metadata (e.g. the startup reconciliation) writes nothing
+                if (!merged.equals(stored)) {
+                    stored.putAll(changes);
+                    appendLog(new LogEntry("meta", document.getId(), null, null, changes));
+                }
+            }
+            documentLog.flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of every document currently in the index
+     */
+    public Set<String> ids() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(slots.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void replayLog() throws IOException {
+        Path file = dataPath.resolve(DOCUMENTS_FILE);
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            documents.add(null);
+        }
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LogEntry entry;
+                try {
+                    entry = objectMapper.readValue(line, LogEntry.class);
+                } catch (IOException e) {
+                    // a torn last line after a crash
+                    log.warn("Skipping unreadable local vector index record: {}", e.getMessage());
+                    continue;
+                }
+                logRecords++;
+                apply(entry);
+            }
+        }
+    }
+
+    private void apply(LogEntry entry) {
+        switch (entry.op()) {
+            case "put" -> {
+                if (entry.slot() >= vectors.size()) {
+                    return; // vector never made it to disk
+                }
+                Integer previous = slots.put(entry.id(), entry.slot());
+                if (previous != null && !previous.equals(entry.slot())) {
+                    documents.set(previous, null);
+                }
+                documents.set(entry.slot(), new StoredDocument(entry.id(), entry.text(), normalize(entry.metadata())));
+            }
+            case "meta" -> {
+                Integer slot = slots.get(entry.id());
+                if (slot != null) {
+                    documents.get(slot).metadata().putAll(normalize(entry.metadata()));
+                }
+            }
+            case "del" -> {
+                Integer slot = slots.remove(entry.id());
+                if (slot != null) {
+                    documents.set(slot, null);
+                }
+            }
+            default -> log.warn("Unknown local vector index record type {}", entry.op());
+        }
+    }
+
+    /**
+     * Copy live vectors into a fresh file, rebuild the graph over them and rewrite the document log
+     */
+    private void compact() throws IOException {
+        long startTime = System.nanoTime();
+        int deadSlots = vectors.size() - slots.size();
+        Path compactedFile = dataPath.resolve(VECTORS_FILE + ".tmp");
+        List<StoredDocument> live = new ArrayList<>(slots.size());
+        try (MappedVectorStorage compacted = MappedVectorStorage.create(compactedFile, vectors.dimension(), encoding)) {
+            for (int slot = 0; slot < documents.size(); slot++) {
+                if (documents.get(slot) != null) {
+                    compacted.append(vectors.get(slot));
+                    live.add(documents.get(slot));
+                }
+            }
+        }
+        vectors.close();
+        Files.move(compactedFile, dataPath.resolve(VECTORS_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(dataPath.resolve(GRAPH_FILE));
+        vectors = MappedVectorStorage.open(dataPath.resolve(VECTORS_FILE), encoding);
+
+        documents.clear();
+        slots.clear();
+        for (StoredDocument document : live) {
+            slots.put(document.id(), documents.size());
+            documents.add(document);
+        }
+        graph = new HnswGraph(vectors, settings.maxConnections(), settings.efConstruction());
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            graph.add();
+        }
+        graph.save(dataPath.resolve(GRAPH_FILE));
+        rewriteLog();
+        log.info("Compacted local vector index: dropped {} dead slots, rebuilt graph over {} in {} ms",
+                deadSlots, vectors.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+
+    private void rewriteLog() throws IOException {
+        Path rewritten = dataPath.resolve(DOCUMENTS_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(rewritten, StandardCharsets.UTF_8)) {
+            for (int slot = 0; slot < documents.size(); slot++) {
+                StoredDocument document = documents.get(slot);
+                if (document != null) {
+                    writer.write(objectMapper.writeValueAsString(
+                            new LogEntry("put", document.id(), slot, document.text(), document.metadata())));
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(rewritten, dataPath.resolve(DOCUMENTS_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logRecords = slots.size();
+    }
+
+    private void appendLog(LogEntry entry) throws IOException {
+        documentLog.write(objectMapper.writeValueAsString(entry));
+        documentLog.newLine();
+        logRecords++;
+    }
+
+    /**
+     * Box numbers the way they read back from JSON, so stored and incoming metadata compare equal
+     */
+    private static Map<String, Object> normalize(Map<String, Object> metadata) {
+        Map<String, Object> normalized = new HashMap<>();
+        if (metadata == null) {
+            return normalized;
+        }
+        metadata.forEach((key, value) -> {
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                normalized.put(key, ((Number) value).longValue());
+            } else if (value instanceof Float || value instanceof Double) {
+                normalized.put(key, ((Number) value).doubleValue());
+            } else if (value != null) {
+                normalized.put(key, value);
+            }
+        });
+        return normalized;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (documentLog != null) {
+                documentLog.close();
+            }
+            if (graph != null) {
+                graph.save(dataPath.resolve(GRAPH_FILE));
+            }
+            if (vectors != null) {
+                vectors.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.veefin.common.vector.local;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only vector file, memory-mapped so vectors live off-heap in the page cache.
+ * Vectors are L2-normalized on the way in, so a dot product is the cosine similarity. They are stored as
+ * float32, or as int8 (component * 127) for a quarter of the size at a small loss of precision.
+ * The file is mapped in fixed-size segments, since a single mapping is limited to 2 GB.
+ * Not thread-safe for writes; LocalVectorStore serializes them.
+ */
+final class MappedVectorStorage implements Closeable {
+
+    enum Encoding {FLOAT32, INT8}
+
+    private static final int MAGIC = 0x56494458; // "VIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 16;
+    private static final long SEGMENT_TARGET_BYTES = 64L * 1024 * 1024;
+    private static final float INT8_SCALE = 127f;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final int dimension;
+    private final Encoding encoding;
+    private final int bytesPerVector;
+    private final int vectorsPerSegment;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<FloatBuffer> floatSegments = new ArrayList<>();
+    private final ThreadLocal<float[]> floatScratch;
+    private final ThreadLocal<byte[]> byteScratch;
+    private int count;
+
+    private MappedVectorStorage(FileChannel channel, int dimension, Encoding encoding, boolean create) throws IOException {
+        this.channel = channel;
+        this.dimension = dimension;
+        this.encoding = encoding;
+        this.bytesPerVector = encoding == Encoding.FLOAT32 ? dimension * Float.BYTES : dimension;
+        this.vectorsPerSegment = (int) Math.max(1, SEGMENT_TARGET_BYTES / bytesPerVector);
+        this.floatScratch = ThreadLocal.withInitial(() -> new float[dimension]);
+        this.byteScratch = ThreadLocal.withInitial(() -> new byte[dimension]);
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (create) {
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, dimension).putInt(12, encoding.ordinal()).putInt(COUNT_OFFSET, 0);
+        }
+        this.count = header.getInt(COUNT_OFFSET);
+        for (int segment = 0; segment * (long) vectorsPerSegment < count; segment++) {
+            mapSegment(segment);
+        }
+    }
+
+    static MappedVectorStorage create(Path file, int dimension, Encoding encoding) throws IOException {
+        Files.deleteIfExists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new MappedVectorStorage(channel, dimension, encoding, true);
+    }
+
+    /**
+     * Open an existing file; null when it is missing, unreadable or written with another encoding
+     */
+    static MappedVectorStorage open(Path file, Encoding expectedEncoding) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(12) != expectedEncoding.ordinal()) {
+            channel.close();
+            return null;
+        }
+        return new MappedVectorStorage(channel, header.getInt(8), expectedEncoding, false);
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Normalize and append a vector; returns its slot
+     */
+    int append(float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a " + dimension + "-dimensional vector, got " + vector.length);
+        }
+        int slot = count;
+        int segment = slot / vectorsPerSegment;
+        if (segment == segments.size()) {
+            mapSegment(segment);
+        }
+        float[] normalized = normalize(vector);
+        int offset = (slot % vectorsPerSegment) * bytesPerVector;
+        if (encoding == Encoding.FLOAT32) {
+            floatSegments.get(segment).put(offset / Float.BYTES, normalized);
+        } else {
+            MappedByteBuffer buffer = segments.get(segment);
+            for (int i = 0; i < dimension; i++) {
+                buffer.put(offset + i, (byte) Math.round(normalized[i] * INT8_SCALE));
+            }
+        }
+        count++;
+        header.putInt(COUNT_OFFSET, count);
+        return slot;
+    }
+
+    /**
+     * Cosine similarity between a normalized query and a stored vector
+     */
+    float dot(float[] query, int slot) {
+        int segment = slot / vectorsPerSegment;
+        int offset = (slot % vectorsPerSegment) * bytesPerVector;
+        if (encoding == Encoding.FLOAT32) {
+            // bulk copy into a scratch array: one memcpy instead of a bounds-checked buffer read per component
+            float[] vector = floatScratch.get();
+            floatSegments.get(segment).get(offset / Float.BYTES, vector, 0, dimension);
+            return dot(query, vector);
+        }
+        byte[] vector = byteScratch.get();
+        segments.get(segment).get(offset, vector, 0, dimension);
+        float sum0 = 0;
+        float sum1 = 0;
+        int i = 0;
+        for (; i + 1 < dimension; i += 2) {
+            sum0 += query[i] * vector[i];
+            sum1 += query[i + 1] * vector[i + 1];
+        }
+        for (; i < dimension; i++) {
+            sum0 += query[i] * vector[i];
+        }
+        return (sum0 + sum1) / INT8_SCALE;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int length = a.length;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[i] * b[i];
+            sum1 += a[i + 1] * b[i + 1];
+            sum2 += a[i + 2] * b[i + 2];
+            sum3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[i] * b[i];
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    float[] get(int slot) {
+        int segment = slot / vectorsPerSegment;
+        int offset = (slot % vectorsPerSegment) * bytesPerVector;
+        float[] vector = new float[dimension];
+        if (encoding == Encoding.FLOAT32) {
+            floatSegments.get(segment).get(offset / Float.BYTES, vector);
+        } else {
+            MappedByteBuffer buffer = segments.get(segment);
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = buffer.get(offset + i) / INT8_SCALE;
+            }
+        }
+        return vector;
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float component : vector) {
+            norm += component * component;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    void force() {
+        header.force();
+        segments.forEach(MappedByteBuffer::force);
+    }
+
+    private void mapSegment(int segment) throws IOException {
+        long segmentBytes = (long) vectorsPerSegment * bytesPerVector;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + segment * segmentBytes, segmentBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        segments.add(buffer);
+        floatSegments.add(encoding == Encoding.FLOAT32 ? buffer.asFloatBuffer() : null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
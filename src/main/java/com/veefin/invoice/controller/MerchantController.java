@@ -2,10 +2,17 @@ package com.veefin.invoice.controller;
 
 
 import com.veefin.common.dto.ResponseDTO;
+import com.veefin.invoice.dto.IngestionJobDTO;
+import com.veefin.invoice.dto.InvoiceFieldsConfirmation;
 import com.veefin.invoice.dto.InvoiceListResponseDTO;
+import com.veefin.invoice.dto.UploadResult;
 import com.veefin.invoice.entity.FileMetadata;
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.service.BulkIngestionService;
 import com.veefin.invoice.service.FileService;
 import com.veefin.invoice.service.InvoiceDataService;
+import com.veefin.invoice.service.MerchantTemplateService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -14,6 +21,9 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/merchant")
@@ -23,15 +33,90 @@ public class MerchantController {
 
     private final FileService invoiceFileService;
     private final InvoiceDataService invoiceDataService;
+    private final BulkIngestionService bulkIngestionService;
+    private final MerchantTemplateService merchantTemplateService;
 
     @PostMapping(value = "/upload-invoice")
     public ResponseEntity<ResponseDTO> uploadInvoice(@RequestParam("file") MultipartFile file) throws IOException {
-            invoiceFileService.uploadInvoice(file);
-            return ResponseEntity.ok()
-                    .body(new ResponseDTO(HttpStatus.OK.value(), "Invoice uploaded successfully"));
+            UploadResult result = invoiceFileService.uploadInvoice(file);
+            FileMetadata savedFile = result.fileMetadata();
+            if (result.duplicate()) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("uuid", savedFile.getUuid());
+                data.put("status", savedFile.getStatus());
+                data.put("invoiceUuid", savedFile.getInvoiceUuid());
+                return ResponseEntity.ok()
+                        .body(new ResponseDTO(HttpStatus.OK, "Invoice already uploaded", data));
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(new ResponseDTO(HttpStatus.ACCEPTED, "Invoice accepted for processing",
+                            Map.of("uuid", savedFile.getUuid(), "status", savedFile.getStatus())));
 
     }
 
+    /**
+     * Processing status of an uploaded invoice file (UPLOADED, PROCESSED or FAILED)
+     */
+    @GetMapping("/upload-invoice/{uuid}")
+    public ResponseEntity<ResponseDTO> getUploadStatus(@PathVariable String uuid) {
+        FileMetadata fileMetadata = invoiceFileService.getFileStatus(uuid);
+        return ResponseEntity.ok()
+                .body(new ResponseDTO(HttpStatus.OK, "Upload status fetched successfully",
+                        Map.of("uuid", fileMetadata.getUuid(), "status", fileMetadata.getStatus())));
+    }
+
+    /**
+     * Bulk upload as multipart: any number of "files" parts, each a PDF or a ZIP of PDFs.
+     * Note the servlet container spools multipart parts to disk before this runs; for very large archives
+     * prefer the application/zip variant below, which is read straight from the request body.
+     */
+    @PostMapping(value = "/bulk-upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ResponseDTO> bulkUpload(@RequestParam("files") List<MultipartFile> files) {
+        IngestionJobDTO job = bulkIngestionService.ingestFiles(files);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(new ResponseDTO(HttpStatus.ACCEPTED, "Bulk upload accepted for processing", job));
+    }
+
+    /**
+     * Bulk upload of a ZIP archive sent as the raw request body, streamed entry by entry
+     */
+    @PostMapping(value = "/bulk-upload", consumes = {"application/zip", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<ResponseDTO> bulkUploadArchive(HttpServletRequest request,
+                                                         @RequestParam(defaultValue = "archive.zip") String fileName) throws IOException {
+        IngestionJobDTO job = bulkIngestionService.ingestArchive(request.getInputStream(), fileName);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(new ResponseDTO(HttpStatus.ACCEPTED, "Bulk upload accepted for processing", job));
+    }
+
+    /**
+     * Progress and throughput of a bulk upload job
+     */
+    @GetMapping("/bulk-upload/{jobId}")
+    public ResponseEntity<ResponseDTO> getBulkUploadJob(@PathVariable String jobId) {
+        return ResponseEntity.ok()
+                .body(new ResponseDTO(HttpStatus.OK, "Bulk upload job fetched successfully", bulkIngestionService.getJob(jobId)));
+    }
+
+    /**
+     * Confirm or correct the extracted fields of an invoice; the merchant's layout is learned from the result
+     */
+    @PutMapping("/invoices/{uuid}/fields")
+    public ResponseEntity<ResponseDTO> confirmInvoiceFields(@PathVariable String uuid,
+                                                            @RequestBody InvoiceFieldsConfirmation confirmation) {
+        InvoiceData invoice = invoiceDataService.confirmInvoiceFields(uuid, confirmation);
+        return ResponseEntity.ok()
+                .body(new ResponseDTO(HttpStatus.OK, "Invoice fields confirmed", invoice.getFieldMap()));
+    }
+
+    /**
+     * Learned merchant templates with their hit counts
+     */
+    @GetMapping("/templates")
+    public ResponseEntity<ResponseDTO> getTemplates() {
+        return ResponseEntity.ok()
+                .body(new ResponseDTO(HttpStatus.OK, "Templates fetched successfully", merchantTemplateService.getTemplates()));
+    }
+
     /**
      * Get paginated list of invoices with filtering, searching, and sorting
      *
@@ -0,0 +1,27 @@
+package com.veefin.invoice.dto;
+
+import com.veefin.invoice.enums.IngestionJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestionJobDTO {
+
+    private String jobId;
+    private String sourceName;
+    private IngestionJobStatus status;
+    private int totalFiles;
+    private int processedFiles;
+    private int failedFiles;
+    private double filesPerSecond;
+    private String lastError;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
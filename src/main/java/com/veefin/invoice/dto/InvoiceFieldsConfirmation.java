@@ -0,0 +1,21 @@
+package com.veefin.invoice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Fields of an invoice as confirmed (or corrected) by the user; null keeps the extracted value
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceFieldsConfirmation {
+
+    private String merchantName;
+    private String invoiceNumber;
+    private Double totalAmount;
+    private String dueDate;
+}
@@ -0,0 +1,21 @@
+package com.veefin.invoice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MerchantTemplateDTO {
+
+    private String merchantName;
+    private String signature;
+    private Set<String> fields;
+    private long hits;        // every templated field found
+    private long partialHits; // some fields fell back to the heuristic
+}
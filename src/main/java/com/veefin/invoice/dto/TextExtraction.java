@@ -0,0 +1,9 @@
+package com.veefin.invoice.dto;
+
+import com.veefin.invoice.enums.ExtractionMethod;
+
+/**
+ * Extracted invoice text plus how it was obtained (recorded on FileMetadata)
+ */
+public record TextExtraction(String text, ExtractionMethod method, int pageCount, int ocrPageCount, long durationMs) {
+}
@@ -0,0 +1,9 @@
+package com.veefin.invoice.dto;
+
+import com.veefin.invoice.entity.FileMetadata;
+
+/**
+ * Outcome of a single invoice upload; duplicate = the same file was uploaded before and nothing was re-processed
+ */
+public record UploadResult(FileMetadata fileMetadata, boolean duplicate) {
+}
@@ -1,5 +1,6 @@
 package com.veefin.invoice.entity;
 
+import com.veefin.invoice.enums.ExtractionMethod;
 import com.veefin.invoice.enums.InvoiceStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -39,6 +40,12 @@ public class FileMetadata {
     @Column(name = "content_type")
     private String contentType;
 
+    @Column(name = "content_hash", length = 64, unique = true)
+    private String contentHash; // SHA-256 of the uploaded bytes
+
+    @Column(name = "invoice_uuid", length = 50)
+    private String invoiceUuid; // invoice extracted from (or matched to) this file
+
     @Column(name = "created_at")
     @CreationTimestamp
     private LocalDateTime createdAt;
@@ -51,6 +58,19 @@ public class FileMetadata {
     @Enumerated(EnumType.STRING)
     private InvoiceStatus status; // e.g. "UPLOADED", "PROCESSED"
 
+    @Column(name = "extraction_method")
+    @Enumerated(EnumType.STRING)
+    private ExtractionMethod extractionMethod; // TEXT_LAYER, MIXED or OCR
+
+    @Column(name = "page_count")
+    private Integer pageCount;
+
+    @Column(name = "ocr_page_count")
+    private Integer ocrPageCount;
+
+    @Column(name = "extraction_ms")
+    private Long extractionMs;
+
     @PrePersist
     public void prePersist() {
         if (uuid == null || uuid.isEmpty()) {
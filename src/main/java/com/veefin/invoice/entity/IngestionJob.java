@@ -0,0 +1,66 @@
+package com.veefin.invoice.entity;
+
+import com.veefin.invoice.enums.IngestionJobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "ingestion_job")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IngestionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "uuid", length = 50, nullable = false, unique = true, updatable = false)
+    private String uuid;
+
+    @Column(name = "source_name")
+    private String sourceName;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private IngestionJobStatus status;
+
+    @Column(name = "total_files")
+    private int totalFiles;
+
+    @Column(name = "processed_files")
+    private int processedFiles;
+
+    @Column(name = "failed_files")
+    private int failedFiles;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at")
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (uuid == null || uuid.isEmpty()) {
+            uuid = UUID.randomUUID().toString();
+        }
+    }
+}
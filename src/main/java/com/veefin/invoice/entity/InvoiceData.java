@@ -1,5 +1,6 @@
 package com.veefin.invoice.entity;
 
+import com.veefin.common.utility.TextDates;
 import com.veefin.invoice.enums.InvoiceStatus;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -9,6 +10,7 @@ import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Map;
 
@@ -38,6 +40,8 @@ public class InvoiceData {
     private Double totalAmount;
     @Column(name = "due_date")
     private String dueDate;
+    @Column(name = "due_on")
+    private LocalDate dueOn; // dueDate parsed, for due-date range queries
 
     @Column(name = "status")
     @Enumerated(EnumType.STRING)
@@ -46,6 +50,9 @@ public class InvoiceData {
     @Column(name = "raw_text", columnDefinition = "TEXT")
     private String rawText;
 
+    @Column(name = "text_hash", length = 64)
+    private String textHash; // ContentHash.textFingerprint(rawText), for near-duplicate detection
+
     @ElementCollection
     @CollectionTable(name = "invoice_field_map", joinColumns = @JoinColumn(name = "invoice_id"))
     @MapKeyColumn(name = "field_name")
@@ -65,5 +72,11 @@ public class InvoiceData {
         if (uuid == null || uuid.isEmpty()) {
             uuid = java.util.UUID.randomUUID().toString();
         }
+        dueOn = TextDates.parse(dueDate);
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        dueOn = TextDates.parse(dueDate);
     }
 }
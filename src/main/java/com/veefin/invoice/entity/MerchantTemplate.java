@@ -0,0 +1,41 @@
+package com.veefin.invoice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "merchant_template")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MerchantTemplate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "signature", nullable = false, unique = true)
+    private String signature; // normalized header line identifying the layout
+
+    @Column(name = "merchant_name", nullable = false)
+    private String merchantName;
+
+    @Column(name = "anchors", columnDefinition = "TEXT", nullable = false)
+    private String anchors; // JSON: field -> {label, occurrence, nextLine}
+
+    @Column(name = "created_at")
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
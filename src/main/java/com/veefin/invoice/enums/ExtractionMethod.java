@@ -0,0 +1,11 @@
+package com.veefin.invoice.enums;
+
+/**
+ * How the text of an invoice PDF was obtained
+ */
+public enum ExtractionMethod {
+
+    TEXT_LAYER, // every page had a usable PDFBox text layer
+    MIXED,      // some pages OCR'd
+    OCR         // every page OCR'd, or the file could not be opened as a PDF
+}
@@ -0,0 +1,6 @@
+package com.veefin.invoice.enums;
+
+public enum IngestionJobStatus {
+
+    RUNNING, COMPLETED, COMPLETED_WITH_ERRORS, FAILED
+}
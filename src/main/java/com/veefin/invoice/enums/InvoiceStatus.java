@@ -2,5 +2,7 @@ package com.veefin.invoice.enums;
 
 public enum InvoiceStatus {
 
-    UPLOADED, PROCESSED, FAILED, PAID, PENDING
+    UPLOADED, PROCESSED, FAILED, PAID, PENDING,
+    // claimed by a payment in progress; back to PENDING if the sale fails, PAID once recorded
+    PROCESSING
 }
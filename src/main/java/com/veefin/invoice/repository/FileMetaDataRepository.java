@@ -1,7 +1,17 @@
 package com.veefin.invoice.repository;
 
 import com.veefin.invoice.entity.FileMetadata;
+import com.veefin.invoice.enums.InvoiceStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+import java.util.Optional;
+
 public interface FileMetaDataRepository  extends JpaRepository<FileMetadata, Long> {
+
+    List<FileMetadata> findByStatus(InvoiceStatus status);
+
+    Optional<FileMetadata> findByUuid(String uuid);
+
+    Optional<FileMetadata> findByContentHash(String contentHash);
 }
@@ -0,0 +1,15 @@
+package com.veefin.invoice.repository;
+
+import com.veefin.invoice.entity.IngestionJob;
+import com.veefin.invoice.enums.IngestionJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface IngestionJobRepository extends JpaRepository<IngestionJob, Long> {
+
+    Optional<IngestionJob> findByUuid(String uuid);
+
+    List<IngestionJob> findByStatus(IngestionJobStatus status);
+}
@@ -1,15 +1,68 @@
 package com.veefin.invoice.repository;
 
 import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.enums.InvoiceStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface InvoiceRepository extends JpaRepository<InvoiceData, Long>, JpaSpecificationExecutor<InvoiceData> {
 
     InvoiceData findByUuid(String uuid);
+    List<InvoiceData> findByUuidIn(Collection<String> uuids);
+    InvoiceData findFirstByTextHash(String textHash);
+    List<InvoiceData> findByTextHashIn(Collection<String> textHashes);
     List<InvoiceData> findByMerchantNameContainingIgnoreCase(String merchantName);
-}
\ No newline at end of file
+
+    /**
+     * Exact match on the indexed invoice_number column.
+     * The table collation is case-insensitive, so no lower() wrapping is needed (and it would defeat the index).
+     */
+    InvoiceData findFirstByInvoiceNumberOrderByIdAsc(String invoiceNumber);
+
+    /**
+     * Lightweight projection used to build the in-memory merchant name index
+     */
+    @Query("SELECT i.id AS id, i.uuid AS uuid, i.merchantName AS merchantName FROM InvoiceData i")
+    List<InvoiceMerchantView> findAllMerchantViews();
+
+    /**
+     * Invoices saved before due_on existed (or with a due date that does not parse)
+     */
+    @Query("SELECT i.id AS id, i.dueDate AS dueDate FROM InvoiceData i WHERE i.dueOn IS NULL AND i.dueDate IS NOT NULL")
+    List<InvoiceDueDateView> findDueDatesWithoutDueOn();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE InvoiceData i SET i.dueOn = :dueOn WHERE i.id = :id")
+    int updateDueOn(@Param("id") Long id, @Param("dueOn") LocalDate dueOn);
+
+    /**
+     * Conditional status change in one UPDATE; 0 when the invoice is no longer in the expected status
+     * (e.g. another payment already claimed it)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE InvoiceData i SET i.status = :to WHERE i.uuid = :uuid AND i.status = :from")
+    int transitionStatus(@Param("uuid") String uuid, @Param("from") InvoiceStatus from, @Param("to") InvoiceStatus to);
+
+    interface InvoiceDueDateView {
+        Long getId();
+        String getDueDate();
+    }
+
+    interface InvoiceMerchantView {
+        Long getId();
+        String getUuid();
+        String getMerchantName();
+    }
+}
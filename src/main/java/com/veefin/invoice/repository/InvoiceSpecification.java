@@ -5,6 +5,8 @@ import com.veefin.invoice.enums.InvoiceStatus;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -71,5 +73,30 @@ public class InvoiceSpecification {
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
     }
-}
 
+    /**
+     * Invoices not yet paid (anything but PAID)
+     */
+    public static Specification<InvoiceData> unpaid() {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.notEqual(root.get("status"), InvoiceStatus.PAID);
+    }
+
+    /**
+     * Due on or after from and before until
+     */
+    public static Specification<InvoiceData> dueBetween(LocalDate from, LocalDate until) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.greaterThanOrEqualTo(root.get("dueOn"), from),
+                criteriaBuilder.lessThan(root.get("dueOn"), until));
+    }
+
+    public static Specification<InvoiceData> dueBefore(LocalDate date) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.lessThan(root.get("dueOn"), date);
+    }
+
+    public static Specification<InvoiceData> createdBetween(LocalDateTime from, LocalDateTime until) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.greaterThanOrEqualTo(root.get("createdAt"), from),
+                criteriaBuilder.lessThan(root.get("createdAt"), until));
+    }
+}
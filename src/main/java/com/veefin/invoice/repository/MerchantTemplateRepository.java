@@ -0,0 +1,11 @@
+package com.veefin.invoice.repository;
+
+import com.veefin.invoice.entity.MerchantTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface MerchantTemplateRepository extends JpaRepository<MerchantTemplate, Long> {
+
+    Optional<MerchantTemplate> findBySignature(String signature);
+}
@@ -0,0 +1,392 @@
+package com.veefin.invoice.service;
+
+import com.veefin.common.exception.ResourceNotFoundException;
+import com.veefin.invoice.dto.IngestionJobDTO;
+import com.veefin.invoice.entity.IngestionJob;
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.enums.IngestionJobStatus;
+import com.veefin.invoice.repository.IngestionJobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Bulk invoice ingestion from a ZIP archive or a list of uploaded files.
+ * - the archive is read entry by entry; only entries currently being processed exist as temp files
+ * - reading pauses while max-in-flight entries are waiting for / in OCR, so a fast upload can't flood the disk
+ * - OCR + parsing runs on a fixed CPU-sized pool; parsed invoices are saved and embedded in batches of batch-size
+ * Progress is kept in an ingestion_job row (updated after every batch) and can be polled by job id.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkIngestionService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OcrService ocrService;
+    private final IngestionJobRepository ingestionJobRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingestion.bulk.workers:0}")
+    private int workers;
+
+    @Value("${ingestion.bulk.max-in-flight:0}")
+    private int maxInFlight;
+
+    @Value("${ingestion.bulk.batch-size:50}")
+    private int batchSize;
+
+    @Value("${ingestion.bulk.flush-workers:2}")
+    private int flushWorkers;
+
+    private ExecutorService extractExecutor;
+    private ThreadPoolExecutor flushExecutor;
+    private Semaphore inFlight;
+
+    /**
+     * Jobs still running in this instance; finished jobs are read from the DB
+     */
+    private final Map<String, BulkJob> activeJobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        int cpuWorkers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        extractExecutor = Executors.newFixedThreadPool(cpuWorkers, Thread.ofPlatform().name("bulk-extract-", 1).daemon(true).factory());
+        inFlight = new Semaphore(maxInFlight > 0 ? maxInFlight : cpuWorkers * 2);
+        // When every flush worker is busy the extract worker saves the batch itself, which also slows down OCR
+        flushExecutor = new ThreadPoolExecutor(flushWorkers, flushWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(flushWorkers), Thread.ofPlatform().name("bulk-flush-", 1).daemon(true).factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Jobs left RUNNING by a previous run can't be resumed: their upload stream is gone
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedJobs() {
+        for (IngestionJob job : ingestionJobRepository.findByStatus(IngestionJobStatus.RUNNING)) {
+            job.setStatus(IngestionJobStatus.FAILED);
+            job.setLastError("Interrupted by application restart");
+            job.setCompletedAt(LocalDateTime.now());
+            ingestionJobRepository.save(job);
+            log.warn("Bulk ingestion job {} was interrupted by a restart", job.getUuid());
+        }
+    }
+
+    /**
+     * Ingest a ZIP archive read straight from the request body.
+     * Returns once the whole archive has been read; the last entries may still be in OCR.
+     */
+    public IngestionJobDTO ingestArchive(InputStream archive, String sourceName) {
+        BulkJob job = startJob(sourceName);
+        try {
+            readArchive(job, archive);
+        } catch (IOException e) {
+            job.recordError("Failed to read archive: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.recordError("Interrupted while reading archive");
+        } finally {
+            taskDone(job);
+        }
+        return toDto(job);
+    }
+
+    /**
+     * Ingest a multi-file upload; each part may be a PDF or a ZIP of PDFs
+     */
+    public IngestionJobDTO ingestFiles(List<MultipartFile> files) {
+        BulkJob job = startJob(files.size() == 1 ? files.get(0).getOriginalFilename() : files.size() + " files");
+        try {
+            for (MultipartFile file : files) {
+                String name = file.getOriginalFilename() != null ? file.getOriginalFilename() : "invoice.pdf";
+                try (InputStream in = file.getInputStream()) {
+                    if (name.toLowerCase().endsWith(".zip")) {
+                        readArchive(job, in);
+                    } else if (isPdf(name)) {
+                        submitEntry(job, name, in);
+                    }
+                } catch (IOException e) {
+                    job.recordError("Failed to read " + name + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.recordError("Interrupted while reading upload");
+        } finally {
+            taskDone(job);
+        }
+        return toDto(job);
+    }
+
+    public IngestionJobDTO getJob(String jobId) {
+        BulkJob active = activeJobs.get(jobId);
+        if (active != null) {
+            return toDto(active);
+        }
+        IngestionJob job = ingestionJobRepository.findByUuid(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ingestion job not found: " + jobId));
+        return toDto(job);
+    }
+
+    private BulkJob startJob(String sourceName) {
+        IngestionJob entity = ingestionJobRepository.save(IngestionJob.builder()
+                .sourceName(sourceName)
+                .status(IngestionJobStatus.RUNNING)
+                .build());
+        BulkJob job = new BulkJob(entity);
+        activeJobs.put(entity.getUuid(), job);
+        log.info("Bulk ingestion job {} started for {}", entity.getUuid(), sourceName);
+        return job;
+    }
+
+    private void readArchive(BulkJob job, InputStream archive) throws IOException, InterruptedException {
+        // Not closed here: closing the ZipInputStream would close the request / part stream owned by the caller
+        ZipInputStream zip = new ZipInputStream(new BufferedInputStream(archive));
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory() && isPdf(entry.getName())) {
+                // zip returns EOF at the end of the current entry, so this copies exactly one file
+                submitEntry(job, entry.getName(), zip);
+            }
+        }
+    }
+
+    /**
+     * Spool one entry to a temp file and queue it for OCR; blocks while max-in-flight entries are pending
+     */
+    private void submitEntry(BulkJob job, String entryName, InputStream content) throws IOException, InterruptedException {
+        String fileName = baseName(entryName);
+        inFlight.acquire();
+        File tempFile;
+        try {
+            tempFile = File.createTempFile("bulk_", "_" + fileName.replaceAll("[^A-Za-z0-9._-]", "_"));
+            Files.copy(content, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            inFlight.release();
+            throw e;
+        }
+        job.totalFiles.incrementAndGet();
+        job.pending.incrementAndGet();
+        extractExecutor.execute(() -> extract(job, fileName, tempFile));
+    }
+
+    private void extract(BulkJob job, String fileName, File tempFile) {
+        try {
+            InvoiceData invoice = ocrService.extractInvoice(tempFile);
+            invoice.setFileName(fileName);
+            List<InvoiceData> batch = job.add(invoice, batchSize);
+            if (batch != null) {
+                job.pending.incrementAndGet();
+                flushExecutor.execute(() -> {
+                    try {
+                        flush(job, batch);
+                    } finally {
+                        taskDone(job);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            log.error("Bulk ingestion job {}: failed to extract {}: {}", job.entity.getUuid(), fileName, e.getMessage());
+            job.failedFiles.incrementAndGet();
+            job.recordError(fileName + ": " + e.getMessage());
+            meterRegistry.counter("ingestion.bulk.files", "result", "failed").increment();
+        } finally {
+            deleteQuietly(tempFile);
+            inFlight.release();
+            taskDone(job);
+        }
+    }
+
+    private void flush(BulkJob job, List<InvoiceData> batch) {
+        try {
+            int saved = ocrService.saveInvoices(batch).size();
+            job.processedFiles.addAndGet(batch.size());
+            meterRegistry.counter("ingestion.bulk.files", "result", "processed").increment(saved);
+            meterRegistry.counter("ingestion.bulk.files", "result", "duplicate").increment(batch.size() - saved);
+        } catch (Exception e) {
+            log.error("Bulk ingestion job {}: failed to save a batch of {} invoices", job.entity.getUuid(), batch.size(), e);
+            job.failedFiles.addAndGet(batch.size());
+            job.recordError("Batch save failed: " + e.getMessage());
+            meterRegistry.counter("ingestion.bulk.files", "result", "failed").increment(batch.size());
+        }
+        saveProgress(job, null);
+    }
+
+    /**
+     * Called when the reader, an extract task or a flush task finishes; the last one out saves the
+     * remaining partial batch and closes the job
+     */
+    private void taskDone(BulkJob job) {
+        if (job.pending.decrementAndGet() != 0) {
+            return;
+        }
+        List<InvoiceData> remainder = job.drain();
+        if (!remainder.isEmpty()) {
+            flush(job, remainder);
+        }
+        int processed = job.processedFiles.get();
+        IngestionJobStatus status;
+        if (job.failedFiles.get() == 0 && job.lastError == null) {
+            status = IngestionJobStatus.COMPLETED;
+        } else {
+            status = processed > 0 ? IngestionJobStatus.COMPLETED_WITH_ERRORS : IngestionJobStatus.FAILED;
+        }
+        saveProgress(job, status);
+        activeJobs.remove(job.entity.getUuid());
+        log.info("Bulk ingestion job {} finished: {} processed, {} failed of {}",
+                job.entity.getUuid(), processed, job.failedFiles.get(), job.totalFiles.get());
+    }
+
+    private void saveProgress(BulkJob job, IngestionJobStatus finalStatus) {
+        synchronized (job.progressLock) {
+            IngestionJob entity = job.entity;
+            entity.setTotalFiles(job.totalFiles.get());
+            entity.setProcessedFiles(job.processedFiles.get());
+            entity.setFailedFiles(job.failedFiles.get());
+            entity.setLastError(job.lastError);
+            if (finalStatus != null) {
+                entity.setStatus(finalStatus);
+                entity.setCompletedAt(LocalDateTime.now());
+            }
+            try {
+                job.entity = ingestionJobRepository.save(entity);
+            } catch (Exception e) {
+                log.warn("Failed to save progress of ingestion job {}: {}", entity.getUuid(), e.getMessage());
+            }
+        }
+    }
+
+    private IngestionJobDTO toDto(BulkJob job) {
+        synchronized (job.progressLock) {
+            IngestionJob snapshot = job.entity;
+            return IngestionJobDTO.builder()
+                    .jobId(snapshot.getUuid())
+                    .sourceName(snapshot.getSourceName())
+                    .status(snapshot.getStatus())
+                    .totalFiles(job.totalFiles.get())
+                    .processedFiles(job.processedFiles.get())
+                    .failedFiles(job.failedFiles.get())
+                    .filesPerSecond(filesPerSecond(job.processedFiles.get(), snapshot.getCreatedAt(), snapshot.getCompletedAt()))
+                    .lastError(job.lastError)
+                    .startedAt(snapshot.getCreatedAt())
+                    .completedAt(snapshot.getCompletedAt())
+                    .build();
+        }
+    }
+
+    private IngestionJobDTO toDto(IngestionJob job) {
+        return IngestionJobDTO.builder()
+                .jobId(job.getUuid())
+                .sourceName(job.getSourceName())
+                .status(job.getStatus())
+                .totalFiles(job.getTotalFiles())
+                .processedFiles(job.getProcessedFiles())
+                .failedFiles(job.getFailedFiles())
+                .filesPerSecond(filesPerSecond(job.getProcessedFiles(), job.getCreatedAt(), job.getCompletedAt()))
+                .lastError(job.getLastError())
+                .startedAt(job.getCreatedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+
+    private static double filesPerSecond(int processed, LocalDateTime startedAt, LocalDateTime completedAt) {
+        if (startedAt == null || processed == 0) {
+            return 0;
+        }
+        long millis = Duration.between(startedAt, completedAt != null ? completedAt : LocalDateTime.now()).toMillis();
+        return millis > 0 ? Math.round(processed * 100_000.0 / millis) / 100.0 : 0;
+    }
+
+    private static boolean isPdf(String name) {
+        return name.toLowerCase().endsWith(".pdf");
+    }
+
+    private static String baseName(String entryName) {
+        String name = entryName.replace('\\', '/');
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    private void deleteQuietly(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary file: {}", file.getAbsolutePath(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        extractExecutor.shutdown();
+        extractExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * In-memory state of a running job. pending counts the reader plus every queued extract / flush task.
+     */
+    private static final class BulkJob {
+
+        private final Object progressLock = new Object();
+        private IngestionJob entity;
+        private final AtomicInteger totalFiles = new AtomicInteger();
+        private final AtomicInteger processedFiles = new AtomicInteger();
+        private final AtomicInteger failedFiles = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final List<InvoiceData> buffer = new ArrayList<>();
+        private volatile String lastError;
+
+        BulkJob(IngestionJob entity) {
+            this.entity = entity;
+        }
+
+        /**
+         * Buffer a parsed invoice; returns a full batch to save, or null
+         */
+        synchronized List<InvoiceData> add(InvoiceData invoice, int batchSize) {
+            buffer.add(invoice);
+            return buffer.size() >= batchSize ? drain() : null;
+        }
+
+        synchronized List<InvoiceData> drain() {
+            List<InvoiceData> batch = new ArrayList<>(buffer);
+            buffer.clear();
+            return batch;
+        }
+
+        void recordError(String error) {
+            lastError = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        }
+    }
+}
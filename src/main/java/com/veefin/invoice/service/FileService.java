@@ -1,19 +1,26 @@
 package com.veefin.invoice.service;
 
+import com.veefin.common.exception.ResourceNotFoundException;
+import com.veefin.common.exception.ServiceUnavailableException;
+import com.veefin.common.utility.ContentHash;
+import com.veefin.invoice.dto.UploadResult;
 import com.veefin.invoice.enums.InvoiceStatus;
 import com.veefin.invoice.entity.FileMetadata;
 import com.veefin.invoice.repository.FileMetaDataRepository;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -21,43 +28,57 @@ import java.nio.file.Paths;
 public class FileService {
 
     private final FileMetaDataRepository repository;
-    private final OcrService ocrService;
+    private final InvoiceIngestionPipeline ingestionPipeline;
 
-    @Transactional
-    public void uploadInvoice(MultipartFile file) {
+    /**
+     * Store the upload and hand it to the ingestion pipeline; OCR and indexing happen in the background.
+     * Uploads are content-addressed: a file whose SHA-256 was seen before returns the earlier record
+     * (duplicate = true) without any OCR or embedding work. Only a previously FAILED file is processed again.
+     */
+    public UploadResult uploadInvoice(MultipartFile file) {
         FileMetadata savedFile = null;
         File tempFile = null;
 
         try {
-            // 🔹 Create a temporary file
+            // 🔹 Create a temporary file (deleted by the pipeline once processed), hashing while copying
             tempFile = File.createTempFile("invoice_", "_" + file.getOriginalFilename());
-            file.transferTo(tempFile);
+            MessageDigest digest = ContentHash.newSha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            String contentHash = ContentHash.hex(digest);
             log.info(" Temporary file created at: {}", tempFile.getAbsolutePath());
 
-            // 🔹 Save metadata (you can store temp file path or original name)
-            FileMetadata invoiceFile = FileMetadata.builder()
-                    .fileName(file.getOriginalFilename())
-                    .filePath(tempFile.getAbsolutePath())
-                    .fileSize(file.getSize())
-                    .contentType(file.getContentType())
-                    .status(InvoiceStatus.UPLOADED)
-                    .build();
+            // 🔹 Same bytes uploaded before?
+            Optional<FileMetadata> existing = repository.findByContentHash(contentHash);
+            if (existing.isPresent() && existing.get().getStatus() != InvoiceStatus.FAILED) {
+                log.info("Duplicate upload of {} (content matches file {}), skipping processing",
+                        file.getOriginalFilename(), existing.get().getUuid());
+                deleteTempFile(tempFile);
+                return new UploadResult(existing.get(), true);
+            }
 
-            savedFile = repository.save(invoiceFile);
+            // 🔹 Save metadata (a failed earlier attempt of the same file is retried on its existing row)
+            FileMetadata invoiceFile = existing.orElseGet(() -> FileMetadata.builder().contentHash(contentHash).build());
+            invoiceFile.setFileName(file.getOriginalFilename());
+            invoiceFile.setFilePath(tempFile.getAbsolutePath());
+            invoiceFile.setFileSize(file.getSize());
+            invoiceFile.setContentType(file.getContentType());
+            invoiceFile.setStatus(InvoiceStatus.UPLOADED);
 
-            // 🔹 Process the invoice using OCR
             try {
-                ocrService.processInvoice(tempFile);
-                savedFile.setStatus(InvoiceStatus.PROCESSED);
-                repository.save(savedFile);
-                log.info("OCR processing completed for file: {}", file.getOriginalFilename());
-            } catch (Exception e) {
-                log.error("OCR processing failed for file: {}", file.getOriginalFilename(), e);
-                savedFile.setStatus(InvoiceStatus.FAILED);
-                repository.save(savedFile);
-                throw new RuntimeException("Invoice processing failed: " + e.getMessage());
+                savedFile = repository.save(invoiceFile);
+            } catch (DataIntegrityViolationException e) {
+                // The same file is being uploaded concurrently and the other request won the unique index
+                FileMetadata winner = repository.findByContentHash(contentHash).orElseThrow(() -> e);
+                deleteTempFile(tempFile);
+                return new UploadResult(winner, true);
             }
 
+            // 🔹 Queue for OCR + indexing
+            ingestionPipeline.submit(savedFile, tempFile);
+            return new UploadResult(savedFile, false);
+
         } catch (Exception e) {
             log.error("Invoice upload failed for file: {}", file.getOriginalFilename(), e);
 
@@ -69,17 +90,27 @@ public class FileService {
                     log.error("Failed to update file status to FAILED", dbEx);
                 }
             }
+            deleteTempFile(tempFile);
 
+            if (e instanceof ServiceUnavailableException unavailable) {
+                throw unavailable;
+            }
             throw new RuntimeException("Invoice upload failed: " + e.getMessage());
-        } finally {
-            // 🔹 Always delete temporary file after processing
-            if (tempFile != null && tempFile.exists()) {
-                try {
-                    Files.delete(tempFile.toPath());
-                    log.info(" Temporary file deleted: {}", tempFile.getName());
-                } catch (IOException ex) {
-                    log.warn("Failed to delete temporary file: {}", tempFile.getAbsolutePath(), ex);
-                }
+        }
+    }
+
+    public FileMetadata getFileStatus(String uuid) {
+        return repository.findByUuid(uuid)
+                .orElseThrow(() -> new ResourceNotFoundException("Uploaded file not found: " + uuid));
+    }
+
+    private void deleteTempFile(File tempFile) {
+        if (tempFile != null && tempFile.exists()) {
+            try {
+                Files.delete(tempFile.toPath());
+                log.info(" Temporary file deleted: {}", tempFile.getName());
+            } catch (IOException ex) {
+                log.warn("Failed to delete temporary file: {}", tempFile.getAbsolutePath(), ex);
             }
         }
     }
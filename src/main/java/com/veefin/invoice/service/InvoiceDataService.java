@@ -1,6 +1,10 @@
 package com.veefin.invoice.service;
 
+import com.veefin.common.cache.LlmResponseCache;
+import com.veefin.common.exception.ResourceNotFoundException;
+import com.veefin.common.query.QuestionText;
 import com.veefin.invoice.dto.ApiListResponse;
+import com.veefin.invoice.dto.InvoiceFieldsConfirmation;
 import com.veefin.invoice.dto.InvoiceListResponseDTO;
 import com.veefin.invoice.dto.InvoiceResponseDTO;
 import com.veefin.invoice.dto.PaginationDTO;
@@ -20,8 +24,14 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -31,12 +41,60 @@ public class InvoiceDataService {
 
     private final InvoiceRepository invoiceRepository;
     private final InvoiceVectorService invoiceVectorService;
+    private final InvoiceLookupService invoiceLookupService;
     private final ChatClient chatClient;
+    private final LlmResponseCache llmResponseCache;
+    private final MerchantTemplateService merchantTemplateService;
+    private final InvoiceQueryPlanner invoiceQueryPlanner;
 
     public InvoiceData getInvoiceById(String uuid) {
         return invoiceRepository.findByUuid(uuid);
     }
 
+    /**
+     * Apply the user's confirmed / corrected fields to an invoice and learn the merchant's layout from it,
+     * so later invoices of the same merchant are read with the template
+     */
+    public InvoiceData confirmInvoiceFields(String uuid, InvoiceFieldsConfirmation confirmation) {
+        InvoiceData invoice = invoiceRepository.findByUuid(uuid);
+        if (invoice == null) {
+            throw new ResourceNotFoundException("Invoice not found: " + uuid);
+        }
+        if (confirmation.getMerchantName() != null) {
+            invoice.setMerchantName(confirmation.getMerchantName().trim());
+        }
+        if (confirmation.getInvoiceNumber() != null) {
+            invoice.setInvoiceNumber(confirmation.getInvoiceNumber().trim());
+        }
+        if (confirmation.getTotalAmount() != null) {
+            invoice.setTotalAmount(confirmation.getTotalAmount());
+        }
+        if (confirmation.getDueDate() != null) {
+            invoice.setDueDate(confirmation.getDueDate().trim());
+        }
+
+        Map<String, String> confirmedFields = new HashMap<>();
+        confirmedFields.put(MerchantTemplateService.MERCHANT_NAME, invoice.getMerchantName());
+        confirmedFields.put(MerchantTemplateService.INVOICE_NUMBER, invoice.getInvoiceNumber());
+        confirmedFields.put(MerchantTemplateService.TOTAL_AMOUNT, invoice.getTotalAmount() != null ? String.valueOf(invoice.getTotalAmount()) : null);
+        confirmedFields.put(MerchantTemplateService.DUE_DATE, invoice.getDueDate());
+        Map<String, String> fieldMap = invoice.getFieldMap() != null ? new HashMap<>(invoice.getFieldMap()) : new HashMap<>();
+        confirmedFields.forEach((field, value) -> {
+            if (value != null) {
+                fieldMap.put(field, value);
+            }
+        });
+        invoice.setFieldMap(fieldMap);
+
+        InvoiceData saved = invoiceRepository.save(invoice);
+        invoiceLookupService.index(saved);
+        invoiceVectorService.updateInvoiceInVectorDB(saved);
+        llmResponseCache.invalidate(saved.getUuid(), LlmResponseCache.INVOICE_SOURCE);
+
+        merchantTemplateService.learn(saved.getRawText(), confirmedFields);
+        return saved;
+    }
+
 
 
     public String getAllInvoicesResponse() {
@@ -73,16 +131,7 @@ public class InvoiceDataService {
 
 
     public InvoiceData findInvoiceByIdentifier(String identifier) {
-        List<InvoiceData> invoices = invoiceRepository.findAll();
-
-        return invoices.stream()
-                .filter(inv ->
-                        inv.getInvoiceNumber().equalsIgnoreCase(identifier) ||
-                                inv.getMerchantName().toLowerCase().contains(identifier.toLowerCase()) ||
-                                inv.getUuid().equals(identifier)
-                )
-                .findFirst()
-                .orElse(null);
+        return invoiceLookupService.findByIdentifier(identifier);
     }
 
     public InvoiceListResponseDTO getInvoicesList(
@@ -155,35 +204,111 @@ public class InvoiceDataService {
 
     public String handleInvoiceQuery(String userPrompt) {
         try {
-            // RAG: Always search vector DB first for relevant context
-            List<Document> relevantInvoices = invoiceVectorService.searchSimilarInvoices(userPrompt+", Only return INVOICE documentType data ");
+            // Totals, balances and due-date lists come straight from SQL; the LLM only handles free-form questions
+            Optional<String> structured = invoiceQueryPlanner.answer(userPrompt);
+            if (structured.isPresent()) {
+                return structured.get();
+            }
 
-            if (relevantInvoices.isEmpty()) {
+            RagPrompt rag = buildRagPrompt(userPrompt);
+            if (rag == null) {
                 return "No invoices found matching your query.";
             }
+            String ragPrompt = rag.prompt();
+            Set<String> sources = rag.sources();
+
+            log.info("RAG prompt: {}", ragPrompt);
+            long startTime = System.currentTimeMillis();
+
+//            String response = chatClient.prompt()
+//                    .user(ragPrompt)
+//                    .call()
+//                    .content();
+
+
+            String response = chatClient.prompt()
+                    .user(ragPrompt)
+                    .advisors(LlmResponseCache.semantic(userPrompt, sources))
+                    .call()
+                    .content();
+
+            System.err.println("RAG response: " + response);
+
+// Calculate and log time taken
+            long endTime = System.currentTimeMillis();
+            double timeTakenSeconds = (endTime - startTime) / 1000.0;
+            log.info("ChatClient response time: {} seconds", timeTakenSeconds);
+
+            return response;
+
+        } catch (Exception e) {
+            return "Failed to process invoice query: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Same RAG answer as handleInvoiceQuery, streamed token by token
+     */
+    public Flux<String> streamInvoiceQuery(String userPrompt) {
+        Optional<String> structured = invoiceQueryPlanner.answer(userPrompt);
+        if (structured.isPresent()) {
+            return Flux.just(structured.get());
+        }
+        RagPrompt rag = buildRagPrompt(userPrompt);
+        if (rag == null) {
+            return Flux.just("No invoices found matching your query.");
+        }
+        return chatClient.prompt()
+                .user(rag.prompt())
+                .advisors(LlmResponseCache.semantic(userPrompt, rag.sources()))
+                .stream()
+                .content()
+                .onErrorResume(e -> Flux.just("Failed to process invoice query: " + e.getMessage()));
+    }
+
+    /**
+     * RAG prompt for an invoice question, or null when no invoice matches
+     */
+    private RagPrompt buildRagPrompt(String userPrompt) {
+        // RAG: Always search vector DB first for relevant context
+        List<Document> relevantInvoices = invoiceVectorService.searchSimilarInvoices(userPrompt);
+
+        if (relevantInvoices.isEmpty()) {
+            return null;
+        }
+
+        // RAG: Build rich context from retrieved documents
+        StringBuilder context = new StringBuilder();
+        Set<String> sources = new HashSet<>();
+        if (!QuestionText.namesSpecificValue(userPrompt.toLowerCase(Locale.ROOT))) {
+            // a list-style answer covers whatever invoices match, so any invoice change can make it stale
+            sources.add(LlmResponseCache.INVOICE_SOURCE);
+        }
+        for (Document doc : relevantInvoices) {
+            Object invoiceNumber = doc.getMetadata().get("invoiceNumber");
+            Object amount = doc.getMetadata().get("totalAmount");
+            Object dueDate = doc.getMetadata().get("dueDate");
+            Object status = doc.getMetadata().get("status");
+            //Object updatedAt = doc.getMetadata().get("updatedAt");
+
+            // Skip invalid or incomplete invoices
+            if (invoiceNumber == null || amount == null) {
+                continue;
+            }
 
-            // RAG: Build rich context from retrieved documents
-            StringBuilder context = new StringBuilder();
-            for (Document doc : relevantInvoices.subList(0, Math.min(5, relevantInvoices.size()))) {
-                Object invoiceNumber = doc.getMetadata().get("invoiceNumber");
-                Object amount = doc.getMetadata().get("totalAmount");
-                Object dueDate = doc.getMetadata().get("dueDate");
-                Object status = doc.getMetadata().get("status");
-                //Object updatedAt = doc.getMetadata().get("updatedAt");
-
-                // Skip invalid or incomplete invoices
-                if (invoiceNumber == null || amount == null) {
-                    continue;
-                }
-
-                context.append("Invoice: ").append(invoiceNumber)
-                        .append(", amount: ₹").append(amount)
-                        .append(", Due Date: ").append(dueDate)
-                        .append(", Status: ").append(status)
-                       // .append(", Updated: ").append(updatedAt)
-                        .append("\n");
+            Object uuid = doc.getMetadata().get("uuid");
+            if (uuid != null) {
+                sources.add(uuid.toString());
             }
 
+            context.append("Invoice: ").append(invoiceNumber)
+                    .append(", amount: ₹").append(amount)
+                    .append(", Due Date: ").append(dueDate)
+                    .append(", Status: ").append(status)
+                   // .append(", Updated: ").append(updatedAt)
+                    .append("\n");
+        }
+
 //            String ragPrompt = String.format("""
 //You are an invoice assistant. Use the data below to answer the user's query naturally.
 //
@@ -198,7 +323,7 @@ public class InvoiceDataService {
 //                     Invoice Data: %s
 //                     """,
 //                    userPrompt, context.toString());
-            String ragPrompt = String.format("""
+        String ragPrompt = String.format("""
 User message (any language): %s
 
 Understand the message and reply ONLY using the data below.
@@ -211,35 +336,9 @@ If it’s about invoices, show them clearly like:
 Data:
 %s
 """, userPrompt, context.toString());
-
-            log.info("RAG prompt: {}", ragPrompt);
-            long startTime = System.currentTimeMillis();
-
-//            String response = chatClient.prompt()
-//                    .user(ragPrompt)
-//                    .call()
-//                    .content();
-
-
-            String response = chatClient.prompt()
-                    .user(ragPrompt)
-                    .call()
-                    .content();
-
-            System.err.println("RAG response: " + response);
-
-// Calculate and log time taken
-            long endTime = System.currentTimeMillis();
-            double timeTakenSeconds = (endTime - startTime) / 1000.0;
-            log.info("ChatClient response time: {} seconds", timeTakenSeconds);
-
-            return response;
-
-        } catch (Exception e) {
-            return "Failed to process invoice query: " + e.getMessage();
-        }
+        return new RagPrompt(ragPrompt, sources);
     }
 
-
+    private record RagPrompt(String prompt, Set<String> sources) {
+    }
 }
-
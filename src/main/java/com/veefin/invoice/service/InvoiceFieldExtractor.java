@@ -0,0 +1,18 @@
+package com.veefin.invoice.service;
+
+import java.util.Map;
+
+/**
+ * Extraction strategy tried before the built-in heuristic in {@link InvoiceParserService}.
+ * Returns only the fields it is confident about (keys as in parseInvoiceFields: merchant_name, invoice_number,
+ * total_amount, due_date); fields it leaves out are filled by the next extractor or the heuristic.
+ */
+public interface InvoiceFieldExtractor {
+
+    /**
+     * Short name, used as the metrics tag when this extractor supplies every field
+     */
+    String name();
+
+    Map<String, String> extract(String text);
+}
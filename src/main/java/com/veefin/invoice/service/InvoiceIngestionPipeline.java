@@ -0,0 +1,197 @@
+package com.veefin.invoice.service;
+
+import com.veefin.common.exception.ServiceUnavailableException;
+import com.veefin.invoice.dto.TextExtraction;
+import com.veefin.invoice.entity.FileMetadata;
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.enums.InvoiceStatus;
+import com.veefin.invoice.repository.FileMetaDataRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Staged invoice ingestion, run off the HTTP thread.
+ * - extract stage (CPU-bound): PDFBox text / Tesseract OCR + field parsing, one worker per core by default
+ * - index stage (I/O-bound): DB save and hand-off to the vector indexer, more workers since they mostly wait
+ * Each stage has its own bounded queue. A full extract queue rejects new uploads (503); a full index queue
+ * makes extract workers wait, so a slow database (or a full vector indexer) throttles OCR instead of piling up parsed invoices.
+ * FileMetadata.status goes UPLOADED -> PROCESSED / FAILED; the extraction path and time are recorded on it too.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoiceIngestionPipeline {
+
+    private final OcrService ocrService;
+    private final FileMetaDataRepository fileMetaDataRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingestion.extract.workers:0}")
+    private int extractWorkers;
+
+    @Value("${ingestion.extract.queue-capacity:100}")
+    private int extractQueueCapacity;
+
+    @Value("${ingestion.index.workers:8}")
+    private int indexWorkers;
+
+    @Value("${ingestion.index.queue-capacity:200}")
+    private int indexQueueCapacity;
+
+    private ThreadPoolExecutor extractExecutor;
+    private ThreadPoolExecutor indexExecutor;
+
+    @PostConstruct
+    public void init() {
+        int cpuWorkers = extractWorkers > 0 ? extractWorkers : Runtime.getRuntime().availableProcessors();
+        extractExecutor = new ThreadPoolExecutor(cpuWorkers, cpuWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(extractQueueCapacity), threadFactory("ingest-extract-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        // Hand-off into the index stage blocks the extract worker when the index queue is full
+        indexExecutor = new ThreadPoolExecutor(indexWorkers, indexWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(indexQueueCapacity), threadFactory("ingest-index-"),
+                (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Ingestion pipeline is shutting down");
+                    }
+                    try {
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for index queue", e);
+                    }
+                });
+
+        Gauge.builder("ingestion.queue.size", extractExecutor, e -> e.getQueue().size())
+                .tag("stage", "extract").register(meterRegistry);
+        Gauge.builder("ingestion.queue.size", indexExecutor, e -> e.getQueue().size())
+                .tag("stage", "index").register(meterRegistry);
+    }
+
+    /**
+     * Re-queue uploads that were accepted but not finished when the application last stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingUploads() {
+        for (FileMetadata pending : fileMetaDataRepository.findByStatus(InvoiceStatus.UPLOADED)) {
+            File file = pending.getFilePath() != null ? new File(pending.getFilePath()) : null;
+            if (file != null && file.exists()) {
+                try {
+                    submit(pending, file);
+                    log.info("Resumed ingestion for file: {}", pending.getFileName());
+                } catch (ServiceUnavailableException e) {
+                    break; // queue full; the rest stay UPLOADED until the next start
+                }
+            } else {
+                markFailed(pending, null, "uploaded file no longer exists");
+            }
+        }
+    }
+
+    /**
+     * Queue an uploaded file for ingestion. The file is deleted once the pipeline is done with it.
+     *
+     * @throws ServiceUnavailableException when the extract queue is full
+     */
+    public void submit(FileMetadata fileMetadata, File file) {
+        try {
+            extractExecutor.execute(() -> extract(fileMetadata, file));
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Invoice ingestion queue is full, please retry later");
+        }
+    }
+
+    private void extract(FileMetadata fileMetadata, File file) {
+        long startTime = System.nanoTime();
+        try {
+            TextExtraction extraction = ocrService.extractText(file);
+            InvoiceData invoice = ocrService.parseInvoice(file, extraction.text());
+            fileMetadata.setExtractionMethod(extraction.method());
+            fileMetadata.setPageCount(extraction.pageCount());
+            fileMetadata.setOcrPageCount(extraction.ocrPageCount());
+            fileMetadata.setExtractionMs(extraction.durationMs());
+            meterRegistry.timer("ingestion.stage", "stage", "extract").record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            indexExecutor.execute(() -> index(fileMetadata, file, invoice));
+        } catch (RejectedExecutionException e) {
+            // Shutting down: keep the file and UPLOADED status so the next start picks it up again
+            log.warn("Ingestion of {} interrupted by shutdown", fileMetadata.getFileName());
+        } catch (Exception e) {
+            markFailed(fileMetadata, file, e.getMessage());
+        }
+    }
+
+    private void index(FileMetadata fileMetadata, File file, InvoiceData invoice) {
+        long startTime = System.nanoTime();
+        try {
+            InvoiceData saved = ocrService.saveInvoice(invoice);
+            fileMetadata.setInvoiceUuid(saved.getUuid());
+            fileMetadata.setStatus(InvoiceStatus.PROCESSED);
+            fileMetaDataRepository.save(fileMetadata);
+            meterRegistry.timer("ingestion.stage", "stage", "index").record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            log.info("OCR processing completed for file: {}", fileMetadata.getFileName());
+            deleteQuietly(file);
+        } catch (Exception e) {
+            markFailed(fileMetadata, file, e.getMessage());
+        }
+    }
+
+    private void markFailed(FileMetadata fileMetadata, File file, String reason) {
+        log.error("Invoice ingestion failed for file {}: {}", fileMetadata.getFileName(), reason);
+        try {
+            fileMetadata.setStatus(InvoiceStatus.FAILED);
+            fileMetaDataRepository.save(fileMetadata);
+        } catch (Exception dbEx) {
+            log.error("Failed to update file status to FAILED", dbEx);
+        }
+        deleteQuietly(file);
+    }
+
+    private void deleteQuietly(File file) {
+        if (file != null && file.exists()) {
+            try {
+                Files.delete(file.toPath());
+                log.info(" Temporary file deleted: {}", file.getName());
+            } catch (IOException ex) {
+                log.warn("Failed to delete temporary file: {}", file.getAbsolutePath(), ex);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Queued files keep status UPLOADED and are picked up again by resumePendingUploads()
+        extractExecutor.shutdown();
+        if (!extractExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+            extractExecutor.shutdownNow();
+        }
+        indexExecutor.shutdown();
+        indexExecutor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
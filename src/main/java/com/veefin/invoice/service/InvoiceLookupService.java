@@ -0,0 +1,195 @@
+package com.veefin.invoice.service;
+
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.repository.InvoiceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the invoice identifier a user typed in chat (invoice number, uuid or part of the merchant name)
+ * without loading the invoice_data table.
+ * Invoice number and uuid go to the indexed columns; merchant substrings are answered from an in-memory trigram index.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoiceLookupService {
+
+    private static final int GRAM_SIZE = 3;
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}&]+");
+    private static final Pattern UUID_PATTERN =
+            Pattern.compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$");
+
+    private final InvoiceRepository invoiceRepository;
+
+    // invoice uuid -> indexed merchant entry
+    private final Map<String, IndexedMerchant> merchantsByUuid = new ConcurrentHashMap<>();
+    // trigram -> invoice uuids whose merchant name contains it
+    private final Map<String, Set<String>> uuidsByGram = new ConcurrentHashMap<>();
+
+    /**
+     * Build the merchant index once the application (and Flyway) is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        try {
+            long startTime = System.currentTimeMillis();
+            invoiceRepository.findAllMerchantViews()
+                    .forEach(view -> index(view.getId(), view.getUuid(), view.getMerchantName()));
+            log.info("Invoice merchant index built with {} invoices in {} ms",
+                    merchantsByUuid.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("Failed to build invoice merchant index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Find invoice by invoice number, uuid or merchant name substring (in that order)
+     */
+    public InvoiceData findByIdentifier(String identifier) {
+        if (identifier == null || identifier.isBlank()) {
+            return null;
+        }
+        String key = identifier.trim();
+
+        if (UUID_PATTERN.matcher(key).matches()) {
+            InvoiceData byUuid = invoiceRepository.findByUuid(key);
+            if (byUuid != null) {
+                return byUuid;
+            }
+        }
+
+        InvoiceData byNumber = invoiceRepository.findFirstByInvoiceNumberOrderByIdAsc(key);
+        if (byNumber != null) {
+            return byNumber;
+        }
+
+        String merchantMatch = findUuidByMerchant(key);
+        return merchantMatch != null ? invoiceRepository.findByUuid(merchantMatch) : null;
+    }
+
+    /**
+     * The words of a question that name a merchant ("how much do I owe acme corp" -> "acme corp"): the first
+     * two-word, else one-word, run of non-ignored words found in some merchant name; null when there is none
+     */
+    public String findMerchantMention(String question, Set<String> ignoredWords) {
+        if (question == null) {
+            return null;
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(question.toLowerCase(Locale.ROOT))) {
+            words.add(word.length() >= GRAM_SIZE && !ignoredWords.contains(word) ? word : null);
+        }
+        for (int i = 0; i + 1 < words.size(); i++) {
+            if (words.get(i) != null && words.get(i + 1) != null) {
+                String pair = words.get(i) + " " + words.get(i + 1);
+                if (findUuidByMerchant(pair) != null) {
+                    return pair;
+                }
+            }
+        }
+        for (String word : words) {
+            if (word != null && findUuidByMerchant(word) != null) {
+                return word;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add or refresh an invoice in the merchant index. Call after every invoice save.
+     */
+    public void index(InvoiceData invoice) {
+        if (invoice == null) {
+            return;
+        }
+        index(invoice.getId(), invoice.getUuid(), invoice.getMerchantName());
+    }
+
+    private synchronized void index(Long id, String uuid, String merchantName) {
+        if (uuid == null) {
+            return;
+        }
+        String merchantLower = merchantName != null ? merchantName.toLowerCase(Locale.ROOT) : "";
+        IndexedMerchant previous = merchantsByUuid.put(uuid, new IndexedMerchant(id, merchantLower));
+
+        if (previous != null) {
+            if (previous.merchantLower().equals(merchantLower)) {
+                return;
+            }
+            for (String gram : grams(previous.merchantLower())) {
+                Set<String> uuids = uuidsByGram.get(gram);
+                if (uuids != null) {
+                    uuids.remove(uuid);
+                }
+            }
+        }
+
+        for (String gram : grams(merchantLower)) {
+            uuidsByGram.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(uuid);
+        }
+    }
+
+    /**
+     * Oldest invoice whose merchant name contains the query (case-insensitive), or null
+     */
+    private String findUuidByMerchant(String query) {
+        String queryLower = query.toLowerCase(Locale.ROOT);
+
+        Iterable<String> candidates;
+        if (queryLower.length() < GRAM_SIZE) {
+            candidates = merchantsByUuid.keySet();
+        } else {
+            // Only the rarest trigram's postings need checking; the contains() below confirms the match
+            Set<String> smallest = null;
+            for (String gram : grams(queryLower)) {
+                Set<String> uuids = uuidsByGram.get(gram);
+                if (uuids == null || uuids.isEmpty()) {
+                    return null;
+                }
+                if (smallest == null || uuids.size() < smallest.size()) {
+                    smallest = uuids;
+                }
+            }
+            candidates = smallest;
+        }
+
+        String bestUuid = null;
+        long bestId = Long.MAX_VALUE;
+        for (String uuid : candidates) {
+            IndexedMerchant entry = merchantsByUuid.get(uuid);
+            if (entry == null || !entry.merchantLower().contains(queryLower)) {
+                continue;
+            }
+            long id = entry.id() != null ? entry.id() : Long.MAX_VALUE;
+            if (bestUuid == null || id < bestId) {
+                bestUuid = uuid;
+                bestId = id;
+            }
+        }
+        return bestUuid;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private record IndexedMerchant(Long id, String merchantLower) {
+    }
+}
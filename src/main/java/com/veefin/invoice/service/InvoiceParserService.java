@@ -1,143 +1,459 @@
 package com.veefin.invoice.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Extracts merchant name, invoice number, total amount and due date from invoice text in a single walk.
+ * Every field keeps the rule the old per-field regex scans used (first qualifying line, first alphanumeric
+ * token with a letter and a digit, amount after "Total Amount" else the largest x.xx amount, date after
+ * "Due Date" else the first date not next to "Issue"), but the text is read once, character by character,
+ * with no regex compilation, line array or intermediate strings per candidate.
+ * Registered {@link InvoiceFieldExtractor}s (learned merchant templates) are tried first; the scan only runs
+ * when they leave fields open.
+ */
 @Service
+@RequiredArgsConstructor
 public class InvoiceParserService {
 
+    private static final String UNKNOWN = "Unknown";
+    private static final List<String> FIELDS = List.of("merchant_name", "invoice_number", "total_amount", "due_date");
 
-        public Map<String, String> parseInvoiceFields(String text) {
-            Map<String, String> result = new HashMap<>();
+    /** Invoice number token length, as in the old [A-Z0-9\-/_.]{3,20} */
+    private static final int MIN_TOKEN = 3;
+    private static final int MAX_TOKEN = 20;
+
+    /** How close "issue" may be to a fallback date for it to be treated as the issue date */
+    private static final int ISSUE_CONTEXT = 20;
+
+    /**
+     * Pluggable extractors (e.g. learned merchant templates) run first; the heuristic scan fills whatever they leave
+     */
+    private final List<InvoiceFieldExtractor> fieldExtractors;
+    private final MeterRegistry meterRegistry;
+
+    public Map<String, String> parseInvoiceFields(String text) {
+        long startTime = System.nanoTime();
+        Map<String, String> result = new HashMap<>();
+        String supplier = null;
+        int suppliers = 0;
+        for (InvoiceFieldExtractor extractor : fieldExtractors) {
+            Map<String, String> extracted = extractor.extract(text);
+            if (!extracted.isEmpty()) {
+                extracted.forEach(result::putIfAbsent);
+                supplier = extractor.name();
+                suppliers++;
+            }
+            if (result.keySet().containsAll(FIELDS)) {
+                break;
+            }
+        }
+
+        boolean complete = result.keySet().containsAll(FIELDS);
+        if (!complete) {
+            Scan scan = new Scan(stripOcrSymbols(text));
+            scan.run();
 
             // Fixed field names with flexible value extraction
-            result.put("merchant_name", extractMerchantName(text));
-            result.put("invoice_number", extractInvoiceNumber(text));
-            result.put("total_amount", extractTotalAmount(text));
-            result.put("due_date", extractDueDate(text));
+            result.putIfAbsent("merchant_name", scan.merchantName);
+            result.putIfAbsent("invoice_number", scan.invoiceNumber);
+            result.putIfAbsent("total_amount", scan.totalAmount());
+            result.putIfAbsent("due_date", scan.dueDate());
+        }
+        String path = suppliers == 0 ? "heuristic" : complete && suppliers == 1 ? supplier : "mixed";
+        meterRegistry.timer("invoice.parse.time", "path", path).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    /**
+     * One pass over the text; each field's state machine is fed at every position until it is settled
+     */
+    private static final class Scan {
+
+        private final String text;
+        private final int length;
+
+        private String merchantName = UNKNOWN;
+        private boolean merchantDone;
+        private int lineStart;
 
-            return result;
+        private String invoiceNumber = UNKNOWN;
+        private boolean invoiceNumberDone;
+        private int nextToken;
+
+        private String contextAmount;
+        private boolean awaitingAmount;
+        private String largestAmount = UNKNOWN;
+        private double largestValue;
+        private int nextAmount;
+
+        private String contextDate;
+        private boolean awaitingDate;
+        private final String[] fallbackDates = new String[3];
+        private final int[] nextDate = new int[3];
+
+        Scan(String text) {
+            this.text = text;
+            this.length = text.length();
         }
 
-        private String extractMerchantName(String text) {
-            // Look for company names (usually first meaningful line)
-            String[] lines = text.split("\n");
-            for (String line : lines) {
-                line = line.trim();
-                // Skip empty lines, GSTIN, and common headers
-                if (line.length() > 3 &&
-                        !line.matches(".*GSTIN.*") &&
-                        !line.matches(".*Invoice.*") &&
-                        !line.matches(".*Field.*") &&
-                        !line.matches(".*Value.*") &&
-                        line.matches(".*[A-Za-z].*")) {
-                    return cleanValue(line);
+        void run() {
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    endOfLine(i);
+                    continue;
+                }
+                if (!invoiceNumberDone && i >= nextToken) {
+                    invoiceNumberAt(i);
+                }
+                if (contextAmount == null) {
+                    amountAt(i, c);
+                }
+                if (contextDate == null) {
+                    dateAt(i, c);
+                }
+                if (merchantDone && invoiceNumberDone && contextAmount != null && contextDate != null) {
+                    return; // nothing left that a later position could change
                 }
             }
-            return "Unknown";
+            endOfLine(length);
         }
 
-        private String extractInvoiceNumber(String text) {
-            // Look for any alphanumeric pattern that could be invoice number
-            Pattern pattern = Pattern.compile("([A-Z0-9\\-/_.]{3,20})", Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(text);
+        // ---------- merchant name: first line with a letter that isn't a header ----------
 
-            while (matcher.find()) {
-                String candidate = matcher.group(1);
-                // Skip common non-invoice patterns
-                if (!candidate.matches(".*(?:GSTIN|Field|Value|pdf).*") &&
-                        candidate.matches(".*[A-Z].*[0-9].*|.*[0-9].*[A-Z].*")) {
-                    return cleanValue(candidate);
+        private void endOfLine(int end) {
+            if (!merchantDone) {
+                String line = text.substring(lineStart, end).trim();
+                if (line.length() > 3 && !line.contains("GSTIN") && !line.contains("Invoice")
+                        && !line.contains("Field") && !line.contains("Value") && hasAsciiLetter(line)) {
+                    merchantName = cleanValue(line);
+                    merchantDone = true;
                 }
             }
-            return "Unknown";
+            lineStart = end + 1;
         }
 
-    private String extractTotalAmount(String text) {
-        // First, clean OCR artifacts from the text
-        String cleanText = text.replaceAll("[■●▪♦◆▲►]", ""); // Remove OCR symbols
+        // ---------- invoice number: first token of [A-Za-z0-9-/_.]{3,20} with an upper-case letter and a digit ----------
 
-        // Look for amount patterns near "Total Amount" keywords
-        Pattern contextPattern = Pattern.compile("Total\\s*Amount[^0-9]*([0-9,]+\\.?[0-9]{0,2})", Pattern.CASE_INSENSITIVE);
-        Matcher contextMatcher = contextPattern.matcher(cleanText);
+        private void invoiceNumberAt(int start) {
+            int end = start;
+            while (end < length && end - start < MAX_TOKEN && isTokenChar(text.charAt(end))) {
+                end++;
+            }
+            if (end - start < MIN_TOKEN) {
+                // Too short here means too short from every later position of the same run
+                while (end < length && isTokenChar(text.charAt(end))) {
+                    end++;
+                }
+                nextToken = Math.max(end, start + 1);
+                return;
+            }
+            nextToken = end;
+            boolean upper = false;
+            boolean digit = false;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                upper |= c >= 'A' && c <= 'Z';
+                digit |= c >= '0' && c <= '9';
+            }
+            if (upper && digit && !containsAny(start, end, "GSTIN", "Field", "Value", "pdf")) {
+                invoiceNumber = cleanValue(text.substring(start, end));
+                invoiceNumberDone = true;
+            }
+        }
+
+        // ---------- total amount: number after "Total Amount", else the largest x.xx above 10 ----------
+
+        private void amountAt(int i, char c) {
+            if (!awaitingAmount && matchesKeyword(i, "total", "amount")) {
+                awaitingAmount = true;
+            }
+            if (awaitingAmount) {
+                if (!isDigit(c)) {
+                    return;
+                }
+                // [0-9,]+ \.? [0-9]{0,2}, starting at the first digit after the keyword
+                int end = skipDigitsOrCommas(i);
+                if (end < length && text.charAt(end) == '.') {
+                    end++;
+                }
+                int decimals = 0;
+                while (end < length && decimals < 2 && isDigit(text.charAt(end))) {
+                    end++;
+                    decimals++;
+                }
+                contextAmount = cleanValue(text.substring(i, end));
+                return;
+            }
+            if (isDigitOrComma(c) && i >= nextAmount
+                    && (i == nextAmount || !isDigitOrComma(text.charAt(i - 1)))) {
+                fallbackAmountAt(i);
+            }
+        }
 
-        if (contextMatcher.find()) {
-            return cleanValue(contextMatcher.group(1));
+        private void fallbackAmountAt(int start) {
+            // [0-9,]+ \. [0-9]{2}; if it fails at the start of a run it fails everywhere in that run
+            int runEnd = skipDigitsOrCommas(start);
+            if (runEnd + 2 < length && text.charAt(runEnd) == '.'
+                    && isDigit(text.charAt(runEnd + 1)) && isDigit(text.charAt(runEnd + 2))) {
+                int end = runEnd + 3;
+                nextAmount = end;
+                try {
+                    double value = Double.parseDouble(text.substring(start, end).replace(",", ""));
+                    // Assume largest number is the total amount
+                    if (value > largestValue && value > 10) {
+                        largestValue = value;
+                        largestAmount = text.substring(start, end); // Keep original format with commas
+                    }
+                } catch (NumberFormatException e) {
+                    // Skip invalid numbers
+                }
+            } else {
+                nextAmount = runEnd;
+            }
         }
 
-        // Fallback: Look for any number with decimal places (likely amounts)
-        Pattern pattern = Pattern.compile("([0-9,]+\\.[0-9]{2})"); // Prefer amounts with 2 decimal places
-        Matcher matcher = pattern.matcher(cleanText);
+        String totalAmount() {
+            return contextAmount != null ? contextAmount : largestAmount;
+        }
 
-        String largestAmount = "Unknown";
-        double maxValue = 0;
+        // ---------- due date: date after "Due Date", else the first date not near "Issue" ----------
 
-        while (matcher.find()) {
-            String candidate = matcher.group(1).replace(",", "");
-            try {
-                double value = Double.parseDouble(candidate);
-                // Assume largest number is the total amount
-                if (value > maxValue && value > 10) { // Minimum threshold
-                    maxValue = value;
-                    largestAmount = matcher.group(1); // Keep original format with commas
+        private void dateAt(int i, char c) {
+            if (matchesKeyword(i, "due", "date")) {
+                awaitingDate = true;
+            }
+            if (!isDigit(c)) {
+                return;
+            }
+            if (awaitingDate) {
+                // The date must start at the first digit after the keyword
+                awaitingDate = false;
+                int end = dayMonthNameYear(i);
+                if (end < 0) end = dayMonthYear(i);
+                if (end < 0) end = yearMonthDay(i);
+                if (end >= 0) {
+                    contextDate = cleanValue(text.substring(i, end));
+                    return;
+                }
+            }
+            // Fallback candidates, one independent left-to-right search per date format
+            for (int format = 0; format < 3; format++) {
+                if (fallbackDates[format] != null || i < nextDate[format]) {
+                    continue;
+                }
+                int end = switch (format) {
+                    case 0 -> dayMonthNameYear(i);
+                    case 1 -> dayMonthYear(i);
+                    default -> yearMonthDay(i);
+                };
+                if (end >= 0) {
+                    nextDate[format] = end;
+                    if (!nearIssue(i, end)) {
+                        fallbackDates[format] = cleanValue(text.substring(i, end));
+                    }
                 }
-            } catch (NumberFormatException e) {
-                // Skip invalid numbers
             }
         }
 
-        return largestAmount;
-    }
+        String dueDate() {
+            if (contextDate != null) {
+                return contextDate;
+            }
+            for (String date : fallbackDates) {
+                if (date != null) {
+                    return date;
+                }
+            }
+            return UNKNOWN;
+        }
+
+        /** [0-9]{1,2}[-/][A-Za-z]{3}[-/][0-9]{4} */
+        private int dayMonthNameYear(int i) {
+            for (int dayDigits = 2; dayDigits >= 1; dayDigits--) {
+                int p = i;
+                if (!digits(p, dayDigits)) continue;
+                p += dayDigits;
+                if (!isSeparator(p)) continue;
+                p++;
+                if (p + 3 > length || !isAsciiLetter(text.charAt(p)) || !isAsciiLetter(text.charAt(p + 1))
+                        || !isAsciiLetter(text.charAt(p + 2))) continue;
+                p += 3;
+                if (!isSeparator(p)) continue;
+                p++;
+                if (digits(p, 4)) return p + 4;
+            }
+            return -1;
+        }
+
+        /** [0-9]{1,2}[-/][0-9]{1,2}[-/][0-9]{4} */
+        private int dayMonthYear(int i) {
+            for (int dayDigits = 2; dayDigits >= 1; dayDigits--) {
+                for (int monthDigits = 2; monthDigits >= 1; monthDigits--) {
+                    int p = i;
+                    if (!digits(p, dayDigits)) continue;
+                    p += dayDigits;
+                    if (!isSeparator(p)) continue;
+                    p++;
+                    if (!digits(p, monthDigits)) continue;
+                    p += monthDigits;
+                    if (!isSeparator(p)) continue;
+                    p++;
+                    if (digits(p, 4)) return p + 4;
+                }
+            }
+            return -1;
+        }
+
+        /** [0-9]{4}[-/][0-9]{1,2}[-/][0-9]{1,2} */
+        private int yearMonthDay(int i) {
+            if (!digits(i, 4) || !isSeparator(i + 4)) {
+                return -1;
+            }
+            for (int monthDigits = 2; monthDigits >= 1; monthDigits--) {
+                int p = i + 5;
+                if (!digits(p, monthDigits)) continue;
+                p += monthDigits;
+                if (!isSeparator(p)) continue;
+                p++;
+                if (digits(p, 2)) return p + 2;
+                if (digits(p, 1)) return p + 1;
+            }
+            return -1;
+        }
+
+        private boolean nearIssue(int start, int end) {
+            int from = Math.max(0, start - ISSUE_CONTEXT);
+            int to = Math.min(length, end + ISSUE_CONTEXT);
+            for (int i = from; i + 5 <= to; i++) {
+                if (text.regionMatches(true, i, "issue", 0, 5)) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
+        // ---------- helpers ----------
 
+        /** first\s*second, case-insensitive, starting at i */
+        private boolean matchesKeyword(int i, String first, String second) {
+            if ((text.charAt(i) | 0x20) != first.charAt(0) || !text.regionMatches(true, i, first, 0, first.length())) {
+                return false;
+            }
+            int p = i + first.length();
+            while (p < length && isSpace(text.charAt(p))) {
+                p++;
+            }
+            return text.regionMatches(true, p, second, 0, second.length());
+        }
+
+        private boolean containsAny(int start, int end, String... words) {
+            for (String word : words) {
+                for (int i = start; i + word.length() <= end; i++) {
+                    if (text.startsWith(word, i)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
 
-    private String extractDueDate(String text) {
-        // First, try to find dates near "Due Date" keywords
-        Pattern contextPattern = Pattern.compile("Due\\s*Date[^0-9]*([0-9]{1,2}[-/][A-Za-z]{3}[-/][0-9]{4}|[0-9]{1,2}[-/][0-9]{1,2}[-/][0-9]{4}|[0-9]{4}[-/][0-9]{1,2}[-/][0-9]{1,2})", Pattern.CASE_INSENSITIVE);
-        Matcher contextMatcher = contextPattern.matcher(text);
+        private boolean digits(int p, int count) {
+            if (p + count > length) {
+                return false;
+            }
+            for (int i = p; i < p + count; i++) {
+                if (!isDigit(text.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
 
-        if (contextMatcher.find()) {
-            return cleanValue(contextMatcher.group(1));
+        private boolean isSeparator(int p) {
+            return p < length && (text.charAt(p) == '-' || text.charAt(p) == '/');
         }
 
-        // Fallback: Look for date patterns but skip Issue Date
-        Pattern[] datePatterns = {
-                Pattern.compile("([0-9]{1,2}[-/][A-Za-z]{3}[-/][0-9]{4})"),
-                Pattern.compile("([0-9]{1,2}[-/][0-9]{1,2}[-/][0-9]{4})"),
-                Pattern.compile("([0-9]{4}[-/][0-9]{1,2}[-/][0-9]{1,2})")
-        };
+        private int skipDigitsOrCommas(int p) {
+            while (p < length && isDigitOrComma(text.charAt(p))) {
+                p++;
+            }
+            return p;
+        }
+    }
 
-        for (Pattern pattern : datePatterns) {
-            Matcher matcher = pattern.matcher(text);
-            while (matcher.find()) {
-                String candidate = matcher.group(1);
-                // Skip if this date appears near "Issue Date"
-                int start = matcher.start();
-                String context = text.substring(Math.max(0, start - 20), Math.min(text.length(), start + candidate.length() + 20));
-                if (!context.toLowerCase().contains("issue")) {
-                    return cleanValue(candidate);
+    /**
+     * Remove the bullet / box glyphs OCR tends to produce, once, before any field is extracted
+     */
+    private static String stripOcrSymbols(String text) {
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isOcrSymbol(c)) {
+                if (sb == null) {
+                    sb = new StringBuilder(text.length()).append(text, 0, i);
                 }
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? text : sb.toString();
+    }
+
+    private static String cleanValue(String value) {
+        if (value == null) return UNKNOWN;
+
+        // Keep only valid chars (letters, digits, whitespace and - / _ . , :)
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isAsciiLetter(c) || isDigit(c) || isSpace(c)
+                    || c == '-' || c == '/' || c == '_' || c == '.' || c == ',' || c == ':') {
+                sb.append(c);
             }
         }
+        String cleaned = sb.toString().trim();
+        return cleaned.isEmpty() ? UNKNOWN : cleaned;
+    }
 
-        return "Unknown";
+    private static boolean isOcrSymbol(char c) {
+        return c == '■' || c == '●' || c == '▪' || c == '♦' || c == '◆' || c == '▲' || c == '►';
     }
 
-    private String cleanValue(String value) {
-        if (value == null) return "Unknown";
+    /** Same set as regex \s */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
 
-        // Remove OCR artifacts and clean up
-        value = value.replaceAll("[■●▪♦◆▲►]", ""); // Remove OCR symbols
-        value = value.replaceAll("[^A-Za-z0-9\\s\\-/_.,:.]", ""); // Keep only valid chars
-        value = value.trim();
+    private static boolean isTokenChar(char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '-' || c == '/' || c == '_' || c == '.';
+    }
 
-        return value.isEmpty() ? "Unknown" : value;
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
     }
 
+    private static boolean hasAsciiLetter(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (isAsciiLetter(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 
+    private static boolean isDigitOrComma(char c) {
+        return isDigit(c) || c == ',';
+    }
 }
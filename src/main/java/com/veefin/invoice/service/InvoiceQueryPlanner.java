@@ -0,0 +1,197 @@
+package com.veefin.invoice.service;
+
+import com.veefin.common.query.AggregateQueries;
+import com.veefin.common.query.QuestionPeriod;
+import com.veefin.common.query.QuestionText;
+import com.veefin.common.utility.TextDates;
+import com.veefin.common.vector.VectorSearchFilters;
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.enums.InvoiceStatus;
+import com.veefin.invoice.repository.InvoiceRepository;
+import com.veefin.invoice.repository.InvoiceSpecification;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Answers structured invoice questions ("how much do I owe Acme", "invoices due this week", "how many invoices
+ * are pending this month") from one aggregate query over invoice_data, rendered with a fixed template, instead of
+ * vector search + LLM. Questions it does not recognize return empty and go through RAG as before.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoiceQueryPlanner {
+
+    private static final List<String> QUERY_STATUSES = List.of(
+            InvoiceStatus.PAID.name(), InvoiceStatus.PENDING.name(), InvoiceStatus.FAILED.name());
+    private static final Pattern OVERDUE = Pattern.compile("\\b(?:overdue|past due|late)\\b");
+    private static final Pattern DUE = Pattern.compile("\\bdue\\b");
+    private static final Pattern OWED = Pattern.compile("\\b(?:owe|owed|outstanding|unpaid|payable|balance)\\b");
+    private static final Pattern INVOICES = Pattern.compile("\\b(?:invoices?|bills?)\\b");
+    private static final Pattern COUNT = Pattern.compile("\\b(?:how many|number of|count)\\b");
+    private static final Pattern TOTAL = Pattern.compile("\\b(?:total|sum|how much)\\b");
+    // question words that are never part of a merchant name
+    private static final Set<String> IGNORED_WORDS = Set.of(
+            "how", "much", "many", "what", "which", "when", "the", "and", "are", "was", "were", "have", "has", "did",
+            "does", "can", "you", "please", "tell", "give", "show", "list", "all", "any", "our", "for", "from", "with",
+            "since", "during", "invoice", "invoices", "bill", "bills", "total", "sum", "amount", "number", "count",
+            "owe", "owed", "due", "overdue", "past", "late", "outstanding", "unpaid", "payable", "balance", "status",
+            "pending", "paid", "failed", "this", "next", "last", "today", "tomorrow", "yesterday", "week", "month",
+            "year", "days", "january", "february", "march", "april", "may", "june", "july", "august", "september",
+            "october", "november", "december");
+    private static final int LISTED_INVOICES = 10;
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceLookupService invoiceLookupService;
+    private final AggregateQueries aggregateQueries;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Fill due_on for invoices saved before it existed; new and updated invoices set it themselves
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillDueOn() {
+        try {
+            int updated = 0;
+            for (InvoiceRepository.InvoiceDueDateView view : invoiceRepository.findDueDatesWithoutDueOn()) {
+                LocalDate dueOn = TextDates.parse(view.getDueDate());
+                if (dueOn != null) {
+                    updated += invoiceRepository.updateDueOn(view.getId(), dueOn);
+                }
+            }
+            if (updated > 0) {
+                log.info("Backfilled due_on for {} invoices", updated);
+            }
+        } catch (Exception e) {
+            log.error("Failed to backfill invoice due dates: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The templated answer, or empty when the question is not one of the structured shapes
+     */
+    public Optional<String> answer(String question) {
+        if (question == null || question.isBlank()) {
+            return Optional.empty();
+        }
+        String lowerQuestion = question.toLowerCase(Locale.ROOT);
+        if (QuestionText.namesSpecificValue(lowerQuestion)) {
+            // an invoice number or an amount: the RAG path (identifier lookup) answers about that invoice
+            return Optional.empty();
+        }
+
+        long startTime = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        QuestionPeriod period = QuestionPeriod.find(lowerQuestion, today);
+        String merchant = invoiceLookupService.findMerchantMention(lowerQuestion, IGNORED_WORDS);
+        Specification<InvoiceData> filter = InvoiceSpecification.filterInvoices(null, null, merchant, null, null, null);
+
+        String plan;
+        String answer;
+        if (OVERDUE.matcher(lowerQuestion).find()) {
+            plan = "overdue";
+            answer = listDue(filter.and(InvoiceSpecification.unpaid()).and(InvoiceSpecification.dueBefore(today)),
+                    "overdue", merchant);
+        } else if (DUE.matcher(lowerQuestion).find() && period != null) {
+            plan = "due";
+            answer = listDue(filter.and(InvoiceSpecification.unpaid())
+                    .and(InvoiceSpecification.dueBetween(period.from(), period.until())), "due " + period.label(), merchant);
+        } else if (OWED.matcher(lowerQuestion).find() || DUE.matcher(lowerQuestion).find()) {
+            plan = "owed";
+            answer = owed(filter.and(InvoiceSpecification.unpaid()), merchant);
+        } else if (INVOICES.matcher(lowerQuestion).find()
+                && (COUNT.matcher(lowerQuestion).find() || TOTAL.matcher(lowerQuestion).find())) {
+            plan = "totals";
+            String status = VectorSearchFilters.mentionedStatus(lowerQuestion, QUERY_STATUSES);
+            Specification<InvoiceData> totalsFilter = InvoiceSpecification.filterInvoices(null, status, merchant, null, null, null);
+            if (period != null) {
+                totalsFilter = totalsFilter.and(InvoiceSpecification.createdBetween(period.fromDateTime(), period.untilDateTime()));
+            }
+            answer = totals(totalsFilter, status, merchant, period);
+        } else {
+            return Optional.empty();
+        }
+
+        meterRegistry.timer("chat.structured.query", "domain", "invoice", "plan", plan)
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        log.info("Structured invoice query ({}) answered in {} ms", plan,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return Optional.of(answer);
+    }
+
+    private String owed(Specification<InvoiceData> filter, String merchant) {
+        AggregateQueries.Totals totals = aggregateQueries.totals(InvoiceData.class, filter, "totalAmount");
+        if (totals.count() == 0) {
+            return "You have no unpaid invoices" + merchantSuffix(" from ", merchant) + ".";
+        }
+        return String.format("You owe **₹%,.2f**%s across %d unpaid %s.%n%n%s",
+                totals.sum(), merchantSuffix(" to ", merchant), totals.count(), plural(totals.count()),
+                table(filter, totals.count()));
+    }
+
+    private String listDue(Specification<InvoiceData> filter, String description, String merchant) {
+        AggregateQueries.Totals totals = aggregateQueries.totals(InvoiceData.class, filter, "totalAmount");
+        if (totals.count() == 0) {
+            return "No unpaid invoices" + merchantSuffix(" from ", merchant) + " are " + description + ".";
+        }
+        return String.format("**%d unpaid %s%s %s %s**, totalling ₹%,.2f.%n%n%s",
+                totals.count(), plural(totals.count()), merchantSuffix(" from ", merchant), totals.count() == 1 ? "is" : "are",
+                description, totals.sum(), table(filter, totals.count()));
+    }
+
+    private String totals(Specification<InvoiceData> filter, String status, String merchant, QuestionPeriod period) {
+        AggregateQueries.Totals totals = aggregateQueries.totals(InvoiceData.class, filter, "totalAmount");
+        String statusLabel = status != null ? status.toLowerCase(Locale.ROOT) + " " : "";
+        String periodLabel = period != null ? " created " + period.label() : "";
+        return String.format("**%d %s%s%s%s**, totalling ₹%,.2f.",
+                totals.count(), statusLabel, plural(totals.count()), merchantSuffix(" from ", merchant), periodLabel, totals.sum());
+    }
+
+    /**
+     * Up to LISTED_INVOICES of the matching invoices, soonest due first
+     */
+    private String table(Specification<InvoiceData> filter, long count) {
+        List<InvoiceData> invoices = invoiceRepository.findBy(filter, query -> query
+                .sortBy(Sort.by("dueOn", "id"))
+                .limit(LISTED_INVOICES)
+                .all());
+        StringBuilder table = new StringBuilder("""
+                | Invoice No | Merchant | Amount | Status | Due Date |
+                |------------|----------|--------|--------|----------|
+                """);
+        for (InvoiceData invoice : invoices) {
+            table.append(String.format("| %s | %s | ₹%,.2f | %s | %s |%n",
+                    invoice.getInvoiceNumber(),
+                    invoice.getMerchantName(),
+                    invoice.getTotalAmount() != null ? invoice.getTotalAmount() : 0.0,
+                    invoice.getStatus(),
+                    invoice.getDueDate()));
+        }
+        if (count > invoices.size()) {
+            table.append(String.format("%n…and %d more.", count - invoices.size()));
+        }
+        return table.toString();
+    }
+
+    private static String merchantSuffix(String preposition, String merchant) {
+        return merchant != null ? preposition + QuestionText.capitalize(merchant) : "";
+    }
+
+    private static String plural(long count) {
+        return count == 1 ? "invoice" : "invoices";
+    }
+}
@@ -1,55 +1,140 @@
 package com.veefin.invoice.service;
 
+import com.veefin.common.vector.HybridRetriever;
+import com.veefin.common.vector.LexicalIndex;
+import com.veefin.common.vector.VectorIndexWriter;
+import com.veefin.common.vector.VectorSearchFilters;
 import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.enums.InvoiceStatus;
+import com.veefin.invoice.repository.InvoiceRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class InvoiceVectorService {
 
-    private final VectorStore vectorStore;
+    private static final String DOCUMENT_TYPE = "INVOICE";
+    // statuses a question can filter on; UPLOADED / PROCESSED read as verbs ("invoices I uploaded")
+    private static final List<String> QUERY_STATUSES = List.of(
+            InvoiceStatus.PAID.name(), InvoiceStatus.PENDING.name(), InvoiceStatus.FAILED.name());
+    // metadata fields a question can name verbatim; matched exactly, skipping the vector search
+    private static final List<String> IDENTIFIER_FIELDS = List.of("uuid", "invoiceNumber");
+    private static final int PAGE_SIZE = 500;
 
+    private final VectorIndexWriter vectorIndexWriter;
+    private final LexicalIndex lexicalIndex;
+    private final HybridRetriever hybridRetriever;
+    private final InvoiceRepository invoiceRepository;
+
+    @Value("${vector.search.top-k:5}")
+    private int topK;
+
+    /**
+     * Build the lexical index from invoice_data once the application (and Flyway) is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadLexicalIndex() {
+        try {
+            long startTime = System.currentTimeMillis();
+            Page<InvoiceData> page;
+            int pageNumber = 0;
+            do {
+                page = invoiceRepository.findAll(PageRequest.of(pageNumber++, PAGE_SIZE, Sort.by("id")));
+                lexicalIndex.putAll(toDocuments(page.getContent()), IDENTIFIER_FIELDS);
+            } while (page.hasNext());
+            log.info("Invoice lexical index built in {} ms", System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("Failed to build invoice lexical index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queue the invoice for embedding; it is written to the vector store with the next batch.
+     * The lexical index is updated right away.
+     */
     public void storeInvoiceInVectorDB(InvoiceData invoice) {
-        // Create Document with content and metadata
-        Map<String, Object> metadata = Map.of(
-                "uuid", invoice.getUuid(),
-                "invoiceNumber", invoice.getInvoiceNumber(),
-                "totalAmount", invoice.getTotalAmount(),
-                "merchantName", invoice.getMerchantName(),
-                "status", invoice.getStatus().name(),
-                "dueDate", invoice.getDueDate(),
-                "createdAt", invoice.getCreatedAt().toString(),
-                "updatedAt", invoice.getUpdatedAt().toString(),
-                "documentType", "INVOICE"
-        );
+        storeInvoicesInVectorDB(List.of(invoice));
+    }
 
-        Document document = new Document(
+    public void storeInvoicesInVectorDB(List<InvoiceData> invoices) {
+        List<Document> documents = toDocuments(invoices);
+        lexicalIndex.putAll(documents, IDENTIFIER_FIELDS);
+        vectorIndexWriter.enqueueAll(documents);
+    }
+
+    /**
+     * Documents for a page of invoices; a row that can't be converted is skipped rather than failing the page
+     */
+    private List<Document> toDocuments(List<InvoiceData> invoices) {
+        List<Document> documents = new ArrayList<>(invoices.size());
+        for (InvoiceData invoice : invoices) {
+            try {
+                documents.add(toDocument(invoice));
+            } catch (Exception e) {
+                log.warn("Skipping invoice {} in the search indexes: {}", invoice.getUuid(), e.getMessage());
+            }
+        }
+        return documents;
+    }
+
+    private Document toDocument(InvoiceData invoice) {
+        // Create Document with content and metadata; null columns are left out (Qdrant payloads reject nulls)
+        Map<String, Object> metadata = new HashMap<>();
+        putIfPresent(metadata, "uuid", invoice.getUuid());
+        putIfPresent(metadata, "invoiceNumber", invoice.getInvoiceNumber());
+        putIfPresent(metadata, "totalAmount", invoice.getTotalAmount());
+        putIfPresent(metadata, "merchantName", invoice.getMerchantName());
+        putIfPresent(metadata, "status", invoice.getStatus() != null ? invoice.getStatus().name() : null);
+        putIfPresent(metadata, "dueDate", invoice.getDueDate());
+        if (invoice.getCreatedAt() != null) {
+            metadata.put("createdAt", invoice.getCreatedAt().toString());
+            metadata.put(VectorSearchFilters.CREATED_AT_EPOCH, VectorSearchFilters.epochSeconds(invoice.getCreatedAt()));
+        }
+        putIfPresent(metadata, "updatedAt", invoice.getUpdatedAt() != null ? invoice.getUpdatedAt().toString() : null);
+        metadata.put(VectorSearchFilters.DOCUMENT_TYPE, DOCUMENT_TYPE);
+
+        return new Document(
                  invoice.getUuid(),
                 invoice.getRawText(),
                 metadata
         );
+    }
 
-        // Add document to vector store (embedding happens automatically)
-        vectorStore.add(List.of(document));
+    private static void putIfPresent(Map<String, Object> metadata, String key, Object value) {
+        if (value != null) {
+            metadata.put(key, value);
+        }
     }
 
+    /**
+     * Top-k invoices for the question: an invoice named by number or uuid directly, otherwise the fused
+     * lexical and vector ranking, filtered on documentType and the status / date window the question mentions
+     */
     public List<Document> searchSimilarInvoices(String query) {
-        return vectorStore.similaritySearch(query);
+        return hybridRetriever.retrieve(query, DOCUMENT_TYPE,
+                VectorSearchFilters.forQuestion(DOCUMENT_TYPE, query, QUERY_STATUSES), topK);
     }
 
     /**
-     * Update invoice in vector DB when status or other fields change
-     * This re-adds the document with the same UUID, which updates it in the vector store
+     * Update invoice in vector DB when status or other fields change.
+     * The raw text is unchanged in that case, so the indexer only rewrites the Qdrant payload (no re-embedding)
      */
     public void updateInvoiceInVectorDB(InvoiceData invoice) {
-        // Reuse the same logic as storeInvoiceInVectorDB
-        // Since we use the same UUID, it will update the existing document
         storeInvoiceInVectorDB(invoice);
     }
 
@@ -0,0 +1,328 @@
+package com.veefin.invoice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veefin.invoice.dto.MerchantTemplateDTO;
+import com.veefin.invoice.entity.MerchantTemplate;
+import com.veefin.invoice.repository.MerchantTemplateRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-merchant invoice layouts.
+ * When a user confirms an invoice's fields, the label in front of each value ("Invoice No:", "Amount Due") is
+ * recorded together with the header line carrying the merchant's name. Later invoices with the same header line
+ * are read by label directly instead of by the generic heuristic.
+ * Templates are cached in memory, keyed by the normalized header line (signature).
+ */
+@Slf4j
+@Service
+@Order(0)
+@RequiredArgsConstructor
+public class MerchantTemplateService implements InvoiceFieldExtractor {
+
+    static final String MERCHANT_NAME = "merchant_name";
+    static final String INVOICE_NUMBER = "invoice_number";
+    static final String TOTAL_AMOUNT = "total_amount";
+    static final String DUE_DATE = "due_date";
+
+    /** Header lines searched for the merchant signature */
+    private static final int SIGNATURE_LINES = 8;
+    private static final int MAX_LABEL_LENGTH = 40;
+
+    private static final Pattern AMOUNT = Pattern.compile("[0-9][0-9,]*(?:\\.[0-9]{1,2})?");
+    private static final Pattern DATE = Pattern.compile(
+            "[0-9]{1,2}[-/][A-Za-z]{3}[-/][0-9]{4}|[0-9]{1,2}[-/][0-9]{1,2}[-/][0-9]{4}|[0-9]{4}[-/][0-9]{1,2}[-/][0-9]{1,2}");
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9][A-Za-z0-9\\-/_.]*");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern LABEL_TRAILER = Pattern.compile("[\\s:#\\-]+$");
+
+    private final MerchantTemplateRepository merchantTemplateRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadTemplates() {
+        try {
+            merchantTemplateRepository.findAll().forEach(this::cache);
+            log.info("Loaded {} merchant invoice templates", templates.size());
+        } catch (Exception e) {
+            log.error("Failed to load merchant templates: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String name() {
+        return "template";
+    }
+
+    @Override
+    public Map<String, String> extract(String text) {
+        if (templates.isEmpty() || text == null) {
+            return Map.of();
+        }
+        String[] lines = text.split("\n");
+        CompiledTemplate template = findTemplate(lines);
+        if (template == null) {
+            meterRegistry.counter("invoice.template.lookups", "result", "miss").increment();
+            return Map.of();
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put(MERCHANT_NAME, template.merchantName());
+        template.anchors().forEach((field, anchor) -> {
+            String value = read(lines, field, anchor);
+            if (value != null) {
+                fields.put(field, value);
+            }
+        });
+
+        boolean complete = fields.size() == template.anchors().size() + 1;
+        (complete ? template.hits() : template.partialHits()).incrementAndGet();
+        meterRegistry.counter("invoice.template.lookups", "result", complete ? "hit" : "partial").increment();
+        return fields;
+    }
+
+    /**
+     * Learn (or re-learn) the layout of a confirmed invoice. Fields whose value can't be located in the text
+     * are left to the heuristic.
+     */
+    public void learn(String rawText, Map<String, String> confirmedFields) {
+        String merchantName = confirmedFields.get(MERCHANT_NAME);
+        if (rawText == null || merchantName == null || merchantName.isBlank()) {
+            return;
+        }
+        String[] lines = rawText.split("\n");
+        String signature = signatureFor(lines, merchantName);
+        if (signature == null) {
+            log.warn("Merchant name {} not found in the invoice header, no template learned", merchantName);
+            return;
+        }
+
+        Map<String, FieldAnchor> anchors = new HashMap<>();
+        for (String field : List.of(INVOICE_NUMBER, TOTAL_AMOUNT, DUE_DATE)) {
+            String value = confirmedFields.get(field);
+            if (value != null && !value.isBlank()) {
+                FieldAnchor anchor = locate(lines, field, value.trim());
+                if (anchor != null) {
+                    anchors.put(field, anchor);
+                }
+            }
+        }
+
+        try {
+            MerchantTemplate template = merchantTemplateRepository.findBySignature(signature)
+                    .orElseGet(() -> MerchantTemplate.builder().signature(signature).build());
+            template.setMerchantName(merchantName.trim());
+            template.setAnchors(objectMapper.writeValueAsString(anchors));
+            cache(merchantTemplateRepository.save(template));
+            log.info("Learned invoice template for {} with fields {}", merchantName, anchors.keySet());
+        } catch (JsonProcessingException e) {
+            log.error("Failed to store template for {}: {}", merchantName, e.getMessage());
+        }
+    }
+
+    public List<MerchantTemplateDTO> getTemplates() {
+        return templates.values().stream()
+                .sorted(Comparator.comparing(CompiledTemplate::merchantName))
+                .map(template -> MerchantTemplateDTO.builder()
+                        .merchantName(template.merchantName())
+                        .signature(template.signature())
+                        .fields(template.anchors().keySet())
+                        .hits(template.hits().get())
+                        .partialHits(template.partialHits().get())
+                        .build())
+                .toList();
+    }
+
+    private void cache(MerchantTemplate template) {
+        try {
+            Map<String, FieldAnchor> anchors = objectMapper.readValue(template.getAnchors(), new TypeReference<>() {
+            });
+            CompiledTemplate previous = templates.get(template.getSignature());
+            templates.put(template.getSignature(), new CompiledTemplate(template.getSignature(), template.getMerchantName(),
+                    anchors,
+                    previous != null ? previous.hits() : new AtomicLong(),
+                    previous != null ? previous.partialHits() : new AtomicLong()));
+        } catch (JsonProcessingException e) {
+            log.error("Ignoring unreadable template {}: {}", template.getSignature(), e.getMessage());
+        }
+    }
+
+    private CompiledTemplate findTemplate(String[] lines) {
+        for (int i = 0; i < Math.min(SIGNATURE_LINES, lines.length); i++) {
+            String normalized = truncate(normalize(lines[i]));
+            if (!normalized.isEmpty()) {
+                CompiledTemplate template = templates.get(normalized);
+                if (template != null) {
+                    return template;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Header line containing the merchant name. Generic headers ("TAX INVOICE") are never used: they would
+     * make every merchant with that header share one template.
+     */
+    private static String signatureFor(String[] lines, String merchantName) {
+        String merchant = normalize(merchantName);
+        if (merchant.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < Math.min(SIGNATURE_LINES, lines.length); i++) {
+            String normalized = normalize(lines[i]);
+            if (normalized.contains(merchant)) {
+                return truncate(normalized);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Where the value sits: the label before it on the same line, or the line above when it stands alone
+     */
+    private static FieldAnchor locate(String[] lines, String field, String value) {
+        for (int i = 0; i < lines.length; i++) {
+            int position = indexOfValue(lines[i], field, value);
+            if (position < 0) {
+                continue;
+            }
+            String label = cleanLabel(lines[i].substring(0, position));
+            if (!label.isEmpty()) {
+                return new FieldAnchor(label, occurrence(lines, label, i), false);
+            }
+            for (int j = i - 1; j >= 0; j--) {
+                if (!lines[j].isBlank()) {
+                    String previousLine = cleanLabel(lines[j]);
+                    return previousLine.isEmpty() ? null : new FieldAnchor(previousLine, occurrence(lines, previousLine, j), true);
+                }
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private static int indexOfValue(String line, String field, String value) {
+        if (TOTAL_AMOUNT.equals(field)) {
+            double expected;
+            try {
+                expected = Double.parseDouble(value.replace(",", ""));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            Matcher matcher = AMOUNT.matcher(line);
+            while (matcher.find()) {
+                if (Math.abs(Double.parseDouble(matcher.group().replace(",", "")) - expected) < 0.005) {
+                    return matcher.start();
+                }
+            }
+            return -1;
+        }
+        return line.toLowerCase(Locale.ROOT).indexOf(value.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * How many earlier lines contain the label too; applying the template picks the same occurrence
+     */
+    private static int occurrence(String[] lines, String label, int lineIndex) {
+        int count = 0;
+        for (int i = 0; i < lineIndex; i++) {
+            if (labelEnd(lines[i], label) >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String read(String[] lines, String field, FieldAnchor anchor) {
+        int seen = 0;
+        for (int i = 0; i < lines.length; i++) {
+            int end = labelEnd(lines[i], anchor.label());
+            if (end < 0 || seen++ != anchor.occurrence()) {
+                continue;
+            }
+            String source = anchor.nextLine() ? nextNonBlank(lines, i) : lines[i].substring(end);
+            if (source == null) {
+                return null;
+            }
+            Pattern pattern = switch (field) {
+                case TOTAL_AMOUNT -> AMOUNT;
+                case DUE_DATE -> DATE;
+                default -> IDENTIFIER;
+            };
+            Matcher matcher = pattern.matcher(source);
+            return matcher.find() ? matcher.group() : null;
+        }
+        return null;
+    }
+
+    /**
+     * End of the label in the line (case-insensitive, not preceded by a letter so "Total" doesn't match "Subtotal")
+     */
+    private static int labelEnd(String line, String label) {
+        String lowerLine = line.toLowerCase(Locale.ROOT);
+        String lowerLabel = label.toLowerCase(Locale.ROOT);
+        int from = 0;
+        int index;
+        while ((index = lowerLine.indexOf(lowerLabel, from)) >= 0) {
+            if (index == 0 || !Character.isLetter(lowerLine.charAt(index - 1))) {
+                return index + lowerLabel.length();
+            }
+            from = index + 1;
+        }
+        return -1;
+    }
+
+    private static String nextNonBlank(String[] lines, int index) {
+        for (int i = index + 1; i < lines.length; i++) {
+            if (!lines[i].isBlank()) {
+                return lines[i];
+            }
+        }
+        return null;
+    }
+
+    private static String cleanLabel(String text) {
+        String label = LABEL_TRAILER.matcher(text.trim()).replaceAll("");
+        if (label.length() > MAX_LABEL_LENGTH) {
+            label = label.substring(label.length() - MAX_LABEL_LENGTH).trim();
+        }
+        // A label must contain a letter, otherwise it is just another value (e.g. a date before the amount)
+        return label.chars().anyMatch(Character::isLetter) ? label : "";
+    }
+
+    private static String normalize(String line) {
+        return NON_ALPHANUMERIC.matcher(line.toLowerCase(Locale.ROOT)).replaceAll("");
+    }
+
+    private static String truncate(String signature) {
+        return signature.length() > 255 ? signature.substring(0, 255) : signature;
+    }
+
+    public record FieldAnchor(String label, int occurrence, boolean nextLine) {
+    }
+
+    private record CompiledTemplate(String signature, String merchantName, Map<String, FieldAnchor> anchors,
+                                    AtomicLong hits, AtomicLong partialHits) {
+    }
+}
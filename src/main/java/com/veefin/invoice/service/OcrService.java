@@ -1,13 +1,16 @@
 package com.veefin.invoice.service;
 
+import com.veefin.common.cache.LlmResponseCache;
+import com.veefin.common.utility.ContentHash;
+import com.veefin.invoice.dto.TextExtraction;
 import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.enums.ExtractionMethod;
 import com.veefin.invoice.enums.InvoiceStatus;
 import com.veefin.invoice.repository.InvoiceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.sourceforge.tess4j.Tesseract;
-import net.sourceforge.tess4j.TesseractException;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.springframework.beans.factory.annotation.Value;
@@ -15,7 +18,14 @@ import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -26,23 +36,33 @@ public class OcrService {
     private final InvoiceRepository invoiceRepository;
     private final InvoiceParserService invoiceParserService;
     private final InvoiceVectorService invoiceVectorService;
-
-    @Value("${tesseract.datapath:}")
-    private String tesseractPath;
+    private final InvoiceLookupService invoiceLookupService;
+    private final LlmResponseCache llmResponseCache;
+    private final TesseractOcrEngine tesseractOcrEngine;
+    private final TextLayerScorer textLayerScorer;
+    private final MeterRegistry meterRegistry;
 
     @Value("${ghostscript.path:}")
     private String ghostscriptPath;
 
-    public void processInvoice(File pdfFile) throws IOException {
-        String extractedText = extractText(pdfFile);
+    /**
+     * CPU-bound part of ingestion: text extraction (PDFBox/OCR) and field parsing. Nothing is persisted.
+     */
+    public InvoiceData extractInvoice(File pdfFile) {
+        return parseInvoice(pdfFile, extractText(pdfFile).text());
+    }
 
+    /**
+     * Parse invoice fields out of already extracted text
+     */
+    public InvoiceData parseInvoice(File pdfFile, String extractedText) {
         // Step 2: Parse key invoice fields (via regex/AI)
         Map<String, String> fieldMap = invoiceParserService.parseInvoiceFields(extractedText);
 
         String totalAmountStr = fieldMap.getOrDefault("total_amount", "0.0");
         totalAmountStr = totalAmountStr.replaceAll(",", ""); // Remove commas
-        // Step 3: Build & Save entity
-        InvoiceData invoiceData = InvoiceData.builder()
+        // Step 3: Build entity
+        return InvoiceData.builder()
                 .fileName(pdfFile.getName())
                 .merchantName(fieldMap.getOrDefault("merchant_name", "Unknown"))
                 .invoiceNumber(fieldMap.getOrDefault("invoice_number", "N/A"))
@@ -50,30 +70,131 @@ public class OcrService {
                 .dueDate(fieldMap.getOrDefault("due_date", "N/A"))
                 .status(InvoiceStatus.PENDING)
                 .rawText(extractedText)
+                .textHash(ContentHash.textFingerprint(extractedText))
                 .fieldMap(fieldMap)
                 .build();
+    }
 
-
+    /**
+     * I/O-bound part of ingestion: DB save, lookup index, embedding + vector upsert.
+     * A re-scan of an invoice we already have (same normalized text) returns the existing row instead.
+     */
+    public InvoiceData saveInvoice(InvoiceData invoiceData) {
+        if (invoiceData.getTextHash() != null) {
+            InvoiceData existing = invoiceRepository.findFirstByTextHash(invoiceData.getTextHash());
+            if (existing != null) {
+                log.info("Invoice text matches existing invoice {}, skipping save and embedding", existing.getUuid());
+                return existing;
+            }
+        }
         InvoiceData save = invoiceRepository.save(invoiceData);
+        invoiceLookupService.index(save);
         // store in Vector DB
         invoiceVectorService.storeInvoiceInVectorDB(save);
+        // A new invoice can change the answer to any invoice listing question
+        llmResponseCache.invalidate(LlmResponseCache.INVOICE_SOURCE);
+        return save;
+    }
+
+    /**
+     * Batch variant of {@link #saveInvoice(InvoiceData)} for bulk ingestion:
+     * one saveAll transaction, one vector indexer hand-off and one cache invalidation per batch
+     */
+    public List<InvoiceData> saveInvoices(List<InvoiceData> invoices) {
+        List<InvoiceData> unique = dropKnownDuplicates(invoices);
+        if (unique.isEmpty()) {
+            return unique;
+        }
+        List<InvoiceData> saved = invoiceRepository.saveAll(unique);
+        saved.forEach(invoiceLookupService::index);
+        invoiceVectorService.storeInvoicesInVectorDB(saved);
+        llmResponseCache.invalidate(LlmResponseCache.INVOICE_SOURCE);
+        return saved;
+    }
+
+    /**
+     * Drop invoices whose text matches one already stored, or an earlier one in the same batch
+     */
+    private List<InvoiceData> dropKnownDuplicates(List<InvoiceData> invoices) {
+        Set<String> hashes = invoices.stream()
+                .map(InvoiceData::getTextHash)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<String> seen = new HashSet<>();
+        if (!hashes.isEmpty()) {
+            invoiceRepository.findByTextHashIn(hashes).forEach(existing -> seen.add(existing.getTextHash()));
+        }
+        List<InvoiceData> unique = new ArrayList<>(invoices.size());
+        for (InvoiceData invoice : invoices) {
+            if (invoice.getTextHash() == null || seen.add(invoice.getTextHash())) {
+                unique.add(invoice);
+            }
+        }
+        if (unique.size() < invoices.size()) {
+            log.info("Skipped {} duplicate invoice(s) in batch", invoices.size() - unique.size());
+        }
+        return unique;
     }
 
-    private String extractText(File file) {
-        try (PDDocument document = PDDocument.load(file)) {
+    /**
+     * Text-first extraction: pages whose PDFBox text layer scores well are used as-is,
+     * only the remaining pages (scans, broken font encodings) are OCR'd
+     */
+    public TextExtraction extractText(File file) {
+        long startTime = System.nanoTime();
+        PDDocument document;
+        try {
+            document = PDDocument.load(file);
+        } catch (IOException e) {
+            // Not a readable PDF (or an image): OCR the file as a whole
+            log.warn("PDFBox could not open {}, falling back to OCR: {}", file.getName(), e.getMessage());
+            String text = ocrWholeFile(file);
+            return record(new TextExtraction(text, ExtractionMethod.OCR, 1, 1, elapsedMs(startTime)));
+        }
+
+        try (document) {
+            int pageCount = document.getNumberOfPages();
             PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
-            if (!text.trim().isEmpty()) {
-                // fallback to OCR
-                return doOcr(file);
+            String[] pageTexts = new String[pageCount];
+            List<Integer> ocrPages = new ArrayList<>();
+            for (int page = 0; page < pageCount; page++) {
+                stripper.setStartPage(page + 1);
+                stripper.setEndPage(page + 1);
+                pageTexts[page] = stripper.getText(document);
+                if (!textLayerScorer.isUsable(pageTexts[page])) {
+                    ocrPages.add(page);
+                }
+            }
+
+            if (!ocrPages.isEmpty()) {
+                tesseractOcrEngine.ocrPages(document, ocrPages, file.getName())
+                        .forEach((page, text) -> pageTexts[page] = text);
             }
-            return text;
-        } catch (Exception e) {
-            // fallback if PDFBox fails
-            return doOcr(file);
+
+            ExtractionMethod method = ocrPages.isEmpty() ? ExtractionMethod.TEXT_LAYER
+                    : ocrPages.size() == pageCount ? ExtractionMethod.OCR : ExtractionMethod.MIXED;
+            return record(new TextExtraction(String.join("\n", pageTexts), method, pageCount, ocrPages.size(),
+                    elapsedMs(startTime)));
+        } catch (IOException e) {
+            throw new RuntimeException("Text extraction failed: " + e.getMessage());
         }
     }
 
+    private TextExtraction record(TextExtraction extraction) {
+        meterRegistry.timer("invoice.extraction.time", "method", extraction.method().name())
+                .record(extraction.durationMs(), TimeUnit.MILLISECONDS);
+        meterRegistry.counter("invoice.extraction.pages", "path", "text_layer")
+                .increment(extraction.pageCount() - extraction.ocrPageCount());
+        meterRegistry.counter("invoice.extraction.pages", "path", "ocr").increment(extraction.ocrPageCount());
+        log.info("Extracted text from {} page(s) via {} ({} OCR'd) in {} ms", extraction.pageCount(),
+                extraction.method(), extraction.ocrPageCount(), extraction.durationMs());
+        return extraction;
+    }
+
+    private static long elapsedMs(long startTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
+
 //    @PostConstruct
 //    public void init() {
 //        // Set Ghostscript path if configured
@@ -84,15 +205,10 @@ public class OcrService {
 //    }
 
 
-    private String doOcr(File file) {
+    private String ocrWholeFile(File file) {
         try {
-            Tesseract tesseract = new Tesseract();
-            if (!tesseractPath.isEmpty()) {
-                tesseract.setDatapath(tesseractPath);
-            }
-            tesseract.setLanguage("eng");
-            return tesseract.doOCR(file);
-        } catch (TesseractException e) {
+            return tesseractOcrEngine.ocrFile(file);
+        } catch (IOException e) {
             throw new RuntimeException("OCR failed: " + e.getMessage());
         }
     }
@@ -0,0 +1,149 @@
+package com.veefin.invoice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Page-parallel OCR for scanned PDFs.
+ * Pages are rendered one at a time by the calling thread (PDFRenderer is not thread-safe) and OCR'd concurrently
+ * on a fixed pool; each pool thread keeps its own configured Tesseract, since an instance can't be shared.
+ * Rendered pages waiting for OCR are capped, so a 200-page scan doesn't hold 200 page images in memory.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TesseractOcrEngine {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${tesseract.datapath:}")
+    private String tesseractPath;
+
+    @Value("${ocr.workers:0}")
+    private int workers;
+
+    @Value("${ocr.max-workers:8}")
+    private int maxWorkers;
+
+    @Value("${ocr.dpi:300}")
+    private float dpi;
+
+    private ExecutorService ocrExecutor;
+    private Semaphore renderedPages;
+    private Timer pageTimer;
+
+    private final ThreadLocal<Tesseract> tesseracts = ThreadLocal.withInitial(this::newTesseract);
+
+    @PostConstruct
+    public void init() {
+        int poolSize = workers > 0 ? workers : Math.min(Runtime.getRuntime().availableProcessors(), maxWorkers);
+        ocrExecutor = Executors.newFixedThreadPool(poolSize, Thread.ofPlatform().name("ocr-", 1).daemon(true).factory());
+        renderedPages = new Semaphore(poolSize * 2);
+        pageTimer = Timer.builder("ocr.page.time")
+                .description("Tesseract time per rendered PDF page")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        // Each submit below starts a new pool thread, so every worker has its Tesseract configured up front
+        for (int i = 0; i < poolSize; i++) {
+            ocrExecutor.execute(tesseracts::get);
+        }
+        log.info("OCR pool started with {} workers", poolSize);
+    }
+
+    /**
+     * OCR selected pages (0-based) of an open document; returns page index -> text in page order
+     */
+    public SortedMap<Integer, String> ocrPages(PDDocument document, List<Integer> pageIndexes, String name) throws IOException {
+        PDFRenderer renderer = new PDFRenderer(document);
+        Map<Integer, Future<String>> pages = new LinkedHashMap<>();
+        try {
+            for (int page : pageIndexes) {
+                renderedPages.acquire();
+                BufferedImage image;
+                try {
+                    image = renderer.renderImageWithDPI(page, dpi, ImageType.GRAY);
+                } catch (IOException | RuntimeException e) {
+                    renderedPages.release();
+                    throw e;
+                }
+                pages.put(page, ocrExecutor.submit(() -> ocrPage(image)));
+            }
+
+            SortedMap<Integer, String> texts = new TreeMap<>();
+            for (Map.Entry<Integer, Future<String>> page : pages.entrySet()) {
+                texts.put(page.getKey(), page.getValue().get());
+            }
+            return texts;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during OCR of " + name, e);
+        } catch (ExecutionException e) {
+            // Pages already queued still run and release their permits
+            throw new IOException("OCR failed for " + name + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * OCR a file PDFBox can't open (e.g. an image); tess4j reads it directly
+     */
+    public String ocrFile(File file) throws IOException {
+        try {
+            return ocrExecutor.submit(() -> tesseracts.get().doOCR(file)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during OCR of " + file.getName(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("OCR failed for " + file.getName() + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private String ocrPage(BufferedImage image) throws TesseractException {
+        long startTime = System.nanoTime();
+        try {
+            return tesseracts.get().doOCR(image);
+        } finally {
+            renderedPages.release();
+            pageTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Tesseract newTesseract() {
+        Tesseract tesseract = new Tesseract();
+        if (!tesseractPath.isEmpty()) {
+            tesseract.setDatapath(tesseractPath);
+        }
+        tesseract.setLanguage("eng");
+        return tesseract;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ocrExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,77 @@
+package com.veefin.invoice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether the PDFBox text layer of a page is good enough to skip OCR.
+ * Score (0..1) = 0.4 * character density + 0.4 * dictionary hit rate + 0.2 * amount/date tokens present.
+ * Scanned pages have little or no text; broken font encodings produce text that is dense but matches no words.
+ */
+@Component
+public class TextLayerScorer {
+
+    private static final Pattern WORD = Pattern.compile("\\p{L}{2,}");
+    private static final Pattern AMOUNT = Pattern.compile("\\d[\\d,]*\\.\\d{2}\\b");
+    private static final Pattern DATE = Pattern.compile(
+            "\\b\\d{1,4}[-/.]\\d{1,2}[-/.]\\d{1,4}\\b|\\b\\d{1,2}\\s+(?i:jan|feb|mar|apr|may|jun|jul|aug|sep|oct|nov|dec)[a-z]*\\s+\\d{2,4}\\b");
+
+    /**
+     * Common English and invoice words; a real text layer hits a good share of these
+     */
+    private static final Set<String> DICTIONARY = Set.of(
+            "the", "and", "for", "of", "to", "in", "on", "at", "by", "is", "are", "be", "this", "that", "with", "from",
+            "or", "as", "an", "a", "it", "not", "all", "any", "per", "our", "your", "you", "we", "us", "please", "thank",
+            "invoice", "bill", "billing", "receipt", "tax", "gst", "vat", "total", "subtotal", "sub", "amount", "due",
+            "date", "number", "no", "qty", "quantity", "price", "unit", "rate", "description", "item", "items",
+            "payment", "pay", "paid", "balance", "terms", "net", "days", "order", "purchase", "po", "customer",
+            "client", "name", "address", "phone", "email", "account", "bank", "ifsc", "swift", "iban", "ref",
+            "reference", "discount", "shipping", "charges", "charge", "fee", "fees", "service", "services", "product",
+            "products", "hsn", "sac", "cgst", "sgst", "igst", "inr", "usd", "eur", "rs", "currency", "grand",
+            "issued", "issue", "supplier", "vendor", "merchant", "seller", "buyer", "ship", "sold", "company", "ltd",
+            "limited", "pvt", "private", "inc", "llc", "street", "road", "city", "state", "country", "code", "pin",
+            "zip", "contact", "details", "note", "notes", "signature", "authorized", "authorised", "signatory",
+            "words", "only", "hundred", "thousand", "lakh", "million", "remit", "remittance", "statement", "credit",
+            "debit", "period", "month", "year", "upto", "until", "id", "gstin", "pan", "cin", "registration",
+            "hours", "hour", "cost", "costs", "value", "line", "lines", "page");
+
+    @Value("${extraction.text-layer.min-chars:40}")
+    private int minChars;
+
+    @Value("${extraction.text-layer.min-score:0.5}")
+    private double minScore;
+
+    public boolean isUsable(String pageText) {
+        return score(pageText) >= minScore;
+    }
+
+    double score(String pageText) {
+        if (pageText == null || pageText.isBlank()) {
+            return 0;
+        }
+        long chars = pageText.chars().filter(c -> !Character.isWhitespace(c)).count();
+        if (pageText.indexOf('\uFFFD') >= 0 && pageText.chars().filter(c -> c == '\uFFFD').count() * 10 > chars) {
+            return 0; // too many undecodable glyphs (broken font encoding)
+        }
+        double density = Math.min(1.0, (double) chars / minChars);
+
+        int words = 0;
+        int hits = 0;
+        Matcher matcher = WORD.matcher(pageText);
+        while (matcher.find()) {
+            words++;
+            if (DICTIONARY.contains(matcher.group().toLowerCase())) {
+                hits++;
+            }
+        }
+        // Invoices are terse, so a quarter of the words being known is already a healthy text layer
+        double dictionary = words == 0 ? 0 : Math.min(1.0, hits * 4.0 / words);
+
+        double tokens = AMOUNT.matcher(pageText).find() || DATE.matcher(pageText).find() ? 1 : 0;
+        return 0.4 * density + 0.4 * dictionary + 0.2 * tokens;
+    }
+}
@@ -0,0 +1,61 @@
+package com.veefin.payment_gateway.entity.model;
+
+import com.veefin.payment_gateway.enums.ReconciliationStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "payment_reconciliation")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaymentReconciliation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private String orderId;
+
+    @Column(name = "invoice_uuid", nullable = false)
+    private String invoiceUuid;
+
+    @Column(name = "payment_mandate_id")
+    private String paymentMandateId;
+
+    @Column(name = "batch")
+    private boolean batch; // part of a batch mandate
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ReconciliationStatus status;
+
+    @Column(name = "transaction_id")
+    private String transactionId;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at")
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+}
@@ -0,0 +1,9 @@
+package com.veefin.payment_gateway.enums;
+
+public enum ReconciliationStatus {
+
+    // gateway outcome not known yet / charged but the payment was not recorded
+    UNKNOWN, CHARGED_UNRECORDED,
+    // resolved: the sale was found and recorded, or it never happened and the invoice was released
+    RECORDED, NOT_CHARGED
+}
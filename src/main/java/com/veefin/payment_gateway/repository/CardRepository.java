@@ -12,6 +12,7 @@ public interface CardRepository extends JpaRepository<Card, Long> {
 
     Optional<Card> findByProviderCustomerIdAndCardLast4(String customerId, String last4);
     Optional<Card> findByCardLast4(String last4);
+    Optional<Card> findByProviderTokenId(String providerTokenId);
 
     List<Card> findByUserId(String userId);
 }
@@ -0,0 +1,16 @@
+package com.veefin.payment_gateway.repository;
+
+import com.veefin.payment_gateway.entity.model.PaymentReconciliation;
+import com.veefin.payment_gateway.enums.ReconciliationStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PaymentReconciliationRepository extends JpaRepository<PaymentReconciliation, Long> {
+
+    List<PaymentReconciliation> findByStatusInAndCreatedAtBefore(Collection<ReconciliationStatus> statuses, LocalDateTime createdBefore);
+}
@@ -1,19 +1,17 @@
 package com.veefin.payment_gateway.service;
 
-import com.braintreegateway.BraintreeGateway;
-import com.braintreegateway.Result;
-import com.braintreegateway.Transaction;
-import com.braintreegateway.TransactionRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.veefin.ap2.dto.PaymentMandate;
 import com.veefin.ap2.dto.PaymentMandateContents;
 import com.veefin.ap2.entity.PaymentMandateEntity;
 import com.veefin.ap2.service.CryptographicService;
 import com.veefin.ap2.service.PaymentMandateService;
-import com.veefin.common.exception.BraintreeException;
+import com.veefin.ap2.service.SignatureScheme;
+import com.veefin.common.cache.LlmResponseCache;
 import com.veefin.invoice.entity.InvoiceData;
 import com.veefin.invoice.enums.InvoiceStatus;
 import com.veefin.invoice.repository.InvoiceRepository;
+import com.veefin.invoice.service.InvoiceLookupService;
 import com.veefin.invoice.service.InvoiceVectorService;
 import com.veefin.payment_gateway.entity.dto.TransactionResponseDto;
 import com.veefin.payment_gateway.entity.model.Card;
@@ -25,58 +23,46 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class BrainTreeService {
 
-    private final BraintreeGateway gateway;
+    private final PaymentGatewayExecutor paymentGatewayExecutor;
     private final PaymentMandateService paymentMandateService;
     private final InvoiceRepository invoiceRepository;
     private final PaymentRepository paymentRepository;
     private final TransactionVectorStore transactionVectorStore;
     private final InvoiceVectorService invoiceVectorService;
+    private final InvoiceLookupService invoiceLookupService;
     private final CryptographicService cryptoService;
     private final CardRepository cardRepository;
+    private final LlmResponseCache llmResponseCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
 
 
-    public TransactionResponseDto createTransaction(Double amount, String token) {
-        try {
-            TransactionRequest request = new TransactionRequest()
-                    .amount(BigDecimal.valueOf(amount))
-                    .paymentMethodToken(token)
-                    .orderId("ORD-" + UUID.randomUUID())
-                    .options()
-                    .submitForSettlement(true)
-                    .done();
-
-            Result<Transaction> result = gateway.transaction().sale(request);
-
-            if (result.isSuccess()) {
-                TransactionResponseDto transactionResponseDto = processPayment(result);
-                //token,status
-                log.info("Transaction created successfully. ID: {}", transactionResponseDto.getTransactionId());
-                return transactionResponseDto;
-            }else {
-                log.error("Transaction failed: {}", result.getMessage());
-                    throw new BraintreeException("Transaction failed: " + result.getMessage());
-            }
-        } catch (Exception e) {
-            log.error("Exception during Braintree transaction: {}", e.getMessage());
-            throw new BraintreeException("Braintree transaction error", e);
-        }
+    /**
+     * Gateway sale for the amount; orderId must be stable for the payment so retries can't charge twice
+     */
+    public TransactionResponseDto createTransaction(Double amount, String token, String orderId) {
+        TransactionResponseDto transactionResponseDto = paymentGatewayExecutor.sale(BigDecimal.valueOf(amount), token, orderId);
+        log.info("Transaction created successfully. ID: {}", transactionResponseDto.getTransactionId());
+        return transactionResponseDto;
     }
 
-
-
-
+    /**
+     * Post-payment bookkeeping in one transaction of its own; the gateway sale happens before and outside it
+     */
+    @Transactional(rollbackFor = Exception.class)
     public void processPaymentSuccess(String paymentMandateId, String invoiceUuid,TransactionResponseDto transactionResponseDto) throws Exception {
 
         Optional<Card> card = cardRepository.findByProviderCustomerIdAndCardLast4(transactionResponseDto.getCustomerId(), transactionResponseDto.getLast4());
@@ -94,7 +80,8 @@ public class BrainTreeService {
         PaymentMandate mandate = convertToDto(mandateEntity);
         boolean isValid = cryptoService.verifyAgentSignature(
                 objectMapper.writeValueAsString(mandate.getPaymentMandateContents()),
-                mandate.getBackendSignature()
+                mandate.getBackendSignature(),
+                SignatureScheme.fromName(mandate.getSignatureAlgorithm())
         );
         if (!isValid) {
             throw new SecurityException("Invalid AP2 payment mandate signature");
@@ -125,18 +112,94 @@ public class BrainTreeService {
         if (invoice != null) {
             invoice.setStatus(InvoiceStatus.PAID);
             invoiceRepository.save(invoice);
+            invoiceLookupService.index(invoice);
             log.info("Invoice {} marked as PAID", invoiceUuid);
 
             // Update invoice in vector DB
             invoiceVectorService.updateInvoiceInVectorDB(invoice);
         }
 
+        // Cached answers built from this invoice or from the payment list are now stale
+        llmResponseCache.invalidate(invoiceUuid, LlmResponseCache.PAYMENT_SOURCE);
+
         //  Update payment mandate status
         mandateEntity.setStatus("PROCESSED");
         mandateEntity.setGatewayPaymentId(transactionResponseDto.getTransactionId());
         paymentMandateService.updatePaymentMandateEntity(mandateEntity);
     }
 
+    /**
+     * Post-payment logic for a batch mandate: one signature check and card lookup, then transactions and
+     * invoice statuses written with saveAll instead of one round trip per invoice.
+     * The DB writes run in one transaction, so a failure leaves none of the invoices PAID rather than some.
+     *
+     * @param transactionsByInvoice successful gateway sales keyed by invoice uuid
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void processBatchPaymentSuccess(String paymentMandateId, Map<String, TransactionResponseDto> transactionsByInvoice,
+                                           boolean allSucceeded) throws Exception {
+        if (transactionsByInvoice.isEmpty()) {
+            return;
+        }
+        TransactionResponseDto first = transactionsByInvoice.values().iterator().next();
+        Optional<Card> card = cardRepository.findByProviderCustomerIdAndCardLast4(first.getCustomerId(), first.getLast4());
+        if (card.isEmpty()) {
+            throw new SecurityException("Card not found for token: " + first.getCustomerId());
+        }
+
+        PaymentMandateEntity mandateEntity = paymentMandateService.getPaymentMandateById(paymentMandateId);
+        if (mandateEntity == null) {
+            throw new SecurityException("Payment mandate not found: " + paymentMandateId);
+        }
+        PaymentMandate mandate = convertToDto(mandateEntity);
+        boolean isValid = cryptoService.verifyAgentSignature(
+                objectMapper.writeValueAsString(mandate.getPaymentMandateContents()),
+                mandate.getBackendSignature(),
+                SignatureScheme.fromName(mandate.getSignatureAlgorithm())
+        );
+        if (!isValid) {
+            throw new SecurityException("Invalid AP2 payment mandate signature");
+        }
+
+        List<PaymentTransaction> transactions = new ArrayList<>();
+        transactionsByInvoice.forEach((invoiceUuid, txn) -> transactions.add(PaymentTransaction.builder()
+                .invoiceUuid(invoiceUuid)
+                .transactionId(txn.getTransactionId())
+                .amount(txn.getAmount())
+                .currency(txn.getCurrencyCode())
+                .paymentMethod(txn.getPaymentMethod())
+                .fromAccount(card.get().getCardLast4())
+                .toAccount("merchant@payment-gateway")
+                .fromAccountType("CARD")
+                .toAccountType("MERCHANT_ACCOUNT")
+                .status(txn.getStatus())
+                .build()));
+        List<PaymentTransaction> savedTransactions = paymentRepository.saveAll(transactions);
+
+        List<InvoiceData> invoices = invoiceRepository.findByUuidIn(transactionsByInvoice.keySet());
+        invoices.forEach(invoice -> invoice.setStatus(InvoiceStatus.PAID));
+        invoiceRepository.saveAll(invoices);
+        log.info("{} invoices marked as PAID for batch mandate {}", invoices.size(), paymentMandateId);
+
+        mandateEntity.setStatus(allSucceeded ? "PROCESSED" : "PARTIALLY_PROCESSED");
+        paymentMandateService.updatePaymentMandateEntity(mandateEntity);
+
+        // Index updates after the DB writes; a vector store failure doesn't roll back the payment
+        try {
+            savedTransactions.forEach(transactionVectorStore::storePaymentInVectorDB);
+            for (InvoiceData invoice : invoices) {
+                invoiceLookupService.index(invoice);
+                invoiceVectorService.updateInvoiceInVectorDB(invoice);
+            }
+        } catch (Exception e) {
+            log.error("Failed to index batch payment {}: {}", paymentMandateId, e.getMessage());
+        }
+
+        List<String> staleSources = new ArrayList<>(transactionsByInvoice.keySet());
+        staleSources.add(LlmResponseCache.PAYMENT_SOURCE);
+        llmResponseCache.invalidate(staleSources.toArray(String[]::new));
+    }
+
     private PaymentMandate convertToDto(PaymentMandateEntity entity) {
         PaymentMandateContents contents = new PaymentMandateContents();
         contents.setPaymentMandateId(entity.getPaymentMandateId());
@@ -151,26 +214,11 @@ public class BrainTreeService {
         PaymentMandate mandate = new PaymentMandate();
         mandate.setPaymentMandateContents(contents);
         mandate.setBackendSignature(entity.getBackendSignature());
+        mandate.setSignatureAlgorithm(entity.getSignatureAlgorithm());
         mandate.setStatus(entity.getStatus());
 
         return mandate;
     }
 
 
-    public TransactionResponseDto processPayment(Result<Transaction> result) throws Exception {
-
-        Transaction transaction = result.getTarget();
-        return TransactionResponseDto.builder()
-                .transactionId(transaction.getId())
-                .currencyCode("INR")
-                .amount(transaction.getAmount().doubleValue())
-                .paymentMethod(transaction.getPaymentInstrumentType())
-                .customerId(transaction.getCustomer().getId())
-                .orderId(transaction.getOrderId())
-                .status(transaction.getStatus().name())
-                .last4(transaction.getCreditCard().getLast4())
-                .build();
-
-    }
-
 }
@@ -0,0 +1,76 @@
+package com.veefin.payment_gateway.service;
+
+import com.braintreegateway.BraintreeGateway;
+import com.braintreegateway.ResourceCollection;
+import com.braintreegateway.Result;
+import com.braintreegateway.Transaction;
+import com.braintreegateway.TransactionRequest;
+import com.braintreegateway.TransactionSearchRequest;
+import com.veefin.common.exception.BraintreeException;
+import com.veefin.payment_gateway.entity.dto.TransactionResponseDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "payment.gateway.provider", havingValue = "braintree", matchIfMissing = true)
+public class BraintreeGatewayClient implements PaymentGatewayClient {
+
+    // statuses of a sale that went through; declined / voided sales under the same order id don't count
+    private static final Set<Transaction.Status> COMPLETED_STATUSES = EnumSet.of(
+            Transaction.Status.AUTHORIZED, Transaction.Status.SUBMITTED_FOR_SETTLEMENT, Transaction.Status.SETTLING,
+            Transaction.Status.SETTLEMENT_PENDING, Transaction.Status.SETTLEMENT_CONFIRMED, Transaction.Status.SETTLED);
+
+    private final BraintreeGateway gateway;
+
+    @Override
+    public TransactionResponseDto sale(BigDecimal amount, String paymentMethodToken, String orderId) {
+        TransactionRequest request = new TransactionRequest()
+                .amount(amount)
+                .paymentMethodToken(paymentMethodToken)
+                .orderId(orderId)
+                .options()
+                .submitForSettlement(true)
+                .done();
+
+        Result<Transaction> result = gateway.transaction().sale(request);
+        if (!result.isSuccess()) {
+            log.error("Transaction failed: {}", result.getMessage());
+            throw new BraintreeException("Transaction failed: " + result.getMessage());
+        }
+        return toDto(result.getTarget());
+    }
+
+    @Override
+    public Optional<TransactionResponseDto> findSale(String orderId) {
+        ResourceCollection<Transaction> transactions = gateway.transaction()
+                .search(new TransactionSearchRequest().orderId().is(orderId));
+        for (Transaction transaction : transactions) {
+            if (COMPLETED_STATUSES.contains(transaction.getStatus())) {
+                return Optional.of(toDto(transaction));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static TransactionResponseDto toDto(Transaction transaction) {
+        return TransactionResponseDto.builder()
+                .transactionId(transaction.getId())
+                .currencyCode("INR")
+                .amount(transaction.getAmount().doubleValue())
+                .paymentMethod(transaction.getPaymentInstrumentType())
+                .customerId(transaction.getCustomer().getId())
+                .orderId(transaction.getOrderId())
+                .status(transaction.getStatus().name())
+                .last4(transaction.getCreditCard().getLast4())
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.veefin.payment_gateway.service;
+
+import java.time.Duration;
+
+/**
+ * Count-based circuit breaker for payment gateway calls.
+ * Keeps the outcome of the last window-size calls; once at least minimum-calls are recorded and the failure rate
+ * reaches the threshold the circuit opens and calls are refused for open-duration. After that a single probe call
+ * is let through (half-open): success closes the circuit, failure opens it again.
+ */
+public class GatewayCircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final boolean[] failures;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failed;
+    private long openUntil;
+    private boolean probeInFlight;
+
+    public GatewayCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration) {
+        this.failures = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, failures.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Whether a call may go to the gateway now; every permitted call must report back through
+     * onSuccess, onFailure or onCancelled
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            close();
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recorded >= minimumCalls && failed >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    /**
+     * The permitted call was abandoned by its caller without an outcome
+     */
+    public synchronized void onCancelled() {
+        probeInFlight = false;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == failures.length) {
+            if (failures[next]) {
+                failed--;
+            }
+        } else {
+            recorded++;
+        }
+        failures[next] = failure;
+        if (failure) {
+            failed++;
+        }
+        next = (next + 1) % failures.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.nanoTime() + openDurationNanos;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failed = 0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.veefin.payment_gateway.service;
+
+import com.veefin.payment_gateway.entity.dto.TransactionResponseDto;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Blocking calls to the card payment gateway. Selected with payment.gateway.provider (braintree or stub);
+ * callers go through PaymentGatewayExecutor, which adds the deadlines, retries and circuit breaker.
+ */
+public interface PaymentGatewayClient {
+
+    /**
+     * Sale of the amount on the vaulted payment method, submitted for settlement.
+     * A sale the gateway declines throws BraintreeException.
+     */
+    TransactionResponseDto sale(BigDecimal amount, String paymentMethodToken, String orderId);
+
+    /**
+     * The successful sale already made for the order id, if any
+     */
+    Optional<TransactionResponseDto> findSale(String orderId);
+}
@@ -0,0 +1,321 @@
+package com.veefin.payment_gateway.service;
+
+import com.braintreegateway.exceptions.AuthenticationException;
+import com.braintreegateway.exceptions.AuthorizationException;
+import com.braintreegateway.exceptions.ConfigurationException;
+import com.braintreegateway.exceptions.NotFoundException;
+import com.braintreegateway.exceptions.UpgradeRequiredException;
+import com.veefin.common.exception.BraintreeException;
+import com.veefin.common.exception.PaymentOutcomeUnknownException;
+import com.veefin.common.exception.ServiceUnavailableException;
+import com.veefin.payment_gateway.entity.dto.TransactionResponseDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs payment gateway calls on a dedicated virtual-thread executor so a slow or failing gateway can't tie up
+ * request threads or DB connections:
+ * - at most max-concurrent-calls calls in flight; a caller that can't get a slot within acquire-timeout waits
+ *   for the next attempt and then fails with ServiceUnavailableException
+ * - each attempt is abandoned after attempt-timeout, and the whole sale after deadline
+ * - a circuit breaker refuses calls for a while once the recent error rate spikes
+ * A sale is only retried when it provably never reached the gateway (no slot, circuit open, connection refused).
+ * Once the request may have been sent, a timeout or gateway error throws PaymentOutcomeUnknownException and the
+ * order is left for PaymentReconciliationService; declines throw BraintreeException.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentGatewayExecutor {
+
+    private final PaymentGatewayClient client;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payment.gateway.max-concurrent-calls:32}")
+    private int maxConcurrentCalls;
+
+    @Value("${payment.gateway.acquire-timeout-ms:500}")
+    private long acquireTimeoutMs;
+
+    @Value("${payment.gateway.attempt-timeout-ms:10000}")
+    private long attemptTimeoutMs;
+
+    @Value("${payment.gateway.deadline-ms:25000}")
+    private long deadlineMs;
+
+    @Value("${payment.gateway.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${payment.gateway.retry-backoff-ms:250}")
+    private long retryBackoffMs;
+
+    @Value("${payment.gateway.circuit.window-size:20}")
+    private int circuitWindowSize;
+
+    @Value("${payment.gateway.circuit.minimum-calls:10}")
+    private int circuitMinimumCalls;
+
+    @Value("${payment.gateway.circuit.failure-rate-threshold:0.5}")
+    private double circuitFailureRateThreshold;
+
+    @Value("${payment.gateway.circuit.open-duration-ms:30000}")
+    private long circuitOpenDurationMs;
+
+    private ExecutorService executor;
+    private Semaphore permits;
+    private GatewayCircuitBreaker circuitBreaker;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("payment-gateway-", 1).factory());
+        permits = new Semaphore(maxConcurrentCalls);
+        circuitBreaker = new GatewayCircuitBreaker(circuitWindowSize, circuitMinimumCalls, circuitFailureRateThreshold,
+                Duration.ofMillis(circuitOpenDurationMs));
+
+        Gauge.builder("payment.gateway.in_flight", permits, p -> maxConcurrentCalls - p.availablePermits())
+                .description("Gateway calls currently running")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("Gateway circuit breaker: 0 closed, 1 half-open, 2 open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sale through the gateway under orderId.
+     * Throws ServiceUnavailableException when no attempt could be sent (nothing was charged),
+     * PaymentOutcomeUnknownException when a sent attempt got no answer, and BraintreeException when it was declined.
+     */
+    public TransactionResponseDto sale(BigDecimal amount, String paymentMethodToken, String orderId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        NotSentException lastFailure = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                return call("sale", () -> client.sale(amount, paymentMethodToken, orderId), deadline);
+            } catch (NotSentException e) {
+                lastFailure = e;
+                long backoffMs = retryBackoffMs * (1L << (attempt - 1));
+                backoffMs += ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+                if (attempt == maxAttempts || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs) >= deadline) {
+                    break;
+                }
+                log.warn("Gateway attempt {} for order {} was not sent ({}); retrying in {} ms", attempt, orderId, e.getMessage(), backoffMs);
+                meterRegistry.counter("payment.gateway.retries").increment();
+                sleep(backoffMs);
+            } catch (OutcomeUnknownException e) {
+                log.error("Gateway outcome of order {} is unknown: {}", orderId, e.getMessage());
+                meterRegistry.counter("payment.gateway.outcome.unknown").increment();
+                throw new PaymentOutcomeUnknownException(orderId,
+                        "Payment gateway did not confirm order " + orderId + "; it will be reconciled", e.getCause());
+            }
+        }
+        log.error("Gateway could not send order {}: {}", orderId, lastFailure != null ? lastFailure.getMessage() : "deadline exceeded");
+        throw new ServiceUnavailableException("Payment gateway is unavailable; nothing was charged, please try again", lastFailure);
+    }
+
+    /**
+     * The completed sale recorded under orderId, if any. Read-only, used by reconciliation.
+     */
+    public Optional<TransactionResponseDto> findSale(String orderId) {
+        try {
+            return call("lookup", () -> client.findSale(orderId), System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(attemptTimeoutMs));
+        } catch (NotSentException | OutcomeUnknownException e) {
+            throw new ServiceUnavailableException("Payment gateway lookup failed: " + e.getMessage(), e.getCause());
+        }
+    }
+
+    private <T> T call(String operation, Callable<T> task, long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new NotSentException(operation + " deadline exceeded before sending", null);
+        }
+        if (!acquirePermit()) {
+            meterRegistry.counter("payment.gateway.rejected", "reason", "saturated").increment();
+            throw new NotSentException("gateway is busy", null);
+        }
+        // whoever gets here first owns the permit: the task when it starts, or this caller when the task was
+        // abandoned (or rejected) before it started and so will never run its own release
+        AtomicBoolean permitClaimed = new AtomicBoolean();
+        try {
+            if (!circuitBreaker.tryAcquire()) {
+                meterRegistry.counter("payment.gateway.rejected", "reason", "circuit_open").increment();
+                throw new NotSentException("gateway circuit is open", null);
+            }
+            return execute(operation, task, remaining, permitClaimed);
+        } finally {
+            if (permitClaimed.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private <T> T execute(String operation, Callable<T> task, long remaining, AtomicBoolean permitClaimed) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!permitClaimed.compareAndSet(false, true)) {
+                    return null; // abandoned before it started
+                }
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            circuitBreaker.onCancelled();
+            throw new ServiceUnavailableException("Payment gateway executor is shut down", e);
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            T result = future.get(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(attemptTimeoutMs)), TimeUnit.NANOSECONDS);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            if (permitClaimed.compareAndSet(false, true)) {
+                // the task never started, so nothing was sent
+                permits.release();
+                outcome = "not_sent";
+                circuitBreaker.onCancelled();
+                throw new NotSentException(operation + " timed out waiting for a worker", e);
+            }
+            outcome = "timeout";
+            circuitBreaker.onFailure();
+            throw new OutcomeUnknownException(operation + " timed out", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isNotSent(cause)) {
+                outcome = "not_sent";
+                circuitBreaker.onFailure();
+                throw new NotSentException(operation + " could not connect: " + cause.getMessage(), cause);
+            }
+            if (isTransient(cause)) {
+                outcome = "error";
+                circuitBreaker.onFailure();
+                throw new OutcomeUnknownException(operation + " failed: " + cause.getMessage(), cause);
+            }
+            // the gateway answered (a decline, bad token, auth problem): retrying won't change it
+            outcome = "rejected";
+            circuitBreaker.onSuccess();
+            if (cause instanceof BraintreeException) {
+                throw (BraintreeException) cause;
+            }
+            throw new BraintreeException("Braintree transaction error", cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            outcome = "cancelled";
+            circuitBreaker.onCancelled();
+            Thread.currentThread().interrupt();
+            throw new OutcomeUnknownException(operation + " interrupted", e);
+        } finally {
+            sample.stop(meterRegistry.timer("payment.gateway.calls", "operation", operation, "outcome", outcome));
+        }
+    }
+
+    private boolean acquirePermit() {
+        try {
+            return permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * The connection was never established, so the request can't have reached the gateway
+     */
+    private static boolean isNotSent(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof ConnectException || current instanceof UnknownHostException) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Network failures and gateway-side errors (5xx, 429, timeouts); not declines or client / credential errors
+     */
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof IOException || error instanceof UncheckedIOException || error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof com.braintreegateway.exceptions.BraintreeException) {
+            return !(error instanceof AuthenticationException || error instanceof AuthorizationException
+                    || error instanceof NotFoundException || error instanceof ConfigurationException
+                    || error instanceof UpgradeRequiredException);
+        }
+        return false;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Payment gateway retry interrupted", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(attemptTimeoutMs, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The attempt never reached the gateway: safe to retry
+     */
+    private static class NotSentException extends RuntimeException {
+        NotSentException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * The attempt may have reached the gateway: retrying could charge twice
+     */
+    private static class OutcomeUnknownException extends RuntimeException {
+        OutcomeUnknownException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
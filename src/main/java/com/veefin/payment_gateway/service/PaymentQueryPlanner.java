@@ -0,0 +1,108 @@
+package com.veefin.payment_gateway.service;
+
+import com.veefin.common.query.AggregateQueries;
+import com.veefin.common.query.QuestionPeriod;
+import com.veefin.common.query.QuestionText;
+import com.veefin.invoice.service.InvoiceLookupService;
+import com.veefin.payment_gateway.entity.model.PaymentTransaction;
+import com.veefin.payment_gateway.specification.PaymentTransactionSpecification;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Answers structured payment questions ("total paid in October", "how many payments failed last week",
+ * "how much did I pay Acme this month") from one aggregate query over payment_transactions, rendered with a fixed
+ * template, instead of vector search + LLM. Questions it does not recognize return empty and go through RAG as before.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentQueryPlanner {
+
+    // statuses stored for completed payments: the demo data's SUCCESS and the Braintree transaction statuses
+    static final List<String> PAID_STATUSES = List.of("SUCCESS", "AUTHORIZED", "SUBMITTED_FOR_SETTLEMENT",
+            "SETTLING", "SETTLEMENT_PENDING", "SETTLEMENT_CONFIRMED", "SETTLED");
+    static final List<String> FAILED_STATUSES = List.of("FAILED", "GATEWAY_REJECTED", "PROCESSOR_DECLINED",
+            "SETTLEMENT_DECLINED", "AUTHORIZATION_EXPIRED");
+    private static final Pattern FAILED = Pattern.compile("\\b(?:fail(?:ed|ures?)?|declined|rejected)\\b");
+    private static final Pattern PAYMENTS = Pattern.compile("\\b(?:paid|pay|spent|spend|payments?|transactions?)\\b");
+    private static final Pattern COUNT = Pattern.compile("\\b(?:how many|number of|count)\\b");
+    private static final Pattern TOTAL = Pattern.compile("\\b(?:total|sum|how much)\\b");
+    // question words that are never part of a merchant name
+    private static final Set<String> IGNORED_WORDS = Set.of(
+            "how", "much", "many", "what", "which", "when", "the", "and", "are", "was", "were", "have", "has", "did",
+            "does", "can", "you", "please", "tell", "give", "show", "list", "all", "any", "our", "for", "from", "with",
+            "since", "during", "payment", "payments", "transaction", "transactions", "paid", "pay", "spent", "spend",
+            "total", "sum", "amount", "number", "count", "failed", "fail", "failures", "declined", "rejected",
+            "status", "this", "next", "last", "past", "today", "tomorrow", "yesterday", "week", "month", "year",
+            "days", "january", "february", "march", "april", "may", "june", "july", "august", "september",
+            "october", "november", "december");
+
+    private final InvoiceLookupService invoiceLookupService;
+    private final AggregateQueries aggregateQueries;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The templated answer, or empty when the question is not one of the structured shapes
+     */
+    public Optional<String> answer(String question) {
+        if (question == null || question.isBlank()) {
+            return Optional.empty();
+        }
+        String lowerQuestion = question.toLowerCase(Locale.ROOT);
+        boolean aggregate = COUNT.matcher(lowerQuestion).find() || TOTAL.matcher(lowerQuestion).find();
+        if (!aggregate || QuestionText.namesSpecificValue(lowerQuestion)) {
+            return Optional.empty();
+        }
+
+        long startTime = System.nanoTime();
+        boolean failed = FAILED.matcher(lowerQuestion).find();
+        if (!failed && !PAYMENTS.matcher(lowerQuestion).find()) {
+            return Optional.empty();
+        }
+        String plan = failed ? "failed" : "paid";
+
+        QuestionPeriod period = QuestionPeriod.find(lowerQuestion, LocalDate.now());
+        String merchant = invoiceLookupService.findMerchantMention(lowerQuestion, IGNORED_WORDS);
+        Specification<PaymentTransaction> filter = PaymentTransactionSpecification.statusIn(failed ? FAILED_STATUSES : PAID_STATUSES);
+        if (period != null) {
+            filter = filter.and(PaymentTransactionSpecification.createdBetween(period.fromDateTime(), period.untilDateTime()));
+        }
+        if (merchant != null) {
+            filter = filter.and(PaymentTransactionSpecification.forMerchant(merchant));
+        }
+        AggregateQueries.Totals totals = aggregateQueries.totals(PaymentTransaction.class, filter, "amount");
+
+        String scope = (merchant != null ? " to " + QuestionText.capitalize(merchant) : "")
+                + (period != null ? " " + period.label() : "");
+        String answer;
+        if (failed) {
+            answer = totals.count() == 0
+                    ? "No payments" + scope + " failed."
+                    : String.format("**%d %s%s failed**, worth ₹%,.2f in total.",
+                    totals.count(), totals.count() == 1 ? "payment" : "payments", scope, totals.sum());
+        } else {
+            answer = totals.count() == 0
+                    ? "No completed payments" + scope + "."
+                    : String.format("You paid **₹%,.2f**%s across %d %s.",
+                    totals.sum(), scope, totals.count(), totals.count() == 1 ? "payment" : "payments");
+        }
+
+        meterRegistry.timer("chat.structured.query", "domain", "payment", "plan", plan)
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        log.info("Structured payment query ({}) answered in {} ms", plan,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return Optional.of(answer);
+    }
+}
@@ -0,0 +1,165 @@
+package com.veefin.payment_gateway.service;
+
+import com.veefin.ap2.entity.PaymentMandateEntity;
+import com.veefin.ap2.service.PaymentMandateService;
+import com.veefin.invoice.enums.InvoiceStatus;
+import com.veefin.invoice.repository.InvoiceRepository;
+import com.veefin.payment_gateway.entity.dto.TransactionResponseDto;
+import com.veefin.payment_gateway.entity.model.PaymentReconciliation;
+import com.veefin.payment_gateway.enums.ReconciliationStatus;
+import com.veefin.payment_gateway.repository.PaymentReconciliationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Settles gateway sales whose outcome the payment flow could not confirm.
+ * A row is written when a sale timed out after being sent (UNKNOWN) or was charged but not recorded
+ * (CHARGED_UNRECORDED); its invoice stays PROCESSING meanwhile, so nothing charges it again.
+ * Every interval the gateway is searched by order id for rows older than settle-delay (the search is eventually
+ * consistent): a completed sale is recorded as a normal payment; an UNKNOWN order still absent after give-up-after
+ * never happened, and its invoice is released for payment again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentReconciliationService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final List<ReconciliationStatus> OPEN_STATUSES =
+            List.of(ReconciliationStatus.UNKNOWN, ReconciliationStatus.CHARGED_UNRECORDED);
+
+    private final PaymentReconciliationRepository reconciliationRepository;
+    private final PaymentGatewayExecutor paymentGatewayExecutor;
+    private final BrainTreeService brainTreeService;
+    private final PaymentMandateService paymentMandateService;
+    private final InvoiceRepository invoiceRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payment.gateway.reconcile.settle-delay-ms:300000}")
+    private long settleDelayMs;
+
+    @Value("${payment.gateway.reconcile.give-up-after-ms:3600000}")
+    private long giveUpAfterMs;
+
+    /**
+     * Record a sale that may or may not have charged
+     */
+    public void recordUnknown(String orderId, String invoiceUuid, String paymentMandateId, boolean batch, String error) {
+        save(orderId, invoiceUuid, paymentMandateId, batch, ReconciliationStatus.UNKNOWN, null, error);
+    }
+
+    /**
+     * Record a sale that charged but whose payment could not be recorded
+     */
+    public void recordUnrecorded(String orderId, String invoiceUuid, String paymentMandateId, boolean batch,
+                                 String transactionId, String error) {
+        save(orderId, invoiceUuid, paymentMandateId, batch, ReconciliationStatus.CHARGED_UNRECORDED, transactionId, error);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.gateway.reconcile.interval-ms:60000}")
+    public void reconcile() {
+        List<PaymentReconciliation> open;
+        try {
+            open = reconciliationRepository.findByStatusInAndCreatedAtBefore(OPEN_STATUSES,
+                    LocalDateTime.now().minusNanos(settleDelayMs * 1_000_000));
+        } catch (Exception e) {
+            log.error("Failed to load open payment reconciliations: {}", e.getMessage());
+            return;
+        }
+        for (PaymentReconciliation reconciliation : open) {
+            try {
+                reconcile(reconciliation);
+            } catch (Exception e) {
+                log.warn("Reconciliation of order {} failed: {}", reconciliation.getOrderId(), e.getMessage());
+                reconciliation.setAttempts(reconciliation.getAttempts() + 1);
+                reconciliation.setLastError(truncate(e.getMessage()));
+                reconciliationRepository.save(reconciliation);
+            }
+        }
+    }
+
+    private void reconcile(PaymentReconciliation reconciliation) throws Exception {
+        Optional<TransactionResponseDto> sale = paymentGatewayExecutor.findSale(reconciliation.getOrderId());
+        if (sale.isPresent()) {
+            TransactionResponseDto txn = sale.get();
+            if (reconciliation.isBatch()) {
+                brainTreeService.processBatchPaymentSuccess(reconciliation.getPaymentMandateId(),
+                        Map.of(reconciliation.getInvoiceUuid(), txn), false);
+            } else {
+                brainTreeService.processPaymentSuccess(reconciliation.getPaymentMandateId(), reconciliation.getInvoiceUuid(), txn);
+            }
+            resolve(reconciliation, ReconciliationStatus.RECORDED, txn.getTransactionId());
+            log.info("Order {} reconciled: charged as {} and recorded", reconciliation.getOrderId(), txn.getTransactionId());
+            return;
+        }
+
+        boolean expired = reconciliation.getCreatedAt().isBefore(LocalDateTime.now().minusNanos(giveUpAfterMs * 1_000_000));
+        if (!expired) {
+            reconciliation.setAttempts(reconciliation.getAttempts() + 1);
+            reconciliationRepository.save(reconciliation);
+            return;
+        }
+        if (reconciliation.getStatus() == ReconciliationStatus.CHARGED_UNRECORDED) {
+            // the charge happened (we had its transaction id) but the gateway search doesn't return it: manual follow-up
+            log.error("Order {} was charged as {} but is not found at the gateway; needs manual reconciliation",
+                    reconciliation.getOrderId(), reconciliation.getTransactionId());
+            reconciliation.setAttempts(reconciliation.getAttempts() + 1);
+            reconciliationRepository.save(reconciliation);
+            return;
+        }
+
+        invoiceRepository.transitionStatus(reconciliation.getInvoiceUuid(), InvoiceStatus.PROCESSING, InvoiceStatus.PENDING);
+        if (!reconciliation.isBatch()) {
+            PaymentMandateEntity mandate = paymentMandateService.getPaymentMandateById(reconciliation.getPaymentMandateId());
+            if (mandate != null) {
+                mandate.setStatus("FAILED");
+                paymentMandateService.updatePaymentMandateEntity(mandate);
+            }
+        }
+        resolve(reconciliation, ReconciliationStatus.NOT_CHARGED, null);
+        log.info("Order {} reconciled: never charged, invoice {} released", reconciliation.getOrderId(), reconciliation.getInvoiceUuid());
+    }
+
+    private void save(String orderId, String invoiceUuid, String paymentMandateId, boolean batch,
+                      ReconciliationStatus status, String transactionId, String error) {
+        try {
+            reconciliationRepository.save(PaymentReconciliation.builder()
+                    .orderId(orderId)
+                    .invoiceUuid(invoiceUuid)
+                    .paymentMandateId(paymentMandateId)
+                    .batch(batch)
+                    .status(status)
+                    .transactionId(transactionId)
+                    .lastError(truncate(error))
+                    .build());
+            meterRegistry.counter("payment.reconciliation.opened", "status", status.name()).increment();
+        } catch (Exception e) {
+            // the invoice stays PROCESSING either way, so it can't be charged twice; it just needs a manual look
+            log.error("Failed to record order {} ({}) for reconciliation: {}", orderId, status, e.getMessage());
+        }
+    }
+
+    private void resolve(PaymentReconciliation reconciliation, ReconciliationStatus status, String transactionId) {
+        reconciliation.setStatus(status);
+        if (transactionId != null) {
+            reconciliation.setTransactionId(transactionId);
+        }
+        reconciliation.setAttempts(reconciliation.getAttempts() + 1);
+        reconciliation.setResolvedAt(LocalDateTime.now());
+        reconciliationRepository.save(reconciliation);
+        meterRegistry.counter("payment.reconciliation.resolved", "status", status.name()).increment();
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
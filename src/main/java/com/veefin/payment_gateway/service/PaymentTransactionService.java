@@ -2,7 +2,9 @@ package com.veefin.payment_gateway.service;
 
 import com.braintreegateway.Transaction;
 import com.braintreegateway.WebhookNotification;
+import com.veefin.common.cache.LlmResponseCache;
 import com.veefin.common.exception.ResourceNotFoundException;
+import com.veefin.common.query.QuestionText;
 import com.veefin.invoice.dto.ApiListResponse;
 import com.veefin.invoice.dto.PaginationDTO;
 import com.veefin.invoice.dto.PaymentTransactionListResponseDTO;
@@ -22,11 +24,16 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -40,6 +47,8 @@ public class PaymentTransactionService {
     private final PaymentReceiptPdfService paymentReceiptPdfService;
     private final TransactionVectorStore transactionVectorStore;
     private final ChatClient chatClient;
+    private final LlmResponseCache llmResponseCache;
+    private final PaymentQueryPlanner paymentQueryPlanner;
 
     DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
@@ -167,48 +176,25 @@ public class PaymentTransactionService {
 
     public String handlePaymentQuery(String userPrompt) {
         try {
-            // RAG: Search vector DB, limit to top 5 relevant payments
-            List<Document> relevantPayments = transactionVectorStore.searchPayments(userPrompt, 5);
+            // Totals and counts come straight from SQL; the LLM only handles free-form questions
+            Optional<String> structured = paymentQueryPlanner.answer(userPrompt);
+            if (structured.isPresent()) {
+                return structured.get();
+            }
 
-            if (relevantPayments.isEmpty()) {
+            RagPrompt rag = buildRagPrompt(userPrompt);
+            if (rag == null) {
                 return "No payment transactions found matching your query.";
             }
-            List<Document> paymentDocs = relevantPayments.stream()
-                    .filter(doc -> {
-                        if (doc == null) return false;
-                        Object type = doc.getMetadata().get("documentType");
-                        return type != null && "PAYMENT".equalsIgnoreCase(type.toString().trim());
-                    })
-                    .toList();
-
-            StringBuilder context = new StringBuilder();
-
-
-                // Build minimal context (only essential fields)
-
-                for (Document doc : paymentDocs.subList(0, Math.min(5, paymentDocs.size()))) {
-                    context
-                            .append(", Account: ").append(doc.getMetadata().get("toAccount"))
-                            .append(", Amount: ₹").append(doc.getMetadata().get("amount"))
-                            .append(", Status: ").append(doc.getMetadata().get("status"))
-                            .append(", Date: ").append(doc.getMetadata().get("createdAt"))
-                            .append("\n");
-                }
-
-
-            // Shortened prompt, still provides same info for LLM
-            String ragPrompt = String.format("""
-            You are a payment transaction assistant. Use the data below to answer the user's query naturally.
-
-            User Query: %s
-            Payment Data: %s
-        """, userPrompt, context.toString());
+            String ragPrompt = rag.prompt();
+            Set<String> sources = rag.sources();
 
                 long startTime = System.currentTimeMillis();
             System.out.println("RAG response: " + ragPrompt);
             // Call LLM
             String content = chatClient.prompt()
                     .user(ragPrompt)
+                    .advisors(LlmResponseCache.semantic(userPrompt, sources))
                     .call()
                     .content();
 
@@ -234,7 +220,68 @@ public class PaymentTransactionService {
         paymentTransaction.setStatus(transaction.getStatus().name());
         paymentRepository.save(paymentTransaction);
         transactionVectorStore.storePaymentInVectorDB(paymentTransaction);
+        llmResponseCache.invalidate(paymentTransaction.getUuid());
     }
 
+    /**
+     * Same RAG answer as handlePaymentQuery, streamed token by token
+     */
+    public Flux<String> streamPaymentQuery(String userPrompt) {
+        Optional<String> structured = paymentQueryPlanner.answer(userPrompt);
+        if (structured.isPresent()) {
+            return Flux.just(structured.get());
+        }
+        RagPrompt rag = buildRagPrompt(userPrompt);
+        if (rag == null) {
+            return Flux.just("No payment transactions found matching your query.");
+        }
+        return chatClient.prompt()
+                .user(rag.prompt())
+                .advisors(LlmResponseCache.semantic(userPrompt, rag.sources()))
+                .stream()
+                .content()
+                .onErrorResume(e -> Flux.just("Failed to process payment query: " + e.getMessage()));
+    }
 
+    /**
+     * RAG prompt for a payment question, or null when no payment matches
+     */
+    private RagPrompt buildRagPrompt(String userPrompt) {
+        // RAG: top 5 relevant payments; documentType is filtered in Qdrant
+        List<Document> relevantPayments = transactionVectorStore.searchPayments(userPrompt, 5);
+
+        if (relevantPayments.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder context = new StringBuilder();
+        Set<String> sources = new HashSet<>();
+        if (!QuestionText.namesSpecificValue(userPrompt.toLowerCase(Locale.ROOT))) {
+            // a list-style answer covers whatever payments match, so any payment change can make it stale
+            sources.add(LlmResponseCache.PAYMENT_SOURCE);
+        }
+
+        // Build minimal context (only essential fields)
+        for (Document doc : relevantPayments) {
+            sources.add(doc.getId());
+            context
+                    .append(", Account: ").append(doc.getMetadata().get("toAccount"))
+                    .append(", Amount: ₹").append(doc.getMetadata().get("amount"))
+                    .append(", Status: ").append(doc.getMetadata().get("status"))
+                    .append(", Date: ").append(doc.getMetadata().get("createdAt"))
+                    .append("\n");
+        }
+
+        // Shortened prompt, still provides same info for LLM
+        String ragPrompt = String.format("""
+            You are a payment transaction assistant. Use the data below to answer the user's query naturally.
+
+            User Query: %s
+            Payment Data: %s
+        """, userPrompt, context.toString());
+        return new RagPrompt(ragPrompt, sources);
+    }
+
+    private record RagPrompt(String prompt, Set<String> sources) {
+    }
 }
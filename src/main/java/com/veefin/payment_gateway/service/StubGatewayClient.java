@@ -0,0 +1,83 @@
+package com.veefin.payment_gateway.service;
+
+import com.veefin.payment_gateway.entity.dto.TransactionResponseDto;
+import com.veefin.payment_gateway.entity.model.Card;
+import com.veefin.payment_gateway.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-process gateway for load tests (payment.gateway.provider=stub): every sale succeeds after
+ * latency-ms (+ up to latency-jitter-ms), except a failure-rate share that fails like a refused connection
+ * (retried by PaymentGatewayExecutor). The sale is recorded before the latency elapses, so a call abandoned at its
+ * deadline has still "charged" and reconciliation finds it by order id, as with the real gateway.
+ * Pay with the token of a card in the cards table so post-payment processing finds the card.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "payment.gateway.provider", havingValue = "stub")
+public class StubGatewayClient implements PaymentGatewayClient {
+
+    private final CardRepository cardRepository;
+    private final Map<String, TransactionResponseDto> salesByOrderId = new ConcurrentHashMap<>();
+
+    @Value("${payment.gateway.stub.latency-ms:300}")
+    private long latencyMs;
+
+    @Value("${payment.gateway.stub.latency-jitter-ms:200}")
+    private long latencyJitterMs;
+
+    @Value("${payment.gateway.stub.failure-rate:0.0}")
+    private double failureRate;
+
+    @Override
+    public TransactionResponseDto sale(BigDecimal amount, String paymentMethodToken, String orderId) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < failureRate) {
+            pause(random);
+            throw new UncheckedIOException(new ConnectException("Stub gateway: connection refused"));
+        }
+        Optional<Card> card = cardRepository.findByProviderTokenId(paymentMethodToken);
+        TransactionResponseDto sale = TransactionResponseDto.builder()
+                .transactionId("stub-" + UUID.randomUUID().toString().substring(0, 8))
+                .currencyCode("INR")
+                .amount(amount.doubleValue())
+                .paymentMethod("credit_card")
+                .customerId(card.map(Card::getProviderCustomerId).orElse("stub-customer"))
+                .orderId(orderId)
+                .status("SUBMITTED_FOR_SETTLEMENT")
+                .last4(card.map(Card::getCardLast4).orElse("1111"))
+                .build();
+        salesByOrderId.put(orderId, sale);
+        pause(random);
+        return sale;
+    }
+
+    @Override
+    public Optional<TransactionResponseDto> findSale(String orderId) {
+        return Optional.ofNullable(salesByOrderId.get(orderId));
+    }
+
+    private void pause(ThreadLocalRandom random) {
+        long millis = latencyMs + (latencyJitterMs > 0 ? random.nextLong(latencyJitterMs + 1) : 0);
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Stub gateway call interrupted", e);
+        }
+    }
+}
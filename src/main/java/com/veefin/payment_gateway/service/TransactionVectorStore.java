@@ -1,14 +1,31 @@
 package com.veefin.payment_gateway.service;
 
+import com.veefin.common.vector.HybridRetriever;
+import com.veefin.common.vector.LexicalIndex;
+import com.veefin.common.vector.VectorIndexWriter;
+import com.veefin.common.vector.VectorSearchFilters;
 import com.veefin.payment_gateway.entity.model.PaymentTransaction;
+import com.veefin.payment_gateway.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @Service
@@ -17,45 +34,111 @@ import java.util.Map;
 public class TransactionVectorStore {
 
     private final VectorStore vectorStore;
+    private final VectorIndexWriter vectorIndexWriter;
+    private final LexicalIndex lexicalIndex;
+    private final HybridRetriever hybridRetriever;
+    private final PaymentRepository paymentRepository;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String DOCUMENT_TYPE = "PAYMENT";
+    // sales charged but not yet settled: the demo data's PENDING and the Braintree statuses before SETTLED
+    private static final List<String> PENDING_STATUSES = List.of("PENDING", "AUTHORIZING", "AUTHORIZED",
+            "SUBMITTED_FOR_SETTLEMENT", "SETTLING", "SETTLEMENT_PENDING");
+    // statuses a question can name, mapped to the gateway statuses payments are stored with
+    private static final Map<String, List<String>> QUERY_STATUSES = Map.of(
+            "SUCCESS", PaymentQueryPlanner.PAID_STATUSES,
+            "FAILED", PaymentQueryPlanner.FAILED_STATUSES,
+            "PENDING", PENDING_STATUSES);
+    // metadata fields a question can name verbatim; matched exactly, skipping the vector search
+    private static final List<String> IDENTIFIER_FIELDS = List.of("paymentId", "invoiceUuid");
+    private static final int PAGE_SIZE = 500;
+
+    @Value("${vector.search.similarity-threshold:0.2}")
+    private double similarityThreshold;
+
+    /**
+     * Build the lexical index from payment_transactions once the application (and Flyway) is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadLexicalIndex() {
+        try {
+            long startTime = System.currentTimeMillis();
+            Page<PaymentTransaction> page;
+            int pageNumber = 0;
+            do {
+                page = paymentRepository.findAll(PageRequest.of(pageNumber++, PAGE_SIZE, Sort.by("id")));
+                lexicalIndex.putAll(toDocuments(page.getContent()), IDENTIFIER_FIELDS);
+            } while (page.hasNext());
+            log.info("Payment lexical index built in {} ms", System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("Failed to build payment lexical index: {}", e.getMessage());
+        }
+    }
 
     public void storePaymentInVectorDB(PaymentTransaction payment) {
         try {
-            // Create searchable content for the payment
-            String content = buildPaymentContent(payment);
-
-            // Create metadata for filtering and search
-            Map<String, Object> metadata = Map.of(
-                    "paymentId", payment.getTransactionId(),
-                    "fromAccount", payment.getFromAccount(),
-                    "toAccount", payment.getToAccount(),
-                    "invoiceUuid", payment.getInvoiceUuid(),
-                    "amount", payment.getAmount(),
-                    "currency", payment.getCurrency(),
-                    "paymentMethod", payment.getPaymentMethod(),
-                    "status", payment.getStatus(),
-                    "documentType", "PAYMENT",
-                    "createdAt", payment.getCreatedAt() != null ?
-                            payment.getCreatedAt().format(DATE_FORMATTER) : "Unknown"
-            );
-
-            // Create document for vector storage
-            Document document = new Document(
-                     payment.getUuid(),
-                    content,
-                    metadata
-            );
-
-            // Store in vector database
-            vectorStore.add(List.of(document));
-
-            log.info("Payment transaction stored in vector DB: {}", payment.getTransactionId());
+            Document document = toDocument(payment);
+
+            // Searchable by identifier right away; embedded and upserted with the next batch
+            lexicalIndex.put(document, IDENTIFIER_FIELDS);
+            vectorIndexWriter.enqueue(document);
+
+            log.info("Payment transaction queued for vector DB: {}", payment.getTransactionId());
 
         } catch (Exception e) {
             log.error("Failed to store payment in vector DB: {}", e.getMessage());
         }
     }
 
+    /**
+     * Documents for a page of payments; a row that can't be converted is skipped rather than failing the page
+     */
+    private List<Document> toDocuments(List<PaymentTransaction> payments) {
+        List<Document> documents = new ArrayList<>(payments.size());
+        for (PaymentTransaction payment : payments) {
+            try {
+                documents.add(toDocument(payment));
+            } catch (Exception e) {
+                log.warn("Skipping payment {} in the lexical index: {}", payment.getUuid(), e.getMessage());
+            }
+        }
+        return documents;
+    }
+
+    private Document toDocument(PaymentTransaction payment) {
+        // Create searchable content for the payment
+        String content = buildPaymentContent(payment);
+
+        // Create metadata for filtering and search; null columns are left out (Map.of and Qdrant payloads reject nulls)
+        Map<String, Object> metadata = new HashMap<>();
+        putIfPresent(metadata, "paymentId", payment.getTransactionId());
+        putIfPresent(metadata, "fromAccount", payment.getFromAccount());
+        putIfPresent(metadata, "toAccount", payment.getToAccount());
+        putIfPresent(metadata, "invoiceUuid", payment.getInvoiceUuid());
+        putIfPresent(metadata, "amount", payment.getAmount());
+        putIfPresent(metadata, "currency", payment.getCurrency());
+        putIfPresent(metadata, "paymentMethod", payment.getPaymentMethod());
+        putIfPresent(metadata, "status", payment.getStatus());
+        metadata.put(VectorSearchFilters.DOCUMENT_TYPE, DOCUMENT_TYPE);
+        metadata.put("createdAt", payment.getCreatedAt() != null ?
+                payment.getCreatedAt().format(DATE_FORMATTER) : "Unknown");
+        if (payment.getCreatedAt() != null) {
+            metadata.put(VectorSearchFilters.CREATED_AT_EPOCH, VectorSearchFilters.epochSeconds(payment.getCreatedAt()));
+        }
+
+        // Create document for vector storage
+        return new Document(
+                 payment.getUuid(),
+                content,
+                metadata
+        );
+    }
+
+    private static void putIfPresent(Map<String, Object> metadata, String key, Object value) {
+        if (value != null) {
+            metadata.put(key, value);
+        }
+    }
+
     private String buildPaymentContent(PaymentTransaction payment) {
         return String.format("""
                 Payment Transaction Details:
@@ -81,17 +164,35 @@ public class TransactionVectorStore {
         );
     }
 
+    /**
+     * Top-k payments for the question: a payment named by transaction id (or its invoice's uuid) directly,
+     * otherwise the fused lexical and vector ranking, filtered on documentType and the status / date window it mentions
+     */
     public List<Document> searchPayments(String query, int topK) {
-        return vectorStore.similaritySearch(query);
+        return hybridRetriever.retrieve(query, DOCUMENT_TYPE,
+                VectorSearchFilters.forQuestion(DOCUMENT_TYPE, query, QUERY_STATUSES), topK);
     }
 
     public List<Document> searchPaymentsByStatus(String status, int topK) {
         String query = "payment status " + status;
-        return vectorStore.similaritySearch(query);
+        List<String> storedStatuses = QUERY_STATUSES.getOrDefault(status.toUpperCase(Locale.ROOT), List.of(status));
+        return search(query, topK, VectorSearchFilters.documentType(DOCUMENT_TYPE,
+                VectorSearchFilters.statusIn(new FilterExpressionBuilder(), storedStatuses)));
     }
 
     public List<Document> searchPaymentsByAmount(double amount, int topK) {
         String query = "payment amount " + amount;
-        return vectorStore.similaritySearch(query);
+        FilterExpressionBuilder filter = new FilterExpressionBuilder();
+        return search(query, topK, VectorSearchFilters.documentType(DOCUMENT_TYPE,
+                filter.gte("amount", amount - 0.005), filter.lte("amount", amount + 0.005)));
+    }
+
+    private List<Document> search(String query, int topK, Filter.Expression filterExpression) {
+        return vectorStore.similaritySearch(SearchRequest.builder()
+                .query(query)
+                .topK(topK)
+                .similarityThreshold(similarityThreshold)
+                .filterExpression(filterExpression)
+                .build());
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,15 @@
 package com.veefin.payment_gateway.specification;
 
+import com.veefin.invoice.entity.InvoiceData;
 import com.veefin.payment_gateway.entity.model.PaymentTransaction;
 import org.springframework.data.jpa.domain.Specification;
 
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -81,5 +86,30 @@ public class PaymentTransactionSpecification {
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
     }
-}
 
+    /**
+     * Status is one of the given values (gateway statuses such as SETTLED and SUBMITTED_FOR_SETTLEMENT all mean paid)
+     */
+    public static Specification<PaymentTransaction> statusIn(Collection<String> statuses) {
+        return (root, query, criteriaBuilder) -> root.get("status").in(statuses);
+    }
+
+    public static Specification<PaymentTransaction> createdBetween(LocalDateTime from, LocalDateTime until) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.greaterThanOrEqualTo(root.get("createdAt"), from),
+                criteriaBuilder.lessThan(root.get("createdAt"), until));
+    }
+
+    /**
+     * Payments of invoices whose merchant name contains the given text (case-insensitive)
+     */
+    public static Specification<PaymentTransaction> forMerchant(String merchantName) {
+        return (root, query, criteriaBuilder) -> {
+            Subquery<String> invoiceUuids = query.subquery(String.class);
+            Root<InvoiceData> invoice = invoiceUuids.from(InvoiceData.class);
+            invoiceUuids.select(invoice.get("uuid")).where(criteriaBuilder.like(
+                    criteriaBuilder.lower(invoice.get("merchantName")), "%" + merchantName.toLowerCase() + "%"));
+            return root.get("invoiceUuid").in(invoiceUuids);
+        };
+    }
+}
@@ -0,0 +1,5 @@
+-- Signature scheme used for each mandate signature (RSA_SHA256, ECDSA_P256, ED25519).
+-- Existing rows were signed with RSA; NULL is read as RSA_SHA256.
+ALTER TABLE intent_mandate ADD COLUMN signature_algorithm VARCHAR(20) NULL AFTER user_authorization;
+ALTER TABLE cart_mandate ADD COLUMN signature_algorithm VARCHAR(20) NULL AFTER backend_signature;
+ALTER TABLE payment_mandate ADD COLUMN signature_algorithm VARCHAR(20) NULL AFTER backend_signature;
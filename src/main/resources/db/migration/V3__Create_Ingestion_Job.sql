@@ -0,0 +1,16 @@
+-- Bulk invoice ingestion jobs (one row per ZIP / multi-file upload), polled for progress.
+CREATE TABLE IF NOT EXISTS ingestion_job (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    uuid VARCHAR(50) NOT NULL UNIQUE,
+    source_name VARCHAR(255),
+    status VARCHAR(30) NOT NULL,
+    total_files INT NOT NULL DEFAULT 0,
+    processed_files INT NOT NULL DEFAULT 0,
+    failed_files INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP NULL,
+    INDEX idx_uuid (uuid),
+    INDEX idx_status (status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
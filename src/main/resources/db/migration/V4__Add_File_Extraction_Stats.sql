@@ -0,0 +1,6 @@
+-- How each uploaded file's text was extracted (TEXT_LAYER, MIXED, OCR) and how long it took,
+-- to track how much OCR time text-first extraction saves.
+ALTER TABLE file_metadata ADD COLUMN extraction_method VARCHAR(20) NULL AFTER status;
+ALTER TABLE file_metadata ADD COLUMN page_count INT NULL AFTER extraction_method;
+ALTER TABLE file_metadata ADD COLUMN ocr_page_count INT NULL AFTER page_count;
+ALTER TABLE file_metadata ADD COLUMN extraction_ms BIGINT NULL AFTER ocr_page_count;
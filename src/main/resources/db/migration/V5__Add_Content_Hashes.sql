@@ -0,0 +1,8 @@
+-- Content-addressed ingestion: an upload whose bytes were already seen is linked to the existing invoice
+-- instead of being OCR'd and embedded again. text_hash (normalized raw text) catches re-scans.
+ALTER TABLE file_metadata ADD COLUMN content_hash CHAR(64) NULL AFTER content_type;
+ALTER TABLE file_metadata ADD COLUMN invoice_uuid VARCHAR(50) NULL AFTER content_hash;
+ALTER TABLE file_metadata ADD UNIQUE INDEX uk_content_hash (content_hash);
+
+ALTER TABLE invoice_data ADD COLUMN text_hash CHAR(64) NULL AFTER raw_text;
+ALTER TABLE invoice_data ADD INDEX idx_text_hash (text_hash);
@@ -0,0 +1,11 @@
+-- Per-merchant invoice layouts learned from user-confirmed invoices.
+-- signature: normalized header line that identifies the merchant's layout; anchors: JSON field -> label anchor.
+CREATE TABLE IF NOT EXISTS merchant_template (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    signature VARCHAR(255) NOT NULL UNIQUE,
+    merchant_name VARCHAR(255) NOT NULL,
+    anchors TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    INDEX idx_merchant_name (merchant_name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
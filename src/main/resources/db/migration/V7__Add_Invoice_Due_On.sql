@@ -0,0 +1,7 @@
+-- Structured chat questions ("invoices due this week", "total paid in October") are answered with SQL aggregates.
+-- due_date is free text as extracted from the invoice, so its parsed value is kept in due_on;
+-- existing rows are backfilled by InvoiceQueryPlanner on startup.
+ALTER TABLE invoice_data ADD COLUMN due_on DATE NULL AFTER due_date;
+ALTER TABLE invoice_data ADD INDEX idx_status_due_on (status, due_on);
+
+ALTER TABLE payment_transactions ADD INDEX idx_status_created_at (status, created_at);
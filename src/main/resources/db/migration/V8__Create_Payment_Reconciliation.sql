@@ -0,0 +1,18 @@
+-- Gateway sales whose outcome is not known (timed out after the request was sent) or that were charged but not
+-- recorded. Each row is checked against the gateway by order id until it is resolved.
+CREATE TABLE IF NOT EXISTS payment_reconciliation (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    order_id VARCHAR(100) NOT NULL,
+    invoice_uuid VARCHAR(50) NOT NULL,
+    payment_mandate_id VARCHAR(100),
+    batch BOOLEAN NOT NULL DEFAULT FALSE,
+    status VARCHAR(30) NOT NULL,
+    transaction_id VARCHAR(100),
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    resolved_at TIMESTAMP NULL,
+    INDEX idx_order_id (order_id),
+    INDEX idx_status_created_at (status, created_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,134 @@
+package com.veefin.ap2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veefin.ap2.entity.AP2AuditLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuditEventWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbcTemplate;
+    private final List<String> inserted = new ArrayList<>();
+    private boolean dbDown;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    if (dbDown) {
+                        throw new DataAccessResourceFailureException("database is down");
+                    }
+                    Collection<AP2AuditLog> batch = invocation.getArgument(1);
+                    batch.forEach(event -> inserted.add(event.getMandateId()));
+                    return new int[0][];
+                });
+    }
+
+    @Test
+    void eventsSpilledWhileTheDatabaseIsDownAreReplayedOnceItIsBack() {
+        AuditEventWriter writer = newWriter();
+        dbDown = true;
+        writer.submit(event("m-1"));
+        writer.submit(event("m-2"));
+        ReflectionTestUtils.invokeMethod(writer, "flushBatch");
+
+        assertThat(inserted).isEmpty();
+        assertThat(dir.resolve("spill.jsonl")).exists();
+
+        dbDown = false;
+        ReflectionTestUtils.invokeMethod(writer, "replaySpillFile");
+
+        assertThat(inserted).containsExactly("m-1", "m-2");
+        assertThat(dir.resolve("spill.jsonl")).doesNotExist();
+        assertThat(dir.resolve("spill.jsonl.replay")).doesNotExist();
+    }
+
+    @Test
+    void failedReplayIsKeptForTheNextAttempt() {
+        AuditEventWriter writer = newWriter();
+        dbDown = true;
+        writer.submit(event("m-1"));
+        ReflectionTestUtils.invokeMethod(writer, "flushBatch");
+        ReflectionTestUtils.invokeMethod(writer, "replaySpillFile");
+
+        assertThat(dir.resolve("spill.jsonl.replay")).exists();
+
+        dbDown = false;
+        ReflectionTestUtils.invokeMethod(writer, "replaySpillFile");
+
+        assertThat(inserted).containsExactly("m-1");
+    }
+
+    @Test
+    void bufferedEventsSurviveACrashThroughTheJournal() {
+        AuditEventWriter crashed = newWriter();
+        crashed.submit(event("m-1"));
+        crashed.submit(event("m-2"));
+        // no flush and no shutdown: the process died with both events still in memory
+
+        AuditEventWriter restarted = newWriter();
+        ReflectionTestUtils.invokeMethod(restarted, "replaySpillFile");
+
+        assertThat(inserted).containsExactly("m-1", "m-2");
+    }
+
+    @Test
+    void journalIsTruncatedOnceItsEventsAreCommitted() throws Exception {
+        AuditEventWriter writer = newWriter();
+        writer.submit(event("m-1"));
+        ReflectionTestUtils.invokeMethod(writer, "flushBatch");
+        ReflectionTestUtils.invokeMethod(writer, "truncateJournal");
+
+        assertThat(inserted).containsExactly("m-1");
+        assertThat(Files.size(dir.resolve("journal.jsonl"))).isZero();
+
+        writer.shutdown();
+        assertThat(dir.resolve("journal.jsonl")).doesNotExist();
+    }
+
+    private AuditEventWriter newWriter() {
+        AuditEventWriter writer = new AuditEventWriter(jdbcTemplate, new ObjectMapper().findAndRegisterModules(),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "bufferSize", 16);
+        ReflectionTestUtils.setField(writer, "batchSize", 10);
+        ReflectionTestUtils.setField(writer, "overflowPolicy", AuditEventWriter.OverflowPolicy.SPILL);
+        ReflectionTestUtils.setField(writer, "spillFile", dir.resolve("spill.jsonl"));
+        ReflectionTestUtils.setField(writer, "journalFile", dir.resolve("journal.jsonl"));
+        writer.init();
+        return writer;
+    }
+
+    private static AP2AuditLog event(String mandateId) {
+        return AP2AuditLog.builder()
+                .mandateType(AP2AuditLog.MandateType.PAYMENT)
+                .mandateId(mandateId)
+                .action(AP2AuditLog.AuditAction.PAY)
+                .status(AP2AuditLog.AuditStatus.SUCCESS)
+                .actor("test")
+                .build();
+    }
+}
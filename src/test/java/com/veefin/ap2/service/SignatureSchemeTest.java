@@ -0,0 +1,80 @@
+package com.veefin.ap2.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SignatureSchemeTest {
+
+    @Test
+    void acceptsP256Keys() throws Exception {
+        ECPublicKey key = (ECPublicKey) SignatureScheme.ECDSA_P256.generateKeyPair().getPublic();
+
+        assertThatCode(() -> SignatureScheme.ECDSA_P256.validate(key)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsAnother256BitCurve() throws Exception {
+        ECParameterSpec p256 = p256();
+        EllipticCurve curve = p256.getCurve();
+        EllipticCurve otherCurve = new EllipticCurve(curve.getField(), curve.getA(), curve.getB().add(BigInteger.ONE));
+        ECParameterSpec params = new ECParameterSpec(otherCurve, p256.getGenerator(), p256.getOrder(), p256.getCofactor());
+
+        assertThatThrownBy(() -> SignatureScheme.ECDSA_P256.validate(key(params)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsP256WithAnotherGenerator() throws Exception {
+        ECParameterSpec p256 = p256();
+        ECPoint otherGenerator = ((ECPublicKey) SignatureScheme.ECDSA_P256.generateKeyPair().getPublic()).getW();
+        ECParameterSpec params = new ECParameterSpec(p256.getCurve(), otherGenerator, p256.getOrder(), p256.getCofactor());
+
+        assertThatThrownBy(() -> SignatureScheme.ECDSA_P256.validate(key(params)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ECParameterSpec p256() throws Exception {
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec("secp256r1"));
+        return parameters.getParameterSpec(ECParameterSpec.class);
+    }
+
+    private static ECPublicKey key(ECParameterSpec params) {
+        return new ECPublicKey() {
+            @Override
+            public ECPoint getW() {
+                return params.getGenerator();
+            }
+
+            @Override
+            public ECParameterSpec getParams() {
+                return params;
+            }
+
+            @Override
+            public String getAlgorithm() {
+                return "EC";
+            }
+
+            @Override
+            public String getFormat() {
+                return "X.509";
+            }
+
+            @Override
+            public byte[] getEncoded() {
+                return new byte[0];
+            }
+        };
+    }
+}
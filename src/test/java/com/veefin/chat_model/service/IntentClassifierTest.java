@@ -0,0 +1,86 @@
+package com.veefin.chat_model.service;
+
+import com.veefin.chat_model.dto.IntentClassification;
+import com.veefin.chat_session.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class IntentClassifierTest {
+
+    private IntentClassifier classifier;
+
+    @BeforeEach
+    void setUp() {
+        classifier = new IntentClassifier(mock(ChatMessageRepository.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(classifier, "enabled", true);
+        ReflectionTestUtils.setField(classifier, "threshold", 0.85);
+        classifier.registerMetrics();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "yes                               | PROCEED",
+            "ok, pay it                        | PROCEED",
+            "no                                | CANCEL",
+            "no thanks                         | CANCEL",
+            "cancel the payment                | CANCEL",
+            "don't pay                         | CANCEL",
+            "use 1111 card                     | CARD_SELECTION",
+            "default                           | CARD_SELECTION",
+            "use 1111 card for invoice INV-001 | CARD_SELECTION",
+            "show my cards                     | SHOW_CARDS",
+            "show payment history              | PAYMENT_TRANSACTION",
+            "pay invoice INV-001               | PAY_INVOICE",
+            "list all invoices due this week   | INVOICE_ENQUIRY"
+    })
+    void rulesRouteShortReplies(String prompt, String intent) {
+        assertThat(classifier.classify(prompt).intent()).isEqualTo(intent);
+    }
+
+    @Test
+    void enquiryMentioningDefaultCardIsNotACardChoice() {
+        assertThat(classifier.classify("what is my default card").intent()).isNotEqualTo("CARD_SELECTION");
+    }
+
+    @Test
+    void enquiryWithFourDigitAmountIsNotACardChoice() {
+        assertThat(classifier.classify("show invoices with amount over 1000").intent()).isEqualTo("INVOICE_ENQUIRY");
+    }
+
+    @Test
+    void correctionStartingWithNoIsNotACancel() {
+        assertThat(classifier.classify("no, pay invoice INV-12 instead").intent()).isEqualTo("PAY_INVOICE");
+    }
+
+    @Test
+    void negatedPaymentIsNotRoutedLocally() {
+        IntentClassification classification = classifier.classify("don't pay invoice INV-12");
+        assertThat(classification.intent()).isNotIn("PAY_INVOICE", "CARD_SELECTION");
+        assertThat(classifier.accept(classification)).isFalse();
+    }
+
+    @Test
+    void trainedModelNeverPredictsACardChoice() {
+        for (int i = 0; i < 30; i++) {
+            classifier.learn("the visa one ending in " + (1000 + i), "CARD_SELECTION");
+        }
+        IntentClassification classification = classifier.classify("the visa one ending in 2222");
+        assertThat(classification.intent()).isNotEqualTo("CARD_SELECTION");
+        assertThat(classifier.accept(classification)).isFalse();
+    }
+
+    @Test
+    void trainedModelRoutesLearnedEnquiries() {
+        for (int i = 0; i < 30; i++) {
+            classifier.learn("how much have we spent with acme", "PAYMENT_TRANSACTION");
+        }
+        assertThat(classifier.classify("how much have we spent with acme").intent()).isEqualTo("PAYMENT_TRANSACTION");
+    }
+}
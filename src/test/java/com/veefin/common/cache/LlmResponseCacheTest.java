@@ -0,0 +1,116 @@
+package com.veefin.common.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LlmResponseCacheTest {
+
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private final CallAdvisorChain chain = mock(CallAdvisorChain.class);
+    private LlmResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new LlmResponseCache(embeddingModel, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 10L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "semanticThreshold", 0.97);
+        when(embeddingModel.embed(anyString())).thenReturn(new float[]{1f, 0f});
+    }
+
+    @Test
+    void repeatedQuestionIsServedFromCache() {
+        answerWith(() -> { });
+
+        cache.adviseCall(request("which invoices are pending"), chain);
+        cache.adviseCall(request("which invoices are pending"), chain);
+
+        verify(chain, times(1)).nextCall(any());
+    }
+
+    @Test
+    void invalidatingASourceEvictsItsAnswers() {
+        answerWith(() -> { });
+
+        cache.adviseCall(request("which invoices are pending"), chain);
+        cache.invalidate("inv-1");
+        cache.adviseCall(request("which invoices are pending"), chain);
+
+        verify(chain, times(2)).nextCall(any());
+    }
+
+    @Test
+    void invalidationOfAnotherSourceDuringTheCallKeepsTheAnswer() {
+        answerWith(() -> cache.invalidate("inv-2", "pay-9"));
+
+        cache.adviseCall(request("which invoices are pending"), chain);
+        cache.adviseCall(request("which invoices are pending"), chain);
+
+        verify(chain, times(1)).nextCall(any());
+    }
+
+    @Test
+    void invalidationOfItsOwnSourceDuringTheCallDropsTheAnswer() {
+        answerWith(() -> cache.invalidate("inv-1"));
+
+        cache.adviseCall(request("which invoices are pending"), chain);
+        cache.adviseCall(request("which invoices are pending"), chain);
+
+        verify(chain, times(2)).nextCall(any());
+    }
+
+    @Test
+    void typeWideInvalidationOnlyEvictsListAnswers() {
+        answerWith(() -> { });
+
+        cache.adviseCall(request("which invoices are pending"), chain);
+        cache.adviseCall(request("what is the status of INV-0042", Set.of("inv-1")), chain);
+        cache.invalidate(LlmResponseCache.INVOICE_SOURCE);
+        cache.adviseCall(request("which invoices are pending"), chain);
+        cache.adviseCall(request("what is the status of INV-0042", Set.of("inv-1")), chain);
+
+        verify(chain, times(3)).nextCall(any());
+    }
+
+    private void answerWith(Runnable duringCall) {
+        when(chain.nextCall(any())).thenAnswer(invocation -> {
+            duringCall.run();
+            ChatClientRequest request = invocation.getArgument(0);
+            return new ChatClientResponse(new ChatResponse(List.of(new Generation(new AssistantMessage("answer")))),
+                    request.context());
+        });
+    }
+
+    private static ChatClientRequest request(String question) {
+        return request(question, Set.of("inv-1", LlmResponseCache.INVOICE_SOURCE));
+    }
+
+    private static ChatClientRequest request(String question, Set<String> sources) {
+        return new ChatClientRequest(new Prompt(question), Map.of(
+                "llm_cache.enabled", true,
+                "llm_cache.query", question,
+                "llm_cache.sources", sources));
+    }
+}
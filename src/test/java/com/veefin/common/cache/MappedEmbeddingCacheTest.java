@@ -0,0 +1,62 @@
+package com.veefin.common.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedEmbeddingCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void entriesSurviveReopening() throws Exception {
+        Path file = dir.resolve("embeddings.bin");
+        try (MappedEmbeddingCache cache = new MappedEmbeddingCache(file, 64)) {
+            cache.put(key(1), new float[]{0.1f, 0.2f, 0.3f});
+        }
+        try (MappedEmbeddingCache cache = new MappedEmbeddingCache(file, 64)) {
+            assertThat(cache.get(key(1))).containsExactly(0.1f, 0.2f, 0.3f);
+            assertThat(cache.get(key(2))).isNull();
+        }
+    }
+
+    @Test
+    void dimensionChangeStartsOverInTheSameFile() throws Exception {
+        Path file = dir.resolve("embeddings.bin");
+        try (MappedEmbeddingCache cache = new MappedEmbeddingCache(file, 64)) {
+            cache.put(key(1), new float[]{1f, 2f, 3f, 4f, 5f, 6f, 7f, 8f});
+            cache.put(key(2), new float[]{0.5f, 0.25f});
+
+            assertThat(cache.get(key(1))).isNull();
+            assertThat(cache.get(key(2))).containsExactly(0.5f, 0.25f);
+        }
+        try (MappedEmbeddingCache cache = new MappedEmbeddingCache(file, 64)) {
+            assertThat(cache.get(key(1))).isNull();
+            assertThat(cache.get(key(2))).containsExactly(0.5f, 0.25f);
+        }
+    }
+
+    @Test
+    void capacityChangeStartsEmpty() throws Exception {
+        Path file = dir.resolve("embeddings.bin");
+        try (MappedEmbeddingCache cache = new MappedEmbeddingCache(file, 64)) {
+            cache.put(key(1), new float[]{1f, 2f});
+        }
+        try (MappedEmbeddingCache cache = new MappedEmbeddingCache(file, 128)) {
+            assertThat(cache.get(key(1))).isNull();
+            cache.put(key(2), new float[]{3f, 4f});
+            assertThat(cache.get(key(2))).containsExactly(3f, 4f);
+        }
+    }
+
+    private static byte[] key(int value) {
+        byte[] key = new byte[16];
+        key[0] = (byte) value;
+        key[15] = (byte) (value * 31);
+        return key;
+    }
+}
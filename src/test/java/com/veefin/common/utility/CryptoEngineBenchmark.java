@@ -0,0 +1,111 @@
+package com.veefin.common.utility;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs and verifies per second through CryptoEngine (pooled, pre-initialised Signature instances) against
+ * a fresh Signature.getInstance + init per operation, for each mandate signature scheme.
+ * Run with: mvn test-compile, then the main method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class CryptoEngineBenchmark {
+
+    // a serialized PaymentMandateContents is about this size
+    private static final String MANDATE = """
+            {"paymentMandateId":"pm-7f3c2a9e-1b44-4c1d-9a0e-5d2b8f6c1e90","paymentDetailsId":"INV-2025-000123",\
+            "paymentDetailsTotal":{"label":"Total","amount":{"currency":"INR","value":12500.0}},\
+            "paymentResponse":{"methodName":"CARD","details":{"token":"tok_9d8e7f6a"}},\
+            "merchantAgent":"merchant@payment-gateway","timestamp":"2025-10-01T10:15:30Z"}""";
+
+    @Param({"Ed25519", "SHA256withECDSA", "SHA256withRSA"})
+    private String algorithm;
+
+    private CryptoEngine engine;
+    private KeyPair keyPair;
+    private String signature;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        engine = new CryptoEngine();
+        keyPair = generateKeyPair(algorithm);
+        signature = engine.sign(algorithm, keyPair.getPrivate(), MANDATE);
+    }
+
+    @Benchmark
+    public String signPooled() throws GeneralSecurityException {
+        return engine.sign(algorithm, keyPair.getPrivate(), MANDATE);
+    }
+
+    @Benchmark
+    public boolean verifyPooled() throws GeneralSecurityException {
+        return engine.verify(algorithm, keyPair.getPublic(), MANDATE, signature);
+    }
+
+    @Benchmark
+    public String signUnpooled() throws GeneralSecurityException {
+        Signature signer = Signature.getInstance(algorithm);
+        signer.initSign(keyPair.getPrivate());
+        signer.update(MANDATE.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(signer.sign());
+    }
+
+    @Benchmark
+    public boolean verifyUnpooled() throws GeneralSecurityException {
+        Signature verifier = Signature.getInstance(algorithm);
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(MANDATE.getBytes(StandardCharsets.UTF_8));
+        return verifier.verify(Base64.getDecoder().decode(signature));
+    }
+
+    private static KeyPair generateKeyPair(String algorithm) throws GeneralSecurityException {
+        return switch (algorithm) {
+            case "SHA256withECDSA" -> {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+                yield generator.generateKeyPair();
+            }
+            case "SHA256withRSA" -> {
+                KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(2048);
+                yield generator.generateKeyPair();
+            }
+            default -> KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CryptoEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
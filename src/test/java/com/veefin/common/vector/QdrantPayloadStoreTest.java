@@ -0,0 +1,78 @@
+package com.veefin.common.vector;
+
+import com.google.common.util.concurrent.Futures;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points.PointId;
+import io.qdrant.client.grpc.Points.UpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.document.Document;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.qdrant.client.PointIdFactory.id;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QdrantPayloadStoreTest {
+
+    private final QdrantClient qdrantClient = mock(QdrantClient.class);
+    private QdrantPayloadStore payloadStore;
+
+    @BeforeEach
+    void setUp() {
+        payloadStore = new QdrantPayloadStore(qdrantClient);
+        ReflectionTestUtils.setField(payloadStore, "collectionName", "invoices");
+        ReflectionTestUtils.setField(payloadStore, "timeoutMs", 1000L);
+        when(qdrantClient.setPayloadAsync(eq("invoices"), anyMap(), any(PointId.class), eq(true), isNull(), isNull()))
+                .thenReturn(Futures.immediateFuture(UpdateResult.getDefaultInstance()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updatePayloadsSetsEachDocumentsMetadataOnItsPoint() throws Exception {
+        String first = UUID.randomUUID().toString();
+        String second = UUID.randomUUID().toString();
+
+        payloadStore.updatePayloads(List.of(
+                new Document(first, "invoice text", Map.of("documentType", "INVOICE", "status", "PAID",
+                        "totalAmount", 11000.5, "createdAtEpoch", 1_759_000_000L, "indexed", true)),
+                new Document(second, "payment text", Map.of("documentType", "PAYMENT"))));
+
+        ArgumentCaptor<Map<String, JsonWithInt.Value>> payload = ArgumentCaptor.forClass(Map.class);
+        verify(qdrantClient).setPayloadAsync(eq("invoices"), payload.capture(), eq(id(UUID.fromString(first))),
+                eq(true), isNull(), isNull());
+        assertThat(payload.getValue().get("documentType").getStringValue()).isEqualTo("INVOICE");
+        assertThat(payload.getValue().get("status").getStringValue()).isEqualTo("PAID");
+        assertThat(payload.getValue().get("totalAmount").getDoubleValue()).isEqualTo(11000.5);
+        assertThat(payload.getValue().get("createdAtEpoch").getIntegerValue()).isEqualTo(1_759_000_000L);
+        assertThat(payload.getValue().get("indexed").getBoolValue()).isTrue();
+        verify(qdrantClient).setPayloadAsync(eq("invoices"), anyMap(), eq(id(UUID.fromString(second))),
+                eq(true), isNull(), isNull());
+        verify(qdrantClient, times(2)).setPayloadAsync(eq("invoices"), anyMap(), any(PointId.class),
+                eq(true), isNull(), isNull());
+    }
+
+    @Test
+    void updatePayloadsWaitsForEveryUpdate() {
+        when(qdrantClient.setPayloadAsync(eq("invoices"), anyMap(), any(PointId.class), eq(true), isNull(), isNull()))
+                .thenReturn(Futures.immediateFailedFuture(new IllegalStateException("qdrant down")));
+
+        Document document = new Document(UUID.randomUUID().toString(), "text", Map.of("documentType", "INVOICE"));
+        assertThatThrownBy(() -> payloadStore.updatePayloads(List.of(document)))
+                .hasRootCauseMessage("qdrant down");
+    }
+}
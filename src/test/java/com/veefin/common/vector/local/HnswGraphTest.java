@@ -0,0 +1,115 @@
+package com.veefin.common.vector.local;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswGraphTest {
+
+    private static final int DIMENSION = 32;
+    private static final int NODES = 2000;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+    // the application defaults (vector.local.*)
+    private static final int MAX_CONNECTIONS = 16;
+    private static final int EF_CONSTRUCTION = 100;
+    private static final int EF_SEARCH = 64;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(7);
+    private MappedVectorStorage vectors;
+    private HnswGraph graph;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        vectors = MappedVectorStorage.create(dir.resolve("vectors.bin"), DIMENSION, MappedVectorStorage.Encoding.FLOAT32);
+        graph = new HnswGraph(vectors, MAX_CONNECTIONS, EF_CONSTRUCTION);
+        for (int i = 0; i < NODES; i++) {
+            vectors.append(randomVector());
+            graph.add();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        vectors.close();
+    }
+
+    @Test
+    void recallAgainstBruteForce() {
+        assertThat(recall(graph, node -> true)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void filteredRecallAgainstBruteForce() {
+        // a selective filter: one node in five is acceptable
+        assertThat(recall(graph, node -> node % 5 == 0)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void savedGraphSearchesTheSameAfterLoading() throws IOException {
+        Path file = dir.resolve("graph.bin");
+        graph.save(file);
+        HnswGraph loaded = new HnswGraph(vectors, MAX_CONNECTIONS, EF_CONSTRUCTION);
+
+        assertThat(loaded.load(file)).isTrue();
+        for (int q = 0; q < 20; q++) {
+            float[] query = MappedVectorStorage.normalize(randomVector());
+            assertThat(loaded.search(query, K, EF_SEARCH, node -> true))
+                    .isEqualTo(graph.search(query, K, EF_SEARCH, node -> true));
+        }
+    }
+
+    @Test
+    void graphBuiltWithOtherSettingsIsNotLoaded() throws IOException {
+        Path file = dir.resolve("graph.bin");
+        graph.save(file);
+
+        assertThat(new HnswGraph(vectors, MAX_CONNECTIONS * 2, EF_CONSTRUCTION).load(file)).isFalse();
+    }
+
+    private double recall(HnswGraph graph, IntPredicate accept) {
+        int found = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = MappedVectorStorage.normalize(randomVector());
+            Set<Integer> exact = bruteForce(query, accept);
+            List<HnswGraph.Scored> approximate = graph.search(query, K, EF_SEARCH, accept);
+            assertThat(approximate).allMatch(hit -> accept.test(hit.node()));
+            found += (int) approximate.stream().filter(hit -> exact.contains(hit.node())).count();
+        }
+        return found / (double) (QUERIES * K);
+    }
+
+    private Set<Integer> bruteForce(float[] query, IntPredicate accept) {
+        return IntStream.range(0, vectors.size())
+                .filter(accept)
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer node) -> vectors.dot(query, node)).reversed())
+                .limit(K)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,64 @@
+package com.veefin.common.vector.local;
+
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.repository.InvoiceRepository;
+import com.veefin.invoice.service.InvoiceVectorService;
+import com.veefin.payment_gateway.entity.model.PaymentTransaction;
+import com.veefin.payment_gateway.repository.PaymentRepository;
+import com.veefin.payment_gateway.service.TransactionVectorStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LocalVectorIndexLoaderTest {
+
+    private final LocalVectorStore localVectorStore = mock(LocalVectorStore.class);
+    private final InvoiceRepository invoiceRepository = mock(InvoiceRepository.class);
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final InvoiceVectorService invoiceVectorService = mock(InvoiceVectorService.class);
+    private final TransactionVectorStore transactionVectorStore = mock(TransactionVectorStore.class);
+    private LocalVectorIndexLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        loader = new LocalVectorIndexLoader(localVectorStore, invoiceRepository, paymentRepository,
+                invoiceVectorService, transactionVectorStore);
+        when(localVectorStore.ids()).thenReturn(new HashSet<>(Set.of("inv-1", "inv-2", "pay-1", "gone")));
+        when(paymentRepository.findAll(any(Pageable.class))).thenReturn(
+                new PageImpl<>(List.of(PaymentTransaction.builder().uuid("pay-1").build()), PageRequest.of(0, 500), 1));
+    }
+
+    @Test
+    void failedInvoicePageDoesNotStopStaleDeletion() {
+        // two pages: the first fails to queue, the second goes through
+        when(invoiceRepository.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(0);
+            String uuid = pageable.getPageNumber() == 0 ? "inv-1" : "inv-2";
+            return new PageImpl<>(List.of(InvoiceData.builder().uuid(uuid).build()),
+                    PageRequest.of(pageable.getPageNumber(), 1), 2);
+        });
+        doThrow(new IllegalStateException("bad row")).doNothing()
+                .when(invoiceVectorService).storeInvoicesInVectorDB(anyList());
+
+        ReflectionTestUtils.invokeMethod(loader, "syncWithDatabase");
+
+        verify(invoiceVectorService, times(2)).storeInvoicesInVectorDB(anyList());
+        verify(transactionVectorStore).storePaymentInVectorDB(any(PaymentTransaction.class));
+        verify(localVectorStore).delete(List.of("gone"));
+    }
+}
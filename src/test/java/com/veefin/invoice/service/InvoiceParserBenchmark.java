@@ -0,0 +1,74 @@
+package com.veefin.invoice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Documents parsed per second by the single-pass InvoiceParserService and the regex chain it replaced, over the
+ * same corpus as the parity test. Run through main, which adds the GC profiler: gc.alloc.rate.norm is the
+ * allocation per document (each benchmark op is one document).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceParserBenchmark {
+
+    private static final int CORPUS_SIZE = 1000;
+
+    private List<String> corpus;
+    private InvoiceParserService parser;
+    private LegacyInvoiceParser legacy;
+
+    @Setup
+    public void setUp() {
+        corpus = new ArrayList<>(InvoiceCorpus.generate(42L, CORPUS_SIZE - InvoiceCorpus.samples().size()));
+        corpus.addAll(InvoiceCorpus.samples());
+        parser = new InvoiceParserService(List.of(), new SimpleMeterRegistry());
+        legacy = new LegacyInvoiceParser();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void singlePass(Blackhole blackhole) {
+        for (String text : corpus) {
+            blackhole.consume(parser.parseInvoiceFields(text));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void regexChain(Blackhole blackhole) {
+        for (String text : corpus) {
+            blackhole.consume(legacy.parseInvoiceFields(text));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InvoiceParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,46 @@
+package com.veefin.invoice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvoiceParserParityTest {
+
+    private final InvoiceParserService parser = new InvoiceParserService(List.of(), new SimpleMeterRegistry());
+    private final LegacyInvoiceParser legacy = new LegacyInvoiceParser();
+
+    @Test
+    void extractsTheSameFieldsAsTheRegexChain() {
+        List<String> corpus = new ArrayList<>(InvoiceCorpus.samples());
+        corpus.addAll(InvoiceCorpus.generate(16L, 20_000));
+
+        for (String text : corpus) {
+            assertThat(parser.parseInvoiceFields(text))
+                    .as("fields of:%n%s", text)
+                    .isEqualTo(legacy.parseInvoiceFields(text));
+        }
+    }
+
+    @Test
+    void extractsTheExpectedFieldsFromASample() {
+        assertThat(parser.parseInvoiceFields(InvoiceCorpus.samples().get(0))).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "merchant_name", "Acme Traders Pvt Ltd",
+                "invoice_number", "29ABCDE1234F1Z5",
+                "total_amount", "11,000.00",
+                "due_date", "15-Oct-2025"));
+    }
+
+    @Test
+    void totalWithoutANumberFallsBackToTheLargestAmount() {
+        // deliberate difference: the regex chain returned a lone "," here
+        String text = "Acme Traders\nItem 1,250.00\nItem 75.50\nTotal Amount, see attached";
+
+        assertThat(legacy.parseInvoiceFields(text)).containsEntry("total_amount", ",");
+        assertThat(parser.parseInvoiceFields(text)).containsEntry("total_amount", "1,250.00");
+    }
+}
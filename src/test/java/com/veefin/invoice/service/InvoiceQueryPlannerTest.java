@@ -0,0 +1,153 @@
+package com.veefin.invoice.service;
+
+import com.veefin.common.query.AggregateQueries;
+import com.veefin.invoice.entity.InvoiceData;
+import com.veefin.invoice.enums.InvoiceStatus;
+import com.veefin.invoice.repository.InvoiceRepository;
+import com.veefin.invoice.repository.InvoiceSpecification;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Each structured shape must ask for the aggregate with the filters the question names and render exactly the
+ * count and sum that aggregate returns
+ */
+class InvoiceQueryPlannerTest {
+
+    private final InvoiceRepository invoiceRepository = mock(InvoiceRepository.class);
+    private final InvoiceLookupService invoiceLookupService = mock(InvoiceLookupService.class);
+    private final AggregateQueries aggregateQueries = mock(AggregateQueries.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private InvoiceQueryPlanner planner;
+    private MockedStatic<InvoiceSpecification> specifications;
+
+    @BeforeEach
+    void setUp() {
+        planner = new InvoiceQueryPlanner(invoiceRepository, invoiceLookupService, aggregateQueries, meterRegistry);
+        specifications = mockStatic(InvoiceSpecification.class, CALLS_REAL_METHODS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        specifications.close();
+    }
+
+    @Test
+    void owedAnswerRendersTheAggregateAndListsInvoices() {
+        when(invoiceLookupService.findMerchantMention(anyString(), anySet())).thenReturn("acme traders");
+        givenTotals(3, 12_500.0);
+        doReturn(List.of(invoice("INV-1", 4_000.0, "2025-10-15"), invoice("INV-2", 6_000.0, "2025-10-20")))
+                .when(invoiceRepository).findBy(any(Specification.class), any());
+
+        String answer = planner.answer("How much do I owe Acme Traders?").orElseThrow();
+
+        assertThat(answer).startsWith("You owe **₹12,500.00** to Acme Traders across 3 unpaid invoices.");
+        assertThat(answer).contains("| INV-1 | Acme Traders | ₹4,000.00 | PENDING | 2025-10-15 |");
+        assertThat(answer).contains("| INV-2 | Acme Traders | ₹6,000.00 | PENDING | 2025-10-20 |");
+        assertThat(answer).endsWith("…and 1 more.");
+        specifications.verify(() -> InvoiceSpecification.filterInvoices(null, null, "acme traders", null, null, null));
+        specifications.verify(InvoiceSpecification::unpaid);
+        assertThat(meterRegistry.get("chat.structured.query").tag("plan", "owed").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void nothingOwedSkipsTheListing() {
+        when(invoiceLookupService.findMerchantMention(anyString(), anySet())).thenReturn("acme traders");
+        givenTotals(0, 0.0);
+
+        assertThat(planner.answer("what is my outstanding balance with acme traders"))
+                .contains("You have no unpaid invoices from Acme Traders.");
+        verify(invoiceRepository, never()).findBy(any(Specification.class), any());
+    }
+
+    @Test
+    void dueInNamedMonthFiltersOnThatMonth() {
+        givenTotals(2, 21_712.59);
+        doReturn(List.of(invoice("GLX/24-25/118", 18_400.5, "2025-10-02"), invoice("ITS_0931", 3_312.09, "2025-10-29")))
+                .when(invoiceRepository).findBy(any(Specification.class), any());
+
+        String answer = planner.answer("Which invoices are due in October 2025?").orElseThrow();
+
+        assertThat(answer).startsWith("**2 unpaid invoices are due in October 2025**, totalling ₹21,712.59.");
+        specifications.verify(() -> InvoiceSpecification.dueBetween(LocalDate.of(2025, 10, 1), LocalDate.of(2025, 11, 1)));
+        specifications.verify(InvoiceSpecification::unpaid);
+    }
+
+    @Test
+    void overdueFiltersOnDueBeforeToday() {
+        givenTotals(1, 80_000.0);
+        doReturn(List.of(invoice("ITS_0931", 80_000.0, "2025-04-02")))
+                .when(invoiceRepository).findBy(any(Specification.class), any());
+
+        String answer = planner.answer("Any overdue bills?").orElseThrow();
+
+        assertThat(answer).startsWith("**1 unpaid invoice is overdue**, totalling ₹80,000.00.");
+        assertThat(answer).doesNotContain("more.");
+        specifications.verify(() -> InvoiceSpecification.dueBefore(any(LocalDate.class)));
+    }
+
+    @Test
+    void totalsFilterOnStatusAndCreationPeriod() {
+        givenTotals(5, 1_234.5);
+
+        assertThat(planner.answer("How many paid invoices were created in September 2025?"))
+                .contains("**5 paid invoices created in September 2025**, totalling ₹1,234.50.");
+        specifications.verify(() -> InvoiceSpecification.filterInvoices(null, "PAID", null, null, null, null));
+        specifications.verify(() -> InvoiceSpecification.createdBetween(
+                LocalDateTime.of(2025, 9, 1, 0, 0), LocalDateTime.of(2025, 10, 1, 0, 0)));
+        verify(invoiceRepository, never()).findBy(any(Specification.class), any());
+    }
+
+    @Test
+    void questionsAboutSpecificInvoicesGoToRag() {
+        assertThat(planner.answer("What is the status of invoice INV-2025-0042?")).isEmpty();
+        assertThat(planner.answer("How much is the invoice for 11000?")).isEmpty();
+        verifyNoInteractions(aggregateQueries);
+    }
+
+    @Test
+    void unrecognizedQuestionsGoToRag() {
+        assertThat(planner.answer("summarize the acme contract terms")).isEmpty();
+        assertThat(planner.answer(" ")).isEmpty();
+        assertThat(planner.answer(null)).isEqualTo(Optional.empty());
+        verifyNoInteractions(aggregateQueries);
+    }
+
+    private void givenTotals(long count, double sum) {
+        when(aggregateQueries.totals(eq(InvoiceData.class), any(), eq("totalAmount")))
+                .thenReturn(new AggregateQueries.Totals(count, sum));
+    }
+
+    private static InvoiceData invoice(String invoiceNumber, double amount, String dueDate) {
+        return InvoiceData.builder()
+                .invoiceNumber(invoiceNumber)
+                .merchantName("Acme Traders")
+                .totalAmount(amount)
+                .status(InvoiceStatus.PENDING)
+                .dueDate(dueDate)
+                .build();
+    }
+}
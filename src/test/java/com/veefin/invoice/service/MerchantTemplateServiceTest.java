@@ -0,0 +1,130 @@
+package com.veefin.invoice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.veefin.invoice.entity.MerchantTemplate;
+import com.veefin.invoice.repository.MerchantTemplateRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MerchantTemplateServiceTest {
+
+    private static final String CONFIRMED_INVOICE = """
+            Globex Supplies Pvt Ltd
+            GSTIN 29ABCDE1234F1Z5
+            Bill Ref: GLX-1001
+            Payable by 15/10/2025
+            Subtotal 900.00
+            Total 1,062.00
+            """;
+    private static final String NEXT_INVOICE = """
+            Globex Supplies Pvt Ltd
+            GSTIN 29ABCDE1234F1Z5
+            Bill Ref: GLX-2002
+            Payable by 30/11/2025
+            Subtotal 2,000.00
+            Total 2,360.00
+            """;
+
+    private final MerchantTemplateRepository repository = mock(MerchantTemplateRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MerchantTemplateService templateService;
+
+    @BeforeEach
+    void setUp() {
+        templateService = new MerchantTemplateService(repository, new ObjectMapper(), meterRegistry);
+        when(repository.findBySignature(anyString())).thenReturn(Optional.empty());
+        when(repository.save(any(MerchantTemplate.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void learnedLayoutReadsTheNextInvoiceByLabel() {
+        learnGlobex();
+
+        assertThat(templateService.extract(NEXT_INVOICE)).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "merchant_name", "Globex Supplies Pvt Ltd",
+                "invoice_number", "GLX-2002",
+                "total_amount", "2,360.00",
+                "due_date", "30/11/2025"));
+        assertThat(meterRegistry.get("invoice.template.lookups").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void totalLabelDoesNotMatchSubtotal() {
+        learnGlobex();
+
+        assertThat(templateService.extract(NEXT_INVOICE)).containsEntry("total_amount", "2,360.00");
+    }
+
+    @Test
+    void unknownMerchantFallsBackToTheHeuristic() {
+        learnGlobex();
+        InvoiceParserService parser = new InvoiceParserService(List.of(templateService), meterRegistry);
+
+        String other = """
+                Initech Services LLP
+                Invoice No: ITS_0931
+                Due Date: 2025-09-29
+                Total Amount: 80,000.00
+                """;
+        assertThat(templateService.extract(other)).isEmpty();
+        assertThat(parser.parseInvoiceFields(other)).containsEntry("merchant_name", "Initech Services LLP");
+        assertThat(meterRegistry.get("invoice.template.lookups").tag("result", "miss").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("invoice.parse.time").tag("path", "heuristic").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void fieldsMissingFromTheLayoutAreLeftToTheHeuristic() {
+        learnGlobex();
+        InvoiceParserService parser = new InvoiceParserService(List.of(templateService), meterRegistry);
+
+        String withoutDueDate = NEXT_INVOICE.replace("Payable by 30/11/2025\n", "Due Date: 30-Nov-2025\n");
+        Map<String, String> templated = templateService.extract(withoutDueDate);
+        assertThat(templated).containsEntry("invoice_number", "GLX-2002").doesNotContainKey("due_date");
+        assertThat(meterRegistry.get("invoice.template.lookups").tag("result", "partial").counter().count()).isEqualTo(1);
+
+        assertThat(parser.parseInvoiceFields(withoutDueDate))
+                .containsEntry("invoice_number", "GLX-2002")
+                .containsEntry("due_date", "30-Nov-2025");
+        assertThat(meterRegistry.get("invoice.parse.time").tag("path", "mixed").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void completeTemplateSkipsTheHeuristic() {
+        learnGlobex();
+        InvoiceParserService parser = new InvoiceParserService(List.of(templateService), meterRegistry);
+
+        assertThat(parser.parseInvoiceFields(NEXT_INVOICE)).containsEntry("invoice_number", "GLX-2002");
+        assertThat(meterRegistry.get("invoice.parse.time").tag("path", "template").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void merchantMissingFromTheHeaderLearnsNothing() {
+        templateService.learn(CONFIRMED_INVOICE, Map.of(
+                "merchant_name", "Umbrella Logistics",
+                "invoice_number", "GLX-1001"));
+
+        verify(repository, never()).save(any(MerchantTemplate.class));
+        assertThat(templateService.extract(NEXT_INVOICE)).isEmpty();
+    }
+
+    private void learnGlobex() {
+        templateService.learn(CONFIRMED_INVOICE, Map.of(
+                "merchant_name", "Globex Supplies Pvt Ltd",
+                "invoice_number", "GLX-1001",
+                "total_amount", "1062.00",
+                "due_date", "15/10/2025"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.veefin.invoice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextLayerScorerTest {
+
+    private static final String INVOICE_PAGE = """
+            Acme Traders Pvt Ltd
+            Tax Invoice No: INV-2025-0042
+            Issue Date: 01/09/2025   Due Date: 15/10/2025
+            Description              Qty   Rate       Amount
+            Printer paper A4 ream     10   450.00   4,500.00
+            Total Amount Due                       4,500.00
+            Please pay by bank transfer to the account below.
+            """;
+
+    private TextLayerScorer scorer;
+
+    @BeforeEach
+    void setUp() {
+        scorer = new TextLayerScorer();
+        ReflectionTestUtils.setField(scorer, "minChars", 40);
+        ReflectionTestUtils.setField(scorer, "minScore", 0.5);
+    }
+
+    @Test
+    void realTextLayerSkipsOcr() {
+        assertThat(scorer.score(INVOICE_PAGE)).isGreaterThan(0.9);
+        assertThat(scorer.isUsable(INVOICE_PAGE)).isTrue();
+    }
+
+    @Test
+    void emptyPageIsOcred() {
+        assertThat(scorer.isUsable(null)).isFalse();
+        assertThat(scorer.isUsable(" \n\t ")).isFalse();
+    }
+
+    @Test
+    void scannedPageWithOnlyAStampIsOcred() {
+        // a scan's text layer holds at most a page number or a scanner footer
+        assertThat(scorer.isUsable("Page 1")).isFalse();
+    }
+
+    @Test
+    void brokenFontEncodingIsOcred() {
+        // dense text that matches no words: glyphs mapped to the wrong characters
+        String garbled = "Xqzv Bnrtk Wplm Qzxv Jkqw Vbnm Zxcq Wrtp Lkjh Gfds Mnbv Qwer Tyui Opas Dfgh Jklz";
+        assertThat(scorer.isUsable(garbled)).isFalse();
+
+        String undecodable = "Invoice ���� ��� Total ���� 1,250.00";
+        assertThat(scorer.score(undecodable)).isZero();
+    }
+
+    @Test
+    void shortPageWithKnownWordsAndAnAmountIsKept() {
+        // a continuation page with only the total line is terse but real
+        assertThat(scorer.isUsable("Grand Total 1,250.00")).isTrue();
+    }
+
+    @Test
+    void minScoreIsTheThreshold() {
+        String page = "Grand Total 1,250.00";
+        double score = scorer.score(page);
+
+        ReflectionTestUtils.setField(scorer, "minScore", score);
+        assertThat(scorer.isUsable(page)).isTrue();
+
+        ReflectionTestUtils.setField(scorer, "minScore", score + 0.01);
+        assertThat(scorer.isUsable(page)).isFalse();
+    }
+}
@@ -0,0 +1,106 @@
+package com.veefin.payment_gateway.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GatewayCircuitBreakerTest {
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        GatewayCircuitBreaker breaker = new GatewayCircuitBreaker(10, 4, 0.5, Duration.ofMinutes(1));
+        for (int i = 0; i < 3; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onFailure();
+        }
+        assertThat(breaker.state()).isEqualTo(GatewayCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensAtFailureRateThresholdAndRefusesCalls() {
+        GatewayCircuitBreaker breaker = new GatewayCircuitBreaker(10, 4, 0.5, Duration.ofMinutes(1));
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(GatewayCircuitBreaker.State.CLOSED);
+
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(GatewayCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void oldOutcomesLeaveTheWindow() {
+        GatewayCircuitBreaker breaker = new GatewayCircuitBreaker(4, 4, 0.5, Duration.ofMinutes(1));
+        breaker.onFailure();
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+        }
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(GatewayCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void halfOpenLetsASingleProbeThrough() {
+        GatewayCircuitBreaker breaker = openBreaker();
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(GatewayCircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void successfulProbeClosesTheCircuit() {
+        GatewayCircuitBreaker breaker = openBreaker();
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onSuccess();
+
+        assertThat(breaker.state()).isEqualTo(GatewayCircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(GatewayCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedProbeOpensTheCircuitAgain() {
+        GatewayCircuitBreaker breaker = new GatewayCircuitBreaker(2, 2, 0.5, Duration.ofMillis(50));
+        breaker.onFailure();
+        breaker.onFailure();
+        sleep(60);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(GatewayCircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void cancelledProbeFreesTheProbeSlot() {
+        GatewayCircuitBreaker breaker = openBreaker();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onCancelled();
+
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    private static GatewayCircuitBreaker openBreaker() {
+        GatewayCircuitBreaker breaker = new GatewayCircuitBreaker(2, 2, 0.5, Duration.ZERO);
+        breaker.onFailure();
+        breaker.onFailure();
+        return breaker;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.veefin.payment_gateway.service;
+
+import com.veefin.common.query.AggregateQueries;
+import com.veefin.invoice.service.InvoiceLookupService;
+import com.veefin.payment_gateway.entity.model.PaymentTransaction;
+import com.veefin.payment_gateway.specification.PaymentTransactionSpecification;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Each structured shape must ask for the aggregate with the filters the question names and render exactly the
+ * count and sum that aggregate returns
+ */
+class PaymentQueryPlannerTest {
+
+    private final InvoiceLookupService invoiceLookupService = mock(InvoiceLookupService.class);
+    private final AggregateQueries aggregateQueries = mock(AggregateQueries.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PaymentQueryPlanner planner;
+    private MockedStatic<PaymentTransactionSpecification> specifications;
+
+    @BeforeEach
+    void setUp() {
+        planner = new PaymentQueryPlanner(invoiceLookupService, aggregateQueries, meterRegistry);
+        specifications = mockStatic(PaymentTransactionSpecification.class, CALLS_REAL_METHODS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        specifications.close();
+    }
+
+    @Test
+    void paidToMerchantInMonthRendersTheAggregate() {
+        when(invoiceLookupService.findMerchantMention(anyString(), anySet())).thenReturn("acme traders");
+        givenTotals(4, 45_000.0);
+
+        assertThat(planner.answer("How much did I pay Acme Traders in October 2025?"))
+                .contains("You paid **₹45,000.00** to Acme Traders in October 2025 across 4 payments.");
+        specifications.verify(() -> PaymentTransactionSpecification.statusIn(
+                argThat(statuses -> statuses.contains("SUCCESS") && statuses.contains("SETTLED") && !statuses.contains("FAILED"))));
+        specifications.verify(() -> PaymentTransactionSpecification.createdBetween(
+                LocalDateTime.of(2025, 10, 1, 0, 0), LocalDateTime.of(2025, 11, 1, 0, 0)));
+        specifications.verify(() -> PaymentTransactionSpecification.forMerchant("acme traders"));
+        assertThat(meterRegistry.get("chat.structured.query").tag("plan", "paid").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedCountUsesFailedStatuses() {
+        givenTotals(1, 999.99);
+
+        assertThat(planner.answer("How many payments failed last week?"))
+                .contains("**1 payment last week failed**, worth ₹999.99 in total.");
+        specifications.verify(() -> PaymentTransactionSpecification.statusIn(
+                argThat(statuses -> statuses.contains("GATEWAY_REJECTED") && !statuses.contains("SUCCESS"))));
+        specifications.verify(() -> PaymentTransactionSpecification.forMerchant(anyString()), never());
+    }
+
+    @Test
+    void noPaymentsInPeriod() {
+        givenTotals(0, 0.0);
+
+        assertThat(planner.answer("total paid this month")).contains("No completed payments this month.");
+    }
+
+    @Test
+    void questionsAboutSpecificPaymentsGoToRag() {
+        assertThat(planner.answer("how much was transaction 8f3k2a9x")).isEmpty();
+        assertThat(planner.answer("how much did I pay for invoice INV-2025-0042")).isEmpty();
+        verifyNoInteractions(aggregateQueries);
+    }
+
+    @Test
+    void unrecognizedQuestionsGoToRag() {
+        assertThat(planner.answer("show payment history")).isEmpty();
+        assertThat(planner.answer("how many invoices are there")).isEmpty();
+        assertThat(planner.answer("")).isEmpty();
+        verifyNoInteractions(aggregateQueries);
+    }
+
+    private void givenTotals(long count, double sum) {
+        when(aggregateQueries.totals(eq(PaymentTransaction.class), any(), eq("amount")))
+                .thenReturn(new AggregateQueries.Totals(count, sum));
+    }
+}
@@ -0,0 +1,107 @@
+package com.veefin.payment_gateway.service;
+
+import com.veefin.common.vector.HybridRetriever;
+import com.veefin.common.vector.LexicalIndex;
+import com.veefin.common.vector.MetadataFilter;
+import com.veefin.common.vector.VectorIndexWriter;
+import com.veefin.payment_gateway.entity.model.PaymentTransaction;
+import com.veefin.payment_gateway.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Payments are stored with the gateway's status, so a status named in a question has to match those values
+ */
+class TransactionVectorStoreTest {
+
+    private final VectorStore vectorStore = mock(VectorStore.class);
+    private final LexicalIndex lexicalIndex = new LexicalIndex(new SimpleMeterRegistry());
+    private TransactionVectorStore transactionVectorStore;
+    private PaymentTransaction settling;
+    private PaymentTransaction declined;
+
+    @BeforeEach
+    void setUp() {
+        HybridRetriever hybridRetriever = new HybridRetriever(vectorStore, lexicalIndex, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(hybridRetriever, "candidates", 20);
+        transactionVectorStore = new TransactionVectorStore(vectorStore, mock(VectorIndexWriter.class), lexicalIndex,
+                hybridRetriever, mock(PaymentRepository.class));
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of());
+
+        settling = payment("a1b2c3d4", "SUBMITTED_FOR_SETTLEMENT");
+        declined = payment("e5f6a7b8", "PROCESSOR_DECLINED");
+        transactionVectorStore.storePaymentInVectorDB(settling);
+        transactionVectorStore.storePaymentInVectorDB(declined);
+    }
+
+    @Test
+    void successfulPaymentsMatchSubmittedForSettlement() {
+        List<Document> found = transactionVectorStore.searchPayments("show my successful payment transactions", 5);
+
+        assertThat(found).extracting(Document::getId).containsExactly(settling.getUuid());
+        assertThat(filterMatches(settling)).isTrue();
+        assertThat(filterMatches(declined)).isFalse();
+    }
+
+    @Test
+    void pendingPaymentsMatchUnsettledSales() {
+        List<Document> found = transactionVectorStore.searchPayments("list pending payment transactions", 5);
+
+        assertThat(found).extracting(Document::getId).containsExactly(settling.getUuid());
+    }
+
+    @Test
+    void failedPaymentsMatchGatewayDeclines() {
+        List<Document> found = transactionVectorStore.searchPayments("which payment transactions failed", 5);
+
+        assertThat(found).extracting(Document::getId).containsExactly(declined.getUuid());
+    }
+
+    @Test
+    void searchByStatusMapsToGatewayStatuses() {
+        transactionVectorStore.searchPaymentsByStatus("success", 5);
+
+        assertThat(filterMatches(settling)).isTrue();
+        assertThat(filterMatches(declined)).isFalse();
+    }
+
+    /**
+     * Whether the filter of the last vector search accepts the payment's stored metadata
+     */
+    private boolean filterMatches(PaymentTransaction payment) {
+        ArgumentCaptor<SearchRequest> request = ArgumentCaptor.forClass(SearchRequest.class);
+        verify(vectorStore, atLeastOnce()).similaritySearch(request.capture());
+        Document document = ReflectionTestUtils.invokeMethod(transactionVectorStore, "toDocument", payment);
+        return MetadataFilter.matches(request.getValue().getFilterExpression(), document.getMetadata());
+    }
+
+    private static PaymentTransaction payment(String transactionId, String status) {
+        return PaymentTransaction.builder()
+                .uuid(UUID.randomUUID().toString())
+                .invoiceUuid(UUID.randomUUID().toString())
+                .transactionId(transactionId)
+                .amount(1250.0)
+                .currency("INR")
+                .paymentMethod("credit_card")
+                .status(status)
+                .createdAt(LocalDateTime.now().minusDays(2))
+                .build();
+    }
+}